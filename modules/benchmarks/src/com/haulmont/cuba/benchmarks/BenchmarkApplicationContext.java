@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.benchmarks;
+
+import com.haulmont.cuba.core.sys.CubaCoreApplicationContext;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Middleware application context that ignores classes of the client tier. The benchmarks classpath contains
+ * the {@code gui} module, and its annotated beans must not be picked up by the middleware component scan.
+ */
+public class BenchmarkApplicationContext extends CubaCoreApplicationContext {
+
+    private static final String[] CLIENT_PACKAGE_PATHS = {"com/haulmont/cuba/gui/", "com/haulmont/cuba/client/"};
+
+    public BenchmarkApplicationContext(String[] locations) {
+        super(locations);
+    }
+
+    @Override
+    public Resource[] getResources(String locationPattern) throws IOException {
+        return Arrays.stream(super.getResources(locationPattern))
+                .filter(resource -> !isClientResource(resource))
+                .toArray(Resource[]::new);
+    }
+
+    protected boolean isClientResource(Resource resource) {
+        String description = resource.getDescription().replace('\\', '/');
+        for (String path : CLIENT_PACKAGE_PATHS) {
+            if (description.contains(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
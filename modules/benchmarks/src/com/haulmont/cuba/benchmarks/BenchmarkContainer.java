@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.benchmarks;
+
+import com.haulmont.cuba.core.sys.dbupdate.DbUpdaterEngine;
+import com.haulmont.cuba.testsupport.TestContainer;
+import org.apache.commons.io.IOUtils;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * Test container for benchmarks. Works with an in-memory HSQL database created from the platform init scripts,
+ * so benchmarks do not require a running database server.
+ * <p>
+ * The container is started once per JVM, i.e. once per JMH fork:
+ * <pre>
+ * &#64;Setup
+ * public void setUp() {
+ *     BenchmarkContainer.start();
+ * }
+ * </pre>
+ */
+public class BenchmarkContainer extends TestContainer {
+
+    public static final String CREATE_DB_SCRIPT = "com/haulmont/cuba/benchmarks/db/create-db.sql";
+
+    private static final BenchmarkContainer INSTANCE = new BenchmarkContainer();
+
+    private static volatile boolean started;
+
+    protected BenchmarkContainer() {
+        appPropertiesFiles = Arrays.asList(
+                "com/haulmont/cuba/app.properties",
+                "com/haulmont/cuba/testsupport/test-app.properties");
+        dbUrl = "jdbc:hsqldb:mem:cubabenchmarks";
+    }
+
+    /**
+     * Starts the container if it is not started yet.
+     */
+    public static synchronized void start() {
+        if (!started) {
+            try {
+                INSTANCE.before();
+            } catch (Throwable e) {
+                throw new RuntimeException("Error starting benchmark container", e);
+            }
+            started = true;
+        }
+    }
+
+    @Override
+    protected ClassPathXmlApplicationContext createAppContext(String[] locations) {
+        return new BenchmarkApplicationContext(locations);
+    }
+
+    @Override
+    protected void initDataSources() {
+        createDatabase();
+        super.initDataSources();
+    }
+
+    protected void createDatabase() {
+        String script;
+        try (InputStream stream = getClass().getClassLoader().getResourceAsStream(CREATE_DB_SCRIPT)) {
+            if (stream == null) {
+                throw new IllegalStateException("Script not found: " + CREATE_DB_SCRIPT);
+            }
+            script = IOUtils.toString(stream, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading " + CREATE_DB_SCRIPT, e);
+        }
+
+        try (Connection connection = DriverManager.getConnection(dbUrl, dbUser, dbPassword);
+             Statement statement = connection.createStatement()) {
+            for (String sql : new DbUpdaterEngine.ScriptSplitter("^").split(script)) {
+                if (!isEmpty(sql)) {
+                    statement.execute(sql);
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error creating benchmark database", e);
+        }
+    }
+
+    protected boolean isEmpty(String sql) {
+        for (String line : sql.split("\\r?\\n")) {
+            String trimmed = line.trim();
+            if (!trimmed.isEmpty() && !trimmed.startsWith("--")) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
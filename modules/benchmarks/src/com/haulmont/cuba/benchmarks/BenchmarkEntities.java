@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.benchmarks;
+
+import com.haulmont.cuba.core.entity.BaseEntityInternalAccess;
+import com.haulmont.cuba.core.entity.BaseGenericIdEntity;
+import com.haulmont.cuba.core.global.AppBeans;
+import com.haulmont.cuba.core.global.Metadata;
+import com.haulmont.cuba.security.entity.Group;
+import com.haulmont.cuba.security.entity.Role;
+import com.haulmont.cuba.security.entity.User;
+import com.haulmont.cuba.security.entity.UserRole;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates detached entity graphs used by benchmarks.
+ */
+public final class BenchmarkEntities {
+
+    private BenchmarkEntities() {
+    }
+
+    /**
+     * Creates users sharing the same group and roles.
+     */
+    public static List<User> createUsers(int count, int rolesPerUser) {
+        Metadata metadata = AppBeans.get(Metadata.NAME);
+
+        Group group = detached(metadata.create(Group.class));
+        group.setName("Benchmark group");
+
+        List<Role> roles = new ArrayList<>(rolesPerUser);
+        for (int i = 0; i < rolesPerUser; i++) {
+            Role role = detached(metadata.create(Role.class));
+            role.setName("role-" + i);
+            roles.add(role);
+        }
+
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            User user = detached(metadata.create(User.class));
+            user.setLogin("user-" + i);
+            user.setLoginLowerCase("user-" + i);
+            user.setName("User " + i);
+            user.setActive(true);
+            user.setGroup(group);
+
+            List<UserRole> userRoles = new ArrayList<>(rolesPerUser);
+            for (Role role : roles) {
+                UserRole userRole = detached(metadata.create(UserRole.class));
+                userRole.setUser(user);
+                userRole.setRole(role);
+                userRoles.add(userRole);
+            }
+            user.setUserRoles(userRoles);
+            users.add(user);
+        }
+        return users;
+    }
+
+    public static User createUser(int rolesPerUser) {
+        return createUsers(1, rolesPerUser).get(0);
+    }
+
+    private static <T extends BaseGenericIdEntity> T detached(T entity) {
+        BaseEntityInternalAccess.setNew(entity, false);
+        BaseEntityInternalAccess.setDetached(entity, true);
+        return entity;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.benchmarks;
+
+import com.haulmont.cuba.core.sys.AppContext;
+import com.haulmont.cuba.gui.model.DataContext;
+import com.haulmont.cuba.gui.model.impl.DataContextImpl;
+import com.haulmont.cuba.security.entity.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merging of loaded entity graphs into {@link DataContextImpl}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataContextMergeBenchmark {
+
+    @Param({"10", "1000"})
+    private int count;
+
+    private List<User> users;
+
+    private DataContext filledContext;
+
+    @Setup
+    public void setUp() {
+        BenchmarkContainer.start();
+        users = BenchmarkEntities.createUsers(count, 3);
+        filledContext = new DataContextImpl(AppContext.getApplicationContext());
+        filledContext.merge(users);
+    }
+
+    @Benchmark
+    public Object mergeIntoEmptyContext() {
+        DataContext dataContext = new DataContextImpl(AppContext.getApplicationContext());
+        return dataContext.merge(users);
+    }
+
+    @Benchmark
+    public Object mergeIntoFilledContext() {
+        return filledContext.merge(users);
+    }
+}
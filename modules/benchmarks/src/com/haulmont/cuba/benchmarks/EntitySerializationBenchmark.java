@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.benchmarks;
+
+import com.haulmont.chile.core.model.MetaClass;
+import com.haulmont.cuba.core.app.serialization.EntitySerializationAPI;
+import com.haulmont.cuba.core.global.AppBeans;
+import com.haulmont.cuba.core.global.Metadata;
+import com.haulmont.cuba.core.global.View;
+import com.haulmont.cuba.core.global.ViewRepository;
+import com.haulmont.cuba.security.entity.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of entity graphs by {@link EntitySerializationAPI}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntitySerializationBenchmark {
+
+    @Param({"1", "100"})
+    private int count;
+
+    private EntitySerializationAPI entitySerialization;
+
+    private MetaClass metaClass;
+
+    private View view;
+
+    private List<User> users;
+
+    private String json;
+
+    @Setup
+    public void setUp() {
+        BenchmarkContainer.start();
+        entitySerialization = AppBeans.get(EntitySerializationAPI.NAME);
+        metaClass = AppBeans.get(Metadata.class).getClassNN(User.class);
+        view = AppBeans.get(ViewRepository.class).getView(User.class, "user.edit");
+        users = BenchmarkEntities.createUsers(count, 3);
+        json = entitySerialization.toJson(users, view);
+    }
+
+    @Benchmark
+    public String toJson() {
+        return entitySerialization.toJson(users, view);
+    }
+
+    @Benchmark
+    public Object fromJson() {
+        return entitySerialization.entitiesCollectionFromJson(json, metaClass);
+    }
+}
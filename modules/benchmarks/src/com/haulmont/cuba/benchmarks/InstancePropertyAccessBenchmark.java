@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.benchmarks;
+
+import com.haulmont.chile.core.model.utils.InstanceUtils;
+import com.haulmont.cuba.security.entity.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reflective property access through {@code AbstractInstance} and {@link InstanceUtils}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstancePropertyAccessBenchmark {
+
+    private User user;
+
+    private boolean active;
+
+    @Setup
+    public void setUp() {
+        BenchmarkContainer.start();
+        user = BenchmarkEntities.createUser(3);
+    }
+
+    @Benchmark
+    public Object getValue() {
+        return user.getValue("login");
+    }
+
+    @Benchmark
+    public void setValue() {
+        active = !active;
+        user.setValue("active", active);
+    }
+
+    @Benchmark
+    public Object getValueEx() {
+        return InstanceUtils.getValueEx(user, "group.name");
+    }
+
+    @Benchmark
+    public String getInstanceName() {
+        return InstanceUtils.getInstanceName(user);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.benchmarks;
+
+import com.haulmont.cuba.core.sys.serialization.KryoSerialization;
+import com.haulmont.cuba.security.entity.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binary serialization of entity graphs by {@link KryoSerialization}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KryoSerializationBenchmark {
+
+    @Param({"1", "100"})
+    private int count;
+
+    private KryoSerialization serialization;
+
+    private ArrayList<User> users;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() {
+        BenchmarkContainer.start();
+        serialization = new KryoSerialization();
+        users = new ArrayList<>(BenchmarkEntities.createUsers(count, 3));
+        bytes = serialization.serialize(users);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serialization.serialize(users);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serialization.deserialize(bytes);
+    }
+
+    @Benchmark
+    public Object copy() {
+        return serialization.copy(users);
+    }
+}
@@ -377,4 +377,12 @@ public interface ClientConfig extends Config {
     @Property("cuba.gui.validationNotificationType")
     @Default("TRAY")
     String getValidationNotificationType();
+
+    /**
+     * @return true if total aggregation of a table bound to a paged collection loader is calculated by the database
+     * for the whole query result instead of the loaded rows
+     */
+    @Property("cuba.gui.tableDatabaseAggregation")
+    @DefaultBoolean(false)
+    boolean getTableDatabaseAggregation();
 }
\ No newline at end of file
@@ -36,6 +36,7 @@ import java.util.concurrent.ConcurrentHashMap;
 @Component(Configuration.NAME)
 public class ConfigurationClientImpl implements ClientConfiguration {
     protected Map<Class, ConfigHandler> handlersCache = new ConcurrentHashMap<>();
+    protected Map<Class, Object> proxies = new ConcurrentHashMap<>();
     protected ConfigStorageService configStorageCache;
 
     @Inject
@@ -45,16 +46,17 @@ public class ConfigurationClientImpl implements ClientConfiguration {
 
     @Override
     public <T extends Config> T getConfig(Class<T> configInterface) {
-        ConfigHandler handler = handlersCache.get(configInterface);
-        if (handler == null) {
-            handler = new ConfigHandler(createConfigPersister(false), configInterface);
-            handlersCache.put(configInterface, handler);
-        }
-        ClassLoader classLoader = configInterface.getClassLoader();
-        Object proxy = Proxy.newProxyInstance(classLoader, new Class[]{configInterface}, handler);
+        Object proxy = proxies.computeIfAbsent(configInterface, this::createProxy);
         return configInterface.cast(proxy);
     }
 
+    protected Object createProxy(Class<?> configInterface) {
+        ConfigHandler handler = handlersCache.computeIfAbsent(configInterface,
+                aClass -> new ConfigHandler(createConfigPersister(false), aClass));
+        ClassLoader classLoader = configInterface.getClassLoader();
+        return Proxy.newProxyInstance(classLoader, new Class[]{configInterface}, handler);
+    }
+
     @Override
     public <T extends Config> T getConfigCached(Class<T> configInterface) {
         ConfigHandler handler = new ConfigHandler(createConfigPersister(true), configInterface);
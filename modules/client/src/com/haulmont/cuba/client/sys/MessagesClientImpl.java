@@ -66,6 +66,11 @@ public class MessagesClientImpl extends AbstractMessages {
                 messageTools.getDefaultLocale();
     }
 
+    @Override
+    protected boolean isRemoteSearchEnabled() {
+        return remoteSearch && AppContext.isStarted();
+    }
+
     @Override
     protected String searchRemotely(String pack, String key, Locale locale) {
         if (!remoteSearch || !AppContext.isStarted())
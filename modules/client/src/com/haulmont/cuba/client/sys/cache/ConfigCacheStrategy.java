@@ -17,6 +17,7 @@
 package com.haulmont.cuba.client.sys.cache;
 
 import com.haulmont.cuba.core.app.ConfigStorageService;
+import com.haulmont.cuba.core.config.ConfigHandler;
 import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.core.sys.SecurityContext;
 import com.haulmont.cuba.security.global.NoUserSessionException;
@@ -69,11 +70,16 @@ public class ConfigCacheStrategy implements CachingStrategy {
         if (cachedProperties == null || updateSynchronously) {
             Map<String, String> cachedPropertiesFromServer = Collections.unmodifiableMap(configStorageService.getDbProperties());
 
+            boolean changed = !cachedPropertiesFromServer.equals(cachedProperties);
+
             cachedProperties = cachedPropertiesFromServer;
             lastUsedTs = System.currentTimeMillis();
             cacheCleared = false;
 
             cachedProperties = cachedPropertiesFromServer;
+            if (changed) {
+                ConfigHandler.invalidateCachedValues();
+            }
         } else {
             if (!backgroundUpdateTriggered) {
                 clientCacheManager.getExecutorService().submit(this::updateCacheInBackground);
@@ -98,6 +104,8 @@ public class ConfigCacheStrategy implements CachingStrategy {
             Map<String, String> cachedPropertiesFromServer =
                     Collections.unmodifiableMap(configStorageService.getDbProperties());
 
+            boolean changed = !cachedPropertiesFromServer.equals(cachedProperties);
+
             readWriteLock.writeLock().lock();
             try {
                 cachedProperties = cachedPropertiesFromServer;
@@ -106,6 +114,9 @@ public class ConfigCacheStrategy implements CachingStrategy {
             } finally {
                 readWriteLock.writeLock().unlock();
             }
+            if (changed) {
+                ConfigHandler.invalidateCachedValues();
+            }
         } catch (NoUserSessionException e) {
             log.warn("Cache user session expired", e);
         } catch (Exception e) {
@@ -149,6 +160,7 @@ public class ConfigCacheStrategy implements CachingStrategy {
         try {
             cacheCleared = true;
             cachedProperties = null;
+            ConfigHandler.invalidateCachedValues();
         } catch (Exception e) {
             log.error("Unable to clear config storage cache", e);
         } finally {
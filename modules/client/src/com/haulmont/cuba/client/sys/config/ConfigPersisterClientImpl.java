@@ -106,6 +106,12 @@ public class ConfigPersisterClientImpl implements ConfigPersister {
         }
     }
 
+    @Override
+    public boolean isCacheable(SourceType sourceType) {
+        // database values are reloaded by the client cache on read when its update interval passes
+        return sourceType != SourceType.DATABASE;
+    }
+
     protected ConfigStorageService getConfigStorage() {
         return configStorageService;
     }
@@ -28,6 +28,7 @@ import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.core.sys.*;
 import com.haulmont.cuba.core.sys.events.AppContextInitializedEvent;
 import com.haulmont.cuba.core.sys.persistence.EclipseLinkCustomizer;
+import com.haulmont.cuba.security.sys.UserSessionManager;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.BOMInputStream;
 import org.apache.commons.lang3.StringUtils;
@@ -160,6 +161,10 @@ public class TestContainer extends ExternalResource {
                 throw new RuntimeException(e);
             }
         }
+        if (table.toUpperCase().startsWith("SEC_")) {
+            // security data deleted bypassing entity listeners can be cached for new sessions
+            AppBeans.get(UserSessionManager.class).invalidateCompiledSecurityData(false);
+        }
     }
 
     public void deleteRecord(Entity... entities) {
@@ -369,13 +374,17 @@ public class TestContainer extends ExternalResource {
         List<String> locations = tokenizer.getTokenList();
         locations.add(getSpringConfig());
 
-        springAppContext = new CubaCoreApplicationContext(locations.toArray(new String[0]));
+        springAppContext = createAppContext(locations.toArray(new String[0]));
         AppContext.Internals.setApplicationContext(springAppContext);
 
         Events events = AppBeans.get(Events.NAME);
         events.publish(new AppContextInitializedEvent(springAppContext));
     }
 
+    protected ClassPathXmlApplicationContext createAppContext(String[] locations) {
+        return new CubaCoreApplicationContext(locations);
+    }
+
     protected void cleanupContext() {
         try {
             TestContext.getInstance().unbind(AppContext.getProperty("cuba.dataSourceJndiName"));
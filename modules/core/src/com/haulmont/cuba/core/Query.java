@@ -26,6 +26,7 @@ import javax.persistence.LockModeType;
 import javax.persistence.TemporalType;
 import java.util.List;
 import java.util.Date;
+import java.util.function.Consumer;
 
 /**
  * Interface used to control query execution.
@@ -82,6 +83,16 @@ public interface Query {
     @CheckReturnValue
     Object getFirstResult();
 
+    /**
+     * Execute a SELECT query through a server-side database cursor and pass the results to the consumer in chunks.<br>
+     * Only one chunk of results is held in memory at a time, the query cache is not used.
+     *
+     * @param chunkSize maximum number of results in a chunk, also used as the JDBC fetch size
+     * @param consumer  receives subsequent chunks of results
+     * @throws IllegalStateException if called for a Java Persistence query language UPDATE or DELETE statement
+     */
+    void forEachChunk(int chunkSize, Consumer<List> consumer);
+
     /**
      * Execute an update or delete statement.
      *
@@ -66,4 +66,51 @@ public interface ClusterConfig extends Config {
     @Property("cuba.cluster.messageSendingQueueCapacity")
     @DefaultInt(Integer.MAX_VALUE)
     int getClusterMessageSendingQueueCapacity();
+
+    /**
+     * @return class name of {@link com.haulmont.cuba.core.sys.serialization.Serialization} implementation used for
+     * cluster messages and state, e.g. {@link ClusterKryoSerialization}. If not set, the serialization defined by
+     * {@code cuba.serialization.impl} is used. All cluster nodes must have the same value.
+     */
+    @Property("cuba.cluster.serialization")
+    String getSerialization();
+
+    /**
+     * @return whether the cluster state is sent to a joining node in chunks instead of a single byte array per
+     * listener. Nodes of previous versions cannot receive the chunked state. It should be used with the
+     * {@code pbcast.STATE} protocol in the JGroups configuration, which streams the state instead of buffering it.
+     */
+    @Property("cuba.cluster.chunkedStateTransfer")
+    @DefaultBoolean(false)
+    boolean getChunkedStateTransfer();
+
+    /**
+     * @return size of chunks in bytes in which the cluster state is sent to a joining node
+     * @see #getChunkedStateTransfer()
+     */
+    @Property("cuba.cluster.stateChunkSize")
+    @DefaultInt(65536)
+    int getStateChunkSize();
+
+    /**
+     * @return whether messages sent asynchronously within a short window are combined into a single network frame.
+     * All cluster nodes must have the same value.
+     */
+    @Property("cuba.cluster.messageBatchingEnabled")
+    @DefaultBoolean(false)
+    boolean getMessageBatchingEnabled();
+
+    /**
+     * @return time in milliseconds to accumulate messages in a batch before sending
+     */
+    @Property("cuba.cluster.messageBatchWindow")
+    @DefaultInt(20)
+    int getMessageBatchWindow();
+
+    /**
+     * @return maximum count of messages in a batch, the batch is sent immediately when it is reached
+     */
+    @Property("cuba.cluster.messageBatchMaxSize")
+    @DefaultInt(100)
+    int getMessageBatchMaxSize();
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.app;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.haulmont.bali.util.ReflectionHelper;
+import com.haulmont.cuba.core.sys.AppContext;
+import com.haulmont.cuba.core.sys.serialization.KryoSerialization;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact serialization of cluster messages and state based on Kryo.
+ * <p>
+ * Classes which are frequently sent in the cluster are registered with fixed identifiers, so their names are not
+ * written to the stream. Application classes can be registered by the {@code cuba.cluster.kryoRegisteredClasses}
+ * property containing a comma-separated list of class names. Identifiers start from the value of the
+ * {@code cuba.cluster.kryoFirstRegistrationId} property (100 by default), it can be changed if the application
+ * registers its own classes in Kryo with conflicting identifiers.
+ * <p>
+ * All cluster nodes must use the same serialization, the same first identifier and the same list of registered
+ * classes. New classes must be added only to the end of the list.
+ *
+ * @see ClusterConfig#getSerialization()
+ */
+public class ClusterKryoSerialization extends KryoSerialization {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterKryoSerialization.class);
+
+    protected static final int DEFAULT_FIRST_REGISTRATION_ID = 100;
+
+    protected static final List<String> REGISTERED_CLASSES = ImmutableList.of(
+            "java.util.UUID",
+            "java.util.Date",
+            "java.util.Locale",
+            "java.util.ArrayList",
+            "java.util.HashMap",
+            "java.util.HashSet",
+            "java.util.LinkedHashMap",
+            "java.util.concurrent.ConcurrentHashMap",
+            "com.haulmont.cuba.core.app.ClusterManager$MessageBatch",
+            "com.haulmont.cuba.security.app.UserSessions$UserSessionInfo",
+            "com.haulmont.cuba.security.global.UserSession",
+            "com.haulmont.cuba.security.entity.User",
+            "com.haulmont.cuba.security.entity.Group",
+            "com.haulmont.cuba.security.entity.Role",
+            "com.haulmont.cuba.security.entity.UserRole",
+            "com.haulmont.cuba.core.global.LockInfo",
+            "com.haulmont.cuba.core.sys.entitycache.QueryCacheManager$InvalidateQueryCacheMsg",
+            "com.haulmont.cuba.core.sys.entitycache.EntityCacheConnection$Message",
+            "com.haulmont.cuba.core.app.ConfigStorage$InvalidateCacheMsg",
+            "com.haulmont.cuba.core.app.dynamicattributes.DynamicAttributesManager$ReloadCacheMsg",
+            "com.haulmont.cuba.core.app.scheduling.SchedulingServiceBean$SetSchedulingActiveMsg",
+            "com.haulmont.cuba.core.app.execution.ExecutionsImpl$CancelExecutionMessage",
+            "com.haulmont.cuba.security.sys.UserSessionManager$InvalidateCompiledSecurityDataMsg"
+    );
+
+    protected final List<Class> registeredClasses = new ArrayList<>();
+
+    protected final int firstRegistrationId;
+
+    public ClusterKryoSerialization() {
+        String firstId = AppContext.getProperty("cuba.cluster.kryoFirstRegistrationId");
+        firstRegistrationId = firstId != null ? Integer.parseInt(firstId.trim()) : DEFAULT_FIRST_REGISTRATION_ID;
+
+        List<String> classNames = new ArrayList<>(REGISTERED_CLASSES);
+        String appClassNames = AppContext.getProperty("cuba.cluster.kryoRegisteredClasses");
+        if (appClassNames != null) {
+            classNames.addAll(Splitter.on(',').omitEmptyStrings().trimResults().splitToList(appClassNames));
+        }
+        for (String className : classNames) {
+            try {
+                registeredClasses.add(ReflectionHelper.loadClass(className));
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("Unable to register class for cluster serialization: " + className, e);
+            }
+        }
+        log.debug("Classes registered for cluster serialization: {}", registeredClasses.size());
+    }
+
+    @Override
+    protected Kryo newKryoInstance() {
+        Kryo kryo = super.newKryoInstance();
+        int id = firstRegistrationId;
+        for (Class registeredClass : registeredClasses) {
+            kryo.register(registeredClass, id++);
+        }
+        return kryo;
+    }
+}
@@ -16,6 +16,12 @@
  */
 package com.haulmont.cuba.core.app;
 
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
 /**
  * Interface to be implemented by middleware cluster listeners. A cluster listener receives messages from other nodes
  * in the cluster.
@@ -50,4 +56,32 @@ public interface ClusterListener<T> {
      * @param state byte array containing the state
      */
     void setState(byte[] state);
+
+    /**
+     * Write state of this cluster node to the stream to send it to other nodes. The stream is sent in chunks,
+     * so listeners with a large state should override this method to avoid creating a single byte array.
+     * <p>The default implementation writes the result of {@link #getState()}.
+     *
+     * @param output stream to write the state to, must not be closed
+     */
+    default void getState(OutputStream output) throws IOException {
+        byte[] state = getState();
+        if (state != null) {
+            output.write(state);
+        }
+    }
+
+    /**
+     * Set state of this cluster node reading it from the stream received from other active node.
+     * <p>The default implementation reads the whole stream and passes it to {@link #setState(byte[])}
+     * if it is not empty.
+     *
+     * @param input stream containing the state
+     */
+    default void setState(InputStream input) throws IOException {
+        byte[] state = IOUtils.toByteArray(input);
+        if (state.length > 0) {
+            setState(state);
+        }
+    }
 }
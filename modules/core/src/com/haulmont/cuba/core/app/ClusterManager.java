@@ -19,13 +19,16 @@ package com.haulmont.cuba.core.app;
 import com.google.common.base.Strings;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.haulmont.bali.util.Preconditions;
+import com.haulmont.bali.util.ReflectionHelper;
 import com.haulmont.cuba.core.global.Events;
 import com.haulmont.cuba.core.global.GlobalConfig;
 import com.haulmont.cuba.core.global.Resources;
 import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.core.sys.events.AppContextInitializedEvent;
 import com.haulmont.cuba.core.sys.events.AppContextStoppedEvent;
+import com.haulmont.cuba.core.sys.serialization.Serialization;
 import com.haulmont.cuba.core.sys.serialization.SerializationSupport;
+import org.apache.commons.lang3.StringUtils;
 import org.jgroups.*;
 import org.jgroups.conf.XmlConfigurator;
 import org.jgroups.jmx.JmxConfigurator;
@@ -38,14 +41,13 @@ import org.springframework.context.event.EventListener;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import javax.management.MBeanServer;
 import java.io.*;
 import java.lang.management.ManagementFactory;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.LongAdder;
 
@@ -65,6 +67,18 @@ public class ClusterManager implements ClusterManagerAPI {
 
     protected ThreadPoolExecutor executor;
 
+    protected ScheduledExecutorService batchScheduler;
+
+    protected final Object batchLock = new Object();
+
+    protected Map<Object, Serializable> batch = new LinkedHashMap<>();
+
+    protected long batchStartTime;
+
+    protected BatchStat batchStat = new BatchStat();
+
+    protected Serialization serialization;
+
     @Inject
     protected Resources resources;
 
@@ -79,12 +93,16 @@ public class ClusterManager implements ClusterManagerAPI {
 
     protected static final String STATE_MAGIC = "CUBA_STATE";
 
+    protected static final String CHUNKED_STATE_MAGIC = "CUBA_CHUNKED_STATE";
+
     public JChannel getChannel() {
         return channel;
     }
 
     @PostConstruct
     protected void init() {
+        serialization = createSerialization();
+
         int nThreads = clusterConfig.getClusterMessageSendingThreadPoolSize();
         executor = new ThreadPoolExecutor(nThreads, nThreads,
                 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(clusterConfig.getClusterMessageSendingQueueCapacity()),
@@ -96,6 +114,28 @@ public class ClusterManager implements ClusterManagerAPI {
                         log.info("Queue capacity is exceeded. Message: {}: {}", sendMessageRunnable.message.getClass(), sendMessageRunnable.message);
                     }
                 });
+        if (clusterConfig.getMessageBatchingEnabled()) {
+            batchScheduler = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("ClusterManagerMessageBatcher-%d").setDaemon(true).build());
+        }
+    }
+
+    protected Serialization createSerialization() {
+        String className = clusterConfig.getSerialization();
+        if (StringUtils.isBlank(className)) {
+            return new DefaultSerialization();
+        }
+        try {
+            Class<Serialization> serializationClass = ReflectionHelper.getClass(className);
+            return ReflectionHelper.newInstance(serializationClass);
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException("Could not create an instance of cluster serialization class " + className, e);
+        }
+    }
+
+    @Override
+    public Serialization getSerialization() {
+        return serialization;
     }
 
     @EventListener(AppContextInitializedEvent.class)
@@ -108,18 +148,31 @@ public class ClusterManager implements ClusterManagerAPI {
 
     @EventListener(AppContextStoppedEvent.class)
     protected void applicationStopped() {
+        if (batchScheduler != null) {
+            batchScheduler.shutdown();
+            flushBatch(false);
+        }
         executor.shutdown();
         stop();
     }
 
     @Override
     public void send(final Serializable message) {
+        send(message, null);
+    }
+
+    @Override
+    public void send(Serializable message, @Nullable Object coalescingKey) {
         if (channel == null)
             return;
 
         Boolean sync = forceSyncSending.get();
         if (sync != null && sync) {
+            flushBatch(true);
             internalSend(message, true);
+        } else if (batchScheduler != null) {
+            log.trace("Adding message: {}: {} to the batch", message.getClass(), message);
+            addToBatch(message, coalescingKey);
         } else {
             log.trace("Submitting message: {}: {} to send asynchronously", message.getClass(), message);
             executor.execute(new SendMessageRunnable(message));
@@ -131,23 +184,88 @@ public class ClusterManager implements ClusterManagerAPI {
         if (channel == null)
             return;
 
+        flushBatch(true);
         internalSend(message, true);
     }
 
+    protected void addToBatch(Serializable message, @Nullable Object coalescingKey) {
+        boolean first;
+        boolean full;
+        synchronized (batchLock) {
+            Object key = coalescingKey != null ? new CoalescingKey(message.getClass(), coalescingKey) : new Object();
+            // the replacing message goes to the end to keep the order of the latest messages
+            if (batch.remove(key) != null) {
+                batchStat.coalescedMessages.increment();
+            }
+            batch.put(key, message);
+            first = batch.size() == 1;
+            if (first) {
+                batchStartTime = System.nanoTime();
+            }
+            full = batch.size() >= clusterConfig.getMessageBatchMaxSize();
+        }
+        if (full) {
+            flushBatch(false);
+        } else if (first) {
+            try {
+                batchScheduler.schedule(() -> flushBatch(false),
+                        clusterConfig.getMessageBatchWindow(), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                flushBatch(false);
+            }
+        }
+    }
+
+    /**
+     * Sends messages accumulated in the batch as a single cluster message.
+     *
+     * @param sync whether to send in the current thread
+     */
+    protected void flushBatch(boolean sync) {
+        List<Serializable> messages;
+        long startTime;
+        synchronized (batchLock) {
+            if (batch.isEmpty())
+                return;
+            messages = new ArrayList<>(batch.values());
+            startTime = batchStartTime;
+            batch.clear();
+        }
+        batchStat.update(messages.size(), System.nanoTime() - startTime);
+
+        Serializable message = messages.size() == 1 ? messages.get(0) : new MessageBatch(messages);
+        if (sync) {
+            internalSend(message, true);
+        } else {
+            executor.execute(new SendMessageRunnable(message));
+        }
+    }
+
     protected void internalSend(Serializable message, boolean sync) {
         StopWatch sw = new Slf4JStopWatch(String.format("sendClusterMessage(%s)", message.getClass().getSimpleName()));
         try {
             byte[] bytes;
             try {
-                bytes = SerializationSupport.serialize(message);
+                bytes = serialization.serialize(message);
             } catch (Exception e) {
                 log.error("Cluster message serialization error", e);
                 throw new RuntimeException("Cluster message serialization error", e);
             }
             log.debug("Sending message: {}: {} ({} bytes)", message.getClass(), message, bytes.length);
-            MessageStat stat = messagesStat.get(message.getClass().getName());
-            if (stat != null) {
-                stat.updateSent(bytes.length);
+            if (message instanceof MessageBatch) {
+                List<Serializable> messages = ((MessageBatch) message).messages;
+                // the size of a batch is divided evenly between its messages
+                for (Serializable batchedMessage : messages) {
+                    MessageStat stat = messagesStat.get(batchedMessage.getClass().getName());
+                    if (stat != null) {
+                        stat.updateSent(bytes.length / messages.size());
+                    }
+                }
+            } else {
+                MessageStat stat = messagesStat.get(message.getClass().getName());
+                if (stat != null) {
+                    stat.updateSent(bytes.length);
+                }
             }
             Message msg = new Message(null, null, bytes);
             if (sync) {
@@ -352,6 +470,26 @@ public class ClusterManager implements ClusterManagerAPI {
         return messagesStats.toString();
     }
 
+    @Override
+    public long getSentBatches() {
+        return batchStat.getSentBatches();
+    }
+
+    @Override
+    public double getAverageBatchSize() {
+        return batchStat.getAverageSize();
+    }
+
+    @Override
+    public double getAverageBatchLatency() {
+        return batchStat.getAverageLatency();
+    }
+
+    @Override
+    public long getCoalescedMessages() {
+        return batchStat.coalescedMessages.longValue();
+    }
+
     @Override
     public long getSentMessages(String className) {
         Preconditions.checkNotNullArgument(className, "Message class is null");
@@ -401,22 +539,37 @@ public class ClusterManager implements ClusterManagerAPI {
                 log.debug("Null buffer received");
                 return;
             }
-            StopWatch sw = new Slf4JStopWatch();
-            String simpleClassName = null;
+            Serializable data;
             try {
-                Serializable data;
-                try {
-                    data = (Serializable) SerializationSupport.deserialize(bytes);
-                } catch (Exception e) {
-                    log.error("Cluster message deserialization error", e);
-                    throw new RuntimeException("Cluster message deserialization error", e);
+                data = (Serializable) serialization.deserialize(bytes);
+            } catch (Exception e) {
+                log.error("Cluster message deserialization error", e);
+                throw new RuntimeException("Cluster message deserialization error", e);
+            }
+            if (data instanceof MessageBatch) {
+                List<Serializable> messages = ((MessageBatch) data).messages;
+                log.debug("Received batch of {} messages ({} bytes)", messages.size(), bytes.length);
+                for (Serializable message : messages) {
+                    try {
+                        dispatch(message, bytes.length / messages.size());
+                    } catch (RuntimeException e) {
+                        // a failed listener must not prevent delivery of the rest of the batch
+                        log.error("Error processing cluster message {}", message.getClass().getName(), e);
+                    }
                 }
-                String className = data.getClass().getName();
-                simpleClassName = data.getClass().getSimpleName();
-                log.debug("Received message: {}: {} ({} bytes)", data.getClass(), data, bytes.length);
+            } else {
+                dispatch(data, bytes.length);
+            }
+        }
+
+        protected void dispatch(Serializable data, int size) {
+            StopWatch sw = new Slf4JStopWatch();
+            String className = data.getClass().getName();
+            try {
+                log.debug("Received message: {}: {} ({} bytes)", data.getClass(), data, size);
                 MessageStat stat = messagesStat.get(className);
                 if (stat != null) {
-                    stat.updateReceived(bytes.length);
+                    stat.updateReceived(size);
                 }
                 @SuppressWarnings("unchecked")
                 ClusterListener<Serializable> listener = listeners.get(className);
@@ -424,7 +577,7 @@ public class ClusterManager implements ClusterManagerAPI {
                     listener.receive(data);
                 }
             } finally {
-                sw.stop(String.format("receiveClusterMessage(%s)", simpleClassName));
+                sw.stop(String.format("receiveClusterMessage(%s)", data.getClass().getSimpleName()));
             }
         }
 
@@ -438,35 +591,67 @@ public class ClusterManager implements ClusterManagerAPI {
         public void getState(OutputStream output) {
             log.debug("Sending state");
             try (DataOutputStream out = new DataOutputStream(output)) {
-                Map<String, byte[]> state = new HashMap<>();
-                for (Map.Entry<String, ClusterListener> entry : listeners.entrySet()) {
-                    byte[] data;
-                    StopWatch sw = new Slf4JStopWatch(String.format("getClusterState(%s)", entry.getKey()));
-                    try {
-                        data = entry.getValue().getState();
-                    } finally {
-                        sw.stop();
-                    }
-                    if (data != null && data.length > 0) {
-                        state.put(entry.getKey(), data);
-                    }
-                }
-
-                if (state.size() > 0) {
-                    out.writeUTF(STATE_MAGIC);
-                    out.writeInt(state.size());
-                    for (Map.Entry<String, byte[]> entry : state.entrySet()) {
-                        log.debug("Sending state: {} ({} bytes)", entry.getKey(), entry.getValue().length);
-                        out.writeUTF(entry.getKey());
-                        out.writeInt(entry.getValue().length);
-                        out.write(entry.getValue());
-                    }
+                if (clusterConfig.getChunkedStateTransfer()) {
+                    getChunkedState(out);
+                } else {
+                    getWholeState(out);
                 }
             } catch (RuntimeException | IOException e) {
                 log.error("Error sending state", e);
             }
         }
 
+        /**
+         * Sends the state of each listener in chunks, so it is not buffered as a whole.
+         */
+        protected void getChunkedState(DataOutputStream out) throws IOException {
+            out.writeUTF(CHUNKED_STATE_MAGIC);
+            for (Map.Entry<String, ClusterListener> entry : listeners.entrySet()) {
+                StopWatch sw = new Slf4JStopWatch(String.format("getClusterState(%s)", entry.getKey()));
+                try {
+                    out.writeBoolean(true);
+                    out.writeUTF(entry.getKey());
+                    ChunkedOutputStream chunkedOutput = new ChunkedOutputStream(out, clusterConfig.getStateChunkSize());
+                    entry.getValue().getState(chunkedOutput);
+                    chunkedOutput.finish();
+                    log.debug("Sending state: {} ({} bytes)", entry.getKey(), chunkedOutput.getSize());
+                } finally {
+                    sw.stop();
+                }
+            }
+            out.writeBoolean(false);
+        }
+
+        /**
+         * Sends the state of each listener as a single byte array, the format understood by all nodes.
+         */
+        protected void getWholeState(DataOutputStream out) throws IOException {
+            Map<String, byte[]> state = new HashMap<>();
+            for (Map.Entry<String, ClusterListener> entry : listeners.entrySet()) {
+                byte[] data;
+                StopWatch sw = new Slf4JStopWatch(String.format("getClusterState(%s)", entry.getKey()));
+                try {
+                    data = entry.getValue().getState();
+                } finally {
+                    sw.stop();
+                }
+                if (data != null && data.length > 0) {
+                    state.put(entry.getKey(), data);
+                }
+            }
+
+            if (state.size() > 0) {
+                out.writeUTF(STATE_MAGIC);
+                out.writeInt(state.size());
+                for (Map.Entry<String, byte[]> entry : state.entrySet()) {
+                    log.debug("Sending state: {} ({} bytes)", entry.getKey(), entry.getValue().length);
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue().length);
+                    out.write(entry.getValue());
+                }
+            }
+        }
+
         @Override
         public void suspect(Address suspected_mbr) {
             log.info("Suspected member: {}", suspected_mbr);
@@ -477,41 +662,68 @@ public class ClusterManager implements ClusterManagerAPI {
             log.debug("Receiving state");
 
             try (DataInputStream in = new DataInputStream(input)) {
-                if (input.available() == 0)
+                String magic;
+                try {
+                    magic = in.readUTF();
+                } catch (EOFException e) {
+                    log.debug("Empty state received");
                     return;
-
-                String magic = in.readUTF();
-                if (!STATE_MAGIC.equals(magic)) {
+                }
+                if (CHUNKED_STATE_MAGIC.equals(magic)) {
+                    setChunkedState(in);
+                } else if (STATE_MAGIC.equals(magic)) {
+                    setWholeState(in);
+                } else {
                     log.debug("Invalid magic in state received");
                     return;
                 }
-                int count = in.readInt();
-                for (int i = 0; i < count; i++) {
-                    String name = in.readUTF();
-                    int len = in.readInt();
-                    StopWatch sw = new Slf4JStopWatch(String.format("setClusterState(%s)", name));
-                    try {
-                        log.debug("Receiving state: {} ({} bytes)", name, len);
-                        byte[] data = new byte[len];
-                        int c = in.read(data);
-                        if (c != len) {
-                            log.error("Error receiving state: invalid data length");
-                            return;
-                        }
-                        ClusterListener listener = listeners.get(name);
-                        if (listener != null) {
-                            listener.setState(data);
-                        }
-                    } finally {
-                        sw.stop();
-                    }
-                }
                 log.debug("State received");
             } catch (Exception e) {
                 log.error("Error receiving state", e);
             }
         }
 
+        protected void setChunkedState(DataInputStream in) throws IOException {
+            while (in.readBoolean()) {
+                String name = in.readUTF();
+                StopWatch sw = new Slf4JStopWatch(String.format("setClusterState(%s)", name));
+                try {
+                    ChunkedInputStream chunkedInput = new ChunkedInputStream(in);
+                    ClusterListener listener = listeners.get(name);
+                    if (listener != null) {
+                        listener.setState(chunkedInput);
+                    }
+                    chunkedInput.skipRemaining();
+                    log.debug("Received state: {} ({} bytes)", name, chunkedInput.getSize());
+                } finally {
+                    sw.stop();
+                }
+            }
+        }
+
+        /**
+         * Receives the state from a node which sends state of each listener as a single byte array.
+         */
+        protected void setWholeState(DataInputStream in) throws IOException {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                int len = in.readInt();
+                StopWatch sw = new Slf4JStopWatch(String.format("setClusterState(%s)", name));
+                try {
+                    log.debug("Receiving state: {} ({} bytes)", name, len);
+                    byte[] data = new byte[len];
+                    in.readFully(data);
+                    ClusterListener listener = listeners.get(name);
+                    if (listener != null) {
+                        listener.setState(data);
+                    }
+                } finally {
+                    sw.stop();
+                }
+            }
+        }
+
         @Override
         public void block() {
         }
@@ -534,6 +746,245 @@ public class ClusterManager implements ClusterManagerAPI {
         }
     }
 
+    /**
+     * Writes data to the underlying stream in chunks prefixed with their length, so the reading side does not need
+     * to know the total size in advance. The end of data is marked by a zero-length chunk.
+     */
+    protected static class ChunkedOutputStream extends OutputStream {
+        protected final DataOutputStream out;
+        protected final byte[] buffer;
+        protected int count;
+        protected long size;
+        protected boolean finished;
+
+        public ChunkedOutputStream(DataOutputStream out, int chunkSize) {
+            this.out = out;
+            this.buffer = new byte[chunkSize];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                writeChunk();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buffer.length) {
+                    writeChunk();
+                }
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writeChunk();
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // the underlying stream is shared by all listeners
+            finish();
+        }
+
+        public void finish() throws IOException {
+            if (!finished) {
+                writeChunk();
+                out.writeInt(0);
+                finished = true;
+            }
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        protected void writeChunk() throws IOException {
+            if (count > 0) {
+                out.writeInt(count);
+                out.write(buffer, 0, count);
+                size += count;
+                count = 0;
+            }
+        }
+    }
+
+    /**
+     * Reads data written by {@link ChunkedOutputStream}.
+     */
+    protected static class ChunkedInputStream extends InputStream {
+        protected final DataInputStream in;
+        protected int remaining;
+        protected long size;
+        protected boolean finished;
+
+        public ChunkedInputStream(DataInputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!nextChunk()) {
+                return -1;
+            }
+            remaining--;
+            size++;
+            return in.readUnsignedByte();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!nextChunk()) {
+                return -1;
+            }
+            int n = in.read(b, off, Math.min(len, remaining));
+            if (n < 0) {
+                throw new EOFException("Unexpected end of chunked state");
+            }
+            remaining -= n;
+            size += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return remaining;
+        }
+
+        @Override
+        public void close() {
+            // the underlying stream is shared by all listeners
+        }
+
+        public void skipRemaining() throws IOException {
+            while (nextChunk()) {
+                in.readFully(new byte[remaining]);
+                size += remaining;
+                remaining = 0;
+            }
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        protected boolean nextChunk() throws IOException {
+            if (remaining == 0 && !finished) {
+                remaining = in.readInt();
+                finished = remaining == 0;
+            }
+            return !finished;
+        }
+    }
+
+    /**
+     * Messages sent to the cluster in a single network frame.
+     */
+    protected static class MessageBatch implements Serializable {
+        private static final long serialVersionUID = 3398123477390417617L;
+
+        protected final List<Serializable> messages;
+
+        public MessageBatch(List<Serializable> messages) {
+            this.messages = messages;
+        }
+
+        @Override
+        public String toString() {
+            return "MessageBatch{size=" + messages.size() + "}";
+        }
+    }
+
+    protected static class CoalescingKey {
+        protected final Class messageClass;
+        protected final Object key;
+
+        public CoalescingKey(Class messageClass, Object key) {
+            this.messageClass = messageClass;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            CoalescingKey that = (CoalescingKey) o;
+            return messageClass.equals(that.messageClass) && key.equals(that.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * messageClass.hashCode() + key.hashCode();
+        }
+    }
+
+    protected static class BatchStat {
+        protected LongAdder sentBatches = new LongAdder();
+        protected LongAdder batchedMessages = new LongAdder();
+        protected LongAdder coalescedMessages = new LongAdder();
+        protected LongAdder latencyNanos = new LongAdder();
+
+        public void update(int size, long latency) {
+            sentBatches.increment();
+            batchedMessages.add(size);
+            latencyNanos.add(latency);
+        }
+
+        public long getSentBatches() {
+            return sentBatches.longValue();
+        }
+
+        public double getAverageSize() {
+            long batches = sentBatches.longValue();
+            return batches == 0 ? 0 : (double) batchedMessages.longValue() / batches;
+        }
+
+        /**
+         * @return average time in milliseconds between adding the first message to a batch and sending the batch
+         */
+        public double getAverageLatency() {
+            long batches = sentBatches.longValue();
+            return batches == 0 ? 0 : latencyNanos.longValue() / 1_000_000.0 / batches;
+        }
+    }
+
+    /**
+     * Serialization defined by the {@code cuba.serialization.impl} property.
+     */
+    protected static class DefaultSerialization implements Serialization {
+        @Override
+        public void serialize(Object object, OutputStream os) {
+            SerializationSupport.serialize(object, os);
+        }
+
+        @Override
+        public Object deserialize(InputStream is) {
+            return SerializationSupport.deserialize(is);
+        }
+
+        @Override
+        public byte[] serialize(Object object) {
+            return SerializationSupport.serialize(object);
+        }
+
+        @Override
+        public Object deserialize(byte[] bytes) {
+            return SerializationSupport.deserialize(bytes);
+        }
+    }
+
     protected static class MessageStat {
         protected LongAdder sentBytes = new LongAdder();
         protected LongAdder receivedBytes = new LongAdder();
@@ -16,6 +16,9 @@
  */
 package com.haulmont.cuba.core.app;
 
+import com.haulmont.cuba.core.sys.serialization.Serialization;
+
+import javax.annotation.Nullable;
 import java.io.Serializable;
 
 /**
@@ -32,6 +35,19 @@ public interface ClusterManagerAPI {
      */
     void send(Serializable message);
 
+    /**
+     * Send a message to all active cluster nodes.
+     * <p>
+     * If batching of cluster messages is enabled, the message may replace a message of the same class and with
+     * the same {@code coalescingKey} which is not sent yet. So the key must identify messages which make previous
+     * ones useless, e.g. repeated updates of the same object.
+     *
+     * @param message       serializable message
+     * @param coalescingKey key of the message, or null if the message must not be replaced
+     * @see ClusterConfig#getMessageBatchingEnabled()
+     */
+    void send(Serializable message, @Nullable Object coalescingKey);
+
     /**
      * Send a message to all active cluster nodes synchronously.
      *
@@ -53,6 +69,12 @@ public interface ClusterManagerAPI {
      */
     void setSyncSendingForCurrentThread(boolean sync);
 
+    /**
+     * @return serialization used for cluster messages and state, listeners can use it to serialize their state
+     * @see ClusterConfig#getSerialization()
+     */
+    Serialization getSerialization();
+
     /**
      * Subscribe to messages from other cluster nodes.
      *
@@ -124,6 +146,26 @@ public interface ClusterManagerAPI {
      */
     String printMessagesStat();
 
+    /**
+     * @return count of message batches sent
+     */
+    long getSentBatches();
+
+    /**
+     * @return average count of messages in a batch
+     */
+    double getAverageBatchSize();
+
+    /**
+     * @return average time in milliseconds between adding the first message to a batch and sending the batch
+     */
+    double getAverageBatchLatency();
+
+    /**
+     * @return count of messages replaced in batches by subsequent messages with the same key
+     */
+    long getCoalescedMessages();
+
     /**
      * Get sent messages count for specified {@code className}
      *
@@ -20,6 +20,7 @@ import com.haulmont.bali.db.QueryRunner;
 import com.haulmont.bali.db.ResultSetHandler;
 import com.haulmont.bali.util.Preconditions;
 import com.haulmont.cuba.core.*;
+import com.haulmont.cuba.core.config.ConfigHandler;
 import com.haulmont.cuba.core.entity.Config;
 import com.haulmont.cuba.core.global.AppBeans;
 import com.haulmont.cuba.core.global.Metadata;
@@ -86,6 +87,7 @@ public class ConfigStorage implements ConfigStorageAPI {
         } finally {
             writeLock.unlock();
         }
+        ConfigHandler.invalidateCachedValues();
     }
 
     @Override
@@ -23,13 +23,18 @@ import com.haulmont.chile.core.model.MetaProperty;
 import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.core.entity.IdProxy;
 import com.haulmont.cuba.core.global.*;
+import com.haulmont.cuba.core.sys.persistence.DbmsSpecificFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 /**
@@ -56,6 +61,12 @@ public class CrossDataStoreReferenceLoader {
     @Inject
     private ServerConfig serverConfig;
 
+    @Inject
+    private StoreFactory storeFactory;
+
+    @Inject
+    private CrossDataStoreReferenceLoadingExecutor executor;
+
     private MetaClass metaClass;
 
     private View view;
@@ -126,14 +137,83 @@ public class CrossDataStoreReferenceLoader {
         if (entityCrossDataStorePropertyList.size() == 1) {
             loadOne(entityCrossDataStorePropertyList.get(0));
         } else {
-            entityCrossDataStorePropertyList.stream()
-                    .collect(Collectors.groupingBy(EntityCrossDataStoreProperty::getCrossProp))
-                    .forEach((ap, eapList) ->
-                            loadMany(ap, eapList.stream().map(eap -> eap.entity).collect(Collectors.toList()))
-                    );
+            Map<CrossDataStoreProperty, List<Entity>> entitiesByProperty = entityCrossDataStorePropertyList.stream()
+                    .collect(Collectors.groupingBy(EntityCrossDataStoreProperty::getCrossProp, LinkedHashMap::new,
+                            Collectors.mapping(eap -> eap.entity, Collectors.toList())));
+
+            Map<String, List<CrossDataStoreProperty>> propertiesByStore = entitiesByProperty.keySet().stream()
+                    .collect(Collectors.groupingBy(
+                            ap -> getStoreName(ap.property.getRange().asClass()),
+                            LinkedHashMap::new, Collectors.toList()));
+
+            // the identity cache lives for the whole request and can be filled by several stores concurrently
+            Map<Object, Entity> identityCache = serverConfig.getCrossDataStoreReferenceLoadingIdentityCache()
+                    ? new ConcurrentHashMap<>() : null;
+
+            Map<CrossDataStoreProperty, Map<Object, Entity>> loadedByProperty = new HashMap<>();
+            if (propertiesByStore.size() > 1 && !joinTransaction && executor.isEnabled()) {
+                List<Future<Map<CrossDataStoreProperty, Map<Object, Entity>>>> futures = new ArrayList<>();
+                for (List<CrossDataStoreProperty> storeProperties : propertiesByStore.values()) {
+                    futures.add(executor.submit(() -> loadStore(storeProperties, entitiesByProperty, identityCache)));
+                }
+                for (Future<Map<CrossDataStoreProperty, Map<Object, Entity>>> future : futures) {
+                    loadedByProperty.putAll(getResult(future));
+                }
+            } else {
+                for (List<CrossDataStoreProperty> storeProperties : propertiesByStore.values()) {
+                    loadedByProperty.putAll(loadStore(storeProperties, entitiesByProperty, identityCache));
+                }
+            }
+
+            // assign references in the calling thread
+            entitiesByProperty.forEach((ap, entityList) -> {
+                Map<Object, Entity> loaded = loadedByProperty.get(ap);
+                for (Entity entity : entityList) {
+                    Object relatedPropertyValue = entity.getValue(ap.relatedPropertyName);
+                    Entity relatedEntity = relatedPropertyValue != null ? loaded.get(relatedPropertyValue) : null;
+                    if (relatedEntity != null) {
+                        entity.setValue(ap.property.getName(), relatedEntity);
+                    }
+                }
+            });
         }
     }
 
+    private String getStoreName(MetaClass metaClass) {
+        String storeName = metadataTools.getStoreName(metaClass);
+        return storeName != null ? storeName : StoreFactory.NULL_NAME;
+    }
+
+    private Map<CrossDataStoreProperty, Map<Object, Entity>> getResult(
+            Future<Map<CrossDataStoreProperty, Map<Object, Entity>>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while loading cross-datastore references", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException("Error loading cross-datastore references", cause);
+        }
+    }
+
+    /**
+     * Loads references of the given properties pointing to the same data store.
+     */
+    private Map<CrossDataStoreProperty, Map<Object, Entity>> loadStore(List<CrossDataStoreProperty> storeProperties,
+                                                                      Map<CrossDataStoreProperty, List<Entity>> entitiesByProperty,
+                                                                      @Nullable Map<Object, Entity> identityCache) {
+        Map<CrossDataStoreProperty, Map<Object, Entity>> result = new HashMap<>();
+        for (CrossDataStoreProperty crossDataStoreProperty : storeProperties) {
+            result.put(crossDataStoreProperty,
+                    loadMany(crossDataStoreProperty, entitiesByProperty.get(crossDataStoreProperty), identityCache));
+        }
+        return result;
+    }
+
     private Set<Entity> getAffectedEntities(Collection<? extends Entity> entities,
                                             Map<Class<? extends Entity>, List<CrossDataStoreProperty>> crossPropertiesMap) {
         Set<Entity> resultSet = new HashSet<>();
@@ -176,29 +256,59 @@ public class CrossDataStoreReferenceLoader {
         entity.setValue(aProp.property.getName(), relatedEntity);
     }
 
-    private void loadMany(CrossDataStoreProperty crossDataStoreProperty, List<Entity> entities) {
-        int offset = 0, limit = serverConfig.getCrossDataStoreReferenceLoadingBatchSize();
-        while (true) {
-            int end = offset + limit;
-            List<Entity> batch = entities.subList(offset, Math.min(end, entities.size()));
-            loadBatch(crossDataStoreProperty, batch);
-            if (end >= entities.size())
-                break;
-            else
-                offset += limit;
-        }
-    }
+    /**
+     * Loads entities referenced by the given property of the given entities.
+     *
+     * @param identityCache instances loaded before in this request, keyed by {@link IdentityKey}, can be null
+     * @return loaded entities by id
+     */
+    private Map<Object, Entity> loadMany(CrossDataStoreProperty crossDataStoreProperty, List<Entity> entities,
+                                         @Nullable Map<Object, Entity> identityCache) {
+        MetaClass cdsrMetaClass = crossDataStoreProperty.property.getRange().asClass();
+        View cdsrView = crossDataStoreProperty.viewProperty.getView();
 
-    private void loadBatch(CrossDataStoreProperty crossDataStoreProperty, List<Entity> entities) {
-        List<Object> idList = entities.stream()
+        Map<Object, Entity> result = new HashMap<>();
+        List<Object> idList = new ArrayList<>();
+        for (Object id : entities.stream()
                 .map(e -> e.getValue(crossDataStoreProperty.relatedPropertyName))
                 .filter(Objects::nonNull)
-                .distinct()
-                .collect(Collectors.toList());
+                .collect(Collectors.toCollection(LinkedHashSet::new))) {
+            Entity cached = identityCache != null ? identityCache.get(new IdentityKey(cdsrMetaClass, cdsrView, id)) : null;
+            if (cached != null) {
+                result.put(id, cached);
+            } else {
+                idList.add(id);
+            }
+        }
 
-        if (idList.isEmpty())
-            return;
+        int batchSize = getBatchSize(cdsrMetaClass);
+        for (int offset = 0; offset < idList.size(); offset += batchSize) {
+            List<Object> batch = idList.subList(offset, Math.min(offset + batchSize, idList.size()));
+            for (Entity loadedEntity : loadBatch(crossDataStoreProperty, batch)) {
+                Object id = loadedEntity.getId() instanceof IdProxy
+                        ? ((IdProxy) loadedEntity.getId()).getNN() : loadedEntity.getId();
+                result.put(id, loadedEntity);
+                if (identityCache != null) {
+                    identityCache.put(new IdentityKey(cdsrMetaClass, cdsrView, id), loadedEntity);
+                }
+            }
+        }
+        return result;
+    }
 
+    /**
+     * @return number of ids loaded by one query: the configured batch size limited by the DBMS of the data store
+     */
+    private int getBatchSize(MetaClass metaClass) {
+        int batchSize = serverConfig.getCrossDataStoreReferenceLoadingBatchSize();
+        String storeName = metadataTools.getStoreName(metaClass);
+        if (storeName != null && storeFactory.get(storeName) instanceof RdbmsStore) {
+            batchSize = Math.min(batchSize, DbmsSpecificFactory.getDbmsFeatures(storeName).getMaxInListSize());
+        }
+        return Math.max(batchSize, 1);
+    }
+
+    private List<Entity> loadBatch(CrossDataStoreProperty crossDataStoreProperty, List<Object> idList) {
         MetaClass cdsrMetaClass = crossDataStoreProperty.property.getRange().asClass();
         LoadContext<Entity> loadContext = new LoadContext<>(cdsrMetaClass);
 
@@ -233,19 +343,35 @@ public class CrossDataStoreReferenceLoader {
         loadContext.setView(crossDataStoreProperty.viewProperty.getView());
         loadContext.setJoinTransaction(joinTransaction);
 
-        List<Entity> loadedEntities = dataManager.loadList(loadContext);
+        return dataManager.loadList(loadContext);
+    }
 
-        for (Entity entity : entities) {
-            Object relatedPropertyValue = entity.getValue(crossDataStoreProperty.relatedPropertyName);
-            loadedEntities.stream()
-                    .filter(e -> {
-                        Object id = e.getId() instanceof IdProxy ? ((IdProxy) e.getId()).getNN() : e.getId();
-                        return id.equals(relatedPropertyValue);
-                    })
-                    .findAny()
-                    .ifPresent(e ->
-                            entity.setValue(crossDataStoreProperty.property.getName(), e)
-                    );
+    /**
+     * Key of the request identity cache: instances loaded with different views are not shared.
+     */
+    private static class IdentityKey {
+
+        private final MetaClass metaClass;
+        private final View view;
+        private final Object id;
+
+        public IdentityKey(MetaClass metaClass, @Nullable View view, Object id) {
+            this.metaClass = metaClass;
+            this.view = view;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            IdentityKey that = (IdentityKey) o;
+            return metaClass.equals(that.metaClass) && view == that.view && id.equals(that.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(metaClass, System.identityHashCode(view), id);
         }
     }
 
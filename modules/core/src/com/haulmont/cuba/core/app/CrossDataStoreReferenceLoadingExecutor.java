@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.app;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.haulmont.cuba.core.sys.AppContext;
+import com.haulmont.cuba.core.sys.SecurityContext;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.util.concurrent.*;
+
+/**
+ * INTERNAL.
+ * Bounded thread pool used by {@link CrossDataStoreReferenceLoader} to load references from different data stores
+ * concurrently. If the pool is busy, a task is executed in the calling thread.
+ */
+@Component(CrossDataStoreReferenceLoadingExecutor.NAME)
+public class CrossDataStoreReferenceLoadingExecutor {
+
+    public static final String NAME = "cuba_CrossDataStoreReferenceLoadingExecutor";
+
+    @Inject
+    protected ServerConfig serverConfig;
+
+    protected volatile ThreadPoolExecutor executor;
+
+    /**
+     * @return true if tasks can be executed concurrently
+     */
+    public boolean isEnabled() {
+        return serverConfig.getCrossDataStoreReferenceLoadingThreads() > 1;
+    }
+
+    /**
+     * Submits a task propagating the current security context to it.
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        SecurityContext securityContext = AppContext.getSecurityContext();
+        return getExecutor().submit(() -> {
+            // the task can be executed in the calling thread, so restore the previous context afterwards
+            SecurityContext previousContext = AppContext.getSecurityContext();
+            AppContext.setSecurityContext(securityContext);
+            try {
+                return task.call();
+            } finally {
+                AppContext.setSecurityContext(previousContext);
+            }
+        });
+    }
+
+    protected ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            synchronized (this) {
+                if (executor == null) {
+                    int nThreads = Math.max(serverConfig.getCrossDataStoreReferenceLoadingThreads(), 1);
+                    executor = new ThreadPoolExecutor(nThreads, nThreads,
+                            0L, TimeUnit.MILLISECONDS, new SynchronousQueue<>(),
+                            new ThreadFactoryBuilder()
+                                    .setNameFormat("CrossDataStoreReferenceLoader-%d")
+                                    .setDaemon(true)
+                                    .build(),
+                            new ThreadPoolExecutor.CallerRunsPolicy());
+                }
+            }
+        }
+        return executor;
+    }
+
+    @PreDestroy
+    protected void shutdown() {
+        ThreadPoolExecutor executor = this.executor;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -32,6 +32,7 @@ import javax.inject.Inject;
 import javax.validation.ConstraintViolation;
 import javax.validation.Validator;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Component(DataManager.NAME)
 public class DataManagerBean implements DataManager {
@@ -80,6 +81,19 @@ public class DataManagerBean implements DataManager {
         return entities;
     }
 
+    @Override
+    public <E extends Entity> void loadListByChunks(LoadContext<E> context, int chunkSize, Consumer<List<E>> consumer) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        MetaClass metaClass = metadata.getClassNN(context.getMetaClass());
+        DataStore storage = storeFactory.get(getStoreName(metaClass));
+        storage.loadListByChunks(context, chunkSize, chunk -> {
+            readCrossDataStoreReferences(chunk, context.getView(), metaClass, context.isJoinTransaction());
+            consumer.accept(chunk);
+        });
+    }
+
     @Override
     public long getCount(LoadContext<? extends Entity> context) {
         MetaClass metaClass = metadata.getClassNN(context.getMetaClass());
@@ -273,6 +287,7 @@ public class DataManagerBean implements DataManager {
         newCtx.setDiscardCommitted(context.isDiscardCommitted());
         newCtx.setAuthorizationRequired(context.isAuthorizationRequired());
         newCtx.setJoinTransaction(context.isJoinTransaction());
+        newCtx.setBulk(context.isBulk());
         newCtx.setValidationType(context.getValidationType());
         newCtx.setValidationGroups(context.getValidationGroups());
         return newCtx;
@@ -406,6 +421,12 @@ public class DataManagerBean implements DataManager {
             return dataManager.loadList(context);
         }
 
+        @Override
+        public <E extends Entity> void loadListByChunks(LoadContext<E> context, int chunkSize, Consumer<List<E>> consumer) {
+            context.setAuthorizationRequired(true);
+            dataManager.loadListByChunks(context, chunkSize, consumer);
+        }
+
         @Override
         public List<KeyValueEntity> loadValues(ValueLoadContext context) {
             context.setAuthorizationRequired(true);
@@ -21,10 +21,12 @@ import com.haulmont.cuba.core.entity.KeyValueEntity;
 import com.haulmont.cuba.core.global.CommitContext;
 import com.haulmont.cuba.core.global.LoadContext;
 import com.haulmont.cuba.core.global.ValueLoadContext;
+import com.haulmont.cuba.core.sys.PagedChunksLoader;
 
 import javax.annotation.Nullable;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Interface defining methods for storing and loading entities in a persistent storage.
@@ -47,6 +49,21 @@ public interface DataStore {
      */
     <E extends Entity> List<E> loadList(LoadContext<E> context);
 
+    /**
+     * Loads collection of entity instances and passes them to the consumer in chunks, so that the whole result is
+     * never held in memory.
+     * <p>
+     * The default implementation pages through the result using {@link #loadList(LoadContext)} with first and max
+     * results, sorting it by the primary key as a tie-breaker. Implementations should override it if the storage provides a more efficient way, e.g. a database cursor.
+     *
+     * @param context   defines what and how to load
+     * @param chunkSize maximum number of instances passed to the consumer at once
+     * @param consumer  receives subsequent chunks of loaded instances
+     */
+    default <E extends Entity> void loadListByChunks(LoadContext<E> context, int chunkSize, Consumer<List<E>> consumer) {
+        PagedChunksLoader.loadByPages(context, chunkSize, this::loadList, consumer);
+    }
+
     /**
      * Returns the number of entity instances for the given query passed in the {@link LoadContext}.
      * @return number of instances in the storage
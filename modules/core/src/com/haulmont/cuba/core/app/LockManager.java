@@ -141,7 +141,7 @@ public class LockManager implements LockManagerAPI, ClusterListener<LockInfo> {
         locks.put(key, lockInfo);
         log.debug("Locked " + name + "/" + id);
 
-        clusterManager.send(lockInfo);
+        clusterManager.send(lockInfo, key);
 
         return null;
     }
@@ -163,7 +163,7 @@ public class LockManager implements LockManagerAPI, ClusterListener<LockInfo> {
         if (lockInfo != null) {
             log.debug("Unlocked " + name + "/" + id);
 
-            clusterManager.send(new LockInfo(null, name, id));
+            clusterManager.send(new LockInfo(null, name, id), new LockKey(name, id));
         }
     }
 
@@ -27,6 +27,7 @@ import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.core.global.queryconditions.Condition;
 import com.haulmont.cuba.core.global.queryconditions.ConditionJpqlGenerator;
 import com.haulmont.cuba.core.sys.QueryMacroHandler;
+import com.haulmont.cuba.core.sys.QueryPlanCache;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,6 +41,9 @@ import java.util.stream.Collectors;
 
 /**
  * Builds {@link Query} instance to use in DataService.
+ * <p>
+ * Results of JPQL transformations are cached in {@link QueryPlanCache}, so EclipseLink receives the same query
+ * string for the same query, condition, sort and constraints, and reuses the query compiled for it.
  */
 @Component(RdbmsQueryBuilder.NAME)
 @Scope("prototype")
@@ -67,6 +71,9 @@ public class RdbmsQueryBuilder {
     @Inject
     protected SortJpqlGenerator sortJpqlGenerator;
 
+    @Inject
+    protected QueryPlanCache queryPlanCache;
+
     public void init(@Nullable String queryString, Condition condition, Sort sort,
                      Map<String, Object> queryParams, String[] noConversionParams,
                      @Nullable Object id, String entityName) {
@@ -90,24 +97,64 @@ public class RdbmsQueryBuilder {
             this.queryParams = new HashMap<>();
             this.queryParams.put("entityId", id);
         }
+        Condition actualized = null;
         if (condition != null) {
             Set<String> nonNullParamNames = queryParams.entrySet().stream()
                     .filter(e -> e.getValue() != null)
                     .map(Map.Entry::getKey)
                     .collect(Collectors.toSet());
-            Condition actualized = condition.actualize(nonNullParamNames);
-            qs = conditionJpqlGenerator.processQuery(qs, actualized);
+            actualized = condition.actualize(nonNullParamNames);
         }
-        if (sort != null) {
-            qs = sortJpqlGenerator.processQuery(entityName, qs, sort);
+        if (actualized == null && sort == null) {
+            this.queryString = qs;
+        } else {
+            String originalQuery = qs;
+            Condition actualCondition = actualized;
+            this.queryString = queryPlanCache.get(() -> {
+                        String result = conditionJpqlGenerator.processQuery(originalQuery, actualCondition);
+                        if (sort != null) {
+                            result = sortJpqlGenerator.processQuery(entityName, result, sort);
+                        }
+                        return result;
+                    },
+                    "query", entityName, originalQuery,
+                    conditionJpqlGenerator.generateKey(actualized), getSortKey(sort));
         }
-        this.queryString = qs;
+    }
+
+    protected String getSortKey(@Nullable Sort sort) {
+        if (sort == null) {
+            return "";
+        }
+        return sort.getOrders().stream()
+                .map(order -> order.getProperty() + " " + order.getDirection())
+                .collect(Collectors.joining(","));
     }
 
     public void setSingleResult(boolean singleResult) {
         this.singleResult = singleResult;
     }
 
+    /**
+     * Adds a keyset (seek) predicate to the query, so it selects rows following the given values of the sort properties.
+     *
+     * @return true if the predicate has been added and the offset must not be applied to the query
+     */
+    public boolean restrictByKeyset(Sort sort, Map<String, Object> keysetValues) {
+        Map<String, Object> keysetParams = new HashMap<>();
+        String where = sortJpqlGenerator.createKeysetCondition(entityName, sort, keysetValues, "_keyset", keysetParams);
+        if (where == null) {
+            log.debug("Sort {} is not suitable for keyset pagination, using offset", sort);
+            return false;
+        }
+        QueryTransformer transformer = QueryTransformerFactory.createTransformer(queryString);
+        transformer.addWhere(where);
+        queryString = transformer.getResult();
+        this.queryParams = new HashMap<>(queryParams);
+        this.queryParams.putAll(keysetParams);
+        return true;
+    }
+
     public void restrictByPreviousResults(UUID sessionId, int queryKey) {
         QueryTransformer transformer = QueryTransformerFactory.createTransformer(queryString);
         MetaClass metaClass = metadata.getClassNN(entityName);
@@ -150,8 +197,10 @@ public class RdbmsQueryBuilder {
 
         applyConstraints(query);
 
-        QueryParser parser = QueryTransformerFactory.createParser(queryString);
-        Set<String> paramNames = parser.getParamNames();
+        Set<String> paramNames = queryPlanCache.get(() -> {
+            QueryParser parser = QueryTransformerFactory.createParser(queryString);
+            return Collections.unmodifiableSet(new HashSet<>(parser.getParamNames()));
+        }, "paramNames", queryString);
 
         for (Map.Entry<String, Object> entry : queryParams.entrySet()) {
             String name = entry.getKey();
@@ -189,12 +238,16 @@ public class RdbmsQueryBuilder {
     protected void applyConstraints(Query query) {
         boolean constraintsApplied = security.applyConstraints(query);
         if (constraintsApplied && singleResult) {
-            QueryParser parser = QueryTransformerFactory.createParser(query.getQueryString());
-            if (parser.isQueryWithJoins()) {
-                QueryTransformer transformer = QueryTransformerFactory.createTransformer(query.getQueryString());
-                transformer.addDistinct();
-                query.setQueryString(transformer.getResult());
-            }
+            String constrainedQuery = query.getQueryString();
+            query.setQueryString(queryPlanCache.get(() -> {
+                QueryParser parser = QueryTransformerFactory.createParser(constrainedQuery);
+                if (parser.isQueryWithJoins()) {
+                    QueryTransformer transformer = QueryTransformerFactory.createTransformer(constrainedQuery);
+                    transformer.addDistinct();
+                    return transformer.getResult();
+                }
+                return constrainedQuery;
+            }, "distinct", constrainedQuery));
         }
         if (constraintsApplied && log.isDebugEnabled())
             log.debug("Constraints applied: {}", printQuery(query.getQueryString()));
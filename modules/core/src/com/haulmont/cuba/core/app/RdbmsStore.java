@@ -16,6 +16,7 @@
 
 package com.haulmont.cuba.core.app;
 
+import com.google.common.collect.Lists;
 import com.haulmont.bali.util.Preconditions;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.chile.core.model.MetaProperty;
@@ -29,7 +30,10 @@ import com.haulmont.cuba.core.app.queryresults.QueryResultsManagerAPI;
 import com.haulmont.cuba.core.entity.*;
 import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.core.sys.EntityFetcher;
+import com.haulmont.cuba.core.sys.entitycache.QueryCacheManager;
 import com.haulmont.cuba.core.sys.persistence.EntityChangedEventManager;
+import com.haulmont.cuba.core.sys.persistence.LazyLoadingFetchGroup;
+import com.haulmont.cuba.core.sys.persistence.PersistenceImplSupport;
 import com.haulmont.cuba.security.entity.ConstraintOperationType;
 import com.haulmont.cuba.security.entity.EntityAttrAccess;
 import com.haulmont.cuba.security.entity.EntityOp;
@@ -44,6 +48,7 @@ import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.persistence.NoResultException;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -101,6 +106,15 @@ public class RdbmsStore implements DataStore {
     @Inject
     protected EntityChangedEventManager entityChangedEventManager;
 
+    @Inject
+    protected QueryCacheManager queryCacheManager;
+
+    @Inject
+    protected PersistenceImplSupport persistenceImplSupport;
+
+    @Inject
+    protected DataManager dataManager;
+
     protected String storeName;
 
     public RdbmsStore(String storeName) {
@@ -109,6 +123,7 @@ public class RdbmsStore implements DataStore {
 
     @Nullable
     @Override
+    @SuppressWarnings("unchecked")
     public <E extends Entity> E load(LoadContext<E> context) {
         if (log.isDebugEnabled()) {
             log.debug("load: metaClass={}, id={}, view={}", context.getMetaClass(), context.getId(), context.getView());
@@ -121,6 +136,9 @@ public class RdbmsStore implements DataStore {
             return null;
         }
 
+        // the query is adjusted while loading, the caller's context must stay intact
+        context = (LoadContext<E>) context.copy();
+
         E result = null;
         boolean needToApplyInMemoryReadConstraints = needToApplyInMemoryReadConstraints(context);
         try (Transaction tx = getLoadTransaction(context.isJoinTransaction())) {
@@ -202,8 +220,12 @@ public class RdbmsStore implements DataStore {
 
         queryResultsManager.savePreviousQueryResults(context);
 
+        // the query is adjusted while loading, the caller's context must stay intact
+        context = (LoadContext<E>) context.copy();
+
         List<E> resultList;
         boolean needToApplyInMemoryReadConstraints = needToApplyInMemoryReadConstraints(context);
+        boolean loadReferencesLazily = isLoadReferencesLazily(context, metaClass);
         try (Transaction tx = getLoadTransaction(context.isJoinTransaction())) {
             EntityManager em = persistence.getEntityManager(storeName);
             em.setSoftDeletion(context.isSoftDeletion());
@@ -219,8 +241,9 @@ public class RdbmsStore implements DataStore {
                 }
             }
             View view = createRestrictedView(context);
+            View queryView = loadReferencesLazily ? createLocalView(view) : view;
             Query query = createQuery(em, context, false);
-            query.setView(view);
+            query.setView(queryView);
 
             resultList = getResultList(context, query, ensureDistinct);
 
@@ -234,16 +257,20 @@ public class RdbmsStore implements DataStore {
                 security.calculateFilteredData((Collection<Entity>) resultList);
             }
 
-            attributeSecurity.onLoad(resultList, view);
+            attributeSecurity.onLoad(resultList, queryView);
 
             if (context.isJoinTransaction()) {
                 em.flush();
                 for (E entity : resultList) {
-                    detachEntity(em, entity, view);
+                    detachEntity(em, entity, queryView);
                 }
             }
 
             tx.commit();
+
+            if (loadReferencesLazily) {
+                LazyLoadingFetchGroup.setup(resultList, metaClass, view, context.isSoftDeletion(), metadata, dataManager);
+            }
         }
 
         if (needToApplyInMemoryReadConstraints) {
@@ -257,6 +284,85 @@ public class RdbmsStore implements DataStore {
         return resultList;
     }
 
+    /**
+     * Reads the result through a server-side cursor. Each chunk is detached from the persistence context, checked
+     * by security and passed to the consumer before the next one is fetched, so memory consumption does not depend
+     * on the result size. In-memory distinct is not supported in this mode.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <E extends Entity> void loadListByChunks(LoadContext<E> context, int chunkSize, Consumer<List<E>> consumer) {
+        if (log.isDebugEnabled())
+            log.debug("loadListByChunks: metaClass=" + context.getMetaClass() + ", view=" + context.getView()
+                    + ", chunkSize=" + chunkSize
+                    + (context.getPrevQueries().isEmpty() ? "" : ", from selected")
+                    + ", query=" + (context.getQuery() == null ? null : RdbmsQueryBuilder.printQuery(context.getQuery().getQueryString())));
+
+        MetaClass metaClass = metadata.getClassNN(context.getMetaClass());
+
+        if (isAuthorizationRequired(context) && !isEntityOpPermitted(metaClass, EntityOp.READ)) {
+            log.debug("reading of {} not permitted, returning nothing", metaClass);
+            return;
+        }
+
+        queryResultsManager.savePreviousQueryResults(context);
+
+        // the query is adjusted while loading, the caller's context must stay intact
+        context = (LoadContext<E>) context.copy();
+
+        boolean needToApplyInMemoryReadConstraints = needToApplyInMemoryReadConstraints(context);
+        boolean needToFilterByInMemoryReadConstraints = needToFilterByInMemoryReadConstraints(context);
+        Set<Class> dynamicAttributesClasses = context.isLoadDynamicAttributes() ?
+                collectEntityClassesWithDynamicAttributes(context.getView()) : Collections.emptySet();
+
+        try (Transaction tx = getLoadTransaction(context.isJoinTransaction())) {
+            EntityManager em = persistence.getEntityManager(storeName);
+            em.setSoftDeletion(context.isSoftDeletion());
+            persistence.getEntityManagerContext(storeName).setDbHints(context.getDbHints());
+
+            View view = createRestrictedView(context);
+            Query query = createQuery(em, context, false);
+            query.setView(view);
+
+            query.forEachChunk(chunkSize, list -> {
+                List<E> chunk = new ArrayList<>((List<E>) list);
+                if (needToFilterByInMemoryReadConstraints) {
+                    security.filterByConstraints((Collection<Entity>) chunk);
+                }
+                if (chunk.isEmpty()) {
+                    return;
+                }
+
+                if (chunk.get(0) instanceof BaseGenericIdEntity && !dynamicAttributesClasses.isEmpty()) {
+                    dynamicAttributesManagerAPI.fetchDynamicAttributes((List<BaseGenericIdEntity>) chunk, dynamicAttributesClasses);
+                }
+
+                if (needToApplyInMemoryReadConstraints) {
+                    security.calculateFilteredData((Collection<Entity>) chunk);
+                }
+
+                attributeSecurity.onLoad(chunk, view);
+
+                // detach the chunk right away to let the persistence context release the instances
+                for (E entity : chunk) {
+                    detachEntity(em, entity, view);
+                }
+
+                if (needToApplyInMemoryReadConstraints) {
+                    security.applyConstraints((Collection<Entity>) chunk);
+                }
+
+                if (context.isAuthorizationRequired()) {
+                    attributeSecurity.afterLoad(chunk);
+                }
+
+                consumer.accept(chunk);
+            });
+
+            tx.commit();
+        }
+    }
+
     @Override
     public long getCount(LoadContext<? extends Entity> context) {
         if (log.isDebugEnabled())
@@ -280,6 +386,7 @@ public class RdbmsStore implements DataStore {
         if (StringUtils.isBlank(context.getQuery().getQueryString())) {
             context.getQuery().setQueryString("select e from " + metaClass.getName() + " e");
         }
+        context.getQuery().setKeysetValues(null);
 
         if (security.hasInMemoryConstraints(metaClass, ConstraintOperationType.READ, ConstraintOperationType.ALL)) {
             List resultList;
@@ -336,6 +443,11 @@ public class RdbmsStore implements DataStore {
             log.debug("commit: commitInstances=" + context.getCommitInstances()
                     + ", removeInstances=" + context.getRemoveInstances());
 
+        if (context.isBulk()) {
+            commitBulk(context);
+            return Collections.emptySet();
+        }
+
         Set<Entity> saved = new HashSet<>();
         List<Entity> persisted = new ArrayList<>();
         List<BaseGenericIdEntity> identityEntitiesToStoreDynamicAttributes = new ArrayList<>();
@@ -511,6 +623,134 @@ public class RdbmsStore implements DataStore {
         return context.isDiscardCommitted() ? Collections.emptySet() : saved;
     }
 
+    /**
+     * Writes instances grouped by entity type in batches of {@link ServerConfig#getBulkCommitBatchSize()}. Each batch
+     * is processed as on commit and flushed at once, so EclipseLink can use JDBC batching if it is enabled for the
+     * data store, and then detached to keep the persistence context small. Entity log items are saved on commit.
+     */
+    protected void commitBulk(CommitContext context) {
+        Map<MetaClass, List<Entity>> toCommit = new LinkedHashMap<>();
+        for (Entity entity : context.getCommitInstances()) {
+            toCommit.computeIfAbsent(entity.getMetaClass(), metaClass -> new ArrayList<>()).add(entity);
+        }
+        Map<MetaClass, List<Entity>> toRemove = new LinkedHashMap<>();
+        for (Entity entity : context.getRemoveInstances()) {
+            toRemove.computeIfAbsent(entity.getMetaClass(), metaClass -> new ArrayList<>()).add(entity);
+        }
+        int batchSize = Math.max(serverConfig.getBulkCommitBatchSize(), 1);
+        List<BaseGenericIdEntity> identityEntitiesToStoreDynamicAttributes = new ArrayList<>();
+        List<CategoryAttributeValue> attributeValuesToRemove = new ArrayList<>();
+
+        try (Transaction tx = getSaveTransaction(storeName, context.isJoinTransaction())) {
+            EntityManager em = persistence.getEntityManager(storeName);
+            checkPermissions(context);
+
+            if (!context.isSoftDeletion())
+                em.setSoftDeletion(false);
+
+            persistence.getEntityManagerContext(storeName).setDbHints(context.getDbHints());
+
+            Set<String> typeNames = new HashSet<>();
+            for (Map.Entry<MetaClass, List<Entity>> entry : toCommit.entrySet()) {
+                typeNames.add(entry.getKey().getName());
+                for (List<Entity> batch : Lists.partition(entry.getValue(), batchSize)) {
+                    for (Entity entity : batch) {
+                        if (entityStates.isNew(entity)) {
+                            if (isAuthorizationRequired(context)) {
+                                attributeSecurity.beforePersist(entity);
+                            }
+                            em.persist(entity);
+                            if (isAuthorizationRequired(context))
+                                checkOperationPermitted(entity, ConstraintOperationType.CREATE);
+
+                            if (entityHasDynamicAttributes(entity)) {
+                                if (entity instanceof BaseDbGeneratedIdEntity) {
+                                    // the identifier is assigned on flush
+                                    identityEntitiesToStoreDynamicAttributes.add((BaseGenericIdEntity) entity);
+                                } else {
+                                    dynamicAttributesManagerAPI.storeDynamicAttributes((BaseGenericIdEntity) entity);
+                                }
+                            }
+                        } else {
+                            if (isAuthorizationRequired(context)) {
+                                security.assertToken(entity);
+                            }
+                            security.restoreSecurityStateAndFilteredData(entity);
+                            if (isAuthorizationRequired(context)) {
+                                attributeSecurity.beforeMerge(entity);
+                            }
+                            Entity merged = em.merge(entity);
+                            if (isAuthorizationRequired(context))
+                                checkOperationPermitted(merged, ConstraintOperationType.UPDATE);
+
+                            if (entityHasDynamicAttributes(entity)) {
+                                BaseGenericIdEntity mergedBaseGenericIdEntity = (BaseGenericIdEntity) merged;
+                                mergedBaseGenericIdEntity.setDynamicAttributes(
+                                        ((BaseGenericIdEntity) entity).getDynamicAttributes());
+                                dynamicAttributesManagerAPI.storeDynamicAttributes(mergedBaseGenericIdEntity);
+                            }
+                        }
+                    }
+                    flushBulkBatch(em);
+                }
+            }
+            for (BaseGenericIdEntity entity : identityEntitiesToStoreDynamicAttributes) {
+                dynamicAttributesManagerAPI.storeDynamicAttributes(entity);
+            }
+            for (Map.Entry<MetaClass, List<Entity>> entry : toRemove.entrySet()) {
+                typeNames.add(entry.getKey().getName());
+                for (List<Entity> batch : Lists.partition(entry.getValue(), batchSize)) {
+                    for (Entity entity : batch) {
+                        if (isAuthorizationRequired(context)) {
+                            security.assertToken(entity);
+                        }
+                        security.restoreSecurityStateAndFilteredData(entity);
+                        Entity merged = em.merge(entity);
+                        if (isAuthorizationRequired(context))
+                            checkOperationPermitted(merged, ConstraintOperationType.DELETE);
+                        em.remove(merged);
+
+                        if (entityHasDynamicAttributes(entity)) {
+                            //noinspection ConstantConditions
+                            for (CategoryAttributeValue categoryAttributeValue
+                                    : ((BaseGenericIdEntity) entity).getDynamicAttributes().values()) {
+                                if (!entityStates.isNew(categoryAttributeValue)) {
+                                    if (Stores.isMain(storeName)) {
+                                        em.remove(em.merge(categoryAttributeValue));
+                                    } else {
+                                        attributeValuesToRemove.add(categoryAttributeValue);
+                                    }
+                                }
+                            }
+                        }
+                    }
+                    flushBulkBatch(em);
+                }
+            }
+            // detached instances are not visible to the transaction synchronization, so invalidate the cache here
+            queryCacheManager.invalidate(typeNames, true);
+
+            tx.commit();
+        }
+
+        if (!attributeValuesToRemove.isEmpty()) {
+            try (Transaction tx = getSaveTransaction(Stores.MAIN, context.isJoinTransaction())) {
+                EntityManager em = persistence.getEntityManager();
+                for (CategoryAttributeValue entity : attributeValuesToRemove) {
+                    em.remove(entity);
+                }
+                tx.commit();
+            }
+        }
+    }
+
+    protected void flushBulkBatch(EntityManager em) {
+        List<EntityChangedEvent> events = persistenceImplSupport.flushBatch(em);
+        if (!events.isEmpty()) {
+            entityChangedEventManager.publishBatch(events);
+        }
+    }
+
     @Override
     public List<KeyValueEntity> loadValues(ValueLoadContext context) {
         Preconditions.checkNotNullArgument(context, "context is null");
@@ -613,6 +853,10 @@ public class RdbmsStore implements DataStore {
                 && ((BaseGenericIdEntity) entity).getDynamicAttributes() != null;
     }
 
+    /**
+     * Creates a query for the load context. If the query is restricted by keyset values, the first result of the
+     * context query is reset, so the context must be a copy owned by the store.
+     */
     protected Query createQuery(EntityManager em, LoadContext context, boolean singleResult) {
         LoadContext.Query contextQuery = context.getQuery();
         RdbmsQueryBuilder queryBuilder = AppBeans.get(RdbmsQueryBuilder.NAME);
@@ -631,6 +875,13 @@ public class RdbmsStore implements DataStore {
             log.debug("Restrict query by previous results");
             queryBuilder.restrictByPreviousResults(userSessionSource.getUserSession().getId(), context.getQueryKey());
         }
+        if (contextQuery != null && contextQuery.getKeysetValues() != null && contextQuery.getSort() != null
+                && !singleResult) {
+            if (queryBuilder.restrictByKeyset(contextQuery.getSort(), contextQuery.getKeysetValues())) {
+                // the offset is replaced by the keyset predicate, in-memory paging must start from the first row too
+                contextQuery.setFirstResult(0);
+            }
+        }
         Query query = queryBuilder.getQuery(em);
 
         if (contextQuery != null) {
@@ -659,6 +910,43 @@ public class RdbmsStore implements DataStore {
         return copy;
     }
 
+    protected boolean isLoadReferencesLazily(LoadContext context, MetaClass metaClass) {
+        return context.isLoadReferencesLazily()
+                && !context.isJoinTransaction()
+                && !needToApplyInMemoryReadConstraints(context)
+                && !needToFilterByInMemoryReadConstraints(context)
+                && !needToApplyAttributeAccess(context)
+                && !metadataTools.hasCompositePrimaryKey(metaClass);
+    }
+
+    /**
+     * Creates a view containing local and embedded properties of the given view, and all local attributes if the view
+     * does not load partial entities. Reference properties are loaded later by {@link LazyLoadingFetchGroup}
+     * when accessed.
+     */
+    protected View createLocalView(View view) {
+        MetaClass metaClass = metadata.getClassNN(view.getEntityClass());
+        View localView = new View(view.getEntityClass(), false);
+        for (ViewProperty property : view.getProperties()) {
+            MetaProperty metaProperty = metaClass.getPropertyNN(property.getName());
+            if (!metaProperty.getRange().isClass() || metadataTools.isEmbedded(metaProperty)) {
+                localView.addProperty(property.getName(), property.getView(), property.getFetchMode());
+            }
+        }
+        if (!view.loadPartialEntities()) {
+            // lazy references require a fetch group, so the local attributes the caller expects are listed explicitly
+            for (MetaProperty metaProperty : metaClass.getProperties()) {
+                if (!metaProperty.getRange().isClass()
+                        && metadataTools.isPersistent(metaProperty)
+                        && localView.getProperty(metaProperty.getName()) == null) {
+                    localView.addProperty(metaProperty.getName());
+                }
+            }
+        }
+        localView.setLoadPartialEntities(true);
+        return localView;
+    }
+
     @SuppressWarnings("unchecked")
     protected <E extends Entity> List<E> getResultList(LoadContext<E> context, Query query, boolean ensureDistinct) {
         List<E> list = executeQuery(query, false);
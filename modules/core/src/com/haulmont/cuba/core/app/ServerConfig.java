@@ -102,6 +102,14 @@ public interface ServerConfig extends Config {
     @DefaultInt(1)
     int getUserSessionTouchTimeoutSec();
 
+    /**
+     * @return maximum number of role sets and groups for which compiled permissions, constraints and session
+     * attributes are cached to be shared by new user sessions. 0 disables the cache.
+     */
+    @Property("cuba.compiledSecurityDataCacheSize")
+    @DefaultInt(1000)
+    int getCompiledSecurityDataCacheSize();
+
     /**
      * @return DB scripts directory.
      * Does not end with "/"
@@ -270,6 +278,32 @@ public interface ServerConfig extends Config {
     @DefaultInt(50)
     int getCrossDataStoreReferenceLoadingBatchSize();
 
+    /**
+     * @return number of threads loading references from different data stores concurrently,
+     * 0 or 1 to load them sequentially in the calling thread
+     */
+    @Property("cuba.crossDataStoreReferenceLoadingThreads")
+    @DefaultInt(1)
+    int getCrossDataStoreReferenceLoadingThreads();
+
+    /**
+     * @return true if a cross-datastore reference loaded once in a request is reused for all references to the same
+     * instance with the same view, instead of being loaded again
+     */
+    @Property("cuba.crossDataStoreReferenceLoadingIdentityCache")
+    @Source(type = SourceType.DATABASE)
+    @DefaultBoolean(false)
+    boolean getCrossDataStoreReferenceLoadingIdentityCache();
+    void setCrossDataStoreReferenceLoadingIdentityCache(boolean value);
+
+    /**
+     * @return number of instances flushed to the database at once in the bulk commit mode
+     * @see com.haulmont.cuba.core.global.CommitContext#setBulk(boolean)
+     */
+    @Property("cuba.bulkCommitBatchSize")
+    @DefaultInt(500)
+    int getBulkCommitBatchSize();
+
     /**
      * @return use read-only transactions in {@code DataManager} load operations and do not commit them
      */
@@ -294,6 +328,14 @@ public interface ServerConfig extends Config {
     @DefaultBoolean(false)
     boolean getEnableDeleteStatementInSoftDeleteMode();
 
+    /**
+     * @return the maximum number of transformed JPQL queries cached by {@link com.haulmont.cuba.core.sys.QueryPlanCache}
+     * and compiled queries cached by EclipseLink, 0 disables the CUBA cache
+     */
+    @Property("cuba.queryPlanCacheSize")
+    @DefaultInt(1000)
+    int getQueryPlanCacheSize();
+
     /**
      * Compatibility toggle. If true, JPQL parameters are converted implicitly, e.g. an entity is converted to its ID.
      */
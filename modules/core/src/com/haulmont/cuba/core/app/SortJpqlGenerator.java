@@ -24,7 +24,10 @@ import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.core.sys.persistence.DbmsSpecificFactory;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
+import javax.persistence.Column;
+import java.lang.reflect.AnnotatedElement;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -69,6 +72,104 @@ public class SortJpqlGenerator {
         return transformQuery(queryString, sortExpressions, asc);
     }
 
+    /**
+     * Creates a keyset (seek) predicate that selects rows following the given values of the sort properties,
+     * e.g. {@code ({E}.a > :k0) or ({E}.a = :k0 and {E}.id > :k1)} for ascending sort by {@code a, id}.
+     *
+     * @param entityName    name of the queried entity
+     * @param sort          sort of the query
+     * @param keysetValues  values of the sort properties of the last row of the previous page
+     * @param paramPrefix   prefix for names of the generated parameters
+     * @param params        map to put the generated parameters into
+     * @return predicate to be added to the where clause, or null if the sort is not suitable for keyset pagination:
+     * it contains not persistent, reference, LOB or nullable attributes, its last property is not unique or some
+     * values are null
+     */
+    @Nullable
+    public String createKeysetCondition(String entityName, Sort sort, Map<String, Object> keysetValues,
+                                        String paramPrefix, Map<String, Object> params) {
+        List<Sort.Order> orders = sort.getOrders();
+        if (orders.isEmpty()) {
+            return null;
+        }
+        Set<Sort.Direction> directions = orders.stream().map(Sort.Order::getDirection).collect(Collectors.toSet());
+        if (directions.size() > 1) {
+            return null;
+        }
+        String operator = directions.iterator().next() == Sort.Direction.ASC ? ">" : "<";
+
+        MetaClass metaClass = metadata.getClassNN(entityName);
+        List<String> paths = new ArrayList<>(orders.size());
+        for (Sort.Order order : orders) {
+            MetaPropertyPath metaPropertyPath = metaClass.getPropertyPath(order.getProperty());
+            // comparison with NULL is unknown, so rows having NULL in a sort column would be skipped
+            if (metaPropertyPath == null
+                    || !isKeysetProperty(metaPropertyPath)
+                    || !isNotNullProperty(metaPropertyPath)
+                    || keysetValues.get(order.getProperty()) == null) {
+                return null;
+            }
+            paths.add(metaPropertyPath.toPathString());
+        }
+        if (!isUniqueProperty(metaClass.getPropertyPath(orders.get(orders.size() - 1).getProperty()))) {
+            return null;
+        }
+
+        Map<String, Object> keysetParams = new HashMap<>();
+        List<String> disjuncts = new ArrayList<>(paths.size());
+        for (int i = 0; i < paths.size(); i++) {
+            StringBuilder sb = new StringBuilder("(");
+            for (int j = 0; j < i; j++) {
+                sb.append("{E}.").append(paths.get(j)).append(" = :").append(paramPrefix).append(j).append(" and ");
+            }
+            sb.append("{E}.").append(paths.get(i)).append(" ").append(operator).append(" :").append(paramPrefix).append(i);
+            sb.append(")");
+            disjuncts.add(sb.toString());
+            keysetParams.put(paramPrefix + i, keysetValues.get(orders.get(i).getProperty()));
+        }
+        params.putAll(keysetParams);
+        return String.join(" or ", disjuncts);
+    }
+
+    protected boolean isKeysetProperty(MetaPropertyPath metaPropertyPath) {
+        for (MetaProperty metaProperty : metaPropertyPath.getMetaProperties()) {
+            if (metaProperty.getRange().getCardinality().isMany()) {
+                return false;
+            }
+        }
+        MetaProperty metaProperty = metaPropertyPath.getMetaProperty();
+        return metadataTools.isPersistent(metaPropertyPath)
+                && !metaProperty.getRange().isClass()
+                && !metadataTools.isLob(metaProperty);
+    }
+
+    protected boolean isNotNullProperty(MetaPropertyPath metaPropertyPath) {
+        if (metaPropertyPath.length() == 1
+                && metaPropertyPath.getMetaProperty().getName().equals(
+                        metadataTools.getPrimaryKeyName(metaPropertyPath.getMetaClass()))) {
+            return true;
+        }
+        for (MetaProperty metaProperty : metaPropertyPath.getMetaProperties()) {
+            if (!metaProperty.isMandatory()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected boolean isUniqueProperty(MetaPropertyPath metaPropertyPath) {
+        if (metaPropertyPath.length() != 1) {
+            return false;
+        }
+        MetaProperty metaProperty = metaPropertyPath.getMetaProperty();
+        if (metaProperty.getName().equals(metadataTools.getPrimaryKeyName(metaPropertyPath.getMetaClass()))) {
+            return true;
+        }
+        AnnotatedElement annotatedElement = metaProperty.getAnnotatedElement();
+        Column column = annotatedElement == null ? null : annotatedElement.getAnnotation(Column.class);
+        return column != null && column.unique() && isNotNullProperty(metaPropertyPath);
+    }
+
     protected String transformQuery(String queryString, List<String> sortExpressions, boolean asc) {
         if (!sortExpressions.isEmpty()) {
             QueryTransformer transformer = queryTransformerFactory.transformer(queryString);
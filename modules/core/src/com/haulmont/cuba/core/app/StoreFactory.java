@@ -22,8 +22,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * INTERNAL.
@@ -38,7 +38,7 @@ public class StoreFactory {
 
     static final String NULL_NAME = "_NULL_";
 
-    private Map<String, DataStore> stores = new HashMap<>();
+    private Map<String, DataStore> stores = new ConcurrentHashMap<>();
 
     /**
      * Get a {@link DataStore} implementation by name.
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app.events;
+
+import com.haulmont.chile.core.model.MetaClass;
+import com.haulmont.chile.core.model.MetaProperty;
+import com.haulmont.cuba.core.entity.Entity;
+import com.haulmont.cuba.core.global.AppBeans;
+import com.haulmont.cuba.core.global.ExtendedEntities;
+import com.haulmont.cuba.core.global.Metadata;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.ResolvableTypeProvider;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A Spring application event of the middle tier that is sent instead of {@link EntityChangedEvent}s when a batch of
+ * entities of the same type is written in the bulk commit mode (see
+ * {@link com.haulmont.cuba.core.global.CommitContext#setBulk(boolean)}).
+ * <p>
+ * The event is sent by the framework if the entity has {@code @PublishEntityChangedEvents} annotation. It is published
+ * inside the transaction which changed the entities, right after the batch is flushed. Example of event handler:
+ * <pre>
+ * {@literal @}Component("test_OrderLineBatchChangedListener")
+ * public class OrderLineBatchChangedListener {
+ *
+ *     {@literal @}EventListener
+ *     protected void orderLinesChanged(EntityBatchChangedEvent&lt;OrderLine, UUID&gt; event) {
+ *         for (EntityChangedEvent&lt;OrderLine, UUID&gt; change : event.getEvents()) {
+ *             //...
+ *         }
+ *     }
+ * }
+ * </pre>
+ *
+ * @param <E>   entity type
+ * @param <K>   entity identifier type
+ */
+public class EntityBatchChangedEvent<E extends Entity<K>, K> extends ApplicationEvent implements ResolvableTypeProvider {
+
+    private Class<E> entityClass;
+    private List<EntityChangedEvent<E, K>> events;
+
+    /**
+     * INTERNAL.
+     */
+    public EntityBatchChangedEvent(Object source, Class<E> entityClass, List<EntityChangedEvent<E, K>> events) {
+        super(source);
+        this.entityClass = entityClass;
+        this.events = Collections.unmodifiableList(events);
+    }
+
+    /**
+     * Returns the class of changed entities.
+     */
+    public Class<E> getEntityClass() {
+        return entityClass;
+    }
+
+    /**
+     * Returns changes of the individual entities of the batch.
+     */
+    public List<EntityChangedEvent<E, K>> getEvents() {
+        return events;
+    }
+
+    /**
+     * INTERNAL.
+     */
+    @Override
+    public ResolvableType getResolvableType() {
+        Metadata metadata = AppBeans.get(Metadata.NAME);
+        ExtendedEntities extendedEntities = metadata.getExtendedEntities();
+        MetaClass metaClass = extendedEntities.getOriginalOrThisMetaClass(metadata.getClassNN(entityClass));
+        MetaProperty pkProperty = metadata.getTools().getPrimaryKeyProperty(metaClass);
+        if (pkProperty == null) {
+            throw new IllegalStateException("Unable to send EntityBatchChangedEvent for " + metaClass + " because it has no primary key");
+        }
+        return ResolvableType.forClassWithGenerics(getClass(),
+                ResolvableType.forClass(metaClass.getJavaClass()),
+                ResolvableType.forClass(pkProperty.getJavaType()));
+    }
+
+    @Override
+    public String toString() {
+        return "EntityBatchChangedEvent{" +
+                "entityClass=" + entityClass +
+                ", size=" + events.size() +
+                '}';
+    }
+}
@@ -18,6 +18,7 @@
 package com.haulmont.cuba.core.app.queryresults;
 
 import com.haulmont.bali.db.QueryRunner;
+import com.haulmont.chile.core.model.MetaProperty;
 import com.haulmont.cuba.core.*;
 import com.haulmont.cuba.core.app.ClusterManagerAPI;
 import com.haulmont.cuba.core.app.RdbmsQueryBuilder;
@@ -25,14 +26,22 @@ import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.core.sys.QueryHolder;
 import com.haulmont.cuba.core.sys.persistence.DbTypeConverter;
+import com.haulmont.cuba.core.sys.persistence.DbmsFeatures;
+import com.haulmont.cuba.core.sys.persistence.DbmsSpecificFactory;
+import com.haulmont.cuba.core.sys.persistence.EclipseLinkNativeSql;
 import com.haulmont.cuba.security.app.UserSessionsAPI;
 import com.haulmont.cuba.security.global.UserSession;
+import org.eclipse.persistence.exceptions.EclipseLinkException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
+import javax.persistence.PersistenceException;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -81,30 +90,36 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
         if (!parser.isEntitySelect(entityName))
             return;
 
+        MetaProperty primaryKey = metadata.getTools().getPrimaryKeyProperty(metadata.getClassNN(entityName));
+        String idColumnName = primaryKey != null ? getIdColumnName(primaryKey.getJavaType()) : null;
+        if (idColumnName == null) {
+            log.debug("Previous query results of {} are not saved: unsupported primary key", entityName);
+            return;
+        }
+
         int queryKey = loadContext.getQueryKey();
 
         if (resultsAlreadySaved(queryKey, contextQuery))
             return;
 
+        boolean restricted = prevQueries.size() > 1;
+        DbmsFeatures dbmsFeatures = DbmsSpecificFactory.getDbmsFeatures();
+        if (!restricted || dbmsFeatures.supportsSubqueryOnModifiedTable()) {
+            try {
+                if (saveResultsFromQuery(loadContext, contextQuery, idColumnName, dbmsFeatures))
+                    return;
+            } catch (SQLException | PersistenceException | EclipseLinkException e) {
+                log.warn("Unable to save previous query results by a single statement, loading identifiers instead", e);
+            }
+        }
+
         List idList;
         Transaction tx = persistence.createTransaction();
         try {
             EntityManager em = persistence.getEntityManager();
             em.setSoftDeletion(loadContext.isSoftDeletion());
 
-            QueryTransformer transformer = QueryTransformerFactory.createTransformer(contextQuery.getQueryString());
-            transformer.replaceWithSelectId(metadata.getTools().getPrimaryKeyName(metadata.getClassNN(entityName)));
-            transformer.removeOrderBy();
-            String queryString = transformer.getResult();
-
-            RdbmsQueryBuilder queryBuilder = AppBeans.get(RdbmsQueryBuilder.NAME);
-            queryBuilder.init(queryString, contextQuery.getCondition(), contextQuery.getSort(),
-                    contextQuery.getParameters(), contextQuery.getNoConversionParams(),
-                    null, entityName);
-            if (prevQueries.size() > 1) {
-                queryBuilder.restrictByPreviousResults(userSessionSource.getUserSession().getId(), loadContext.getQueryKey());
-            }
-            Query query = queryBuilder.getQuery(em);
+            Query query = createIdQuery(em, loadContext, contextQuery);
 
             String logMsg = "Load previous query results: " + RdbmsQueryBuilder.printQuery(query.getQueryString());
             log.debug(logMsg);
@@ -122,6 +137,96 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
         insert(queryKey, idList);
     }
 
+    /**
+     * Saves identifiers selected by the query right in the database, without transferring them to the middleware.
+     * The first query is saved by {@code insert ... select}, the results of a query restricted by previous results
+     * are saved by deleting the previous results that are not selected by the query.
+     *
+     * @param columnName column of SYS_QUERY_RESULT storing identifiers of the entity
+     * @return false if the query cannot be saved this way
+     */
+    protected boolean saveResultsFromQuery(LoadContext loadContext, LoadContext.Query contextQuery,
+                                           String columnName, DbmsFeatures dbmsFeatures) throws SQLException {
+        DbTypeConverter converter = persistence.getDbTypeConverter();
+        UUID userSessionId = userSessionSource.getUserSession().getId();
+        int queryKey = loadContext.getQueryKey();
+
+        Transaction tx = persistence.createTransaction();
+        try {
+            EntityManager em = persistence.getEntityManager();
+            em.setSoftDeletion(loadContext.isSoftDeletion());
+
+            EclipseLinkNativeSql idQuery = EclipseLinkNativeSql.of(createIdQuery(em, loadContext, contextQuery));
+            if (idQuery == null)
+                return false;
+
+            String sql;
+            if (loadContext.getPrevQueries().size() > 1) {
+                sql = String.format("delete from SYS_QUERY_RESULT where SESSION_ID = ? and QUERY_KEY = ? " +
+                        "and %s not in (%s)", columnName, idQuery.getSql());
+            } else {
+                sql = String.format("insert into SYS_QUERY_RESULT (SESSION_ID, QUERY_KEY, %s) select %s, %s, q.* from (%s) q",
+                        columnName, dbmsFeatures.getSelectListParameter(UUID.class),
+                        dbmsFeatures.getSelectListParameter(Integer.class), idQuery.getSql());
+                delete(em, userSessionId, queryKey);
+            }
+
+            String logMsg = "Save previous query results: " + sql;
+            log.debug(logMsg);
+            long start = System.currentTimeMillis();
+
+            try (PreparedStatement statement = em.getConnection().prepareStatement(sql)) {
+                statement.setObject(1, converter.getSqlObject(userSessionId), converter.getSqlType(UUID.class));
+                statement.setInt(2, queryKey);
+                idQuery.setParameters(statement, 3);
+                statement.executeUpdate();
+            }
+            tx.commit();
+
+            log.debug("Done in " + (System.currentTimeMillis() - start) + "ms : " + logMsg);
+            return true;
+        } finally {
+            tx.end();
+        }
+    }
+
+    protected Query createIdQuery(EntityManager em, LoadContext loadContext, LoadContext.Query contextQuery) {
+        String entityName = loadContext.getMetaClass();
+
+        QueryTransformer transformer = QueryTransformerFactory.createTransformer(contextQuery.getQueryString());
+        transformer.replaceWithSelectId(metadata.getTools().getPrimaryKeyName(metadata.getClassNN(entityName)));
+        transformer.removeOrderBy();
+        String queryString = transformer.getResult();
+
+        RdbmsQueryBuilder queryBuilder = AppBeans.get(RdbmsQueryBuilder.NAME);
+        // the order of identifiers does not matter
+        queryBuilder.init(queryString, contextQuery.getCondition(), null,
+                contextQuery.getParameters(), contextQuery.getNoConversionParams(),
+                null, entityName);
+        if (loadContext.getPrevQueries().size() > 1) {
+            queryBuilder.restrictByPreviousResults(userSessionSource.getUserSession().getId(), loadContext.getQueryKey());
+        }
+        return queryBuilder.getQuery(em);
+    }
+
+    /**
+     * @return column of SYS_QUERY_RESULT storing identifiers of the given type, or null if the type is not supported
+     */
+    @Nullable
+    protected String getIdColumnName(Class<?> idClass) {
+        if (UUID.class.equals(idClass)) {
+            return "ENTITY_ID";
+        } else if (String.class.equals(idClass)) {
+            return "STRING_ENTITY_ID";
+        } else if (Long.class.equals(idClass)) {
+            return "LONG_ENTITY_ID";
+        } else if (Integer.class.equals(idClass)) {
+            return "INT_ENTITY_ID";
+        } else {
+            return null;
+        }
+    }
+
     protected boolean resultsAlreadySaved(Integer queryKey, LoadContext.Query query) {
         LinkedHashMap<Integer, QueryHolder> recentQueries =
                 userSessionSource.getUserSession().getAttribute("_recentQueries");
@@ -161,27 +266,22 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
             EntityManager em = persistence.getEntityManager();
             DbTypeConverter converter = persistence.getDbTypeConverter();
             Object idFromList = idList.get(0);
-            String columnName = null;
-            if (idFromList instanceof String) {
-                columnName = "STRING_ENTITY_ID";
-            } else if (idFromList instanceof Long) {
-                columnName = "LONG_ENTITY_ID";
-            } else if (idFromList instanceof Integer) {
-                columnName = "INT_ENTITY_ID";
-            } else {
-                columnName = "ENTITY_ID";
-            }
+            String columnName = getIdColumnName(idFromList.getClass());
             QueryRunner runner = new QueryRunner();
             try {
-                String userSessionIdStr = converter.getSqlObject(userSessionId).toString(); // assuming that UUID can be passed to query as string in all databases
-                String sql = String.format("insert into SYS_QUERY_RESULT (SESSION_ID, QUERY_KEY, %s) values ('%s', %s, ?)",
-                        columnName, userSessionIdStr, queryKey);
-                int[] paramTypes = new int[]{converter.getSqlType(idFromList.getClass())};
+                String sql = String.format("insert into SYS_QUERY_RESULT (SESSION_ID, QUERY_KEY, %s) values (?, ?, ?)",
+                        columnName);
+                Object userSessionIdParam = converter.getSqlObject(userSessionId);
+                int[] paramTypes = new int[]{
+                        converter.getSqlType(UUID.class),
+                        Types.INTEGER,
+                        converter.getSqlType(idFromList.getClass())
+                };
                 for (int i = 0; i < idList.size(); i += BATCH_SIZE) {
-                    List<UUID> sublist = idList.subList(i, Math.min(i + BATCH_SIZE, idList.size()));
-                    Object[][] params = new Object[sublist.size()][1];
+                    List<?> sublist = idList.subList(i, Math.min(i + BATCH_SIZE, idList.size()));
+                    Object[][] params = new Object[sublist.size()][];
                     for (int j = 0; j < sublist.size(); j++) {
-                        params[j][0] = converter.getSqlObject(sublist.get(j));
+                        params[j] = new Object[]{userSessionIdParam, queryKey, converter.getSqlObject(sublist.get(j))};
                     }
                     runner.batch(em.getConnection(), sql, params, paramTypes);
                 }
@@ -198,37 +298,35 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
 
     @Override
     public void delete(int queryKey) {
-        DbTypeConverter converter = persistence.getDbTypeConverter();
         UUID userSessionId = userSessionSource.getUserSession().getId();
-        String userSessionIdStr = converter.getSqlObject(userSessionId).toString();
         long start = System.currentTimeMillis();
         String logMsg = "Delete query results for " + userSessionId + " / " + queryKey;
         log.debug(logMsg);
 
-        String sql = "delete from SYS_QUERY_RESULT where SESSION_ID = '"
-                + userSessionIdStr + "' and QUERY_KEY = " + queryKey;
-
-        QueryRunner runner = new QueryRunner(persistence.getDataSource());
+        Transaction tx = persistence.createTransaction();
         try {
-            runner.update(sql);
+            delete(persistence.getEntityManager(), userSessionId, queryKey);
+            tx.commit();
         } catch (SQLException e) {
             throw new RuntimeException(e);
+        } finally {
+            tx.end();
         }
         log.debug("Done in " + (System.currentTimeMillis() - start) + "ms : " + logMsg);
     }
 
+    protected void delete(EntityManager em, UUID userSessionId, int queryKey) throws SQLException {
+        DbTypeConverter converter = persistence.getDbTypeConverter();
+        QueryRunner runner = new QueryRunner();
+        runner.update(em.getConnection(), "delete from SYS_QUERY_RESULT where SESSION_ID = ? and QUERY_KEY = ?",
+                new Object[]{converter.getSqlObject(userSessionId), queryKey},
+                new int[]{converter.getSqlType(UUID.class), Types.INTEGER});
+    }
+
     @Override
     public void deleteForCurrentSession() {
-        QueryRunner runner = new QueryRunner(persistence.getDataSource());
-        try {
-            DbTypeConverter converter = persistence.getDbTypeConverter();
-            UUID userSessionId = userSessionSource.getUserSession().getId();
-            String userSessionIdStr = converter.getSqlObject(userSessionId).toString();
-            runner.update("delete from SYS_QUERY_RESULT where SESSION_ID = '"
-                    + userSessionIdStr + "'");
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+        UUID userSessionId = userSessionSource.getUserSession().getId();
+        deleteForSessions(Collections.singletonList(userSessionId));
     }
 
     @Override
@@ -243,44 +341,40 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
     public void internalDeleteForInactiveSessions() {
         log.debug("Delete query results for inactive user sessions");
 
-        List<Object[]> rows;
+        List<UUID> storedSessionIds;
         try (Transaction tx = persistence.createTransaction()) {
-            TypedQuery<Object[]> query = persistence.getEntityManager().createQuery(
-                    "select e.id, e.sessionId from sys$QueryResult e", Object[].class);
+            TypedQuery<UUID> query = persistence.getEntityManager().createQuery(
+                    "select distinct e.sessionId from sys$QueryResult e", UUID.class);
             query.setMaxResults(INACTIVE_DELETION_MAX);
-            rows = query.getResultList();
+            storedSessionIds = query.getResultList();
         }
-        if (rows.size() == INACTIVE_DELETION_MAX) {
-            log.debug("Processing " + INACTIVE_DELETION_MAX + " records, run again for the rest");
+        if (storedSessionIds.size() == INACTIVE_DELETION_MAX) {
+            log.debug("Processing " + INACTIVE_DELETION_MAX + " sessions, run again for the rest");
         }
 
         Set<UUID> sessionIds = userSessions.getUserSessionsStream().map(UserSession::getId).collect(Collectors.toSet());
 
-        List<Long> ids = new ArrayList<>();
-        int i = 0;
-        for (Object[] row : rows) {
-            if (!sessionIds.contains((UUID) row[1])) {
-                ids.add((Long) row[0]);
-            }
-            i++;
-            if (i % DELETE_BATCH_SIZE == 0) {
-                if (!ids.isEmpty())
-                    delete(ids);
-                ids.clear();
-            }
+        List<UUID> inactiveSessionIds = storedSessionIds.stream()
+                .filter(sessionId -> !sessionIds.contains(sessionId))
+                .collect(Collectors.toList());
+        for (int i = 0; i < inactiveSessionIds.size(); i += DELETE_BATCH_SIZE) {
+            deleteForSessions(inactiveSessionIds.subList(i, Math.min(i + DELETE_BATCH_SIZE, inactiveSessionIds.size())));
         }
-        if (!ids.isEmpty())
-            delete(ids);
     }
 
-    protected void delete(List<Long> ids) {
-        log.debug("Deleting " + ids.size() + " records");
-        String str = ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+    protected void deleteForSessions(List<UUID> sessionIds) {
+        log.debug("Deleting query results of " + sessionIds.size() + " sessions");
+        DbTypeConverter converter = persistence.getDbTypeConverter();
+        Object[][] params = new Object[sessionIds.size()][];
+        for (int i = 0; i < sessionIds.size(); i++) {
+            params[i] = new Object[]{converter.getSqlObject(sessionIds.get(i))};
+        }
         QueryRunner runner = new QueryRunner(persistence.getDataSource());
         try {
-            runner.update("delete from SYS_QUERY_RESULT where ID in (" + str + ")");
+            runner.batch("delete from SYS_QUERY_RESULT where SESSION_ID = ?", params,
+                    new int[]{converter.getSqlType(UUID.class)});
         } catch (SQLException e) {
             throw new RuntimeException("Error deleting query result records", e);
         }
     }
-}
\ No newline at end of file
+}
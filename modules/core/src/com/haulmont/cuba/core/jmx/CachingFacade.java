@@ -19,9 +19,11 @@ package com.haulmont.cuba.core.jmx;
 import com.haulmont.cuba.core.app.ConfigStorageAPI;
 import com.haulmont.cuba.core.app.dynamicattributes.DynamicAttributesManagerAPI;
 import com.haulmont.cuba.core.global.Messages;
+import com.haulmont.cuba.core.global.QueryTransformerFactory;
 import com.haulmont.cuba.core.global.Scripting;
 import com.haulmont.cuba.core.global.ViewRepository;
 import com.haulmont.cuba.core.sys.AbstractViewRepository;
+import com.haulmont.cuba.core.sys.QueryPlanCache;
 import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.security.app.EntityLogAPI;
 
@@ -49,11 +51,47 @@ public class CachingFacade implements CachingFacadeMBean {
     @Inject
     protected DynamicAttributesManagerAPI dynamicAttributesManagerAPI;
 
+    @Inject
+    protected QueryTransformerFactory queryTransformerFactory;
+
+    @Inject
+    protected QueryPlanCache queryPlanCache;
+
     @Override
     public int getMessagesCacheSize() {
         return messages.getCacheSize();
     }
 
+    @Override
+    public long getJpqlAstCacheSize() {
+        return queryTransformerFactory.getAstCacheSize();
+    }
+
+    @Override
+    public long getJpqlAstCacheHitCount() {
+        return queryTransformerFactory.getAstCacheStats().hitCount();
+    }
+
+    @Override
+    public long getJpqlAstCacheMissCount() {
+        return queryTransformerFactory.getAstCacheStats().missCount();
+    }
+
+    @Override
+    public long getQueryPlanCacheSize() {
+        return queryPlanCache.getSize();
+    }
+
+    @Override
+    public long getQueryPlanCacheHitCount() {
+        return queryPlanCache.getStats().hitCount();
+    }
+
+    @Override
+    public long getQueryPlanCacheMissCount() {
+        return queryPlanCache.getStats().missCount();
+    }
+
     @Override
     public void clearGroovyCache() {
         scripting.clearCache();
@@ -84,6 +122,16 @@ public class CachingFacade implements CachingFacadeMBean {
         AppContext.Internals.getAppProperties().initSystemProperties();
     }
 
+    @Override
+    public void clearJpqlAstCache() {
+        queryTransformerFactory.clearAstCache();
+    }
+
+    @Override
+    public void clearQueryPlanCache() {
+        queryPlanCache.clear();
+    }
+
     @Override
     public void clearViewRepositoryCache() {
         ((AbstractViewRepository) viewRepository).reset();
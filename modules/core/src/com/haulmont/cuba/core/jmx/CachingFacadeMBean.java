@@ -20,6 +20,18 @@ public interface CachingFacadeMBean {
 
     int getMessagesCacheSize();
 
+    long getJpqlAstCacheSize();
+
+    long getJpqlAstCacheHitCount();
+
+    long getJpqlAstCacheMissCount();
+
+    long getQueryPlanCacheSize();
+
+    long getQueryPlanCacheHitCount();
+
+    long getQueryPlanCacheMissCount();
+
     void clearGroovyCache();
 
     void clearMessagesCache();
@@ -33,4 +45,8 @@ public interface CachingFacadeMBean {
     void clearDynamicAttributesCache();
 
     void clearSystemPropertiesCache();
+
+    void clearJpqlAstCache();
+
+    void clearQueryPlanCache();
 }
\ No newline at end of file
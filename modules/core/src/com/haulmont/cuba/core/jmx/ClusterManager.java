@@ -82,6 +82,26 @@ public class ClusterManager implements ClusterManagerMBean {
         return clusterManager.getMessagesCount();
     }
 
+    @Override
+    public long getSentBatches() {
+        return clusterManager.getSentBatches();
+    }
+
+    @Override
+    public double getAverageBatchSize() {
+        return clusterManager.getAverageBatchSize();
+    }
+
+    @Override
+    public double getAverageBatchLatency() {
+        return clusterManager.getAverageBatchLatency();
+    }
+
+    @Override
+    public long getCoalescedMessages() {
+        return clusterManager.getCoalescedMessages();
+    }
+
     @Override
     public String printSharedStateStat() {
         return clusterManager.printSharedStateStat();
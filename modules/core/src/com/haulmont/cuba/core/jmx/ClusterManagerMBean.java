@@ -61,6 +61,30 @@ public interface ClusterManagerMBean {
      */
     int getMessagesCount();
 
+    /**
+     * @return count of message batches sent
+     * @see com.haulmont.cuba.core.app.ClusterManagerAPI#getSentBatches()
+     */
+    long getSentBatches();
+
+    /**
+     * @return average count of messages in a batch
+     * @see com.haulmont.cuba.core.app.ClusterManagerAPI#getAverageBatchSize()
+     */
+    double getAverageBatchSize();
+
+    /**
+     * @return average time in milliseconds between adding the first message to a batch and sending the batch
+     * @see com.haulmont.cuba.core.app.ClusterManagerAPI#getAverageBatchLatency()
+     */
+    double getAverageBatchLatency();
+
+    /**
+     * @return count of messages replaced in batches by subsequent messages with the same key
+     * @see com.haulmont.cuba.core.app.ClusterManagerAPI#getCoalescedMessages()
+     */
+    long getCoalescedMessages();
+
     @ManagedOperation(description = "Shared state statistics")
     String printSharedStateStat();
 
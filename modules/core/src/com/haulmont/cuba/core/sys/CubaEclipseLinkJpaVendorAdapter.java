@@ -16,9 +16,11 @@
  */
 package com.haulmont.cuba.core.sys;
 
+import com.haulmont.cuba.core.global.Stores;
 import org.springframework.orm.jpa.vendor.EclipseLinkJpaDialect;
 import org.springframework.orm.jpa.vendor.EclipseLinkJpaVendorAdapter;
 
+import java.util.List;
 import java.util.Map;
 
 public class CubaEclipseLinkJpaVendorAdapter extends EclipseLinkJpaVendorAdapter {
@@ -33,14 +35,28 @@ public class CubaEclipseLinkJpaVendorAdapter extends EclipseLinkJpaVendorAdapter
     @Override
     public Map<String, Object> getJpaPropertyMap() {
         Map<String, Object> map = super.getJpaPropertyMap();
+        List<String> additionalStores = Stores.getAdditional();
         for (String name : AppContext.getPropertyNames()) {
-            if (name.startsWith("eclipselink.")) {
+            if (name.startsWith("eclipselink.") && !isStoreSpecific(name, additionalStores)
+                    && !hasStoreSpecificValue(name, additionalStores)) {
                 map.put(name, AppContext.getProperty(name));
             }
         }
         return map;
     }
 
+    protected boolean isStoreSpecific(String name, List<String> storeNames) {
+        return storeNames.stream().anyMatch(storeName -> name.endsWith("_" + storeName));
+    }
+
+    /*
+     * If the property has a value for a particular data store, it must not override values from persistence.xml
+     * files created for each data store by PersistenceConfigProcessor.
+     */
+    protected boolean hasStoreSpecificValue(String name, List<String> storeNames) {
+        return storeNames.stream().anyMatch(storeName -> AppContext.getProperty(name + "_" + storeName) != null);
+    }
+
     @Override
     public EclipseLinkJpaDialect getJpaDialect() {
         return jpaDialect;
@@ -70,10 +70,14 @@ public class PersistenceSecurityImpl extends SecurityImpl implements Persistence
     @Inject
     protected GlobalConfig globalConfig;
 
+    @Inject
+    protected QueryPlanCache queryPlanCache;
+
     @Override
     public boolean applyConstraints(Query query) {
-        QueryParser parser = QueryTransformerFactory.createParser(query.getQueryString());
-        String entityName = parser.getEntityName();
+        String queryString = query.getQueryString();
+        String entityName = queryPlanCache.get(() -> QueryTransformerFactory.createParser(queryString).getEntityName(),
+                "entityName", queryString);
 
         List<ConstraintData> constraints = getConstraints(metadata.getClassNN(entityName), constraint ->
                 constraint.getCheckType().database()
@@ -83,14 +87,17 @@ public class PersistenceSecurityImpl extends SecurityImpl implements Persistence
         if (constraints.isEmpty())
             return false;
 
-        QueryTransformer transformer = QueryTransformerFactory.createTransformer(query.getQueryString());
+        ConstrainedQuery constrainedQuery = queryPlanCache.get(() -> {
+            QueryTransformer transformer = QueryTransformerFactory.createTransformer(queryString);
+            for (ConstraintData constraint : constraints) {
+                processConstraint(transformer, constraint, entityName);
+            }
+            return new ConstrainedQuery(transformer.getResult(), new ArrayList<>(transformer.getAddedParams()));
+        }, "constraints", queryString, constraints);
 
-        for (ConstraintData constraint : constraints) {
-            processConstraint(transformer, constraint, entityName);
-        }
-        query.setQueryString(transformer.getResult());
+        query.setQueryString(constrainedQuery.queryString);
 
-        for (String paramName : transformer.getAddedParams()) {
+        for (String paramName : constrainedQuery.addedParams) {
             setQueryParam(query, paramName);
         }
         return true;
@@ -408,4 +415,17 @@ public class PersistenceSecurityImpl extends SecurityImpl implements Persistence
             return result;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Result of applying constraints to a query, cached in {@link QueryPlanCache}.
+     */
+    protected static class ConstrainedQuery {
+        protected final String queryString;
+        protected final List<String> addedParams;
+
+        public ConstrainedQuery(String queryString, List<String> addedParams) {
+            this.queryString = queryString;
+            this.addedParams = addedParams;
+        }
+    }
+}
@@ -40,6 +40,7 @@ import org.eclipse.persistence.config.QueryHints;
 import org.eclipse.persistence.internal.helper.CubaUtil;
 import org.eclipse.persistence.internal.jpa.EJBQueryImpl;
 import org.eclipse.persistence.jpa.JpaQuery;
+import org.eclipse.persistence.queries.CursoredStream;
 import org.eclipse.persistence.queries.DatabaseQuery;
 import org.eclipse.persistence.queries.ObjectLevelReadQuery;
 import org.slf4j.Logger;
@@ -432,6 +433,40 @@ public class QueryImpl<T> implements TypedQuery<T> {
         }
     }
 
+    @Override
+    public void forEachChunk(int chunkSize, Consumer<List> consumer) {
+        Preconditions.checkArgument(chunkSize > 0, "chunkSize must be positive");
+        if (log.isDebugEnabled())
+            log.debug(queryString.replaceAll("[\\t\\n\\x0B\\f\\r]", " ") + " (chunk size " + chunkSize + ")");
+
+        singleResultExpected = false;
+
+        JpaQuery<T> jpaQuery = getQuery();
+        jpaQuery.setHint(QueryHints.CURSOR, HintValues.TRUE);
+        jpaQuery.setHint(QueryHints.CURSOR_PAGE_SIZE, chunkSize);
+        jpaQuery.setHint(QueryHints.JDBC_FETCH_SIZE, chunkSize);
+        preExecute(jpaQuery);
+
+        CursoredStream cursor = (CursoredStream) jpaQuery.getSingleResult();
+        try {
+            while (cursor.hasNext()) {
+                List chunk = cursor.next(chunkSize);
+                for (Object item : chunk) {
+                    if (item instanceof Entity) {
+                        for (View view : views) {
+                            entityFetcher.fetch((Entity) item, view);
+                        }
+                    }
+                }
+                consumer.accept(chunk);
+                // release already read objects held by the cursor
+                cursor.clear();
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
     @Override
     public int executeUpdate() {
         JpaQuery<T> jpaQuery = getQuery();
@@ -689,6 +724,7 @@ public class QueryImpl<T> implements TypedQuery<T> {
             String entityName = parser.getEntityName();
             useQueryCache = parser.isEntitySelect(entityName);
             QueryKey queryKey = null;
+            Map<String, Long> typeGenerations = null;
             if (useQueryCache) {
                 queryKey = QueryKey.create(transformedQueryString, entityManager.isSoftDeletion(), singleResult, jpaQuery);
                 result = singleResult ? queryCacheMgr.getSingleResultFromCache(queryKey, views) :
@@ -696,12 +732,14 @@ public class QueryImpl<T> implements TypedQuery<T> {
                 if (result != null) {
                     return result;
                 }
+                typeGenerations = queryCacheMgr.getTypeGenerations(parser.getAllEntityNames());
             }
             try {
                 result = singleResult ? jpaQuery.getSingleResult() : jpaQuery.getResultList();
             } catch (NoResultException | NonUniqueResultException ex) {
                 if (useQueryCache && singleResult) {
-                    queryCacheMgr.putResultToCache(queryKey, null, entityName, parser.getAllEntityNames(), ex);
+                    queryCacheMgr.putResultToCache(queryKey, null, entityName, parser.getAllEntityNames(), ex,
+                            typeGenerations);
                 }
                 throw ex;
             }
@@ -709,7 +747,7 @@ public class QueryImpl<T> implements TypedQuery<T> {
             if (useQueryCache) {
                 queryCacheMgr.putResultToCache(queryKey,
                         singleResult ? Collections.singletonList(result) : (List) result,
-                        entityName, parser.getAllEntityNames());
+                        entityName, parser.getAllEntityNames(), typeGenerations);
             }
         } else {
             result = singleResult ? jpaQuery.getSingleResult() : jpaQuery.getResultList();
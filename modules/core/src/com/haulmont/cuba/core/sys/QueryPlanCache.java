@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.sys;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.haulmont.cuba.core.app.ServerConfig;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Caches results of JPQL transformations performed before a query is passed to EclipseLink: conditions, sort,
+ * row-level constraints, etc.
+ * <p>
+ * As a result, the same JPQL string is produced for equal inputs without parsing, and EclipseLink reuses
+ * the {@code DatabaseQuery} compiled for this string from its own JPQL parse cache.
+ * <p>
+ * Keys must include everything the transformation depends on. Values must be immutable.
+ */
+@Component(QueryPlanCache.NAME)
+public class QueryPlanCache {
+
+    public static final String NAME = "cuba_QueryPlanCache";
+
+    @Inject
+    protected ServerConfig serverConfig;
+
+    protected volatile Cache<List<Object>, Object> cache;
+
+    /**
+     * Returns a cached transformation result or computes and caches it.
+     *
+     * @param supplier  computes the result if it is not in the cache
+     * @param keyParts  elements of the key, must implement {@code equals()} and {@code hashCode()}
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Supplier<T> supplier, Object... keyParts) {
+        Cache<List<Object>, Object> cache = getCache();
+        if (cache == null) {
+            return supplier.get();
+        }
+        List<Object> key = Arrays.asList(keyParts);
+        Object value = cache.getIfPresent(key);
+        if (value == null) {
+            value = supplier.get();
+            if (value != null) {
+                cache.put(key, value);
+            }
+        }
+        return (T) value;
+    }
+
+    public long getSize() {
+        Cache<List<Object>, Object> cache = getCache();
+        return cache == null ? 0 : cache.size();
+    }
+
+    public CacheStats getStats() {
+        Cache<List<Object>, Object> cache = getCache();
+        return cache == null ? new CacheStats(0, 0, 0, 0, 0, 0) : cache.stats();
+    }
+
+    public void clear() {
+        Cache<List<Object>, Object> cache = getCache();
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    @Nullable
+    protected Cache<List<Object>, Object> getCache() {
+        if (cache == null) {
+            int size = serverConfig.getQueryPlanCacheSize();
+            if (size <= 0) {
+                return null;
+            }
+            synchronized (this) {
+                if (cache == null) {
+                    cache = CacheBuilder.newBuilder()
+                            .maximumSize(size)
+                            .recordStats()
+                            .build();
+                }
+            }
+        }
+        return cache;
+    }
+}
@@ -41,20 +41,23 @@ public class ConfigurationImpl implements Configuration, BeanFactoryPostProcesso
 
     protected Map<Class, ConfigHandler> cache = new ConcurrentHashMap<>();
 
+    protected Map<Class, Object> proxies = new ConcurrentHashMap<>();
+
     protected ApplicationContext applicationContext;
 
     @Override
     public <T extends Config> T getConfig(Class<T> configInterface) {
-        ConfigHandler handler = cache.get(configInterface);
-        if (handler == null) {
-            handler = new ConfigHandler(createPersister(), configInterface);
-            cache.put(configInterface, handler);
-        }
-        ClassLoader classLoader = configInterface.getClassLoader();
-        Object proxy = Proxy.newProxyInstance(classLoader, new Class[]{configInterface}, handler);
+        Object proxy = proxies.computeIfAbsent(configInterface, this::createProxy);
         return configInterface.cast(proxy);
     }
 
+    protected Object createProxy(Class<?> configInterface) {
+        ConfigHandler handler = cache.computeIfAbsent(configInterface,
+                aClass -> new ConfigHandler(createPersister(), aClass));
+        ClassLoader classLoader = configInterface.getClassLoader();
+        return Proxy.newProxyInstance(classLoader, new Class[]{configInterface}, handler);
+    }
+
     @Override
     public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
         // empty, just to make sure this bean is instantiated before others
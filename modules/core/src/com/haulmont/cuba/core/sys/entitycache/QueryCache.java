@@ -38,6 +38,13 @@ public interface QueryCache {
      */
     void put(QueryKey queryKey, QueryResult queryResult);
 
+    /**
+     * Returns current generations of metaClass names {@code typeNames}. A generation of a type is increased on each
+     * invalidation of the type. If {@code queryResult} is stamped with generations obtained before executing
+     * the query, it is discarded when any of its types is invalidated during the execution.
+     */
+    Map<String, Long> getTypeGenerations(Set<String> typeNames);
+
     /**
      * Finds query key by query identifier
      */
@@ -69,7 +76,8 @@ public interface QueryCache {
     void invalidateAll();
 
     /**
-     * Returns number of entries in this cache.
+     * Returns number of entries in this cache. The number may include results of invalidated types which are not
+     * evicted yet.
      */
     long size();
 
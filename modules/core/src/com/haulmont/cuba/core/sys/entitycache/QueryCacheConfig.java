@@ -34,4 +34,20 @@ public interface QueryCacheConfig extends Config {
     @Property("cuba.queryCache.maxSize")
     @DefaultInt(100)
     int getQueryCacheMaxSize();
+
+    /**
+     * Interval in milliseconds between sending counters of query cache invalidations to the cluster.
+     * Used in the scheduler definition.
+     */
+    @Property("cuba.queryCache.generationsSyncInterval")
+    @DefaultInt(10000)
+    int getGenerationsSyncInterval();
+
+    /**
+     * Timeout in milliseconds after which the query cache is invalidated completely if some cluster node
+     * which previously sent invalidations has not sent anything.
+     */
+    @Property("cuba.queryCache.generationsTimeout")
+    @DefaultInt(60000)
+    int getGenerationsTimeout();
 }
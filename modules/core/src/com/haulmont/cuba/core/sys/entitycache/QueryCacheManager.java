@@ -26,19 +26,44 @@ import com.haulmont.cuba.core.app.ClusterListenerAdapter;
 import com.haulmont.cuba.core.app.ClusterManagerAPI;
 import com.haulmont.cuba.core.entity.BaseGenericIdEntity;
 import com.haulmont.cuba.core.global.Metadata;
+import com.haulmont.cuba.core.global.TimeSource;
+import com.haulmont.cuba.core.global.UuidProvider;
 import com.haulmont.cuba.core.global.View;
+import com.haulmont.cuba.core.sys.AppContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import javax.persistence.MappedSuperclass;
 import javax.persistence.TypedQuery;
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
+/**
+ * Manages the query cache and keeps it consistent across the middleware cluster.
+ * <p>
+ * Invalidation messages are sent asynchronously after the invalidating transaction is committed, so other nodes
+ * cannot cache the changed data again before it is visible in the database.
+ * <p>
+ * Each node counts invalidations of entity types originated on it and attaches all its counters to every
+ * {@link InvalidateQueryCacheMsg}, and also sends them periodically in {@link #sendGenerations()}. A receiving node
+ * remembers the highest counters seen from each sender and advances the local generation of a type when its counter
+ * grows, and a cached result is returned only if the generations of its types have not changed since the query was
+ * executed. So a lost invalidation message is repaired by any later message of the same sender.
+ * <p>
+ * Cached results are read only while every known sender has been heard from within
+ * {@link QueryCacheConfig#getGenerationsTimeout()}. Otherwise the whole cache is invalidated on read, so results are
+ * never validated against counters older than the timeout.
+ */
 @Component(QueryCacheManager.NAME)
 public class QueryCacheManager {
 
@@ -54,6 +79,25 @@ public class QueryCacheManager {
     protected QueryCache queryCache;
     @Inject
     protected Metadata metadata;
+    @Inject
+    protected TimeSource timeSource;
+
+    protected final String nodeId = UuidProvider.createUuid().toString();
+
+    /**
+     * Counters of invalidations originated on this node by entity type.
+     */
+    protected final ConcurrentMap<String, AtomicLong> localGenerations = new ConcurrentHashMap<>();
+
+    /**
+     * The highest counters of invalidations received from other nodes by node id and entity type.
+     */
+    protected final ConcurrentMap<String, Map<String, Long>> remoteGenerations = new ConcurrentHashMap<>();
+
+    /**
+     * Time of the last message received from other nodes by node id.
+     */
+    protected final ConcurrentMap<String, Long> remoteTimestamps = new ConcurrentHashMap<>();
 
     protected static final Logger log = LoggerFactory.getLogger(QueryCacheManager.class);
 
@@ -66,9 +110,10 @@ public class QueryCacheManager {
                     queryCache.invalidateAll();
                 } else if (message.queryKey != null) {
                     queryCache.invalidate(message.queryKey);
-                } else {
+                } else if (message.typeNames != null) {
                     queryCache.invalidate(message.typeNames);
                 }
+                mergeGenerations(message.nodeId, message.generations, message.typeNames);
             }
         });
     }
@@ -86,6 +131,7 @@ public class QueryCacheManager {
     @SuppressWarnings("unchecked")
     public <T> List<T> getResultListFromCache(QueryKey queryKey, List<View> views) {
         log.debug("Looking for query in cache: {}", queryKey.printDescription());
+        invalidateExpiredGenerations();
         List<T> resultList = null;
         QueryResult queryResult = queryCache.get(queryKey);
         if (queryResult != null) {
@@ -112,6 +158,7 @@ public class QueryCacheManager {
     @SuppressWarnings("unchecked")
     public <T> T getSingleResultFromCache(QueryKey queryKey, List<View> views) {
         log.debug("Looking for query in cache: {}", queryKey.printDescription());
+        invalidateExpiredGenerations();
         QueryResult queryResult = queryCache.get(queryKey);
         if (queryResult != null) {
             MetaClass metaClass = metadata.getClassNN(queryResult.getType());
@@ -134,6 +181,16 @@ public class QueryCacheManager {
         return null;
     }
 
+    /**
+     * Returns current generations of the query dependent types. Must be obtained before executing the query and passed
+     * to {@code putResultToCache} methods, so the results are not cached if the types are invalidated meanwhile.
+     *
+     * @param relatedTypes - query dependent types (metaClass names). It's a list of entity types used in query
+     */
+    public Map<String, Long> getTypeGenerations(Set<String> relatedTypes) {
+        return queryCache.getTypeGenerations(getDescendants(relatedTypes));
+    }
+
     /**
      * Put query results into query cache for specified query {@code queryKey}.
      * Results are extracted as identifiers from {@code resultList}
@@ -141,8 +198,22 @@ public class QueryCacheManager {
      * @param type         - result entity type (metaClass name)
      * @param relatedTypes - query dependent types (metaClass names). It's a list of entity types used in query
      */
-    @SuppressWarnings("unchecked")
     public void putResultToCache(QueryKey queryKey, List resultList, String type, Set<String> relatedTypes) {
+        putResultToCache(queryKey, resultList, type, relatedTypes, (Map<String, Long>) null);
+    }
+
+    /**
+     * Put query results into query cache for specified query {@code queryKey}.
+     * Results are extracted as identifiers from {@code resultList}
+     *
+     * @param type            - result entity type (metaClass name)
+     * @param relatedTypes    - query dependent types (metaClass names). It's a list of entity types used in query
+     * @param typeGenerations - generations of the related types obtained by {@link #getTypeGenerations(Set)}
+     *                        before executing the query
+     */
+    @SuppressWarnings("unchecked")
+    public void putResultToCache(QueryKey queryKey, List resultList, String type, Set<String> relatedTypes,
+                                 @Nullable Map<String, Long> typeGenerations) {
         QueryResult queryResult;
         if (resultList.size() > 0) {
             List idList = (List) resultList.stream()
@@ -153,6 +224,9 @@ public class QueryCacheManager {
         } else {
             queryResult = new QueryResult(Collections.emptyList(), type, getDescendants(relatedTypes));
         }
+        if (typeGenerations != null) {
+            queryResult = queryResult.withTypeGenerations(typeGenerations);
+        }
         log.debug("Put results into cache for query: {}, relatedTypes: {}", queryKey.printDescription(), relatedTypes);
         queryCache.put(queryKey, queryResult);
     }
@@ -165,14 +239,32 @@ public class QueryCacheManager {
      * @param relatedTypes - query dependent types (metaClass names). It's a list of entity types used in query
      * @param exception    - store exception in the query cache if {@link TypedQuery#getSingleResult()} throws exception
      */
-    @SuppressWarnings("unchecked")
     public <T> void putResultToCache(QueryKey queryKey, T result, String type, Set<String> relatedTypes, RuntimeException exception) {
+        putResultToCache(queryKey, result, type, relatedTypes, exception, null);
+    }
+
+    /**
+     * Put query results into query cache for specified query {@code queryKey}.
+     * Results are extracted as identifiers from entity {@code result}
+     *
+     * @param type            - result entity type (metaClass name)
+     * @param relatedTypes    - query dependent types (metaClass names). It's a list of entity types used in query
+     * @param exception       - store exception in the query cache if {@link TypedQuery#getSingleResult()} throws exception
+     * @param typeGenerations - generations of the related types obtained by {@link #getTypeGenerations(Set)}
+     *                        before executing the query
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void putResultToCache(QueryKey queryKey, T result, String type, Set<String> relatedTypes,
+                                     RuntimeException exception, @Nullable Map<String, Long> typeGenerations) {
         QueryResult queryResult;
         if (exception == null) {
             queryResult = new QueryResult(Collections.singletonList(((BaseGenericIdEntity) result).getId()), type, relatedTypes);
         } else {
             queryResult = new QueryResult(Collections.emptyList(), type, relatedTypes, exception);
         }
+        if (typeGenerations != null) {
+            queryResult = queryResult.withTypeGenerations(typeGenerations);
+        }
         log.debug("Put results into cache for query: {}, relatedTypes: {}", queryKey.printDescription(), relatedTypes);
         queryCache.put(queryKey, queryResult);
     }
@@ -200,7 +292,7 @@ public class QueryCacheManager {
             if (sendInCluster) {
                 MetaClass metaClass = metadata.getClass(typeName);
                 if (metaClass != null && metadata.getTools().isCacheable(metaClass)) {
-                    clusterManager.send(new InvalidateQueryCacheMsg(Sets.newHashSet(typeName)));
+                    sendInvalidation(Sets.newHashSet(typeName));
                 }
             }
         }
@@ -221,7 +313,7 @@ public class QueryCacheManager {
                         return metaClass != null && metadata.getTools().isCacheable(metaClass);
                     });
                     if (hasCacheable) {
-                        clusterManager.send(new InvalidateQueryCacheMsg(typeNames));
+                        sendInvalidation(typeNames);
                     }
                 }
             }
@@ -238,7 +330,11 @@ public class QueryCacheManager {
         if (isEnabled()) {
             QueryKey queryKey = queryCache.invalidate(queryId);
             if (queryKey != null && sendInCluster) {
-                clusterManager.send(new InvalidateQueryCacheMsg(queryKey));
+                sendAfterCommit(() -> {
+                    InvalidateQueryCacheMsg message = new InvalidateQueryCacheMsg(queryKey);
+                    fillGenerations(message);
+                    clusterManager.send(message);
+                });
             }
         }
     }
@@ -252,7 +348,108 @@ public class QueryCacheManager {
         if (isEnabled()) {
             queryCache.invalidateAll();
             if (sendInCluster) {
-                clusterManager.send(new InvalidateQueryCacheMsg(true));
+                sendAfterCommit(() -> {
+                    InvalidateQueryCacheMsg message = new InvalidateQueryCacheMsg(true);
+                    fillGenerations(message);
+                    clusterManager.send(message);
+                });
+            }
+        }
+    }
+
+    /**
+     * Sends counters of invalidations originated on this node to the cluster, and invalidates the whole cache
+     * if some node has not sent anything for too long. Invoked by the scheduler.
+     */
+    public void sendGenerations() {
+        if (!AppContext.isStarted() || !isEnabled() || !clusterManager.isStarted())
+            return;
+
+        if (!localGenerations.isEmpty()) {
+            InvalidateQueryCacheMsg message = new InvalidateQueryCacheMsg();
+            fillGenerations(message);
+            clusterManager.send(message, nodeId);
+        }
+
+        invalidateExpiredGenerations();
+    }
+
+    /**
+     * Invalidates the whole cache if some node has not sent anything for too long, because invalidations of the node
+     * may be missed.
+     */
+    protected void invalidateExpiredGenerations() {
+        if (remoteTimestamps.isEmpty())
+            return;
+
+        long expirationTime = timeSource.currentTimeMillis() - queryCacheConfig.getGenerationsTimeout();
+        for (Map.Entry<String, Long> entry : remoteTimestamps.entrySet()) {
+            if (entry.getValue() < expirationTime && remoteTimestamps.remove(entry.getKey(), entry.getValue())) {
+                log.debug("No query cache invalidations received from node {} for too long, invalidate all cache",
+                        entry.getKey());
+                remoteGenerations.remove(entry.getKey());
+                queryCache.invalidateAll();
+            }
+        }
+    }
+
+    protected void sendInvalidation(Set<String> typeNames) {
+        sendAfterCommit(() -> {
+            for (String typeName : typeNames) {
+                localGenerations.computeIfAbsent(typeName, name -> new AtomicLong()).incrementAndGet();
+            }
+            InvalidateQueryCacheMsg message = new InvalidateQueryCacheMsg(typeNames);
+            fillGenerations(message);
+            // generations are cumulative, so the latest invalidation of the same types supersedes the previous ones
+            clusterManager.send(message, new HashSet<>(typeNames));
+        });
+    }
+
+    /**
+     * Runs the sending after the current transaction is committed, or immediately if there is no transaction.
+     * A message sent before the commit could make other nodes cache the data being changed again.
+     */
+    protected void sendAfterCommit(Runnable sending) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    sending.run();
+                }
+            });
+        } else {
+            sending.run();
+        }
+    }
+
+    protected void fillGenerations(InvalidateQueryCacheMsg message) {
+        Map<String, Long> generations = new HashMap<>(localGenerations.size());
+        localGenerations.forEach((typeName, generation) -> generations.put(typeName, generation.get()));
+        message.nodeId = nodeId;
+        message.generations = generations;
+    }
+
+    /**
+     * @param invalidatedTypes types invalidated by the message itself, their counters are expected to grow
+     */
+    protected void mergeGenerations(@Nullable String senderId, @Nullable Map<String, Long> generations,
+                                    @Nullable Set<String> invalidatedTypes) {
+        if (senderId == null || generations == null)
+            return;
+
+        remoteTimestamps.put(senderId, timeSource.currentTimeMillis());
+        Map<String, Long> known = remoteGenerations.computeIfAbsent(senderId, id -> new ConcurrentHashMap<>());
+        for (Map.Entry<String, Long> entry : generations.entrySet()) {
+            String typeName = entry.getKey();
+            Long previous = known.get(typeName);
+            if (previous == null || previous < entry.getValue()) {
+                known.merge(typeName, entry.getValue(), Math::max);
+                if (invalidatedTypes == null || !invalidatedTypes.contains(typeName)) {
+                    if (previous != null) {
+                        log.debug("Missed invalidation of {} from node {}", typeName, senderId);
+                    }
+                    queryCache.invalidate(typeName);
+                }
             }
         }
     }
@@ -279,6 +476,11 @@ public class QueryCacheManager {
         protected Set<String> typeNames;
         protected QueryKey queryKey;
         protected boolean invalidateAll;
+        protected String nodeId;
+        protected Map<String, Long> generations;
+
+        public InvalidateQueryCacheMsg() {
+        }
 
         public InvalidateQueryCacheMsg(Set<String> typeNames) {
             this.typeNames = typeNames;
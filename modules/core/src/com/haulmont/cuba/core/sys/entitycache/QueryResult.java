@@ -18,6 +18,7 @@ package com.haulmont.cuba.core.sys.entitycache;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class QueryResult {
@@ -25,16 +26,30 @@ public class QueryResult {
     protected final String type;
     protected final Set<String> relatedTypes;
     protected final RuntimeException exception;
+    protected final Map<String, Long> typeGenerations;
 
     public QueryResult(List result, String type, Set<String> relatedTypes) {
         this(result, type, relatedTypes, null);
     }
 
     public QueryResult(List result, String type, Set<String> relatedTypes, RuntimeException exception) {
+        this(result, type, relatedTypes, exception, Collections.emptyMap());
+    }
+
+    protected QueryResult(List result, String type, Set<String> relatedTypes, RuntimeException exception,
+                          Map<String, Long> typeGenerations) {
         this.result = Collections.unmodifiableList(result);
         this.type = type;
         this.relatedTypes = relatedTypes;
         this.exception = exception;
+        this.typeGenerations = typeGenerations;
+    }
+
+    /**
+     * Returns a copy of this result stamped with generations of the related types at the moment of caching.
+     */
+    public QueryResult withTypeGenerations(Map<String, Long> typeGenerations) {
+        return new QueryResult(result, type, relatedTypes, exception, Collections.unmodifiableMap(typeGenerations));
     }
 
     public List getResult() {
@@ -52,4 +67,12 @@ public class QueryResult {
     public RuntimeException getException() {
         return exception;
     }
+
+    /**
+     * Returns generations of the related types at the moment of caching. The result is stale if a generation
+     * of any related type has changed since then.
+     */
+    public Map<String, Long> getTypeGenerations() {
+        return typeGenerations;
+    }
 }
@@ -29,17 +29,19 @@ import javax.inject.Inject;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Query cache which invalidates results by entity types without locks: each type has a generation counter which is
+ * incremented on invalidation, and each cached result keeps generations of its related types at the moment of
+ * caching. A result is considered stale and evicted on read if a generation of any of its related types has changed,
+ * so {@link #size()} may include stale results which have not been read since invalidation.
+ */
 @Component(QueryCache.NAME)
 public class StandardQueryCache implements QueryCache {
 
     protected Cache<QueryKey, QueryResult> data;
-    protected ConcurrentMap<String, CopyOnWriteArrayList<QueryKey>> typeIndex = new ConcurrentHashMap<>();
-    protected ReadWriteLock lock = new ReentrantReadWriteLock();
+    protected ConcurrentMap<String, AtomicLong> typeGenerations = new ConcurrentHashMap<>();
 
     @Inject
     protected QueryCacheConfig queryCacheConfig;
@@ -53,27 +55,36 @@ public class StandardQueryCache implements QueryCache {
 
     @Override
     public QueryResult get(QueryKey queryKey) {
-        return data.getIfPresent(queryKey);
+        QueryResult queryResult = data.getIfPresent(queryKey);
+        if (queryResult != null && !isActual(queryResult)) {
+            log.debug("Query result is stale: {}", queryKey.printDescription());
+            data.asMap().remove(queryKey, queryResult);
+            return null;
+        }
+        return queryResult;
     }
 
     @Override
     public void put(QueryKey queryKey, QueryResult queryResult) {
-        Lock readLock = lock.readLock();
-        readLock.lock();
-        try {
+        if (queryResult.getTypeGenerations().isEmpty()) {
+            queryResult = queryResult.withTypeGenerations(getTypeGenerations(queryResult.getRelatedTypes()));
+        }
+        if (isActual(queryResult)) {
             data.put(queryKey, queryResult);
+        } else {
+            log.debug("Query result became stale while executing: {}", queryKey.printDescription());
+        }
+    }
 
-            for (String type : queryResult.getRelatedTypes()) {
-                CopyOnWriteArrayList<QueryKey> keys = typeIndex.get(type);
-                if (keys == null) {
-                    typeIndex.putIfAbsent(type, new CopyOnWriteArrayList<>());
-                    keys = typeIndex.get(type);
-                }
-                keys.add(queryKey);
+    @Override
+    public Map<String, Long> getTypeGenerations(Set<String> typeNames) {
+        Map<String, Long> generations = new HashMap<>();
+        if (typeNames != null) {
+            for (String type : typeNames) {
+                generations.put(type, getTypeGeneration(type).get());
             }
-        } finally {
-            readLock.unlock();
         }
+        return generations;
     }
 
     @Override
@@ -89,77 +100,38 @@ public class StandardQueryCache implements QueryCache {
 
     @Override
     public void invalidate(QueryKey queryKey) {
-        Lock readLock = lock.readLock();
-        readLock.lock();
-        try {
-            log.debug("Invalidate query by key {}", queryKey.printDescription());
-            data.invalidate(queryKey);
-        } finally {
-            readLock.unlock();
-        }
+        log.debug("Invalidate query by key {}", queryKey.printDescription());
+        data.invalidate(queryKey);
     }
 
     @Override
     public void invalidate(String typeName) {
-        Lock readLock = lock.readLock();
-        readLock.lock();
-        try {
-            CopyOnWriteArrayList<QueryKey> keys = typeIndex.get(typeName);
-            if (keys == null) return;
-            log.debug("Invalidate cache for type {}", typeName);
-            Arrays.stream(keys.toArray()).forEach(it -> data.invalidate(it));
-        } finally {
-            readLock.unlock();
-        }
+        log.debug("Invalidate cache for type {}", typeName);
+        getTypeGeneration(typeName).incrementAndGet();
     }
 
     @Override
     public void invalidate(Set<String> typeNames) {
-        Lock readLock = lock.readLock();
-        readLock.lock();
-        try {
-            typeNames.forEach(typeName -> {
-                        CopyOnWriteArrayList<QueryKey> keys = typeIndex.get(typeName);
-                        if (keys == null) return;
-                        log.debug("Invalidate cache for type {}", typeName);
-                        Arrays.stream(keys.toArray()).forEach(it -> data.invalidate(it));
-                    }
-            );
-        } finally {
-            readLock.unlock();
-        }
+        typeNames.forEach(this::invalidate);
     }
 
     @Override
     public QueryKey invalidate(UUID queryId) {
-        Lock readLock = lock.readLock();
-        readLock.lock();
-        try {
-            Set<QueryKey> keys = Sets.newHashSet(data.asMap().keySet());
-            for (QueryKey key : keys) {
-                if (Objects.equals(queryId, key.getId())) {
-                    log.debug("Invalidate query by identifier {}", queryId);
-                    data.invalidate(key);
-                    return key;
-                }
+        Set<QueryKey> keys = Sets.newHashSet(data.asMap().keySet());
+        for (QueryKey key : keys) {
+            if (Objects.equals(queryId, key.getId())) {
+                log.debug("Invalidate query by identifier {}", queryId);
+                data.invalidate(key);
+                return key;
             }
-        } finally {
-            readLock.unlock();
         }
         return null;
     }
 
     @Override
     public void invalidateAll() {
-        Lock writeLock = lock.writeLock();
-        writeLock.lock();
-        try {
-            log.debug("Invalidate all cache");
-            data.invalidateAll();
-            typeIndex.clear();
-        } finally {
-            writeLock.unlock();
-        }
+        log.debug("Invalidate all cache");
+        data.invalidateAll();
     }
 
     @Override
@@ -174,6 +146,19 @@ public class StandardQueryCache implements QueryCache {
 
     @Override
     public Map<QueryKey, QueryResult> asMap() {
-        return Maps.newHashMap(data.asMap());
+        return Maps.newHashMap(Maps.filterValues(data.asMap(), this::isActual));
+    }
+
+    protected AtomicLong getTypeGeneration(String typeName) {
+        return typeGenerations.computeIfAbsent(typeName, name -> new AtomicLong());
+    }
+
+    protected boolean isActual(QueryResult queryResult) {
+        for (Map.Entry<String, Long> entry : queryResult.getTypeGenerations().entrySet()) {
+            if (getTypeGeneration(entry.getKey()).get() != entry.getValue()) {
+                return false;
+            }
+        }
+        return true;
     }
 }
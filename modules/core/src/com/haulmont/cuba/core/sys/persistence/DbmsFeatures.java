@@ -102,4 +102,28 @@ public interface DbmsFeatures {
     default boolean useOrderByForPaging() {
         return false;
     }
+
+    /**
+     * @return maximum number of values in the {@code in} list of a JPQL query
+     */
+    default int getMaxInListSize() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * @param javaType type of the parameter value before conversion by {@link DbTypeConverter#getSqlObject(Object)}
+     * @return placeholder of a parameter in the select list of an {@code insert ... select} statement, with a cast
+     * if the DBMS cannot infer the parameter type there
+     */
+    default String getSelectListParameter(Class<?> javaType) {
+        return "?";
+    }
+
+    /**
+     * @return true if the DBMS allows a subquery of an {@code update} or {@code delete} statement to select from
+     * the table being modified
+     */
+    default boolean supportsSubqueryOnModifiedTable() {
+        return true;
+    }
 }
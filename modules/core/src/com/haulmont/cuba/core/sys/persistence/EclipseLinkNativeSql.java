@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.sys.persistence;
+
+import com.haulmont.cuba.core.Query;
+import org.eclipse.persistence.internal.databaseaccess.DatabaseCall;
+import org.eclipse.persistence.internal.databaseaccess.DatabasePlatform;
+import org.eclipse.persistence.internal.sessions.AbstractRecord;
+import org.eclipse.persistence.internal.sessions.AbstractSession;
+import org.eclipse.persistence.jpa.JpaQuery;
+import org.eclipse.persistence.queries.DatabaseQuery;
+
+import javax.annotation.Nullable;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * INTERNAL.
+ * SQL statement generated by EclipseLink for a JPQL query, with positional parameters in place of the query
+ * parameters. Allows to embed the statement into another SQL statement executed through JDBC.
+ * <p>
+ * This is the only place relying on the EclipseLink internal API for SQL generation, so callers must be ready to
+ * fall back to executing the query through JPA if the statement cannot be obtained.
+ */
+public class EclipseLinkNativeSql {
+
+    protected final AbstractSession session;
+    protected final DatabaseCall call;
+
+    protected EclipseLinkNativeSql(AbstractSession session, DatabaseCall call) {
+        this.session = session;
+        this.call = call;
+    }
+
+    /**
+     * Generates SQL for the given JPQL query with the current parameter values and soft deletion mode.
+     *
+     * @return SQL statement or null if EclipseLink does not execute the query by a single SQL call
+     */
+    @Nullable
+    public static EclipseLinkNativeSql of(Query query) {
+        JpaQuery<?> jpaQuery = (JpaQuery<?>) query.getDelegate();
+        AbstractSession session = (AbstractSession) jpaQuery.getEntityManager().getActiveSession();
+
+        // a copy of the query is prepared to avoid modifying the one shared by the JPQL parse cache
+        DatabaseQuery databaseQuery = (DatabaseQuery) jpaQuery.getDatabaseQuery().clone();
+        List<Object> argumentValues = new ArrayList<>();
+        for (String argument : databaseQuery.getArguments()) {
+            argumentValues.add(jpaQuery.getParameterValue(argument));
+        }
+        AbstractRecord translationRow = databaseQuery.rowFromArguments(argumentValues, session);
+        databaseQuery.prepareCall(session, translationRow);
+        if (!(databaseQuery.getCall() instanceof DatabaseCall))
+            return null;
+
+        DatabaseCall call = (DatabaseCall) ((DatabaseCall) databaseQuery.getCall()).clone();
+        call.setUsesBinding(true);
+        call.translate(translationRow, null, session);
+        return new EclipseLinkNativeSql(session, call);
+    }
+
+    public String getSql() {
+        return call.getSQLString();
+    }
+
+    /**
+     * Sets values of the statement parameters.
+     *
+     * @param statement  statement containing the SQL of this query
+     * @param firstIndex index of the first parameter of this query in the statement
+     */
+    public void setParameters(PreparedStatement statement, int firstIndex) throws SQLException {
+        DatabasePlatform platform = (DatabasePlatform) session.getPlatform();
+        List parameters = call.getParameters();
+        for (int i = 0; i < parameters.size(); i++) {
+            platform.setParameterValueInDatabaseCall(parameters.get(i), statement, firstIndex + i, session);
+        }
+    }
+}
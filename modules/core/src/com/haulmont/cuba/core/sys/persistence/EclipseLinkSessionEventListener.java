@@ -23,10 +23,12 @@ import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.chile.core.model.MetaProperty;
 import com.haulmont.chile.core.model.Range;
 import com.haulmont.chile.core.model.impl.AbstractInstance;
+import com.haulmont.cuba.core.app.ServerConfig;
 import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.core.entity.SoftDelete;
 import com.haulmont.cuba.core.entity.annotation.EmbeddedParameters;
 import com.haulmont.cuba.core.global.AppBeans;
+import com.haulmont.cuba.core.global.Configuration;
 import com.haulmont.cuba.core.global.Metadata;
 import com.haulmont.cuba.core.global.PersistenceHelper;
 import com.haulmont.cuba.core.sys.AppContext;
@@ -74,6 +76,7 @@ public class EclipseLinkSessionEventListener extends SessionEventAdapter {
 
         Session session = event.getSession();
         setPrintInnerJoinOnClause(session);
+        setJPQLParseCacheSize(session);
 
         List<String> wrongFetchTypes = new ArrayList<>();
         List<Pair<Class, String>> missingEnhancements = new ArrayList<>();
@@ -280,6 +283,14 @@ public class EclipseLinkSessionEventListener extends SessionEventAdapter {
         field.setColumnDefinition("UUID");
     }
 
+    private void setJPQLParseCacheSize(Session session) {
+        // keep compiled queries for all JPQL strings that can be cached by QueryPlanCache
+        int size = AppBeans.get(Configuration.class).getConfig(ServerConfig.class).getQueryPlanCacheSize();
+        if (size > session.getProject().getJPQLParseCacheMaxSize()) {
+            session.getProject().setJPQLParseCacheMaxSize(size);
+        }
+    }
+
     private void setPrintInnerJoinOnClause(Session session) {
         boolean useInnerJoinOnClause = BooleanUtils.toBoolean(
                 AppContext.getProperty("cuba.useInnerJoinOnClause"));
@@ -20,6 +20,7 @@ import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.chile.core.model.MetaProperty;
 import com.haulmont.cuba.core.app.dynamicattributes.DynamicAttributesUtils;
 import com.haulmont.cuba.core.app.events.AttributeChanges;
+import com.haulmont.cuba.core.app.events.EntityBatchChangedEvent;
 import com.haulmont.cuba.core.app.events.EntityChangedEvent;
 import com.haulmont.cuba.core.entity.*;
 import com.haulmont.cuba.core.entity.annotation.PublishEntityChangedEvents;
@@ -79,55 +80,66 @@ public class EntityChangedEventManager {
     public List<EntityChangedEvent> collect(Collection<Entity> entities) {
         List<EntityChangedEvent> list = new ArrayList<>();
         for (Entity entity : entities) {
+            EntityChangedEvent event = collect(entity);
+            if (event != null) {
+                list.add(event);
+            }
+        }
+        return list;
+    }
 
-            PublishingInfo info = infoCache.computeIfAbsent(entity.getClass(), aClass -> {
-                MetaClass metaClass = metadata.getClassNN(entity.getClass());
-                Map attrMap = (Map) metaClass.getAnnotations().get(PublishEntityChangedEvents.class.getName());
-                if (attrMap != null) {
-                    if (!(entity instanceof BaseGenericIdEntity)) {
-                        log.warn("Cannot publish EntityChangedEvent for {} because it is not a BaseGenericIdEntity", entity);
-                    } else {
-                        return new PublishingInfo(
-                                Boolean.TRUE.equals(attrMap.get("created")),
-                                Boolean.TRUE.equals(attrMap.get("updated")),
-                                Boolean.TRUE.equals(attrMap.get("deleted")));
-                    }
+    /**
+     * @return event describing the current changes of the entity or null if the event should not be published
+     */
+    @Nullable
+    public EntityChangedEvent collect(Entity entity) {
+        PublishingInfo info = infoCache.computeIfAbsent(entity.getClass(), aClass -> {
+            MetaClass metaClass = metadata.getClassNN(entity.getClass());
+            Map attrMap = (Map) metaClass.getAnnotations().get(PublishEntityChangedEvents.class.getName());
+            if (attrMap != null) {
+                if (!(entity instanceof BaseGenericIdEntity)) {
+                    log.warn("Cannot publish EntityChangedEvent for {} because it is not a BaseGenericIdEntity", entity);
+                } else {
+                    return new PublishingInfo(
+                            Boolean.TRUE.equals(attrMap.get("created")),
+                            Boolean.TRUE.equals(attrMap.get("updated")),
+                            Boolean.TRUE.equals(attrMap.get("deleted")));
                 }
-                return new PublishingInfo();
-            });
+            }
+            return new PublishingInfo();
+        });
 
+        if (!info.publish)
+            return null;
 
-            if (info.publish) {
-                EntityChangedEvent.Type type = null;
-                AttributeChanges attributeChanges = null;
-                if (info.onCreated && BaseEntityInternalAccess.isNew((BaseGenericIdEntity) entity)) {
-                    type = EntityChangedEvent.Type.CREATED;
-                    attributeChanges = getEntityAttributeChanges(entity, false);
-                } else {
-                    if (info.onUpdated || info.onDeleted) {
-                        AttributeChangeListener changeListener =
-                                (AttributeChangeListener) ((ChangeTracker) entity)._persistence_getPropertyChangeListener();
-                        if (changeListener == null) {
-                            log.warn("Cannot publish EntityChangedEvent for {} because its AttributeChangeListener is null", entity);
-                            continue;
-                        }
-                        if (info.onDeleted && PersistenceImplSupport.isDeleted((BaseGenericIdEntity) entity, changeListener)) {
-                            type = EntityChangedEvent.Type.DELETED;
-                            attributeChanges = getEntityAttributeChanges(entity, true);
-                        } else if (info.onUpdated && changeListener.hasChanges()) {
-                            type = EntityChangedEvent.Type.UPDATED;
-                            attributeChanges = getEntityAttributeChanges(entity, changeListener.getObjectChangeSet());
-                        }
-                    }
+        EntityChangedEvent.Type type = null;
+        AttributeChanges attributeChanges = null;
+        if (info.onCreated && BaseEntityInternalAccess.isNew((BaseGenericIdEntity) entity)) {
+            type = EntityChangedEvent.Type.CREATED;
+            attributeChanges = getEntityAttributeChanges(entity, false);
+        } else {
+            if (info.onUpdated || info.onDeleted) {
+                AttributeChangeListener changeListener =
+                        (AttributeChangeListener) ((ChangeTracker) entity)._persistence_getPropertyChangeListener();
+                if (changeListener == null) {
+                    log.warn("Cannot publish EntityChangedEvent for {} because its AttributeChangeListener is null", entity);
+                    return null;
                 }
-                if (type != null) {
-                    @SuppressWarnings("unchecked")
-                    EntityChangedEvent event = new EntityChangedEvent(this, Id.of(entity), type, attributeChanges);
-                    list.add(event);
+                if (info.onDeleted && PersistenceImplSupport.isDeleted((BaseGenericIdEntity) entity, changeListener)) {
+                    type = EntityChangedEvent.Type.DELETED;
+                    attributeChanges = getEntityAttributeChanges(entity, true);
+                } else if (info.onUpdated && changeListener.hasChanges()) {
+                    type = EntityChangedEvent.Type.UPDATED;
+                    attributeChanges = getEntityAttributeChanges(entity, changeListener.getObjectChangeSet());
                 }
             }
         }
-        return list;
+        if (type == null)
+            return null;
+
+        @SuppressWarnings("unchecked")
+        EntityChangedEvent event = new EntityChangedEvent(this, Id.of(entity), type, attributeChanges);
+        return event;
     }
 
     public void publish(Collection<EntityChangedEvent> events) {
@@ -136,6 +148,20 @@ public class EntityChangedEventManager {
         }
     }
 
+    /**
+     * Publishes a single {@link EntityBatchChangedEvent} for each entity class instead of the given events.
+     */
+    @SuppressWarnings("unchecked")
+    public void publishBatch(Collection<EntityChangedEvent> events) {
+        Map<Class, List<EntityChangedEvent>> eventsByClass = new LinkedHashMap<>();
+        for (EntityChangedEvent event : events) {
+            eventsByClass.computeIfAbsent(event.getEntityId().getEntityClass(), aClass -> new ArrayList<>()).add(event);
+        }
+        for (Map.Entry<Class, List<EntityChangedEvent>> entry : eventsByClass.entrySet()) {
+            eventPublisher.publish(new EntityBatchChangedEvent(this, entry.getKey(), entry.getValue()));
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private AttributeChanges getEntityAttributeChanges(@Nullable Entity entity, ObjectChangeSet changeSet) {
         if (changeSet == null)
@@ -20,6 +20,7 @@ package com.haulmont.cuba.core.sys.persistence;
 import javax.annotation.Nullable;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
 @SuppressWarnings("UnusedDeclaration")
 public class HsqlDbmsFeatures implements DbmsFeatures {
@@ -77,4 +78,15 @@ public class HsqlDbmsFeatures implements DbmsFeatures {
     public boolean supportsLobSortingAndFiltering() {
         return true;
     }
+
+    @Override
+    public String getSelectListParameter(Class<?> javaType) {
+        // HSQLDB requires the type of a parameter in the select list
+        if (UUID.class.equals(javaType)) {
+            return "cast(? as varchar(36))";
+        } else if (Integer.class.equals(javaType)) {
+            return "cast(? as integer)";
+        }
+        return "?";
+    }
 }
\ No newline at end of file
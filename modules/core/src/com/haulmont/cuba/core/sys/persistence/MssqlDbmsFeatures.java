@@ -77,4 +77,10 @@ public class MssqlDbmsFeatures implements DbmsFeatures {
     public boolean supportsLobSortingAndFiltering() {
         return true;
     }
+
+    @Override
+    public int getMaxInListSize() {
+        // a request can have at most 2100 parameters
+        return 2000;
+    }
 }
\ No newline at end of file
@@ -81,4 +81,9 @@ public class MysqlDbmsFeatures implements DbmsFeatures {
     public boolean supportsLobSortingAndFiltering() {
         return true;
     }
+
+    @Override
+    public boolean supportsSubqueryOnModifiedTable() {
+        return false;
+    }
 }
\ No newline at end of file
@@ -82,4 +82,10 @@ public class OracleDbmsFeatures implements DbmsFeatures {
     public boolean supportsLobSortingAndFiltering() {
         return false;
     }
+
+    @Override
+    public int getMaxInListSize() {
+        // ORA-01795: maximum number of expressions in a list is 1000
+        return 1000;
+    }
 }
\ No newline at end of file
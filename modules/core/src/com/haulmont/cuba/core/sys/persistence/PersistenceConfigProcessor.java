@@ -31,6 +31,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.io.Resource;
 
+import javax.annotation.Nullable;
 import javax.persistence.Entity;
 import java.io.*;
 import java.util.*;
@@ -82,11 +83,20 @@ public class PersistenceConfigProcessor {
             addProperties(puElem, properties);
         }
 
+        List<String> additionalStores = Stores.getAdditional();
         for (String name : AppContext.getPropertyNames()) {
-            if (name.startsWith("eclipselink.")) {
+            if (name.startsWith("eclipselink.") && getStoreSuffix(name, additionalStores) == null) {
                 properties.put(name, AppContext.getProperty(name));
             }
         }
+        // store-specific values, e.g. eclipselink.jdbc.batch-writing_db1, override the common ones
+        if (!Stores.isMain(storeName)) {
+            for (String name : AppContext.getPropertyNames()) {
+                if (name.startsWith("eclipselink.") && storeName.equals(getStoreSuffix(name, additionalStores))) {
+                    properties.put(name.substring(0, name.length() - storeName.length() - 1), AppContext.getProperty(name));
+                }
+            }
+        }
 
         if (!Stores.isMain(storeName)) {
             properties.put(PersistenceImplSupport.PROP_NAME, storeName);
@@ -162,6 +172,16 @@ public class PersistenceConfigProcessor {
         }
     }
 
+    @Nullable
+    private String getStoreSuffix(String propertyName, List<String> storeNames) {
+        for (String name : storeNames) {
+            if (propertyName.endsWith("_" + name)) {
+                return name;
+            }
+        }
+        return null;
+    }
+
     private void postProcess(Document document) {
         String postProcessorClassName = AppContext.getProperty("cuba.persistenceXmlPostProcessor");
 
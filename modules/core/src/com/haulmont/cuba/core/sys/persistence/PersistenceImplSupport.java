@@ -26,6 +26,7 @@ import com.haulmont.cuba.core.app.FtsSender;
 import com.haulmont.cuba.core.app.MiddlewareStatisticsAccumulator;
 import com.haulmont.cuba.core.app.events.EntityChangedEvent;
 import com.haulmont.cuba.core.entity.*;
+import com.haulmont.cuba.core.entity.contracts.Id;
 import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.core.listener.AfterCompleteTransactionListener;
 import com.haulmont.cuba.core.listener.BeforeCommitTransactionListener;
@@ -291,6 +292,55 @@ public class PersistenceImplSupport implements ApplicationContextAware {
         makeDetached(entity);
     }
 
+    /**
+     * Processes all instances of the current persistence context the same way as on transaction commit, writes them
+     * to the database and detaches them. Allows to save a large number of instances in one transaction in batches.
+     *
+     * @return events of the written instances, to be published by the caller
+     */
+    public List<EntityChangedEvent> flushBatch(EntityManager entityManager) {
+        UnitOfWork unitOfWork = entityManager.getDelegate().unwrap(UnitOfWork.class);
+        String storeName = getStorageName(unitOfWork);
+        ContainerResourceHolder container = getInstanceContainerResourceHolder(storeName);
+
+        // the instances are detached before commit, so they are processed here instead of beforeCommit
+        traverseEntities(container, new OnCommitEntityVisitor(storeName), false);
+
+        Collection<Entity> instances = container.getAllInstances();
+        for (BeforeCommitTransactionListener transactionListener : beforeCommitTxListeners) {
+            transactionListener.beforeCommit(entityManager, instances);
+        }
+
+        // attribute changes are cleared on flush, so the events are collected before it
+        List<Entity> changedInstances = new ArrayList<>();
+        List<EntityChangedEvent> events = new ArrayList<>();
+        for (Entity instance : instances) {
+            EntityChangedEvent event = entityChangedEventManager.collect(instance);
+            if (event != null) {
+                changedInstances.add(instance);
+                events.add(event);
+            }
+        }
+
+        entityManager.getDelegate().flush();
+
+        for (int i = 0; i < events.size(); i++) {
+            Entity instance = changedInstances.get(i);
+            if (instance instanceof BaseDbGeneratedIdEntity) {
+                // the identifier is assigned by the database on flush
+                EntityChangedEvent event = events.get(i);
+                //noinspection unchecked
+                events.set(i, new EntityChangedEvent(event.getSource(), Id.of(instance), event.getType(),
+                        event.getChanges()));
+            }
+        }
+
+        for (Entity instance : instances) {
+            entityManager.detach(instance);
+        }
+        return events;
+    }
+
     protected void makeDetached(Object instance) {
         if (instance instanceof BaseGenericIdEntity) {
             BaseEntityInternalAccess.setNew((BaseGenericIdEntity) instance, false);
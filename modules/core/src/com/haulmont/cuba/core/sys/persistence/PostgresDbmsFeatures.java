@@ -20,6 +20,7 @@ package com.haulmont.cuba.core.sys.persistence;
 import javax.annotation.Nullable;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
 @SuppressWarnings("UnusedDeclaration")
 public class PostgresDbmsFeatures implements DbmsFeatures {
@@ -77,4 +78,15 @@ public class PostgresDbmsFeatures implements DbmsFeatures {
     public boolean supportsLobSortingAndFiltering() {
         return true;
     }
+
+    @Override
+    public int getMaxInListSize() {
+        // the protocol limits a statement to 32767 parameters
+        return 32000;
+    }
+
+    @Override
+    public String getSelectListParameter(Class<?> javaType) {
+        return UUID.class.equals(javaType) ? "cast(? as uuid)" : "?";
+    }
 }
\ No newline at end of file
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.security.app;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.haulmont.cuba.core.app.ClusterManagerAPI;
+import com.haulmont.cuba.core.global.TimeSource;
+import com.haulmont.cuba.security.app.UserSessions.UserSessionInfo;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Default {@link UserSessionStore} which keeps sessions in memory and shares equal roles, permissions and
+ * constraints between sessions. Sessions of users having the same roles and group refer to the same instances
+ * instead of keeping their own copies, the instances are released when no sessions refer to them. Only immutable
+ * copies are shared, so a session copies the data before modifying it.
+ */
+@Component(UserSessionStore.NAME)
+public class CompactUserSessionStore implements UserSessionStore {
+
+    protected static final int SIZE_ESTIMATION_SAMPLE = 100;
+
+    protected static final long SIZE_ESTIMATION_INTERVAL = 60_000;
+
+    protected ConcurrentMap<UUID, UserSessionInfo> sessions = new ConcurrentHashMap<>();
+
+    protected Interner<Object> interner = Interners.newWeakInterner();
+
+    protected volatile long bytesPerSession;
+
+    protected volatile long bytesPerSessionEstimationTime;
+
+    @Inject
+    protected ClusterManagerAPI clusterManager;
+
+    @Inject
+    protected TimeSource timeSource;
+
+    @Nullable
+    @Override
+    public UserSessionInfo get(UUID id) {
+        return sessions.get(id);
+    }
+
+    @Override
+    public void put(UUID id, UserSessionInfo info) {
+        if (sessions.get(id) != info) {
+            info.getSession().shareSecurityData(interner::intern);
+        }
+        sessions.put(id, info);
+    }
+
+    @Nullable
+    @Override
+    public UserSessionInfo remove(UUID id) {
+        return sessions.remove(id);
+    }
+
+    @Override
+    public Stream<UserSessionInfo> stream() {
+        return sessions.values().stream();
+    }
+
+    @Override
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Serializes a sample of sessions as a single object graph, so the data shared between them is counted once.
+     * The estimation is repeated not more often than once a minute.
+     */
+    @Override
+    public long getBytesPerSession() {
+        long now = timeSource.currentTimeMillis();
+        if (now - bytesPerSessionEstimationTime >= SIZE_ESTIMATION_INTERVAL) {
+            bytesPerSessionEstimationTime = now;
+            bytesPerSession = estimateBytesPerSession();
+        }
+        return bytesPerSession;
+    }
+
+    protected long estimateBytesPerSession() {
+        ArrayList<UserSessionInfo> sample = sessions.values().stream()
+                .limit(SIZE_ESTIMATION_SAMPLE)
+                .collect(Collectors.toCollection(ArrayList::new));
+        if (sample.isEmpty()) {
+            return 0;
+        }
+        return clusterManager.getSerialization().serialize(sample).length / sample.size();
+    }
+}
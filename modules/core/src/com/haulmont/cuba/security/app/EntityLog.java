@@ -77,6 +77,8 @@ public class EntityLog implements EntityLogAPI {
     protected DataManager dataManager;
     @Inject
     protected ServerConfig serverConfig;
+    @Inject
+    protected EntityLogWriter entityLogWriter;
 
     protected volatile boolean loaded;
     protected EntityLogConfig config;
@@ -194,6 +196,10 @@ public class EntityLog implements EntityLogAPI {
     }
 
     protected void saveItem(EntityLogItem item) {
+        if (entityLogWriter.isEnabled() && TransactionSynchronizationManager.isSynchronizationActive()) {
+            saveItemAsync(item);
+            return;
+        }
         String storeName = metadataTools.getStoreName(metadata.getClassNN(item.getEntity()));
         if (item.getDbGeneratedIdEntity() == null) {
             if (Stores.isMain(storeName)) {
@@ -223,6 +229,22 @@ public class EntityLog implements EntityLogAPI {
         }
     }
 
+    protected void saveItemAsync(EntityLogItem item) {
+        // the writer thread has no user session, so assign audit fields now
+        item.setCreatedBy(auditInfoProvider.getCurrentUserLogin());
+        item.setCreateTs(timeSource.currentTimestamp());
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                if (item.getDbGeneratedIdEntity() != null) {
+                    Number id = item.getDbGeneratedIdEntity().getId().getNN();
+                    item.setObjectEntityId(id);
+                }
+                entityLogWriter.write(item);
+            }
+        });
+    }
+
     @Override
     public synchronized boolean isEnabled() {
         return config.getEnabled() && isLoggingForCurrentThread();
@@ -21,6 +21,7 @@ import com.haulmont.cuba.core.config.Property;
 import com.haulmont.cuba.core.config.Source;
 import com.haulmont.cuba.core.config.SourceType;
 import com.haulmont.cuba.core.config.defaults.DefaultBoolean;
+import com.haulmont.cuba.core.config.defaults.DefaultInt;
 
 /**
  * {@link com.haulmont.cuba.security.app.EntityLog} configuration parameters
@@ -35,4 +36,47 @@ public interface EntityLogConfig extends Config {
     @DefaultBoolean(true)
     boolean getEnabled();
     void setEnabled(boolean value);
-}
\ No newline at end of file
+
+    /**
+     * @return Whether the entity log items are written by a background writer after the business transaction
+     * is committed. If false (the default), the items are saved within the business transaction.
+     */
+    @Source(type = SourceType.APP)
+    @Property("cuba.entityLog.asyncEnabled")
+    @DefaultBoolean(false)
+    boolean getAsyncEnabled();
+
+    /**
+     * @return Maximum number of entity log items waiting in the queue of the background writer
+     */
+    @Source(type = SourceType.APP)
+    @Property("cuba.entityLog.asyncQueueCapacity")
+    @DefaultInt(10000)
+    int getAsyncQueueCapacity();
+
+    /**
+     * @return Maximum number of entity log items inserted by the background writer in one transaction
+     */
+    @Source(type = SourceType.APP)
+    @Property("cuba.entityLog.asyncBatchSize")
+    @DefaultInt(100)
+    int getAsyncBatchSize();
+
+    /**
+     * @return Time in milliseconds to wait for a free place in the queue of the background writer.
+     * If the queue is still full after this time, the item is saved by the committing thread.
+     */
+    @Source(type = SourceType.APP)
+    @Property("cuba.entityLog.asyncQueueOfferTimeout")
+    @DefaultInt(100)
+    int getAsyncQueueOfferTimeout();
+
+    /**
+     * @return Path to the local file where queued entity log items are stored until they are written to the
+     * database. Relative paths are resolved against {@code cuba.dataDir}. If not set, queued items are kept in memory
+     * only and can be lost on abnormal termination of the server.
+     */
+    @Source(type = SourceType.APP)
+    @Property("cuba.entityLog.asyncJournalFile")
+    String getAsyncJournalFile();
+}
@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.security.app;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.haulmont.cuba.core.EntityManager;
+import com.haulmont.cuba.core.Persistence;
+import com.haulmont.cuba.core.Transaction;
+import com.haulmont.cuba.core.entity.BaseEntityInternalAccess;
+import com.haulmont.cuba.core.global.Configuration;
+import com.haulmont.cuba.core.global.GlobalConfig;
+import com.haulmont.cuba.core.sys.events.AppContextStartedEvent;
+import com.haulmont.cuba.core.sys.events.AppContextStoppedEvent;
+import com.haulmont.cuba.core.sys.serialization.SerializationSupport;
+import com.haulmont.cuba.security.entity.EntityLogItem;
+import com.haulmont.cuba.security.entity.User;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.inject.Inject;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Writes {@link EntityLogItem}s to the database in a background thread if {@link EntityLogConfig#getAsyncEnabled()}
+ * is true.
+ * <p>
+ * Items are placed to a bounded queue and inserted in batches, each batch in its own transaction, so JDBC batch
+ * writing is used if it is enabled by the {@code eclipselink.jdbc.batch-writing} property. If the queue is full,
+ * the calling thread waits for {@link EntityLogConfig#getAsyncQueueOfferTimeout()} and then saves the item itself.
+ * <p>
+ * If {@link EntityLogConfig#getAsyncJournalFile()} is set, items are also appended to the local journal file before
+ * queueing, which is cleared when the queue is drained and replayed on the next start after abnormal termination.
+ * If some items could not be written, the journal is not cleared until the next start, so they are written again.
+ */
+@Component(EntityLogWriter.NAME)
+public class EntityLogWriter {
+
+    public static final String NAME = "cuba_EntityLogWriter";
+
+    private static final Logger log = LoggerFactory.getLogger(EntityLogWriter.class);
+
+    @Inject
+    protected Persistence persistence;
+    @Inject
+    protected GlobalConfig globalConfig;
+
+    protected EntityLogConfig config;
+
+    protected volatile BlockingQueue<EntityLogItem> queue;
+    protected volatile boolean stopped;
+    protected ExecutorService executor;
+
+    protected ReentrantLock journalLock = new ReentrantLock();
+    /**
+     * Number of items appended to the journal but not yet placed to the queue.
+     */
+    protected AtomicInteger pendingItems = new AtomicInteger();
+    @GuardedBy("journalLock")
+    protected DataOutputStream journal;
+    protected File journalFile;
+    /**
+     * Set when an item could not be written, so the journal is kept to replay the item on the next start.
+     */
+    protected volatile boolean keepJournal;
+
+    protected LongAdder writtenItems = new LongAdder();
+    protected LongAdder writtenBatches = new LongAdder();
+    protected LongAdder latencyNanos = new LongAdder();
+    protected LongAdder fallbackItems = new LongAdder();
+    protected LongAdder failedItems = new LongAdder();
+
+    @Inject
+    public void setConfiguration(Configuration configuration) {
+        config = configuration.getConfig(EntityLogConfig.class);
+    }
+
+    /**
+     * @return true if entity log items should be passed to this writer instead of saving them in the business
+     * transaction
+     */
+    public boolean isEnabled() {
+        return config.getAsyncEnabled() && !stopped;
+    }
+
+    /**
+     * Queues the item for writing. Must be invoked after the business transaction is committed.
+     */
+    public void write(EntityLogItem item) {
+        if (stopped) {
+            writeBatch(Collections.singletonList(item));
+            return;
+        }
+        BlockingQueue<EntityLogItem> queue = getQueue();
+        boolean queued = false;
+        // the journal is not cleared until the item is in the queue, so the lock is not held while waiting
+        pendingItems.incrementAndGet();
+        try {
+            journalLock.lock();
+            try {
+                appendToJournal(item);
+            } finally {
+                journalLock.unlock();
+            }
+            queued = queue.offer(item, config.getAsyncQueueOfferTimeout(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pendingItems.decrementAndGet();
+        }
+        if (!queued) {
+            log.debug("Entity log queue is full, saving item in the calling thread");
+            fallbackItems.increment();
+            writeBatch(Collections.singletonList(item));
+        }
+    }
+
+    /**
+     * @return number of items waiting in the queue
+     */
+    public int getQueueSize() {
+        BlockingQueue<EntityLogItem> queue = this.queue;
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * @return number of items written to the database by the background writer
+     */
+    public long getWrittenItems() {
+        return writtenItems.longValue();
+    }
+
+    /**
+     * @return number of items saved by calling threads because the queue was full
+     */
+    public long getFallbackItems() {
+        return fallbackItems.longValue();
+    }
+
+    /**
+     * @return number of items that could not be written to the database
+     */
+    public long getFailedItems() {
+        return failedItems.longValue();
+    }
+
+    public double getAverageBatchSize() {
+        long batches = writtenBatches.longValue();
+        return batches == 0 ? 0 : (double) writtenItems.longValue() / batches;
+    }
+
+    /**
+     * @return average time in milliseconds of writing a batch to the database
+     */
+    public double getAverageBatchLatency() {
+        long batches = writtenBatches.longValue();
+        return batches == 0 ? 0 : latencyNanos.longValue() / 1_000_000.0 / batches;
+    }
+
+    protected BlockingQueue<EntityLogItem> getQueue() {
+        BlockingQueue<EntityLogItem> queue = this.queue;
+        if (queue == null) {
+            synchronized (this) {
+                queue = this.queue;
+                if (queue == null) {
+                    queue = new ArrayBlockingQueue<>(config.getAsyncQueueCapacity());
+                    this.queue = queue;
+                    executor = Executors.newSingleThreadExecutor(
+                            new ThreadFactoryBuilder().setNameFormat("EntityLogWriter-%d").setDaemon(true).build());
+                    executor.submit(this::processQueue);
+                }
+            }
+        }
+        return queue;
+    }
+
+    protected void processQueue() {
+        int batchSize = Math.max(config.getAsyncBatchSize(), 1);
+        while (!stopped) {
+            try {
+                EntityLogItem first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<EntityLogItem> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                writeBatch(batch);
+                clearJournalIfDrained();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Throwable e) {
+                log.error("Error writing entity log", e);
+            }
+        }
+    }
+
+    protected void writeBatch(List<EntityLogItem> batch) {
+        long start = System.nanoTime();
+        try (Transaction tx = persistence.createTransaction()) {
+            EntityManager em = persistence.getEntityManager();
+            for (EntityLogItem item : batch) {
+                persistItem(em, item);
+            }
+            tx.commit();
+        } catch (RuntimeException e) {
+            // the rolled back transaction has made the items detached, they must be persisted as new again
+            for (EntityLogItem item : batch) {
+                BaseEntityInternalAccess.setNew(item, true);
+                BaseEntityInternalAccess.setDetached(item, false);
+            }
+            if (batch.size() > 1) {
+                log.warn("Error writing batch of {} entity log items, writing them one by one: {}", batch.size(), e.toString());
+                for (EntityLogItem item : batch) {
+                    writeBatch(Collections.singletonList(item));
+                }
+            } else {
+                log.error("Unable to write entity log item {} for {}", batch.get(0).getType(), batch.get(0).getObjectEntityId(), e);
+                failedItems.increment();
+                keepJournal = true;
+            }
+            return;
+        }
+        writtenItems.add(batch.size());
+        writtenBatches.increment();
+        latencyNanos.add(System.nanoTime() - start);
+    }
+
+    protected void persistItem(EntityManager em, EntityLogItem item) {
+        // audit fields are assigned on persist, so restore the values taken when the change was registered
+        String createdBy = item.getCreatedBy();
+        Date createTs = item.getCreateTs();
+        if (item.getUser() != null) {
+            item.setUser(em.getReference(User.class, item.getUser().getId()));
+        }
+        em.persist(item);
+        item.setCreatedBy(createdBy);
+        item.setCreateTs(createTs);
+    }
+
+    @Nullable
+    protected File getJournalFile() {
+        String path = config.getAsyncJournalFile();
+        if (StringUtils.isBlank(path)) {
+            return null;
+        }
+        File file = new File(path);
+        if (!file.isAbsolute()) {
+            file = new File(globalConfig.getDataDir(), path);
+        }
+        return file;
+    }
+
+    @GuardedBy("journalLock")
+    protected void appendToJournal(EntityLogItem item) {
+        if (journalFile == null) {
+            journalFile = getJournalFile();
+            if (journalFile == null) {
+                return;
+            }
+        }
+        try {
+            if (journal == null) {
+                journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journalFile, true)));
+            }
+            byte[] bytes = SerializationSupport.serialize(item);
+            journal.writeInt(bytes.length);
+            journal.write(bytes);
+            journal.flush();
+        } catch (IOException e) {
+            log.error("Unable to append entity log item to journal " + journalFile, e);
+        }
+    }
+
+    protected void clearJournalIfDrained() {
+        if (journalFile == null || keepJournal || !queue.isEmpty()) {
+            return;
+        }
+        journalLock.lock();
+        try {
+            if (queue.isEmpty() && pendingItems.get() == 0 && journal != null) {
+                journal.close();
+                journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journalFile, false)));
+            }
+        } catch (IOException e) {
+            log.error("Unable to clear entity log journal " + journalFile, e);
+        } finally {
+            journalLock.unlock();
+        }
+    }
+
+    @EventListener(AppContextStartedEvent.class)
+    protected void applicationStarted() {
+        File file = getJournalFile();
+        if (file == null || !file.exists() || file.length() == 0) {
+            return;
+        }
+        List<EntityLogItem> items = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                items.add((EntityLogItem) SerializationSupport.deserialize(bytes));
+            }
+        } catch (EOFException e) {
+            log.warn("Entity log journal {} ends with an incomplete item, it is ignored", file);
+        } catch (IOException | RuntimeException e) {
+            log.error("Unable to read entity log journal " + file, e);
+            return;
+        }
+        log.info("Writing {} entity log items from journal {}", items.size(), file);
+        int batchSize = Math.max(config.getAsyncBatchSize(), 1);
+        for (int i = 0; i < items.size(); i += batchSize) {
+            writeBatch(items.subList(i, Math.min(i + batchSize, items.size())));
+        }
+        if (!keepJournal && !file.delete()) {
+            log.warn("Unable to delete entity log journal {}", file);
+        }
+    }
+
+    @EventListener(AppContextStoppedEvent.class)
+    protected void applicationStopped() {
+        stopped = true;
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<EntityLogItem> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            writeBatch(rest);
+        }
+        journalLock.lock();
+        try {
+            if (journal != null) {
+                journal.close();
+                journal = null;
+                // keep the journal to replay it on the next start if some items have not been written
+                if (!keepJournal && !journalFile.delete()) {
+                    log.warn("Unable to delete entity log journal {}", journalFile);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Unable to close entity log journal " + journalFile, e);
+        } finally {
+            journalLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.security.app;
+
+import com.haulmont.cuba.security.app.UserSessions.UserSessionInfo;
+
+import javax.annotation.Nullable;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Storage of user sessions used by {@link UserSessions}. Implementations can reduce memory consumption,
+ * for example by sharing data between sessions.
+ * <p>
+ * To use a custom implementation, register a bean with the {@link #NAME} name in the application's spring.xml.
+ */
+public interface UserSessionStore {
+
+    String NAME = "cuba_UserSessionStore";
+
+    /**
+     * @return session info or null if not found
+     */
+    @Nullable
+    UserSessionInfo get(UUID id);
+
+    /**
+     * Adds a session or replaces an existing one with the same id.
+     */
+    void put(UUID id, UserSessionInfo info);
+
+    /**
+     * @return removed session info or null if not found
+     */
+    @Nullable
+    UserSessionInfo remove(UUID id);
+
+    /**
+     * @return stream of all stored sessions
+     */
+    Stream<UserSessionInfo> stream();
+
+    /**
+     * @return number of stored sessions
+     */
+    int size();
+
+    /**
+     * @return estimated number of bytes occupied by a session on average, taking into account data shared
+     * between sessions
+     */
+    long getBytesPerSession();
+}
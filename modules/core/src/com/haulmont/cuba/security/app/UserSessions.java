@@ -23,6 +23,7 @@ import com.haulmont.cuba.core.global.Configuration;
 import com.haulmont.cuba.core.global.Metadata;
 import com.haulmont.cuba.core.global.TimeSource;
 import com.haulmont.cuba.core.sys.AppContext;
+import com.haulmont.cuba.core.sys.serialization.Serialization;
 import com.haulmont.cuba.security.entity.SessionAction;
 import com.haulmont.cuba.security.entity.User;
 import com.haulmont.cuba.security.entity.UserSessionEntity;
@@ -36,7 +37,6 @@ import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.io.*;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -86,7 +86,8 @@ public class UserSessions implements UserSessionsAPI {
 
     private static final Logger log = LoggerFactory.getLogger(UserSessions.class);
 
-    protected Map<UUID, UserSessionInfo> cache = new ConcurrentHashMap<>();
+    @Inject
+    protected UserSessionStore store;
 
     protected volatile int expirationTimeout = 1800;
 
@@ -151,6 +152,16 @@ public class UserSessions implements UserSessionsAPI {
                     public void setState(byte[] state) {
                         receiveClusterState(state);
                     }
+
+                    @Override
+                    public void getState(OutputStream output) throws IOException {
+                        sendClusterState(output);
+                    }
+
+                    @Override
+                    public void setState(InputStream input) throws IOException {
+                        receiveClusterState(input);
+                    }
                 }
         );
     }
@@ -182,12 +193,51 @@ public class UserSessions implements UserSessionsAPI {
                 UserSessionInfo usi = (UserSessionInfo) ois.readObject();
                 receiveClusterMessage(usi);
             }
-            log.debug("Received user sessions cache: {} sessions, {} bytes. Cache now contains {} sessions", size, state.length, cache.size());
+            log.debug("Received user sessions cache: {} sessions, {} bytes. Cache now contains {} sessions", size, state.length, store.size());
         } catch (IOException | ClassNotFoundException e) {
             log.error("Error receiving state", e);
         }
     }
 
+    /**
+     * Reads sessions written by {@link #sendClusterState(OutputStream)} one by one.
+     */
+    protected void receiveClusterState(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        Serialization serialization = clusterManager.getSerialization();
+        int count = 0;
+        long bytes = 0;
+        int length;
+        while ((length = in.readInt()) >= 0) {
+            byte[] data = new byte[length];
+            in.readFully(data);
+            receiveClusterMessage((UserSessionInfo) serialization.deserialize(data));
+            count++;
+            bytes += length;
+        }
+        log.debug("Received user sessions cache: {} sessions, {} bytes. Cache now contains {} sessions", count, bytes, store.size());
+    }
+
+    /**
+     * Writes sessions to the stream one by one, so the whole state is never kept in memory.
+     */
+    protected void sendClusterState(OutputStream output) throws IOException {
+        DataOutputStream out = new DataOutputStream(output);
+        Serialization serialization = clusterManager.getSerialization();
+        int count = 0;
+        long bytes = 0;
+        for (UserSessionInfo usi : (Iterable<UserSessionInfo>) getSessionInfoStream()::iterator) {
+            byte[] data = serialization.serialize(usi);
+            out.writeInt(data.length);
+            out.write(data);
+            count++;
+            bytes += data.length;
+        }
+        out.writeInt(-1);
+        out.flush();
+        log.debug("Sending user sessions cache to cluster: {} sessions, {} bytes", count, bytes);
+    }
+
     protected byte[] sendClusterState() {
         List<UserSessionInfo> infoList = getSessionInfoStream().collect(Collectors.toList());
         if (infoList.isEmpty())
@@ -216,7 +266,7 @@ public class UserSessions implements UserSessionsAPI {
             if (serverConfig.getSyncNewUserSessionReplication())
                 clusterManager.sendSync(usi);
             else
-                clusterManager.send(usi);
+                clusterManager.send(usi, usi.session.getId());
         }
     }
 
@@ -227,7 +277,7 @@ public class UserSessions implements UserSessionsAPI {
             log.debug("Removed session: {}", usi);
             if (!session.isSystem()) {
                 usi.lastUsedTs = 0;
-                clusterManager.send(usi);
+                clusterManager.send(usi, usi.session.getId());
             }
         }
     }
@@ -292,7 +342,7 @@ public class UserSessions implements UserSessionsAPI {
                 if (propagate && !usi.session.isSystem()) {
                     if (now > (usi.lastSentTs + toMillis(sendTimeout))) {
                         usi.lastSentTs = now;
-                        clusterManager.send(usi);
+                        clusterManager.send(usi, usi.session.getId());
                     }
                 }
             }
@@ -309,7 +359,7 @@ public class UserSessions implements UserSessionsAPI {
             usi.lastUsedTs = now;
             usi.lastSentTs = now;
             putSessionInfo(id, usi);
-            clusterManager.send(usi);
+            clusterManager.send(usi, usi.session.getId());
         }
     }
 
@@ -372,7 +422,7 @@ public class UserSessions implements UserSessionsAPI {
             log.debug("Killed session: {}", usi);
 
             usi.lastUsedTs = 0;
-            clusterManager.send(usi);
+            clusterManager.send(usi, usi.session.getId());
         }
     }
 
@@ -407,25 +457,30 @@ public class UserSessions implements UserSessionsAPI {
                     removeSessionInfo(usi.session.getId());
 
                     usi.lastUsedTs = 0;
-                    clusterManager.send(usi);
+                    clusterManager.send(usi, usi.session.getId());
                 });
     }
 
     protected UserSessionInfo getSessionInfo(UUID id) {
-        return cache.get(id);
+        return store.get(id);
     }
 
     protected void putSessionInfo(UUID id, UserSessionInfo info) {
-        cache.put(id, info);
+        store.put(id, info);
     }
 
     @Nullable
     protected UserSessionInfo removeSessionInfo(UUID id) {
-        return cache.remove(id);
+        return store.remove(id);
     }
 
     protected Stream<UserSessionInfo> getSessionInfoStream() {
-        return cache.values().stream();
+        return store.stream();
+    }
+
+    @Override
+    public long getBytesPerSession() {
+        return store.getBytesPerSession();
     }
 
     protected long toMillis(int seconds) {
@@ -184,4 +184,10 @@ public interface UserSessionsAPI extends UserSessionFinder {
      * Evict timed out sessions from the cache.
      */
     void processEviction();
+
+    /**
+     * @return estimated number of bytes occupied by a session in the cache on average
+     * @see UserSessionStore#getBytesPerSession()
+     */
+    long getBytesPerSession();
 }
\ No newline at end of file
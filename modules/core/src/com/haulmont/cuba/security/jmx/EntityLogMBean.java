@@ -36,4 +36,31 @@ public interface EntityLogMBean {
      * The configuration will be recreated from the database on next lifecycle event.
      */
     void invalidateCache();
+
+    /**
+     * @return number of items waiting in the queue of the asynchronous writer
+     */
+    int getAsyncQueueSize();
+
+    /**
+     * @return number of items written by the asynchronous writer
+     */
+    long getAsyncWrittenItems();
+
+    /**
+     * @return number of items saved by committing threads because the queue of the asynchronous writer was full
+     */
+    long getAsyncFallbackItems();
+
+    /**
+     * @return number of items the asynchronous writer failed to write
+     */
+    long getAsyncFailedItems();
+
+    double getAsyncAverageBatchSize();
+
+    /**
+     * @return average time in milliseconds of writing a batch by the asynchronous writer
+     */
+    double getAsyncAverageBatchLatency();
 }
@@ -56,6 +56,11 @@ public class UserSessions implements UserSessionsMBean {
         return (int) userSessions.getUserSessionsStream().count();
     }
 
+    @Override
+    public long getBytesPerSession() {
+        return userSessions.getBytesPerSession();
+    }
+
     @Override
     public String printSessions() {
         return userSessions.getUserSessionEntitiesStream()
@@ -52,6 +52,11 @@ public interface UserSessionsMBean {
 
     int getCount();
 
+    /**
+     * @return estimated number of bytes occupied by a session on average
+     */
+    long getBytesPerSession();
+
     String printSessions();
 
     void processEviction();
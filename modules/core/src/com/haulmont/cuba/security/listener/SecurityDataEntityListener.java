@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.security.listener;
+
+import com.haulmont.cuba.core.entity.Entity;
+import com.haulmont.cuba.core.listener.AfterDeleteEntityListener;
+import com.haulmont.cuba.core.listener.AfterInsertEntityListener;
+import com.haulmont.cuba.core.listener.AfterUpdateEntityListener;
+import com.haulmont.cuba.security.sys.UserSessionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.inject.Inject;
+import java.sql.Connection;
+
+/**
+ * Discards security data compiled by {@link UserSessionManager} when roles, groups, permissions, constraints or
+ * session attributes are changed. The data is discarded immediately and once more after the transaction completion,
+ * so sessions created concurrently with the transaction don't keep using the old data.
+ */
+@Component("cuba_SecurityDataEntityListener")
+public class SecurityDataEntityListener implements
+        AfterInsertEntityListener<Entity>,
+        AfterUpdateEntityListener<Entity>,
+        AfterDeleteEntityListener<Entity> {
+
+    @Inject
+    protected UserSessionManager userSessionManager;
+
+    @Override
+    public void onAfterInsert(Entity entity, Connection connection) {
+        invalidate();
+    }
+
+    @Override
+    public void onAfterUpdate(Entity entity, Connection connection) {
+        invalidate();
+    }
+
+    @Override
+    public void onAfterDelete(Entity entity, Connection connection) {
+        invalidate();
+    }
+
+    protected void invalidate() {
+        userSessionManager.invalidateCompiledSecurityData(false);
+        if (TransactionSynchronizationManager.isSynchronizationActive()
+                && !TransactionSynchronizationManager.hasResource(this)) {
+            TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(SecurityDataEntityListener.this);
+                    userSessionManager.invalidateCompiledSecurityData(true);
+                }
+            });
+        } else if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            userSessionManager.invalidateCompiledSecurityData(true);
+        }
+    }
+}
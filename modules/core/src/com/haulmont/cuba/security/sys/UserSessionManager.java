@@ -18,28 +18,36 @@ package com.haulmont.cuba.security.sys;
 
 import com.haulmont.chile.core.datatypes.Datatype;
 import com.haulmont.chile.core.datatypes.Datatypes;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.cuba.core.EntityManager;
 import com.haulmont.cuba.core.Persistence;
 import com.haulmont.cuba.core.Transaction;
 import com.haulmont.cuba.core.TypedQuery;
+import com.haulmont.cuba.core.app.ClusterListenerAdapter;
+import com.haulmont.cuba.core.app.ClusterManagerAPI;
+import com.haulmont.cuba.core.app.ServerConfig;
 import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.core.sys.DefaultPermissionValuesConfig;
 import com.haulmont.cuba.security.app.UserSessionsAPI;
 import com.haulmont.cuba.security.entity.*;
+import com.haulmont.cuba.security.global.ConstraintData;
 import com.haulmont.cuba.security.global.NoUserSessionException;
 import com.haulmont.cuba.security.global.UserSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import java.io.Serializable;
 import java.text.ParseException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Locale;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * INTERNAL.
@@ -74,6 +82,40 @@ public class UserSessionManager {
     @Inject
     protected DefaultPermissionValuesConfig defaultPermissionValuesConfig;
 
+    @Inject
+    protected ServerConfig serverConfig;
+
+    @Inject
+    protected ClusterManagerAPI clusterManager;
+
+    /**
+     * Incremented on any change of security data. Cache keys include the version, so results compiled
+     * concurrently with a change are never used afterwards.
+     */
+    protected final AtomicLong securityDataVersion = new AtomicLong();
+
+    protected Cache<CompiledDataKey, Map<String, Integer>[]> permissionsCache;
+
+    protected Cache<CompiledDataKey, Map<String, List<ConstraintData>>> constraintsCache;
+
+    protected Cache<CompiledDataKey, Map<String, Serializable>> sessionAttributesCache;
+
+    @PostConstruct
+    protected void init() {
+        int cacheSize = serverConfig.getCompiledSecurityDataCacheSize();
+        permissionsCache = CacheBuilder.newBuilder().maximumSize(cacheSize).build();
+        constraintsCache = CacheBuilder.newBuilder().maximumSize(cacheSize).build();
+        sessionAttributesCache = CacheBuilder.newBuilder().maximumSize(cacheSize).build();
+
+        clusterManager.addListener(InvalidateCompiledSecurityDataMsg.class,
+                new ClusterListenerAdapter<InvalidateCompiledSecurityDataMsg>() {
+                    @Override
+                    public void receive(InvalidateCompiledSecurityDataMsg message) {
+                        invalidateCompiledSecurityData(false);
+                    }
+                });
+    }
+
     /**
      * Create a new session and fill it with security data. Must be called inside a transaction.
      * @param user      user instance
@@ -133,10 +175,33 @@ public class UserSessionManager {
     }
 
     protected void compilePermissions(UserSession session, List<Role> roles) {
+        Set<UUID> roleIds = new HashSet<>();
+        for (Role role : roles) {
+            roleIds.add(role.getId());
+        }
+        CompiledDataKey key = new CompiledDataKey(securityDataVersion.get(), roleIds);
+        Map<String, Integer>[] permissions = permissionsCache.getIfPresent(key);
+        if (permissions == null) {
+            permissions = buildPermissions(roles);
+            permissionsCache.put(key, permissions);
+        }
+        session.setSharedPermissions(permissions);
+    }
+
+    /**
+     * Builds permission values by target, indexed by {@link PermissionType} ordinal. The result is immutable
+     * as it is shared between sessions.
+     */
+    protected Map<String, Integer>[] buildPermissions(List<Role> roles) {
+        //noinspection unchecked
+        Map<String, Integer>[] permissions = new Map[PermissionType.values().length];
+        for (int i = 0; i < permissions.length; i++) {
+            permissions[i] = new HashMap<>();
+        }
         for (Role role : roles) {
             if (RoleType.SUPER.equals(role.getType())) {
                 // Don't waste memory, as the user with SUPER role has all permissions.
-                return;
+                return toImmutable(permissions);
             }
         }
         for (Role role : roles) {
@@ -144,7 +209,7 @@ public class UserSessionManager {
                 PermissionType type = permission.getType();
                 if (type != null && permission.getValue() != null) {
                     try {
-                        session.addPermission(type,
+                        addPermission(permissions, type,
                                 permission.getTarget(), convertToExtendedEntityTarget(permission), permission.getValue());
                     } catch (Exception ignored) {}
                 }
@@ -152,11 +217,30 @@ public class UserSessionManager {
         }
 
         defaultPermissionValuesConfig.getDefaultPermissionValues().forEach((target, permission) -> {
-            if (session.getPermissionValue(permission.getType(), permission.getTarget()) == null) {
-                session.addPermission(permission.getType(), permission.getTarget(),
+            if (permissions[permission.getType().ordinal()].get(permission.getTarget()) == null) {
+                addPermission(permissions, permission.getType(), permission.getTarget(),
                         convertToExtendedEntityTarget(permission), permission.getValue());
             }
         });
+        return toImmutable(permissions);
+    }
+
+    protected Map<String, Integer>[] toImmutable(Map<String, Integer>[] permissions) {
+        for (int i = 0; i < permissions.length; i++) {
+            permissions[i] = ImmutableMap.copyOf(permissions[i]);
+        }
+        return permissions;
+    }
+
+    protected void addPermission(Map<String, Integer>[] permissions, PermissionType type,
+                                 String target, @Nullable String extTarget, int value) {
+        Map<String, Integer> map = permissions[type.ordinal()];
+        Integer currentValue = map.get(target);
+        if (currentValue == null || currentValue < value) {
+            map.put(target, value);
+            if (extTarget != null)
+                map.put(extTarget, value);
+        }
     }
 
     protected String convertToExtendedEntityTarget(Permission permission) {
@@ -176,6 +260,20 @@ public class UserSessionManager {
     }
 
     protected void compileConstraints(UserSession session, Group group) {
+        CompiledDataKey key = new CompiledDataKey(securityDataVersion.get(), group.getId());
+        Map<String, List<ConstraintData>> constraints = constraintsCache.getIfPresent(key);
+        if (constraints == null) {
+            constraints = buildConstraints(group);
+            constraintsCache.put(key, constraints);
+        }
+        session.setSharedConstraints(constraints);
+    }
+
+    /**
+     * Builds constraints of the group and its parents by entity name. The result is immutable as it is shared
+     * between sessions.
+     */
+    protected Map<String, List<ConstraintData>> buildConstraints(Group group) {
         EntityManager em = persistence.getEntityManager();
         TypedQuery<Constraint> q = em.createQuery("select c from sec$GroupHierarchy h join h.parent.constraints c " +
                 "where h.group.id = ?1", Constraint.class);
@@ -183,14 +281,36 @@ public class UserSessionManager {
         List<Constraint> constraints = q.getResultList();
         List<Constraint> list = new ArrayList<>(constraints);
         list.addAll(group.getConstraints());
+
+        Map<String, List<ConstraintData>> result = new HashMap<>();
         for (Constraint constraint : list) {
             if (Boolean.TRUE.equals(constraint.getIsActive())) {
-                session.addConstraint(constraint);
+                result.computeIfAbsent(constraint.getEntityName(), k -> new ArrayList<>())
+                        .add(new ConstraintData(constraint));
             }
         }
+        ImmutableMap.Builder<String, List<ConstraintData>> builder = ImmutableMap.builder();
+        result.forEach((entityName, constraintDataList) ->
+                builder.put(entityName, ImmutableList.copyOf(constraintDataList)));
+        return builder.build();
     }
 
     protected void compileSessionAttributes(UserSession session, Group group) {
+        CompiledDataKey key = new CompiledDataKey(securityDataVersion.get(), group.getId());
+        Map<String, Serializable> attributes = sessionAttributesCache.getIfPresent(key);
+        if (attributes == null) {
+            attributes = buildSessionAttributes(group);
+            sessionAttributesCache.put(key, attributes);
+        }
+        for (Map.Entry<String, Serializable> entry : attributes.entrySet()) {
+            session.setAttribute(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Builds session attribute values defined in the group and its parents.
+     */
+    protected Map<String, Serializable> buildSessionAttributes(Group group) {
         List<SessionAttribute> list = new ArrayList<>(group.getSessionAttributes());
 
         EntityManager em = persistence.getEntityManager();
@@ -200,21 +320,41 @@ public class UserSessionManager {
         List<SessionAttribute> attributes = q.getResultList();
         list.addAll(attributes);
 
+        Map<String, Serializable> result = new LinkedHashMap<>();
+        Set<String> names = new HashSet<>();
         for (SessionAttribute attribute : list) {
             Datatype datatype = Datatypes.get(attribute.getDatatype());
             try {
-                if (session.getAttributeNames().contains(attribute.getName())) {
+                if (!names.add(attribute.getName())) {
                     log.warn("Duplicate definition of '{}' session attribute in the group hierarchy", attribute.getName());
                 }
                 Serializable value = (Serializable) datatype.parse(attribute.getStringValue());
                 if (value != null)
-                    session.setAttribute(attribute.getName(), value);
+                    result.put(attribute.getName(), value);
                 else
-                    session.removeAttribute(attribute.getName());
+                    result.remove(attribute.getName());
             } catch (ParseException e) {
                 throw new RuntimeException("Unable to set session attribute " + attribute.getName(), e);
             }
         }
+        return result;
+    }
+
+    /**
+     * Discards compiled permissions, constraints and session attributes cached for new sessions.
+     * Invoked when roles, groups or their security settings are changed.
+     *
+     * @param sendInCluster whether to discard cached data on other cluster nodes
+     */
+    public void invalidateCompiledSecurityData(boolean sendInCluster) {
+        securityDataVersion.incrementAndGet();
+        permissionsCache.invalidateAll();
+        constraintsCache.invalidateAll();
+        sessionAttributesCache.invalidateAll();
+        if (sendInCluster) {
+            // other nodes must not create sessions with obsolete permissions after the change is committed
+            clusterManager.sendSync(new InvalidateCompiledSecurityDataMsg());
+        }
     }
 
     /**
@@ -296,4 +436,31 @@ public class UserSessionManager {
             }
         }
     }
+
+    protected static class CompiledDataKey {
+        protected final long version;
+        protected final Object id;
+
+        public CompiledDataKey(long version, Object id) {
+            this.version = version;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            CompiledDataKey that = (CompiledDataKey) o;
+            return version == that.version && id.equals(that.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(version) + id.hashCode();
+        }
+    }
+
+    protected static class InvalidateCompiledSecurityDataMsg implements Serializable {
+        private static final long serialVersionUID = 5431237918457202638L;
+    }
 }
@@ -16,6 +16,7 @@
  */
 package com.haulmont.cuba.core;
 
+import com.haulmont.cuba.core.app.ConfigStorageAPI;
 import com.haulmont.cuba.core.config.TestBeanToInjectConfig;
 import com.haulmont.cuba.core.config.TestConfig;
 import com.haulmont.cuba.core.entity.Config;
@@ -217,6 +218,37 @@ public class ConfigProviderTest {
         assertEquals("new_value", value);
     }
 
+    @Test
+    public void testCachedValues() throws Exception {
+        TestConfig config = AppBeans.get(Configuration.class).getConfig(TestConfig.class);
+        assertSame(config, AppBeans.get(Configuration.class).getConfig(TestConfig.class));
+
+        assertEquals(Integer.valueOf(100), config.getIntegerPropDef());
+
+        AppContext.setProperty("cuba.test.integerPropDef", "200");
+        assertEquals(Integer.valueOf(200), config.getIntegerPropDef());
+
+        AppContext.setProperty("cuba.test.integerPropDef", null);
+        assertEquals(Integer.valueOf(100), config.getIntegerPropDef());
+
+        config.setDatabaseProp("db_value");
+        assertEquals("db_value", config.getDatabaseProp());
+
+        Transaction tx = cont.persistence().createTransaction();
+        try {
+            cont.persistence().getEntityManager()
+                    .createQuery("update sys$Config c set c.value = 'db_value_1' where c.name = 'cuba.test.databaseProp'")
+                    .executeUpdate();
+            tx.commit();
+        } finally {
+            tx.end();
+        }
+        assertEquals("db_value", config.getDatabaseProp());
+
+        AppBeans.get(ConfigStorageAPI.class).clearCache();
+        assertEquals("db_value_1", config.getDatabaseProp());
+    }
+
     @Test
     public void testNotFoundGetterForProperty() {
         try {
@@ -119,7 +119,7 @@ public class MessagesTest {
         String msg = messages.getMessage(MpTestNestedObj.class, "key0");
         assertEquals("Message0", msg);
 
-        assertEquals(4,
+        assertEquals(5,
                 Iterables.size(Iterables.filter(appender.getMessages(), new Predicate<String>() {
                     @Override
                     public boolean apply(@Nullable String input) {
@@ -127,7 +127,7 @@ public class MessagesTest {
                     }
                 }))
         );
-        assertEquals(4,
+        assertEquals(5,
                 Iterables.size(Iterables.filter(appender.getMessages(), new Predicate<String>() {
                     @Override
                     public boolean apply(@Nullable String input) {
@@ -154,7 +154,7 @@ public class MessagesTest {
 
         String msg = messages.getMessage(MpTestNestedObj.class, "key0", Locale.forLanguageTag("fr"));
         assertEquals("Message0 in French", msg);
-        assertEquals(6, getSearchMessagesCount());
+        assertEquals(12, getSearchMessagesCount());
 
         appender.getMessages().clear();
 
@@ -163,6 +163,40 @@ public class MessagesTest {
         assertEquals(0, getSearchMessagesCount());
     }
 
+    @Test
+    public void testCachingCompiledPack() {
+        Messages messages = prepareCachingTest();
+
+        String msg = messages.getMessage(MpTestNestedObj.class, "key0");
+        assertEquals("Message0", msg);
+
+        appender.getMessages().clear();
+
+        // messages of parent and included packs are compiled with the pack
+        msg = messages.getMessage(MpTestNestedObj.class, "key1");
+        assertEquals("Message1", msg);
+
+        msg = messages.getMessage(MpTestNestedObj.class, "includedMsg");
+        assertEquals("Included Message", msg);
+
+        msg = messages.getMessage(MpTestNestedObj.class, "non-existing-message");
+        assertEquals("non-existing-message", msg);
+
+        assertEquals(0, getSearchMessagesCount());
+    }
+
+    @Test
+    public void testMutualIncludes() {
+        Messages messages = prepareCachingTest();
+
+        String msg = messages.getMessage("com.haulmont.cuba.core.mp_test.cycle_a", "bKey");
+        assertEquals("B", msg);
+
+        // cycle_b compiled as an include of cycle_a lacks the messages of cycle_a, so it is compiled again
+        msg = messages.getMessage("com.haulmont.cuba.core.mp_test.cycle_b", "aKey");
+        assertEquals("A", msg);
+    }
+
     private Messages prepareCachingTest() {
         Messages messages = AppBeans.get(Messages.class);
         messages.clearCache();
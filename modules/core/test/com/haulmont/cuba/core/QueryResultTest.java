@@ -20,13 +20,17 @@ package com.haulmont.cuba.core;
 import com.haulmont.bali.db.MapListHandler;
 import com.haulmont.bali.db.QueryRunner;
 import com.haulmont.cuba.core.app.DataService;
+import com.haulmont.cuba.core.app.queryresults.QueryResultsManagerAPI;
 import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.core.entity.QueryResult;
 import com.haulmont.cuba.core.global.AppBeans;
 import com.haulmont.cuba.core.global.LoadContext;
+import com.haulmont.cuba.core.global.Metadata;
 import com.haulmont.cuba.core.global.View;
 import com.haulmont.cuba.security.entity.Group;
 import com.haulmont.cuba.security.entity.User;
+import com.haulmont.cuba.testmodel.primary_keys.CompositeKeyEntity;
+import com.haulmont.cuba.testmodel.primary_keys.EntityKey;
 import com.haulmont.cuba.testsupport.TestContainer;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.After;
@@ -216,6 +220,119 @@ public class QueryResultTest {
 
         entities = dataService.loadList(context);
         assertEquals(5, entities.size());
+
+        List<Map<String, Object>> queryResults = getQueryResults();
+        assertEquals(10, queryResults.size());
+    }
+
+    @Test
+    public void testSoftDeletedRows() throws SQLException {
+        Transaction tx = cont.persistence().createTransaction();
+        try {
+            EntityManager em = cont.persistence().getEntityManager();
+            for (String login : Arrays.asList("user00", "user01", "user20")) {
+                em.remove(em.createQuery("select u from sec$User u where u.login = :login", User.class)
+                        .setParameter("login", login)
+                        .getSingleResult());
+            }
+            tx.commit();
+        } finally {
+            tx.end();
+        }
+
+        DataService dataService = AppBeans.get(DataService.class);
+        LoadContext.Query prevQuery = new LoadContext.Query("select u from sec$User u where u.name like :name")
+                .setParameter("name", "A-%");
+
+        LoadContext context = new LoadContext(User.class).setView(View.LOCAL);
+        context.setQueryString("select u from sec$User u where u.email like :email").setParameter("email", "%aaa.com");
+        context.getPrevQueries().add(prevQuery);
+        context.setQueryKey(201);
+
+        List<Entity> entities = dataService.loadList(context);
+        assertEquals(8, entities.size());
+        assertEquals(17, getQueryResults().size());
+
+        context = new LoadContext(User.class).setView(View.LOCAL).setSoftDeletion(false);
+        context.setQueryString("select u from sec$User u where u.email like :email").setParameter("email", "%aaa.com");
+        context.getPrevQueries().add(prevQuery);
+        context.setQueryKey(202);
+
+        entities = dataService.loadList(context);
+        assertEquals(10, entities.size());
+        assertEquals(17 + 20, getQueryResults().size());
+    }
+
+    @Test
+    public void testQueryParameters() throws SQLException {
+        DataService dataService = AppBeans.get(DataService.class);
+        LoadContext context;
+        List<Entity> entities;
+
+        // collection parameter expanded to several positional parameters
+        LoadContext.Query query1 = new LoadContext.Query(
+                "select u from sec$User u where u.email like :email or u.login in :logins")
+                .setParameter("email", "%aaa.com")
+                .setParameter("logins", Arrays.asList("user20", "user21"));
+
+        // parameter used twice
+        LoadContext.Query query2 = new LoadContext.Query(
+                "select u from sec$User u where u.name like :name and u.firstName not like :name")
+                .setParameter("name", "A-%");
+
+        context = new LoadContext(User.class).setView(View.LOCAL);
+        context.setQuery(query2.copy());
+        context.getPrevQueries().add(query1);
+        context.setQueryKey(211);
+
+        entities = dataService.loadList(context);
+        assertEquals(12, entities.size());
+        assertEquals(22, getQueryResults().size());
+
+        context = new LoadContext(User.class).setView(View.LOCAL);
+        context.setQueryString("select u from sec$User u where u.firstName like :firstName and u.login <> :login")
+                .setParameter("firstName", "C-%")
+                .setParameter("login", "user00");
+        context.getPrevQueries().add(query1);
+        context.getPrevQueries().add(query2);
+        context.setQueryKey(211);
+
+        entities = dataService.loadList(context);
+        assertEquals(6, entities.size());
+        assertEquals(12, getQueryResults().size());
+    }
+
+    @Test
+    public void testCompositeKey() throws SQLException {
+        Metadata metadata = cont.metadata();
+        EntityKey entityKey = metadata.create(EntityKey.class);
+        entityKey.setTenant(1);
+        entityKey.setEntityId(10L);
+        CompositeKeyEntity entity = metadata.create(CompositeKeyEntity.class);
+        entity.setId(entityKey);
+        entity.setName("foo");
+
+        Transaction tx = cont.persistence().createTransaction();
+        try {
+            cont.persistence().getEntityManager().persist(entity);
+            tx.commit();
+        } finally {
+            tx.end();
+        }
+
+        try {
+            LoadContext context = new LoadContext(CompositeKeyEntity.class);
+            context.setQueryString("select e from test$CompositeKeyEntity e where e.name = :name")
+                    .setParameter("name", "foo");
+            context.getPrevQueries().add(new LoadContext.Query("select e from test$CompositeKeyEntity e"));
+            context.setQueryKey(221);
+
+            // SYS_QUERY_RESULT cannot store composite keys
+            AppBeans.get(QueryResultsManagerAPI.class).savePreviousQueryResults(context);
+            assertEquals(0, getQueryResults().size());
+        } finally {
+            new QueryRunner(cont.persistence().getDataSource()).update("delete from TEST_COMPOSITE_KEY");
+        }
     }
 
     private List<Map<String, Object>> getQueryResults() throws SQLException {
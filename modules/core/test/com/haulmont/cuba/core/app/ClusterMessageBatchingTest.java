@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.app;
+
+import org.jgroups.JChannel;
+import org.jgroups.Message;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ClusterMessageBatchingTest {
+
+    private TestClusterManager clusterManager;
+
+    @After
+    public void tearDown() {
+        if (clusterManager != null) {
+            clusterManager.batchScheduler.shutdownNow();
+            clusterManager.executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        clusterManager = new TestClusterManager(60_000, 100, 0);
+
+        clusterManager.send("a1", "a");
+        clusterManager.send("b1", "b");
+        clusterManager.send("a2", "a");
+        clusterManager.send(1L, "a");
+        clusterManager.send("c");
+        clusterManager.send("c");
+        clusterManager.flushBatch(true);
+
+        assertEquals(1, clusterManager.sent.size());
+        ClusterManager.MessageBatch batch = (ClusterManager.MessageBatch) clusterManager.sent.get(0);
+        // replacing message goes to the end, messages of another class or without a key are not replaced
+        assertEquals(Arrays.asList("b1", "a2", 1L, "c", "c"), batch.messages);
+        assertEquals(1, clusterManager.batchStat.coalescedMessages.longValue());
+    }
+
+    @Test
+    public void testFlushOnMaxSize() throws Exception {
+        clusterManager = new TestClusterManager(60_000, 3, 1);
+
+        clusterManager.send("a");
+        clusterManager.send("b");
+        assertTrue(clusterManager.sent.isEmpty());
+        clusterManager.send("c");
+
+        assertTrue(clusterManager.latch.await(10, TimeUnit.SECONDS));
+        ClusterManager.MessageBatch batch = (ClusterManager.MessageBatch) clusterManager.sent.get(0);
+        assertEquals(Arrays.asList("a", "b", "c"), batch.messages);
+    }
+
+    @Test
+    public void testFlushOnTimeout() throws Exception {
+        clusterManager = new TestClusterManager(50, 100, 1);
+
+        clusterManager.send("a");
+
+        assertTrue(clusterManager.latch.await(10, TimeUnit.SECONDS));
+        // a single message is sent as is
+        assertEquals(Collections.singletonList("a"), clusterManager.sent);
+        assertEquals(1, clusterManager.batchStat.getSentBatches());
+    }
+
+    @Test
+    public void testFailedListenerInBatch() throws Exception {
+        clusterManager = new TestClusterManager(60_000, 100, 0);
+        List<Serializable> received = new ArrayList<>();
+        clusterManager.addListener(String.class, new ClusterListenerAdapter<String>() {
+            @Override
+            public void receive(String message) {
+                if (message.equals("fail")) {
+                    throw new IllegalStateException("Listener failed");
+                }
+                received.add(message);
+            }
+        });
+        clusterManager.addListener(Long.class, new ClusterListenerAdapter<Long>() {
+            @Override
+            public void receive(Long message) {
+                received.add(message);
+            }
+        });
+
+        ClusterManager.MessageBatch batch = new ClusterManager.MessageBatch(Arrays.asList("a", "fail", 1L));
+        byte[] bytes = clusterManager.getSerialization().serialize(batch);
+        clusterManager.new ClusterReceiver().receive(new Message(null, null, bytes));
+
+        assertEquals(Arrays.asList("a", 1L), received);
+    }
+
+    private static class TestClusterManager extends ClusterManager {
+
+        private final List<Serializable> sent = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch latch;
+
+        private TestClusterManager(int batchWindow, int batchMaxSize, int expectedSends) throws Exception {
+            Map<String, Object> properties = new HashMap<>();
+            properties.put("getClusterMessageSendingThreadPoolSize", 1);
+            properties.put("getClusterMessageSendingQueueCapacity", 100);
+            properties.put("getMessageBatchingEnabled", true);
+            properties.put("getMessageBatchWindow", batchWindow);
+            properties.put("getMessageBatchMaxSize", batchMaxSize);
+            clusterConfig = (ClusterConfig) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class[]{ClusterConfig.class}, (proxy, method, args) -> properties.get(method.getName()));
+            latch = new CountDownLatch(expectedSends);
+            channel = new JChannel(false);
+            init();
+        }
+
+        @Override
+        protected void internalSend(Serializable message, boolean sync) {
+            sent.add(message);
+            latch.countDown();
+        }
+    }
+}
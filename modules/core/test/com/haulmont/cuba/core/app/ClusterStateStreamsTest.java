@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.app;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ClusterStateStreamsTest {
+
+    @Test
+    public void testChunkedStreams() throws Exception {
+        byte[] first = new byte[1000];
+        new Random(1).nextBytes(first);
+        byte[] second = new byte[] {1, 2, 3};
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bos);
+
+        ClusterManager.ChunkedOutputStream chunked = new ClusterManager.ChunkedOutputStream(out, 64);
+        chunked.write(first);
+        chunked.finish();
+        chunked = new ClusterManager.ChunkedOutputStream(out, 64);
+        chunked.finish();
+        chunked = new ClusterManager.ChunkedOutputStream(out, 64);
+        chunked.write(second[0]);
+        chunked.write(second, 1, 2);
+        chunked.close();
+        out.writeUTF("end");
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bos.toByteArray()));
+
+        ClusterManager.ChunkedInputStream chunkedInput = new ClusterManager.ChunkedInputStream(in);
+        byte[] read = new byte[first.length];
+        new DataInputStream(chunkedInput).readFully(read);
+        assertArrayEquals(first, read);
+        assertEquals(-1, chunkedInput.read());
+
+        chunkedInput = new ClusterManager.ChunkedInputStream(in);
+        assertEquals(-1, chunkedInput.read());
+
+        // unread data is skipped
+        chunkedInput = new ClusterManager.ChunkedInputStream(in);
+        assertEquals(1, chunkedInput.read());
+        chunkedInput.skipRemaining();
+        assertEquals(3, chunkedInput.getSize());
+
+        assertEquals("end", in.readUTF());
+    }
+
+    @Test
+    public void testKryoSerialization() {
+        ClusterKryoSerialization serialization = new ClusterKryoSerialization();
+        ClusterManager.MessageBatch batch = new ClusterManager.MessageBatch(Arrays.asList("a", 1L));
+
+        byte[] bytes = serialization.serialize(batch);
+        ClusterManager.MessageBatch deserialized = (ClusterManager.MessageBatch) serialization.deserialize(bytes);
+
+        assertEquals(Arrays.asList("a", 1L), deserialized.messages);
+        assertFalse(new String(bytes).contains(ClusterManager.MessageBatch.class.getName()));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.global;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.haulmont.cuba.core.sys.jpql.DomainModel;
+import com.haulmont.cuba.core.sys.jpql.model.EntityBuilder;
+import com.haulmont.cuba.core.sys.jpql.model.JpqlEntityModel;
+import com.haulmont.cuba.core.sys.jpql.transform.QueryTransformerAstBased;
+import org.antlr.runtime.tree.CommonTree;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class QueryAstCacheTest {
+
+    private DomainModel model;
+    private QueryTransformerFactory factory;
+
+    @Before
+    public void setUp() {
+        EntityBuilder builder = new EntityBuilder();
+        builder.startNewEntity("Player");
+        builder.addStringAttribute("name");
+        builder.addStringAttribute("nickname");
+        JpqlEntityModel playerEntity = builder.produce();
+        model = new DomainModel(playerEntity);
+
+        factory = new QueryTransformerFactory() {
+            private final Cache<String, CommonTree> cache = CacheBuilder.newBuilder().maximumSize(10).recordStats().build();
+
+            @Override
+            protected Cache<String, CommonTree> getAstCache() {
+                return cache;
+            }
+        };
+    }
+
+    @Test
+    public void transformationsDoNotChangeCachedTree() {
+        String query = "select p from Player p where p.name = :name order by p.name";
+
+        QueryTransformer transformer = createTransformer(query);
+        transformer.addWhere("{E}.nickname = :nickname");
+        transformer.replaceOrderByExpressions(true, "{E}.nickname");
+        assertEquals("select p from Player p where (p.name = :name) and (p.nickname = :nickname) order by p.nickname desc",
+                transformer.getResult());
+
+        transformer = createTransformer(query);
+        assertEquals(query, transformer.getResult());
+
+        transformer = createTransformer(query);
+        transformer.replaceWithCount();
+        assertEquals("select count(p) from Player p where p.name = :name", transformer.getResult());
+
+        assertEquals(1, factory.getAstCacheSize());
+        assertEquals(1, factory.getAstCacheStats().missCount());
+        assertEquals(2, factory.getAstCacheStats().hitCount());
+    }
+
+    private QueryTransformer createTransformer(String query) {
+        return new QueryTransformerAstBased(model, query) {
+            {
+                queryTransformerFactory = factory;
+            }
+        };
+    }
+}
@@ -1008,6 +1008,23 @@ public class QueryTransformerAstBasedTest {
                 res);
     }
 
+    @Test
+    public void testAddOrderByIdTieBreaker() throws RecognitionException {
+        DomainModel model = prepareDomainModel();
+
+        QueryTransformerAstBased transformer = new QueryTransformerAstBased(model,
+                "select h from sec$GroupHierarchy h where h.group = :group order by h.level desc");
+        transformer.addOrderByIdTieBreaker("id");
+        assertEquals(
+                "select h from sec$GroupHierarchy h where h.group = :group order by h.level desc, h.id",
+                transformer.getResult());
+
+        transformer = new QueryTransformerAstBased(model,
+                "select h from sec$GroupHierarchy h order by h.id desc, h.level");
+        transformer.addOrderByIdTieBreaker("id");
+        assertEquals("select h from sec$GroupHierarchy h order by h.id desc, h.level", transformer.getResult());
+    }
+
     @Test
     public void testOrderBy() throws RecognitionException {
         DomainModel model = prepareDomainModel();
@@ -30,6 +30,8 @@ import com.haulmont.cuba.core.global.View;
 import com.haulmont.cuba.core.jmx.QueryCacheSupportMBean;
 import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.core.sys.entitycache.QueryCache;
+import com.haulmont.cuba.core.sys.entitycache.QueryKey;
+import com.haulmont.cuba.core.sys.entitycache.QueryResult;
 import com.haulmont.cuba.security.entity.*;
 import com.haulmont.cuba.testsupport.TestAppender;
 import com.haulmont.cuba.testsupport.TestContainer;
@@ -46,7 +48,10 @@ import javax.persistence.EntityManagerFactory;
 import javax.persistence.LockModeType;
 import javax.persistence.NoResultException;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 
 import static com.haulmont.cuba.testsupport.TestSupport.assertFail;
@@ -549,7 +554,7 @@ public class QueryCacheTestClass {
             tx.commit();
         }
         appender.clearMessages();
-        assertEquals(0, queryCache.size());
+        assertEquals(0, queryCache.asMap().size());
         u = getResultListUserByLoginNamed(user, true, null, null);
         assertEquals(1, appender.filterMessages(m -> m.contains("> SELECT")).count());
     }
@@ -569,7 +574,7 @@ public class QueryCacheTestClass {
             tx.commit();
         }
         appender.clearMessages();
-        assertEquals(0, queryCache.size());
+        assertEquals(0, queryCache.asMap().size());
         u = getResultListUserByLoginNamed(user, true, null, null);
         assertEquals(1, appender.filterMessages(m -> m.contains("> SELECT")).count());
     }
@@ -590,7 +595,7 @@ public class QueryCacheTestClass {
             tx.commit();
         }
         appender.clearMessages();
-        assertEquals(0, queryCache.size());
+        assertEquals(0, queryCache.asMap().size());
         getResultListUserByRole("TestRole");
         assertEquals(1, queryCache.size());
 
@@ -619,7 +624,7 @@ public class QueryCacheTestClass {
         }
 
         appender.clearMessages();
-        assertEquals(0, queryCache.size());
+        assertEquals(0, queryCache.asMap().size());
         try (Transaction tx = cont.persistence().createTransaction()) {
             EntityManager em = cont.entityManager();
             Query query = em.createQuery("select f from sys$Folder f");
@@ -669,7 +674,7 @@ public class QueryCacheTestClass {
             tx.commit();
         }
         appender.clearMessages();
-        assertEquals(0, queryCache.size());
+        assertEquals(0, queryCache.asMap().size());
         resultList = getResultListUserByRole("TestRole");
         assertEquals("new position", resultList.get(0).getPosition());
         assertEquals(1, queryCache.size());
@@ -684,7 +689,7 @@ public class QueryCacheTestClass {
             tx.commit();
         }
         appender.clearMessages();
-        assertEquals(0, queryCache.size());
+        assertEquals(0, queryCache.asMap().size());
         getResultListUserByRole("TestRole");
         assertEquals(1, queryCache.size());
 
@@ -803,6 +808,60 @@ public class QueryCacheTestClass {
         assertEquals(0, appender.filterMessages(m -> m.contains("> SELECT")).count());
     }
 
+    @Test
+    public void testResultStaleWhileExecuting() {
+        assertEquals(0, queryCache.size());
+
+        QueryKey queryKey;
+        try (Transaction tx = cont.persistence().createTransaction()) {
+            javax.persistence.Query jpaQuery = cont.entityManager().getDelegate().createQuery("select u from sec$User u");
+            queryKey = QueryKey.create("select u from sec$User u", true, jpaQuery);
+            tx.commit();
+        }
+        Map<String, Long> typeGenerations = queryCache.getTypeGenerations(Collections.singleton("sec$User"));
+
+        queryCache.invalidate("sec$User");
+        queryCache.put(queryKey, new QueryResult(Collections.emptyList(), "sec$User", Collections.singleton("sec$User"))
+                .withTypeGenerations(typeGenerations));
+        assertEquals(0, queryCache.size());
+
+        typeGenerations = queryCache.getTypeGenerations(Collections.singleton("sec$User"));
+        queryCache.put(queryKey, new QueryResult(Collections.emptyList(), "sec$User", Collections.singleton("sec$User"))
+                .withTypeGenerations(typeGenerations));
+        assertEquals(1, queryCache.size());
+    }
+
+    @Test
+    public void testInvalidationByTypeGeneration() {
+        QueryKey userQueryKey;
+        QueryKey roleQueryKey;
+        try (Transaction tx = cont.persistence().createTransaction()) {
+            javax.persistence.Query jpaQuery = cont.entityManager().getDelegate().createQuery("select u from sec$User u");
+            userQueryKey = QueryKey.create("select u from sec$User u", true, jpaQuery);
+            jpaQuery = cont.entityManager().getDelegate().createQuery("select r from sec$Role r");
+            roleQueryKey = QueryKey.create("select r from sec$Role r", true, jpaQuery);
+            tx.commit();
+        }
+        queryCache.put(userQueryKey, new QueryResult(Collections.emptyList(), "sec$User",
+                new HashSet<>(Arrays.asList("sec$User", "sec$Group"))));
+        queryCache.put(roleQueryKey, new QueryResult(Collections.emptyList(), "sec$Role",
+                Collections.singleton("sec$Role")));
+        assertEquals(2, queryCache.size());
+
+        queryCache.invalidate("sec$Group");
+        assertEquals(2, queryCache.size());
+        assertEquals(1, queryCache.asMap().size());
+
+        assertNull(queryCache.get(userQueryKey));
+        assertNotNull(queryCache.get(roleQueryKey));
+        assertEquals(1, queryCache.size());
+
+        queryCache.put(userQueryKey, new QueryResult(Collections.emptyList(), "sec$User",
+                new HashSet<>(Arrays.asList("sec$User", "sec$Group"))));
+        assertNotNull(queryCache.get(userQueryKey));
+        assertEquals(2, queryCache.size());
+    }
+
     @Test
     public void testLoadingWithNotPartialView() throws Exception {
         appender.clearMessages();
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.testmodel.cross_store;
+
+import com.haulmont.chile.core.annotations.MetaClass;
+import com.haulmont.chile.core.annotations.MetaProperty;
+import com.haulmont.cuba.core.entity.BaseUuidEntity;
+import com.haulmont.cuba.security.entity.User;
+
+import java.util.UUID;
+
+/**
+ * Non-persistent entity referencing users of the main data store.
+ */
+@MetaClass(name = "test$CrossStoreRefEntity")
+public class CrossStoreRefEntity extends BaseUuidEntity {
+
+    private static final long serialVersionUID = -2736497816094135734L;
+
+    @MetaProperty
+    private UUID userId;
+
+    @MetaProperty(related = "userId")
+    private User user;
+
+    @MetaProperty
+    private UUID anotherUserId;
+
+    @MetaProperty(related = "anotherUserId")
+    private User anotherUser;
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public void setUserId(UUID userId) {
+        this.userId = userId;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    public UUID getAnotherUserId() {
+        return anotherUserId;
+    }
+
+    public void setAnotherUserId(UUID anotherUserId) {
+        this.anotherUserId = anotherUserId;
+    }
+
+    public User getAnotherUser() {
+        return anotherUser;
+    }
+
+    public void setAnotherUser(User anotherUser) {
+        this.anotherUser = anotherUser;
+    }
+}
@@ -19,6 +19,7 @@ package com.haulmont.cuba.testmodel.sales_1;
 import com.haulmont.bali.db.ArrayHandler;
 import com.haulmont.bali.db.QueryRunner;
 import com.haulmont.cuba.core.EntityManager;
+import com.haulmont.cuba.core.app.events.EntityBatchChangedEvent;
 import com.haulmont.cuba.core.app.events.EntityChangedEvent;
 import com.haulmont.cuba.core.Persistence;
 import com.haulmont.cuba.core.entity.Entity;
@@ -82,12 +83,15 @@ public class TestEntityChangedEventListener implements
 
     public List<EventInfo> allEvents = new ArrayList<>();
 
+    public List<EntityBatchChangedEvent> batchChangedEvents = new ArrayList<>();
+
     @Inject
     private Persistence persistence;
 
     public void clear() {
         allEvents.clear();
         entityChangedEvents.clear();
+        batchChangedEvents.clear();
     }
 
     @EventListener
@@ -102,6 +106,11 @@ public class TestEntityChangedEventListener implements
         entityChangedEvents.add(new Info(event, isCommitted(event.getEntityId())));
     }
 
+    @EventListener
+    void batchChanged(EntityBatchChangedEvent event) {
+        batchChangedEvents.add(event);
+    }
+
     @Override
     public void beforeCommit(EntityManager entityManager, Collection<Entity> managedEntities) {
         allEvents.add(new EventInfo("BeforeCommitTransactionListener", managedEntities));
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package spec.cuba.core.data_manager
+
+import com.haulmont.cuba.core.app.CrossDataStoreReferenceLoader
+import com.haulmont.cuba.core.app.CrossDataStoreReferenceLoadingExecutor
+import com.haulmont.cuba.core.app.ServerConfig
+import com.haulmont.cuba.core.global.AppBeans
+import com.haulmont.cuba.core.global.Configuration
+import com.haulmont.cuba.core.global.Metadata
+import com.haulmont.cuba.core.global.View
+import com.haulmont.cuba.security.entity.User
+import com.haulmont.cuba.testmodel.cross_store.CrossStoreRefEntity
+import com.haulmont.cuba.testsupport.TestContainer
+import com.haulmont.cuba.testsupport.TestSupport
+import org.junit.ClassRule
+import spock.lang.Shared
+import spock.lang.Specification
+
+class CrossDataStoreReferenceLoaderTest extends Specification {
+
+    @Shared @ClassRule
+    public TestContainer cont = TestContainer.Common.INSTANCE
+
+    private Metadata metadata
+    private ServerConfig serverConfig
+    private View view
+
+    void setup() {
+        metadata = cont.metadata()
+        serverConfig = AppBeans.get(Configuration).getConfig(ServerConfig)
+
+        def userView = metadata.getViewRepository().getView(User, View.MINIMAL)
+        view = new View(CrossStoreRefEntity)
+                .addProperty('userId')
+                .addProperty('user', userView)
+                .addProperty('anotherUserId')
+                .addProperty('anotherUser', userView)
+    }
+
+    void cleanup() {
+        serverConfig.setCrossDataStoreReferenceLoadingIdentityCache(false)
+    }
+
+    def "references are loaded for all entities"() {
+
+        def entities = createEntities(3)
+        def missingUserId = UUID.randomUUID()
+        entities[2].anotherUserId = missingUserId
+
+        when:
+
+        createLoader().processEntities(entities)
+
+        then:
+
+        entities.every { it.user != null && it.user.login == 'admin' }
+        entities[0].anotherUser.login == 'admin'
+        entities[1].anotherUser.login == 'admin'
+        entities[2].anotherUser == null
+    }
+
+    def "identity cache shares instances between properties and entities of a request"() {
+
+        serverConfig.setCrossDataStoreReferenceLoadingIdentityCache(true)
+        def entities = createEntities(2)
+
+        when:
+
+        createLoader().processEntities(entities)
+
+        then:
+
+        entities[0].user.is(entities[0].anotherUser)
+        entities[0].user.is(entities[1].user)
+        entities[0].user.is(entities[1].anotherUser)
+    }
+
+    def "identity cache does not outlive a request"() {
+
+        serverConfig.setCrossDataStoreReferenceLoadingIdentityCache(true)
+        def entities1 = createEntities(1)
+        def entities2 = createEntities(1)
+
+        when:
+
+        createLoader().processEntities(entities1)
+        createLoader().processEntities(entities2)
+
+        then:
+
+        entities1[0].user.is(entities1[0].anotherUser)
+        !entities1[0].user.is(entities2[0].user)
+    }
+
+    def "references of different properties are not shared without identity cache"() {
+
+        def entities = createEntities(2)
+
+        when:
+
+        createLoader().processEntities(entities)
+
+        then:
+
+        entities[0].user == entities[0].anotherUser
+        !entities[0].user.is(entities[0].anotherUser)
+    }
+
+    def "stores are loaded sequentially by default"() {
+
+        expect:
+
+        serverConfig.getCrossDataStoreReferenceLoadingThreads() == 1
+        !AppBeans.get(CrossDataStoreReferenceLoadingExecutor).isEnabled()
+    }
+
+    private List<CrossStoreRefEntity> createEntities(int count) {
+        (1..count).collect {
+            def entity = metadata.create(CrossStoreRefEntity)
+            entity.userId = TestSupport.ADMIN_USER_ID
+            entity.anotherUserId = TestSupport.ADMIN_USER_ID
+            entity
+        }
+    }
+
+    private CrossDataStoreReferenceLoader createLoader() {
+        AppBeans.getPrototype(CrossDataStoreReferenceLoader.NAME, metadata.getClassNN(CrossStoreRefEntity), view, false)
+    }
+}
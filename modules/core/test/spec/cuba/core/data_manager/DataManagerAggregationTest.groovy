@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package spec.cuba.core.data_manager
+
+import com.haulmont.cuba.core.global.AppBeans
+import com.haulmont.cuba.core.global.DataManager
+import com.haulmont.cuba.core.global.LoadContext
+import com.haulmont.cuba.core.global.ValueLoadContext
+import com.haulmont.cuba.core.global.queryconditions.JpqlCondition
+import com.haulmont.cuba.testmodel.sales.Customer
+import com.haulmont.cuba.testmodel.sales.Order
+import com.haulmont.cuba.testmodel.sales.OrderLine
+import com.haulmont.cuba.testsupport.TestContainer
+import org.junit.ClassRule
+import spock.lang.Shared
+import spock.lang.Specification
+
+class DataManagerAggregationTest extends Specification {
+
+    @Shared @ClassRule
+    public TestContainer cont = TestContainer.Common.INSTANCE
+
+    private DataManager dataManager
+
+    private Customer customer1
+    private Order order1
+    private Order order2
+    private Order order3
+    private List<OrderLine> lines = []
+
+    void setup() {
+        dataManager = AppBeans.get(DataManager)
+
+        cont.persistence().runInTransaction({ em ->
+            customer1 = cont.metadata().create(Customer)
+            customer1.name = 'aggregated customer'
+            em.persist(customer1)
+
+            order1 = createOrder(em, 'aggr-1', 10G, customer1)
+            order2 = createOrder(em, 'aggr-2', 20G, null)
+            order3 = createOrder(em, 'aggr-3', 5G, customer1)
+        })
+    }
+
+    void cleanup() {
+        cont.deleteRecord(*lines, order1, order2, order3, customer1)
+    }
+
+    def "entities are aggregated once if the query joins a collection"() {
+
+        def loadContext = createLoadContext(
+                'select o from test$Order o join o.orderLines l where o.number like :number order by o.number')
+        loadContext.getQuery().setMaxResults(1)
+
+        when:
+
+        def totals = dataManager.aggregate(loadContext, [count: 'count({E})', amount: 'sum({E}.amount)'])
+
+        then:
+
+        totals.getValue('count') == 3
+        totals.getValue('amount') == 35G
+    }
+
+    def "left joins of references do not filter aggregated entities"() {
+
+        def loadContext = createLoadContext('select o from test$Order o where o.number like :number')
+        def aggregates = [count: 'count({E}.amount)', customers: 'count(c.name)', amount: 'sum({E}.amount)']
+
+        when:
+
+        def totals = dataManager.loadValues(
+                ValueLoadContext.createAggregation(loadContext, aggregates, 'left join {E}.customer c'))[0]
+
+        then:
+
+        totals.getValue('count') == 3
+        totals.getValue('customers') == 2
+        totals.getValue('amount') == 35G
+    }
+
+    def "condition and parameters of the query are preserved"() {
+
+        def loadContext = createLoadContext('select o from test$Order o where o.number like :number')
+        loadContext.getQuery()
+                .setCondition(JpqlCondition.where('{E}.amount > :minAmount'))
+                .setParameter('minAmount', 7G)
+
+        when:
+
+        def totals = dataManager.aggregate(loadContext, [amount: 'sum({E}.amount)'])
+
+        then:
+
+        totals.getValue('amount') == 30G
+    }
+
+    def "aggregates of an empty result are null"() {
+
+        def loadContext = createLoadContext('select o from test$Order o where o.number like :number')
+        loadContext.getQuery().setParameter('number', 'aggr-none-%')
+
+        when:
+
+        def totals = dataManager.aggregate(loadContext, [count: 'count({E})', amount: 'sum({E}.amount)'])
+
+        then:
+
+        totals.getValue('count') == 0
+        totals.getValue('amount') == null
+    }
+
+    private Order createOrder(em, String number, BigDecimal amount, Customer customer) {
+        Order order = cont.metadata().create(Order)
+        order.setNumber(number)
+        order.setAmount(amount)
+        order.setCustomer(customer)
+        em.persist(order)
+
+        2.times {
+            OrderLine line = cont.metadata().create(OrderLine)
+            line.setProduct(number + '-p' + it)
+            line.setQuantity(1)
+            line.setOrder(order)
+            em.persist(line)
+            lines.add(line)
+        }
+        order
+    }
+
+    private static LoadContext<Order> createLoadContext(String queryString) {
+        LoadContext.create(Order)
+                .setQuery(LoadContext.createQuery(queryString).setParameter('number', 'aggr-%'))
+    }
+}
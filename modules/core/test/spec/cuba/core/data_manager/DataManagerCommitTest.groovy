@@ -16,14 +16,18 @@
 
 package spec.cuba.core.data_manager
 
+import com.haulmont.cuba.core.app.events.EntityChangedEvent
 import com.haulmont.cuba.core.entity.KeyValueEntity
 import com.haulmont.cuba.core.global.AppBeans
 import com.haulmont.cuba.core.global.CommitContext
 import com.haulmont.cuba.core.global.DataManager
 import com.haulmont.cuba.core.global.EntitySet
 import com.haulmont.cuba.core.global.EntityStates
+import com.haulmont.cuba.testmodel.primary_keys.IdentityEntity
 import com.haulmont.cuba.testmodel.sales.Customer
 import com.haulmont.cuba.testmodel.sales.Order
+import com.haulmont.cuba.testmodel.sales.OrderLine
+import com.haulmont.cuba.testmodel.sales_1.TestEntityChangedEventListener
 import com.haulmont.cuba.testsupport.TestContainer
 import org.junit.ClassRule
 import spock.lang.Shared
@@ -145,6 +149,93 @@ class DataManagerCommitTest extends Specification {
         committedKvEntity.getValue('bar') == 'val2'
     }
 
+    def "entities are created, updated and soft deleted in bulk mode"() {
+
+        given: 'a number of new customers'
+        def customers = (1..5).collect { new Customer(name: "bulk-$it") }
+
+        when: 'the customers are committed in bulk mode'
+        def committed = dataManager.commit(new CommitContext(customers).setBulk(true))
+
+        then: 'committed instances are not returned, but stored'
+        committed.isEmpty()
+        dataManager.load(Customer).query('select c from test$Customer c where c.name like :name')
+                .parameter('name', 'bulk-%').list().size() == 5
+
+        when: 'the customers are updated and removed in bulk mode'
+        def loaded = dataManager.load(Customer).query('select c from test$Customer c where c.name like :name')
+                .parameter('name', 'bulk-%').list()
+        loaded.each { it.name = it.name + '-updated' }
+        dataManager.commit(new CommitContext(loaded.subList(0, 2), loaded.subList(2, 5)).setBulk(true))
+
+        then: 'the changes are stored and the removed customers are soft deleted'
+        def reloaded = dataManager.load(Customer).query('select c from test$Customer c where c.name like :name')
+                .parameter('name', 'bulk-%').softDeletion(false).list()
+        reloaded.count { it.name.endsWith('-updated') } == 2
+        reloaded.count { it.isDeleted() } == 3
+
+        cleanup:
+        cont.deleteRecord(*customers)
+    }
+
+    def "delete policy is processed on soft deletion in bulk mode"() {
+
+        given: 'an order with lines to be deleted by cascade'
+        def order = new Order(number: 'bulk-order')
+        def lines = (1..2).collect { new OrderLine(product: "bulk-product-$it", quantity: 1, order: order) }
+        dataManager.commit(new CommitContext([order, *lines]))
+
+        when: 'the order is removed in bulk mode'
+        def loaded = dataManager.load(Order).id(order.id).one()
+        dataManager.commit(new CommitContext([], [loaded]).setBulk(true))
+
+        then: 'the lines are soft deleted too'
+        def reloaded = dataManager.load(OrderLine).query('select l from test$OrderLine l where l.order.id = :orderId')
+                .parameter('orderId', order.id).softDeletion(false).list()
+        reloaded.size() == 2
+        reloaded.every { it.isDeleted() }
+
+        cleanup:
+        cont.deleteRecord(*lines, order)
+    }
+
+    def "entity changed events of bulk mode contain identifiers assigned by the database and changes"() {
+
+        given:
+        def listener = AppBeans.get(TestEntityChangedEventListener)
+        listener.clear()
+        def entities = (1..3).collect { new IdentityEntity(name: "bulk-$it") }
+
+        when: 'the entities are created in bulk mode'
+        dataManager.commit(new CommitContext(entities).setBulk(true))
+
+        then: 'one batch event contains the created entities with their identifiers'
+        listener.batchChangedEvents.size() == 1
+        def createdEvents = listener.batchChangedEvents[0].events
+        createdEvents.every { it.type == EntityChangedEvent.Type.CREATED && it.entityId.value.get() != null }
+        createdEvents.collect { it.entityId.value.get() } as Set == entities.collect { it.id.get() } as Set
+
+        when: 'the entities are updated in bulk mode'
+        listener.clear()
+        def loaded = dataManager.load(IdentityEntity).query('select e from test$IdentityEntity e where e.name like :name')
+                .parameter('name', 'bulk-%').list()
+        loaded.each { it.name = it.name + '-updated' }
+        dataManager.commit(new CommitContext(loaded).setBulk(true))
+
+        then: 'the batch event contains the changed attributes'
+        listener.batchChangedEvents.size() == 1
+        def updatedEvents = listener.batchChangedEvents[0].events
+        updatedEvents.size() == 3
+        updatedEvents.every {
+            it.type == EntityChangedEvent.Type.UPDATED && it.changes.isChanged('name') &&
+                    it.changes.getOldValue('name').startsWith('bulk-') && !it.changes.getOldValue('name').endsWith('-updated')
+        }
+
+        cleanup:
+        listener.clear()
+        cont.deleteRecord(*entities)
+    }
+
 
     protected CommitContext commitContextFor(Customer customer, Order order) {
         new CommitContext()
@@ -16,15 +16,18 @@
 
 package spec.cuba.core.data_manager
 
+import com.haulmont.cuba.core.entity.Entity
 import com.haulmont.cuba.core.entity.contracts.Id
 import com.haulmont.cuba.core.global.AppBeans
 import com.haulmont.cuba.core.global.DataManager
 import com.haulmont.cuba.core.global.EntityStates
 import com.haulmont.cuba.core.global.LoadContext
 import com.haulmont.cuba.core.global.MetadataTools
+import com.haulmont.cuba.core.global.Sort
 import com.haulmont.cuba.core.global.ValueLoadContext
 import com.haulmont.cuba.core.global.View
 import com.haulmont.cuba.core.sys.AppContext
+import com.haulmont.cuba.core.sys.PagedChunksLoader
 import com.haulmont.cuba.security.entity.Group
 import com.haulmont.cuba.security.entity.User
 import com.haulmont.cuba.testmodel.sales_1.OrderLine
@@ -289,4 +292,110 @@ class DataManagerTest extends Specification {
 
         cont.deleteRecord(line, product)
     }
+
+    def "loadListByChunks passes all detached instances in chunks"() {
+
+        def products = (1..7).collect { new Product(name: "chunked-$it", quantity: it) }
+        dataManager.commit(products as Entity[])
+
+        def query = LoadContext.createQuery('select e from sales1$Product e where e.name like :name order by e.quantity')
+                .setParameter('name', 'chunked-%')
+        List<List<Product>> chunks = []
+
+        when:
+
+        dataManager.loadListByChunks(LoadContext.create(Product).setQuery(query), 3) { chunks.add(it) }
+
+        then:
+
+        chunks.collect { it.size() } == [3, 3, 1]
+        chunks.flatten().collect { it.quantity } == (1..7).toList()
+        chunks.flatten().every { AppBeans.get(EntityStates).isDetached(it) }
+
+        cleanup:
+
+        cont.deleteRecord(*products)
+    }
+
+    def "paged loading by chunks sorts by the primary key"() {
+
+        def products = (1..5).collect { new Product(name: "paged-$it", quantity: 1) }
+        dataManager.commit(products as Entity[])
+
+        def query = LoadContext.createQuery('select e from sales1$Product e where e.name like :name')
+                .setParameter('name', 'paged-%')
+        def context = LoadContext.create(Product).setQuery(query)
+        List<LoadContext.Query> loadedQueries = []
+        List<List<Product>> chunks = []
+
+        when:
+
+        PagedChunksLoader.loadByPages(context, 2, { LoadContext<Product> lc ->
+            loadedQueries.add(lc.query.copy())
+            dataManager.loadList(lc)
+        }, { chunks.add(it) })
+
+        then:
+
+        loadedQueries.every { it.sort.orders*.property == ['id'] }
+        loadedQueries*.firstResult == [0, 2, 4]
+        chunks.flatten()*.id as Set == products*.id as Set
+        chunks.flatten().size() == 5
+        query.sort == null
+        query.firstResult == 0
+
+        cleanup:
+
+        cont.deleteRecord(*products)
+    }
+
+    def "paged loading by chunks adds the primary key to the order of the query string"() {
+
+        def products = (1..5).collect { new Product(name: "paged-order-$it", quantity: 1) }
+        dataManager.commit(products as Entity[])
+
+        def query = LoadContext.createQuery('select e from sales1$Product e where e.name like :name order by e.quantity')
+                .setParameter('name', 'paged-order-%')
+        def context = LoadContext.create(Product).setQuery(query)
+        List<LoadContext.Query> loadedQueries = []
+        List<List<Product>> chunks = []
+
+        when:
+
+        PagedChunksLoader.loadByPages(context, 2, { LoadContext<Product> lc ->
+            loadedQueries.add(lc.query.copy())
+            dataManager.loadList(lc)
+        }, { chunks.add(it) })
+
+        then:
+
+        loadedQueries.every { it.queryString.endsWith('order by e.quantity, e.id') }
+        chunks.flatten()*.id as Set == products*.id as Set
+        chunks.flatten().size() == 5
+        query.queryString.endsWith('order by e.quantity')
+
+        cleanup:
+
+        cont.deleteRecord(*products)
+    }
+
+    def "loading with keyset values does not change the query of the context"() {
+
+        def query = LoadContext.createQuery('select u from sec$User u')
+                .setSort(Sort.by('login', 'id'))
+                .setKeysetValues([login: 'a', id: UUID.randomUUID()])
+                .setFirstResult(10)
+                .setMaxResults(10)
+        def context = LoadContext.create(User).setQuery(query)
+
+        when:
+
+        dataManager.loadList(context)
+        dataManager.getCount(context)
+
+        then:
+
+        query.firstResult == 10
+        query.keysetValues != null
+    }
 }
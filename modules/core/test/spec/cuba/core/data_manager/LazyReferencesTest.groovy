@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package spec.cuba.core.data_manager
+
+import com.haulmont.cuba.core.global.AppBeans
+import com.haulmont.cuba.core.global.DataManager
+import com.haulmont.cuba.core.global.EntityStates
+import com.haulmont.cuba.core.global.LoadContext
+import com.haulmont.cuba.core.global.View
+import com.haulmont.cuba.testmodel.sales.Customer
+import com.haulmont.cuba.testmodel.sales.Order
+import com.haulmont.cuba.testmodel.sales.OrderLine
+import com.haulmont.cuba.testsupport.TestContainer
+import com.haulmont.cuba.testsupport.TestSupport
+import org.junit.ClassRule
+import spock.lang.Shared
+import spock.lang.Specification
+
+class LazyReferencesTest extends Specification {
+
+    @Shared @ClassRule
+    public TestContainer cont = TestContainer.Common.INSTANCE
+
+    private DataManager dataManager
+    private EntityStates entityStates
+
+    private Customer customer1
+    private Order order1
+    private Order order2
+    private OrderLine line1
+    private OrderLine line2
+
+    void setup() {
+        dataManager = AppBeans.get(DataManager)
+        entityStates = AppBeans.get(EntityStates)
+
+        cont.persistence().runInTransaction({ em ->
+            customer1 = cont.metadata().create(Customer)
+            customer1.name = 'a customer'
+            em.persist(customer1)
+
+            order1 = cont.metadata().create(Order)
+            order1.setNumber('lazy-1')
+            order1.setCustomer(customer1)
+            order1.setAmount(10G)
+            em.persist(order1)
+
+            line1 = cont.metadata().create(OrderLine)
+            line1.setProduct('lazy-p1')
+            line1.setOrder(order1)
+            em.persist(line1)
+
+            line2 = cont.metadata().create(OrderLine)
+            line2.setProduct('lazy-p2')
+            line2.setOrder(order1)
+            em.persist(line2)
+
+            order2 = cont.metadata().create(Order)
+            order2.setNumber('lazy-2')
+            em.persist(order2)
+        })
+    }
+
+    void cleanup() {
+        cont.deleteRecord(line1, line2, order1, order2, customer1)
+    }
+
+    def "references are loaded on first access"() {
+        def view = new View(Order)
+                .addProperty('number')
+                .addProperty('customer', new View(Customer).addProperty('name'))
+
+        def loadContext = LoadContext.create(Order)
+                .setQuery(LoadContext.createQuery('select o from test$Order o where o.number like :number order by o.number')
+                    .setParameter('number', 'lazy-%'))
+                .setView(view)
+        loadContext.setLoadReferencesLazily(true)
+
+        when:
+
+        def orders = dataManager.loadList(loadContext)
+
+        then:
+
+        orders.size() == 2
+        orders[0].number == 'lazy-1'
+        // the view does not load partial entities, so local attributes outside of it are loaded too
+        entityStates.isLoaded(orders[0], 'amount')
+        orders[0].amount == 10G
+        !entityStates.isLoaded(orders[0], 'customer')
+        !entityStates.isLoaded(orders[1], 'customer')
+
+        orders[0].customer == customer1
+        orders[0].customer.name == 'a customer'
+        orders[1].customer == null
+
+        entityStates.isLoaded(orders[0], 'customer')
+        entityStates.isLoaded(orders[1], 'customer')
+    }
+
+    def "inverse references of lazy collections point to the loaded entity"() {
+        def view = new View(Order)
+                .addProperty('number')
+                .addProperty('orderLines', new View(OrderLine)
+                    .addProperty('product')
+                    .addProperty('order', new View(Order).addProperty('number')))
+
+        when:
+
+        def orders = dataManager.loadList(createLoadContext(view))
+
+        then:
+
+        orders[0].orderLines.size() == 2
+        orders[0].orderLines.every { it.order.is(orders[0]) }
+        orders[1].orderLines.isEmpty()
+    }
+
+    def "lazy references are loaded in the soft deletion mode of the request"() {
+        cont.persistence().runInTransaction({ em ->
+            em.remove(em.find(OrderLine, line2.id))
+        })
+
+        def view = new View(Order)
+                .addProperty('number')
+                .addProperty('orderLines', new View(OrderLine).addProperty('product'))
+
+        when:
+
+        def orders = dataManager.loadList(createLoadContext(view))
+        def ordersWithDeleted = dataManager.loadList(createLoadContext(view).setSoftDeletion(false))
+
+        then:
+
+        orders[0].orderLines*.product == ['lazy-p1']
+        ordersWithDeleted[0].orderLines*.product.sort() == ['lazy-p1', 'lazy-p2']
+    }
+
+    def "references of a deserialized entity are loaded on first access"() {
+        def view = new View(Order)
+                .addProperty('number')
+                .addProperty('customer', new View(Customer).addProperty('name'))
+
+        when:
+
+        def orders = dataManager.loadList(createLoadContext(view))
+        Order order = TestSupport.reserialize(orders[0])
+
+        then:
+
+        !entityStates.isLoaded(order, 'customer')
+        order.customer == customer1
+        order.customer.name == 'a customer'
+    }
+
+    private LoadContext<Order> createLoadContext(View view) {
+        def loadContext = LoadContext.create(Order)
+                .setQuery(LoadContext.createQuery('select o from test$Order o where o.number like :number order by o.number')
+                    .setParameter('number', 'lazy-%'))
+                .setView(view)
+        loadContext.setLoadReferencesLazily(true)
+        loadContext
+    }
+}
@@ -20,6 +20,8 @@ package spec.cuba.core.entity_log
 import com.haulmont.cuba.core.EntityManager
 import com.haulmont.cuba.core.PersistenceTools
 import com.haulmont.cuba.core.global.AppBeans
+import com.haulmont.cuba.core.global.CommitContext
+import com.haulmont.cuba.core.global.DataManager
 import com.haulmont.cuba.core.global.MetadataTools
 import com.haulmont.cuba.core.global.View
 import com.haulmont.cuba.security.entity.Group
@@ -206,6 +208,38 @@ class EntityLogTest extends AbstractEntityLogTest {
         getLatestEntityLogItem('test_EntityLogA', aId).entityInstanceName == 'edited_nameA nameB'
     }
 
+    def "entity log items are written in bulk commit mode"() {
+
+        given:
+
+        def group = findCompanyGroup()
+        def users = (1..3).collect {
+            User user = cont.metadata().create(User)
+            user.setLogin("bulk$it")
+            user.setName("bulk-name$it")
+            user.setGroup(group)
+            user
+        }
+
+        when: 'the users are created in bulk mode'
+
+        AppBeans.get(DataManager).commit(new CommitContext(users).setBulk(true))
+        user1Id = users[0].id
+        user2Id = users[1].id
+        UUID user3Id = users[2].id
+
+        then: 'an entity log item is written for each of them'
+
+        getEntityLogItems('sec$User', user1Id).size() == 1
+        getEntityLogItems('sec$User', user2Id).size() == 1
+        getEntityLogItems('sec$User', user3Id).size() == 1
+        loggedValueMatches(getLatestEntityLogItem('sec$User', user1Id), 'name', 'bulk-name1')
+
+        cleanup:
+
+        cont.deleteRecord("SEC_USER", user3Id)
+    }
+
     protected def createAndSaveUser(EntityManager em, Map params) {
         User user = cont.metadata().create(User)
 
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package spec.cuba.core.entity_log
+
+import com.haulmont.cuba.core.EntityManager
+import com.haulmont.cuba.core.global.AppBeans
+import com.haulmont.cuba.core.global.Metadata
+import com.haulmont.cuba.core.sys.AppContext
+import com.haulmont.cuba.security.app.EntityLogWriter
+import com.haulmont.cuba.security.entity.EntityLogItem
+import com.haulmont.cuba.security.entity.Group
+import com.haulmont.cuba.testsupport.TestSupport
+
+class EntityLogWriterTest extends AbstractEntityLogTest {
+
+    private EntityLogWriter writer = AppBeans.get(EntityLogWriter)
+
+    void setup() {
+        withTransaction { EntityManager em ->
+            clearTable(em, "SEC_ENTITY_LOG")
+        }
+    }
+
+    void cleanup() {
+        withTransaction { EntityManager em ->
+            clearTable(em, "SEC_ENTITY_LOG")
+        }
+    }
+
+    def "queued items are written in background keeping audit fields"() {
+
+        given:
+
+        def writtenBefore = writer.writtenItems
+
+        def items = (1..3).collect {
+            EntityLogItem item = AppBeans.get(Metadata).create(EntityLogItem)
+            item.type = EntityLogItem.Type.MODIFY
+            item.entity = 'sec$Group'
+            item.objectEntityId = TestSupport.COMPANY_GROUP_ID
+            item.eventTs = new Date()
+            item.createdBy = 'writer-test'
+            item
+        }
+
+        when:
+
+        items.each { writer.write(it) }
+
+        def deadline = System.currentTimeMillis() + 10_000
+        while (writer.writtenItems < writtenBefore + 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50)
+        }
+
+        then:
+
+        def saved = getEntityLogItems('sec$Group', TestSupport.COMPANY_GROUP_ID)
+        saved.size() == 3
+        saved.every { it.createdBy == 'writer-test' }
+        writer.queueSize == 0
+    }
+
+    def "entity log passes items to the writer after commit if asynchronous mode is enabled"() {
+
+        given:
+
+        AppContext.setProperty('cuba.entityLog.asyncEnabled', 'true')
+        withTransaction { EntityManager em ->
+            saveEntityLogAutoConfFor(em, 'sec$Group', 'name')
+        }
+        initEntityLogAPI()
+
+        def writtenBefore = writer.writtenItems
+        Group group = AppBeans.get(Metadata).create(Group)
+        group.name = 'writer-test-group'
+
+        when:
+
+        withTransaction { EntityManager em ->
+            em.persist(group)
+        }
+
+        def deadline = System.currentTimeMillis() + 10_000
+        while (writer.writtenItems < writtenBefore + 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50)
+        }
+
+        then:
+
+        def saved = getEntityLogItems('sec$Group', group.id)
+        saved.size() == 1
+        saved[0].type == EntityLogItem.Type.CREATE
+        loggedValueMatches(saved[0], 'name', 'writer-test-group')
+
+        cleanup:
+
+        AppContext.setProperty('cuba.entityLog.asyncEnabled', null)
+        clearTables("SEC_LOGGED_ATTR", "SEC_LOGGED_ENTITY")
+        initEntityLogAPI()
+        cont.deleteRecord(group)
+    }
+}
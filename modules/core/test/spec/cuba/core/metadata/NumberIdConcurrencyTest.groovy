@@ -106,6 +106,25 @@ class NumberIdConcurrencyTest extends Specification {
         AppContext.setProperty('cuba.numberIdCacheSize', null)
     }
 
+    def "generating ids with prefetched ranges"() {
+
+        AppContext.setProperty('cuba.numberIdCacheSize', '20')
+        AppContext.setProperty('cuba.numberIdCachePrefetchDepth', '4')
+
+        when:
+
+        generateSomeEntities(500)
+
+        then:
+
+        countEntities() == 500
+
+        cleanup:
+
+        AppContext.setProperty('cuba.numberIdCacheSize', null)
+        AppContext.setProperty('cuba.numberIdCachePrefetchDepth', null)
+    }
+
     def "generate with zero size cache"() {
         AppContext.setProperty('cuba.numberIdCacheSize', '0')
 
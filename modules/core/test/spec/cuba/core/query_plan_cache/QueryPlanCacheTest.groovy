@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package spec.cuba.core.query_plan_cache
+
+import com.haulmont.cuba.core.global.AppBeans
+import com.haulmont.cuba.core.global.DataManager
+import com.haulmont.cuba.core.global.Sort
+import com.haulmont.cuba.core.sys.QueryPlanCache
+import com.haulmont.cuba.security.entity.User
+import com.haulmont.cuba.testsupport.TestContainer
+import org.junit.ClassRule
+import spock.lang.Shared
+import spock.lang.Specification
+
+class QueryPlanCacheTest extends Specification {
+
+    @Shared
+    @ClassRule
+    public TestContainer cont = TestContainer.Common.INSTANCE
+
+    private QueryPlanCache queryPlanCache = AppBeans.get(QueryPlanCache)
+    private DataManager dataManager = AppBeans.get(DataManager)
+
+    void setup() {
+        queryPlanCache.clear()
+    }
+
+    def "result is computed once for equal keys"() {
+
+        def computed = 0
+
+        when:
+
+        def result1 = queryPlanCache.get({ computed++; 'select 1' }, 'test', 'a', 1)
+        def result2 = queryPlanCache.get({ computed++; 'select 2' }, 'test', 'a', 1)
+
+        then:
+
+        computed == 1
+        result1 == 'select 1'
+        result2 == 'select 1'
+        queryPlanCache.size == 1
+    }
+
+    def "results are cached separately for different keys"() {
+
+        when:
+
+        def result1 = queryPlanCache.get({ 'select 1' }, 'test', 'a', 1)
+        def result2 = queryPlanCache.get({ 'select 2' }, 'test', 'a', 2)
+
+        then:
+
+        result1 == 'select 1'
+        result2 == 'select 2'
+        queryPlanCache.size == 2
+    }
+
+    def "null results are not cached"() {
+
+        def computed = 0
+
+        when:
+
+        queryPlanCache.get({ computed++; null }, 'test', 'null')
+        queryPlanCache.get({ computed++; null }, 'test', 'null')
+
+        then:
+
+        computed == 2
+        queryPlanCache.size == 0
+    }
+
+    def "transformed query is taken from the cache when the same query is loaded again"() {
+
+        def load = {
+            dataManager.load(User)
+                    .query('select u from sec$User u where u.login = :login')
+                    .parameter('login', 'admin')
+                    .sort(Sort.by('name'))
+                    .list()
+        }
+
+        when:
+
+        def users1 = load()
+        def hitsBefore = queryPlanCache.stats.hitCount()
+        def users2 = load()
+
+        then:
+
+        users1 == users2
+        queryPlanCache.size > 0
+        queryPlanCache.stats.hitCount() > hitsBefore
+    }
+}
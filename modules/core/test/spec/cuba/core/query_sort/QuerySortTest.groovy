@@ -164,4 +164,57 @@ class QuerySortTest extends Specification {
 
         queryBuilder.getQueryString() == 'select e from sys$EntitySnapshot e left join e.author e_author order by e.snapshotDate desc, e_author.login desc, e_author.name desc'
     }
+
+    def "keyset pagination"() {
+
+        RdbmsQueryBuilder queryBuilder
+        def id = UUID.randomUUID()
+
+        when: "sort ends with the primary key"
+
+        queryBuilder = AppBeans.get(RdbmsQueryBuilder)
+        queryBuilder.init('select u from sec$User u', null,
+                Sort.by('login', 'id'), [:], null, null, 'sec$User')
+        def applied = queryBuilder.restrictByKeyset(Sort.by('login', 'id'), [login: 'admin', id: id])
+
+        then:
+
+        applied
+        queryBuilder.getQueryString().contains('(u.login > :_keyset0) or (u.login = :_keyset0 and u.id > :_keyset1)')
+        queryBuilder.queryParams == [_keyset0: 'admin', _keyset1: id]
+
+        when: "sort is not unique"
+
+        queryBuilder = AppBeans.get(RdbmsQueryBuilder)
+        queryBuilder.init('select u from sec$User u', null,
+                Sort.by('login', 'name'), [:], null, null, 'sec$User')
+        applied = queryBuilder.restrictByKeyset(Sort.by('login', 'name'), [login: 'admin', name: 'Administrator'])
+
+        then:
+
+        !applied
+        queryBuilder.getQueryString() == 'select u from sec$User u order by u.login, u.name'
+
+        when: "value of the sort property is null"
+
+        queryBuilder = AppBeans.get(RdbmsQueryBuilder)
+        queryBuilder.init('select u from sec$User u', null,
+                Sort.by('name', 'id'), [:], null, null, 'sec$User')
+        applied = queryBuilder.restrictByKeyset(Sort.by('name', 'id'), [name: null, id: id])
+
+        then:
+
+        !applied
+
+        when: "sort property is nullable"
+
+        queryBuilder = AppBeans.get(RdbmsQueryBuilder)
+        queryBuilder.init('select u from sec$User u', null,
+                Sort.by('name', 'id'), [:], null, null, 'sec$User')
+        applied = queryBuilder.restrictByKeyset(Sort.by('name', 'id'), [name: 'Administrator', id: id])
+
+        then:
+
+        !applied
+    }
 }
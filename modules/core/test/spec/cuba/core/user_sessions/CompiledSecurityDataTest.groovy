@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package spec.cuba.core.user_sessions
+
+import com.haulmont.cuba.core.global.AppBeans
+import com.haulmont.cuba.security.entity.PermissionType
+import com.haulmont.cuba.security.entity.User
+import com.haulmont.cuba.security.global.UserSession
+import com.haulmont.cuba.security.sys.UserSessionManager
+import com.haulmont.cuba.testsupport.TestContainer
+import com.haulmont.cuba.testsupport.TestSupport
+import org.junit.ClassRule
+import spock.lang.Shared
+import spock.lang.Specification
+
+class CompiledSecurityDataTest extends Specification {
+
+    @Shared
+    @ClassRule
+    public TestContainer cont = TestContainer.Common.INSTANCE
+
+    private UserSessionManager userSessionManager = AppBeans.get(UserSessionManager)
+
+    def "sessions of the same user share compiled permissions and constraints"() {
+
+        when:
+
+        def session1 = createSession()
+        def session2 = createSession()
+
+        then:
+
+        session1.@permissions.is(session2.@permissions)
+        session1.@constraints.is(session2.@constraints)
+    }
+
+    def "modified session copies shared permissions"() {
+
+        given:
+
+        def session1 = createSession()
+        def session2 = createSession()
+
+        when:
+
+        session1.addPermission(PermissionType.SCREEN, 'compiledSecurityDataTest', null, 0)
+
+        then:
+
+        !session1.@permissions.is(session2.@permissions)
+        session1.getPermissionValue(PermissionType.SCREEN, 'compiledSecurityDataTest') == 0
+        session2.getPermissionValue(PermissionType.SCREEN, 'compiledSecurityDataTest') == null
+        createSession().getPermissionValue(PermissionType.SCREEN, 'compiledSecurityDataTest') == null
+    }
+
+    def "invalidated data is compiled again"() {
+
+        given:
+
+        def session1 = createSession()
+
+        when:
+
+        userSessionManager.invalidateCompiledSecurityData(false)
+        def session2 = createSession()
+
+        then:
+
+        !session1.@permissions.is(session2.@permissions)
+        !session1.@constraints.is(session2.@constraints)
+        createSession().@permissions.is(session2.@permissions)
+    }
+
+    private UserSession createSession() {
+        cont.persistence().callInTransaction { em ->
+            def user = em.find(User, TestSupport.ADMIN_USER_ID)
+            userSessionManager.createSession(user, Locale.ENGLISH, false)
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package spec.cuba.core.user_sessions
+
+import com.google.common.collect.ImmutableMap
+import com.haulmont.cuba.core.global.AppBeans
+import com.haulmont.cuba.security.app.UserSessionStore
+import com.haulmont.cuba.security.app.UserSessions
+import com.haulmont.cuba.security.entity.PermissionType
+import com.haulmont.cuba.security.entity.Role
+import com.haulmont.cuba.security.entity.User
+import com.haulmont.cuba.security.global.UserSession
+import com.haulmont.cuba.testsupport.TestContainer
+import com.haulmont.cuba.testsupport.TestSupport
+import org.junit.ClassRule
+import spock.lang.Shared
+import spock.lang.Specification
+
+class UserSessionStoreTest extends Specification {
+
+    @Shared
+    @ClassRule
+    public TestContainer cont = TestContainer.Common.INSTANCE
+
+    private UserSessionStore store = AppBeans.get(UserSessionStore)
+
+    private UserSession session1, session2
+
+    void setup() {
+        def role = cont.metadata().create(Role)
+        role.name = 'testRole'
+
+        session1 = createSession(role)
+        session2 = createSession(role)
+    }
+
+    void cleanup() {
+        store.remove(session1.id)
+        store.remove(session2.id)
+    }
+
+    def "sessions with equal permissions share them"() {
+
+        when:
+
+        store.put(session1.id, new UserSessions.UserSessionInfo(session1, System.currentTimeMillis()))
+        store.put(session2.id, new UserSessions.UserSessionInfo(session2, System.currentTimeMillis()))
+
+        then:
+
+        session1.@permissions[PermissionType.SCREEN.ordinal()].is(session2.@permissions[PermissionType.SCREEN.ordinal()])
+        session1.@permissions[PermissionType.SCREEN.ordinal()] instanceof ImmutableMap
+        session1.@roles.is(session2.@roles)
+        session1.@roleTypes.is(session2.@roleTypes)
+        store.getBytesPerSession() > 0
+
+        when:
+
+        session1.addPermission(PermissionType.SCREEN, 'screen2', null, 0)
+
+        then:
+
+        !session1.isScreenPermitted('screen2')
+        session2.isScreenPermitted('screen2')
+        !session1.isScreenPermitted('screen1')
+        !session2.isScreenPermitted('screen1')
+    }
+
+    def "deserialized session copies shared permissions before modification"() {
+
+        given:
+
+        store.put(session1.id, new UserSessions.UserSessionInfo(session1, System.currentTimeMillis()))
+
+        when:
+
+        UserSession deserialized = TestSupport.reserialize(session1)
+        deserialized.addPermission(PermissionType.SCREEN, 'screen2', null, 0)
+
+        then:
+
+        !deserialized.isScreenPermitted('screen2')
+        session1.isScreenPermitted('screen2')
+    }
+
+    private UserSession createSession(Role role) {
+        def user = cont.metadata().create(User)
+        user.login = 'test'
+        def session = new UserSession(UUID.randomUUID(), user, [role], Locale.ENGLISH, false)
+        session.addPermission(PermissionType.SCREEN, 'screen1', null, 0)
+        return session
+    }
+}
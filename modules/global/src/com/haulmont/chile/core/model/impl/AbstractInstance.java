@@ -20,6 +20,7 @@ package com.haulmont.chile.core.model.impl;
 import com.haulmont.chile.core.model.Instance;
 import com.haulmont.chile.core.model.utils.InstanceUtils;
 import com.haulmont.chile.core.model.utils.MethodsCache;
+import com.haulmont.chile.core.model.utils.PropertyAccessor;
 import com.haulmont.cuba.core.global.MetadataTools;
 
 import javax.annotation.Nullable;
@@ -27,8 +28,6 @@ import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 
@@ -38,7 +37,12 @@ public abstract class AbstractInstance implements Instance {
 
     protected transient Collection<WeakReference<PropertyChangeListener>> __propertyChangeListeners;
 
-    private static transient Map<Class, MethodsCache> methodCacheMap = new ConcurrentHashMap<>();
+    private static final ClassValue<MethodsCache> methodCacheMap = new ClassValue<MethodsCache>() {
+        @Override
+        protected MethodsCache computeValue(Class<?> type) {
+            return new MethodsCache(type);
+        }
+    };
 
     protected void propertyChanged(String s, Object prev, Object curr) {
         if (__propertyChangeListeners != null) {
@@ -100,13 +104,7 @@ public abstract class AbstractInstance implements Instance {
     }
 
     protected MethodsCache getMethodsCache() {
-        Class cls = getClass();
-        MethodsCache cache = methodCacheMap.get(cls);
-        if (cache == null) {
-            cache = new MethodsCache(cls);
-            methodCacheMap.put(cls, cache);
-        }
-        return cache;
+        return methodCacheMap.get(getClass());
     }
 
     @Override
@@ -126,9 +124,11 @@ public abstract class AbstractInstance implements Instance {
      */
     @SuppressWarnings("unchecked")
     public void setValue(String name, Object value, boolean checkEquals) {
-        Object oldValue = getValue(name);
+        MethodsCache methodsCache = getMethodsCache();
+        PropertyAccessor accessor = methodsCache.getAccessorNN(name);
+        Object oldValue = methodsCache.getGetterNN(accessor, name).apply(this);
         if ((!checkEquals) || (!InstanceUtils.propertyValueEquals(oldValue, value))) {
-            BiConsumer setter = getMethodsCache().getSetterNN(name);
+            BiConsumer setter = methodsCache.getSetterNN(accessor, name);
             setter.accept(this, value);
         }
     }
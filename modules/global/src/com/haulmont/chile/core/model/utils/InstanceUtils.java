@@ -113,6 +113,10 @@ public final class InstanceUtils {
      * @return attribute value
      */
     public static <T> T getValueEx(Instance instance, String propertyPath) {
+        if (propertyPath != null && propertyPath.indexOf('.') < 0) {
+            // single property, avoid parsing
+            return instance.getValue(propertyPath);
+        }
         String[] properties = parseValuePath(propertyPath);
         return getValueEx(instance, properties);
     }
@@ -168,6 +172,11 @@ public final class InstanceUtils {
      * @param value        attribute value
      */
     public static void setValueEx(Instance instance, String propertyPath, Object value) {
+        if (propertyPath != null && propertyPath.indexOf('.') < 0) {
+            // single property, avoid parsing
+            instance.setValue(propertyPath, value);
+            return;
+        }
         String[] properties = parseValuePath(propertyPath);
         setValueEx(instance, properties, value);
     }
@@ -19,6 +19,7 @@ package com.haulmont.chile.core.model.utils;
 import com.google.common.collect.ImmutableMap;
 import org.apache.commons.lang3.StringUtils;
 
+import javax.annotation.Nullable;
 import java.lang.invoke.*;
 import java.lang.reflect.Method;
 import java.util.HashMap;
@@ -26,10 +27,13 @@ import java.util.Map;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 
+/**
+ * Getters and setters of a class generated by {@link LambdaMetafactory}. The getter and setter of a property are kept
+ * together in {@link PropertyAccessor}, so both are found by a single lookup.
+ */
 public class MethodsCache {
 
-    private final Map<String, Function> getters = new HashMap<>();
-    private final Map<String, BiConsumer> setters = new HashMap<>();
+    private final Map<String, PropertyAccessor> accessors = new HashMap<>();
     private String className;
 
     private static final Map<Class, Class> primitivesToObjects = new ImmutableMap.Builder<Class, Class>()
@@ -51,15 +55,15 @@ public class MethodsCache {
             if (name.startsWith("get") && method.getParameterTypes().length == 0) {
                 Function getter = createGetter(clazz, method);
                 name = StringUtils.uncapitalize(name.substring(3));
-                getters.put(name, getter);
+                accessors.computeIfAbsent(name, PropertyAccessor::new).setGetter(getter);
             } else if (name.startsWith("is") && method.getParameterTypes().length == 0) {
                 Function getter = createGetter(clazz, method);
                 name = StringUtils.uncapitalize(name.substring(2));
-                getters.put(name, getter);
+                accessors.computeIfAbsent(name, PropertyAccessor::new).setGetter(getter);
             } else if (name.startsWith("set") && method.getParameterTypes().length == 1) {
                 BiConsumer setter = createSetter(clazz, method);
                 name = StringUtils.uncapitalize(name.substring(3));
-                setters.put(name, setter);
+                accessors.computeIfAbsent(name, PropertyAccessor::new).setSetter(setter);
             }
         }
         className = clazz.toString();
@@ -114,13 +118,37 @@ public class MethodsCache {
         getSetterNN(property).accept(object, value);
     }
 
+    /**
+     * @param property name of property
+     * @return accessor containing getter and setter of the property
+     * @throws IllegalArgumentException if neither getter nor setter for property found
+     */
+    public PropertyAccessor getAccessorNN(String property) {
+        PropertyAccessor accessor = accessors.get(property);
+        if (accessor == null) {
+            throw new IllegalArgumentException(
+                    String.format("Can't find getter or setter for property '%s' at %s", property, className));
+        }
+        return accessor;
+    }
+
     /**
      * @param property name of property associated with getter
      * @return lambda {@link Function} which represents getter
      * @throws IllegalArgumentException if getter for property not found
      */
     public Function getGetterNN(String property) {
-        Function getter = getters.get(property);
+        return getGetterNN(accessors.get(property), property);
+    }
+
+    /**
+     * @param accessor accessor obtained from {@link #getAccessorNN(String)}, can be null
+     * @param property name of property associated with getter
+     * @return lambda {@link Function} which represents getter
+     * @throws IllegalArgumentException if getter for property not found
+     */
+    public Function getGetterNN(@Nullable PropertyAccessor accessor, String property) {
+        Function getter = accessor != null ? accessor.getGetter() : null;
         if (getter == null) {
             throw new IllegalArgumentException(
                     String.format("Can't find getter for property '%s' at %s", property, className));
@@ -134,11 +162,21 @@ public class MethodsCache {
      * @throws IllegalArgumentException if setter for property not found
      */
     public BiConsumer getSetterNN(String property) {
-        BiConsumer setter = setters.get(property);
+        return getSetterNN(accessors.get(property), property);
+    }
+
+    /**
+     * @param accessor accessor obtained from {@link #getAccessorNN(String)}, can be null
+     * @param property name of property associated with setter
+     * @return lambda {@link BiConsumer} which represents setter
+     * @throws IllegalArgumentException if setter for property not found
+     */
+    public BiConsumer getSetterNN(@Nullable PropertyAccessor accessor, String property) {
+        BiConsumer setter = accessor != null ? accessor.getSetter() : null;
         if (setter == null) {
             throw new IllegalArgumentException(
                     String.format("Can't find setter for property '%s' at %s", property, className));
         }
         return setter;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.haulmont.chile.core.model.utils;
+
+import javax.annotation.Nullable;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Getter and setter of a bean property, generated by {@link MethodsCache}.
+ */
+public final class PropertyAccessor {
+
+    private final String name;
+    private Function getter;
+    private BiConsumer setter;
+
+    PropertyAccessor(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return lambda {@link Function} which represents getter or null if the property is write-only
+     */
+    @Nullable
+    public Function getGetter() {
+        return getter;
+    }
+
+    void setGetter(Function getter) {
+        this.getter = getter;
+    }
+
+    /**
+     * @return lambda {@link BiConsumer} which represents setter or null if the property is read-only
+     */
+    @Nullable
+    public BiConsumer getSetter() {
+        return setter;
+    }
+
+    void setSetter(BiConsumer setter) {
+        this.setter = setter;
+    }
+}
@@ -23,6 +23,7 @@ import com.haulmont.cuba.core.config.type.TypeFactory;
 
 import java.lang.reflect.Method;
 import java.util.NoSuchElementException;
+import java.util.UUID;
 
 /**
  * Implementation of configuration getter methods.
@@ -38,6 +39,8 @@ public class ConfigGetter extends ConfigAccessorMethod {
 
     private TypeFactory factory;
 
+    private final boolean cacheable;
+
     /**
      * Create a new ConfigGetter instance.
      *
@@ -51,6 +54,38 @@ public class ConfigGetter extends ConfigAccessorMethod {
         sourceType = ConfigUtil.getSourceType(configInterface, method);
 //        if (!String.class.equals(method.getReturnType()))
         factory = TypeFactory.getInstance(configInterface, method);
+        cacheable = sourceType != SourceType.SYSTEM && isImmutableType(method.getReturnType());
+    }
+
+    /**
+     * Whether the typed value returned by the getter can be cached by {@link ConfigHandler}. System properties
+     * can be changed without notification, and values of mutable types can be changed by the caller,
+     * so such getters are not cached.
+     *
+     * @return true if the value can be cached
+     */
+    public boolean isCacheable() {
+        return cacheable;
+    }
+
+    public SourceType getSourceType() {
+        return sourceType;
+    }
+
+    private static boolean isImmutableType(Class<?> type) {
+        return type.isPrimitive()
+                || type.isEnum()
+                || String.class.equals(type)
+                || Boolean.class.equals(type)
+                || Character.class.equals(type)
+                || Integer.class.equals(type)
+                || Long.class.equals(type)
+                || Short.class.equals(type)
+                || Byte.class.equals(type)
+                || Double.class.equals(type)
+                || Float.class.equals(type)
+                || UUID.class.equals(type)
+                || Class.class.equals(type);
     }
 
     /**
@@ -21,12 +21,26 @@ package com.haulmont.cuba.core.config;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Configuration interface method handler.
+ * <p>
+ * Values returned by {@link ConfigGetter#isCacheable() cacheable} getters are cached by the handler until
+ * {@link #invalidateCachedValues()} is invoked, unless the persister does not allow caching values of the getter
+ * source.
  *
  */
 public class ConfigHandler implements InvocationHandler {
+    /**
+     * Incremented when configuration values may have changed.
+     */
+    private static final AtomicLong valuesVersion = new AtomicLong();
+
+    private static final Object NULL_VALUE = new Object();
+
     /**
      * The configuration source.
      */
@@ -35,6 +49,14 @@ public class ConfigHandler implements InvocationHandler {
      * The configuration interface.
      */
     private final Class<?> configInterface;
+    /**
+     * Method implementations of the configuration interface.
+     */
+    private final Map<Method, ConfigMethod> configMethods = new ConcurrentHashMap<>();
+    /**
+     * Typed values of the cacheable getters.
+     */
+    private volatile CachedValues cachedValues = new CachedValues(valuesVersion.get());
 
     /**
      * Create a new ConfigHandler instance.
@@ -75,7 +97,53 @@ public class ConfigHandler implements InvocationHandler {
      */
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        ConfigMethod configMethod = ConfigMethods.getInstance(configInterface, method);
-        return configMethod.invoke(this, args, proxy);
-  }
+        ConfigMethod configMethod = configMethods.computeIfAbsent(method,
+                m -> ConfigMethods.getInstance(configInterface, m));
+
+        if ((args == null || args.length == 0)
+                && configMethod instanceof ConfigGetter
+                && ((ConfigGetter) configMethod).isCacheable()
+                && persister.isCacheable(((ConfigGetter) configMethod).getSourceType())) {
+            return getCachedValue(method, configMethod, proxy);
+        }
+
+        Object result = configMethod.invoke(this, args, proxy);
+        if (configMethod instanceof ConfigSetter) {
+            invalidateCachedValues();
+        }
+        return result;
+    }
+
+    private Object getCachedValue(Method method, ConfigMethod configMethod, Object proxy) {
+        long version = valuesVersion.get();
+        CachedValues values = cachedValues;
+        if (values.version != version) {
+            values = new CachedValues(version);
+            cachedValues = values;
+        }
+
+        Object value = values.values.get(method);
+        if (value == null) {
+            value = configMethod.invoke(this, null, proxy);
+            values.values.put(method, value != null ? value : NULL_VALUE);
+        }
+        return value == NULL_VALUE ? null : value;
+    }
+
+    /**
+     * Discards typed values cached by all handlers, so they are read from the configuration source again.
+     * Must be invoked after a configuration value is changed.
+     */
+    public static void invalidateCachedValues() {
+        valuesVersion.incrementAndGet();
+    }
+
+    private static class CachedValues {
+        private final long version;
+        private final Map<Method, Object> values = new ConcurrentHashMap<>();
+
+        private CachedValues(long version) {
+            this.version = version;
+        }
+    }
 }
\ No newline at end of file
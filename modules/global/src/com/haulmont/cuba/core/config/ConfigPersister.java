@@ -20,4 +20,12 @@ public interface ConfigPersister {
     String getProperty(SourceType sourceType, String name);
 
     void setProperty(SourceType sourceType, String name, String value);
+
+    /**
+     * Whether typed values of the source can be cached by {@link ConfigHandler}. If true, the persister must invoke
+     * {@link ConfigHandler#invalidateCachedValues()} when values of the source change.
+     */
+    default boolean isCacheable(SourceType sourceType) {
+        return true;
+    }
 }
\ No newline at end of file
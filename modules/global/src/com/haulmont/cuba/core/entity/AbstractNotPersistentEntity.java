@@ -20,6 +20,8 @@ import com.haulmont.chile.core.annotations.MetaProperty;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.chile.core.model.impl.AbstractInstance;
 import com.haulmont.chile.core.model.utils.InstanceUtils;
+import com.haulmont.chile.core.model.utils.MethodsCache;
+import com.haulmont.chile.core.model.utils.PropertyAccessor;
 import com.haulmont.cuba.core.entity.annotation.SystemLevel;
 import com.haulmont.cuba.core.global.AppBeans;
 import com.haulmont.cuba.core.global.Metadata;
@@ -81,9 +83,11 @@ public abstract class AbstractNotPersistentEntity
     @SuppressWarnings("unchecked")
     @Override
     public void setValue(String property, Object obj, boolean checkEquals) {
-        Object oldValue = getValue(property);
+        MethodsCache methodsCache = getMethodsCache();
+        PropertyAccessor accessor = methodsCache.getAccessorNN(property);
+        Object oldValue = methodsCache.getGetterNN(accessor, property).apply(this);
         if ((!checkEquals) || (!InstanceUtils.propertyValueEquals(oldValue, obj))) {
-            BiConsumer setter = getMethodsCache().getSetterNN(property);
+            BiConsumer setter = methodsCache.getSetterNN(accessor, property);
             setter.accept(this, obj);
             if (!(this instanceof CubaEnhanced)) {
                 propertyChanged(property, oldValue, obj);
@@ -40,6 +40,7 @@ public class CommitContext implements Serializable {
     protected boolean discardCommitted;
     protected boolean authorizationRequired;
     protected boolean joinTransaction;
+    protected boolean bulk;
     protected ValidationType validationType = ValidationType.DEFAULT;
     protected Map<String, Object> dbHints = new HashMap<>();
     protected List<Class> validationGroups;
@@ -230,6 +231,30 @@ public class CommitContext implements Serializable {
         return this;
     }
 
+    /**
+     * @return true if the bulk commit mode is enabled
+     * @see #setBulk(boolean)
+     */
+    public boolean isBulk() {
+        return bulk;
+    }
+
+    /**
+     * Enables the bulk commit mode intended for committing large amounts of data, e.g. on import.
+     * <p>
+     * In this mode, the data store groups instances by entity type and writes them in batches: each batch is flushed
+     * with JDBC batching (if enabled for the data store by {@code eclipselink.jdbc.batch-writing} property) and
+     * detached right away. Optimistic locking, soft deletion, entity log and dynamic attributes work as usual, but
+     * committed instances are not returned, and instead of {@code EntityChangedEvent} for each instance a single
+     * {@code EntityBatchChangedEvent} is published for each batch.
+     *
+     * @see #isDiscardCommitted()
+     */
+    public CommitContext setBulk(boolean bulk) {
+        this.bulk = bulk;
+        return this;
+    }
+
     private View getViewFromRepository(Entity entity, String viewName) {
         Metadata metadata = AppBeans.get(Metadata.NAME);
         return metadata.getViewRepository().getView(metadata.getClass(entity.getClass()), viewName);
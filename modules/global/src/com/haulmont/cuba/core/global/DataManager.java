@@ -22,10 +22,13 @@ import com.haulmont.cuba.core.entity.BaseGenericIdEntity;
 import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.core.entity.KeyValueEntity;
 import com.haulmont.cuba.core.entity.contracts.Id;
+import com.haulmont.cuba.core.sys.PagedChunksLoader;
 
 import javax.annotation.CheckReturnValue;
 import javax.annotation.Nullable;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Central interface to provide CRUD functionality. Can be used on both middle and client tiers.
@@ -62,6 +65,20 @@ public interface DataManager {
     @CheckReturnValue
     <E extends Entity> List<E> loadList(LoadContext<E> context);
 
+    /**
+     * Loads collection of entity instances and passes them to the consumer in chunks of detached instances.
+     * <p>Use this method to process large result sets: only one chunk is kept in memory at a time. On the middleware,
+     * {@code RdbmsStore} reads the result through a database cursor within a single transaction. On the client tier,
+     * the result is loaded page by page using first and max results of the query, the primary key is added to the
+     * query sort to make the pages deterministic.</p>
+     * @param context   {@link LoadContext} object, defining what and how to load
+     * @param chunkSize maximum number of instances passed to the consumer at once
+     * @param consumer  receives subsequent chunks of detached instances
+     */
+    default <E extends Entity> void loadListByChunks(LoadContext<E> context, int chunkSize, Consumer<List<E>> consumer) {
+        PagedChunksLoader.loadByPages(context, chunkSize, this::loadList, consumer);
+    }
+
     /**
      * Returns the number of entity instances for the given query passed in the {@link LoadContext}.
      * @param context   defines the query
@@ -166,6 +183,29 @@ public interface DataManager {
     @CheckReturnValue
     List<KeyValueEntity> loadValues(ValueLoadContext context);
 
+    /**
+     * Calculates aggregate values over all entities matching the query of the given load context by a single
+     * database query. Paging and sorting of the query are ignored, each matching entity is aggregated once.
+     * <p>Usage example:
+     * <pre>
+     * Map&lt;String, String&gt; aggregates = new LinkedHashMap&lt;&gt;();
+     * aggregates.put("total", "sum({E}.amount)");
+     * aggregates.put("count", "count({E})");
+     * KeyValueEntity totals = dataManager.aggregate(loadContext, aggregates);
+     * </pre>
+     * @param context    entity load context defining the query
+     * @param aggregates map of result property names to JPQL aggregate expressions, "{E}" is replaced with the
+     *                   alias of the aggregated entity
+     * @return KeyValueEntity with the aggregate values, or null if the store returned no rows
+     * @see ValueLoadContext#createAggregation(LoadContext, java.util.Map)
+     */
+    @Nullable
+    @CheckReturnValue
+    default KeyValueEntity aggregate(LoadContext<?> context, Map<String, String> aggregates) {
+        List<KeyValueEntity> list = loadValues(ValueLoadContext.createAggregation(context, aggregates));
+        return list.isEmpty() ? null : list.get(0);
+    }
+
     /**
      * By default, DataManager does not apply security restrictions on entity operations and attributes, only row-level
      * constraints take effect.
@@ -175,6 +175,21 @@ public interface GlobalConfig extends Config {
     @DefaultInt(100)
     int getNumberIdCacheSize();
 
+    /**
+     * @return maximum number of id ranges that {@link com.haulmont.cuba.core.sys.NumberIdCache} fetches in advance
+     * in a background thread. The actual number adapts to the rate of id allocation. 0 disables fetching in advance.
+     */
+    @Property("cuba.numberIdCachePrefetchDepth")
+    @DefaultInt(0)
+    int getNumberIdCachePrefetchDepth();
+
+    /**
+     * @return the maximum number of parsed JPQL queries cached by {@link QueryTransformerFactory}, 0 disables the cache
+     */
+    @Property("cuba.jpqlAstCacheSize")
+    @DefaultInt(1000)
+    int getJpqlAstCacheSize();
+
     @Property("cuba.anonymousSessionId")
     @Factory(factory = UuidTypeFactory.class)
     UUID getAnonymousSessionId();
@@ -55,6 +55,7 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
     protected boolean loadPartialEntities = true;
     protected boolean authorizationRequired;
     protected boolean joinTransaction;
+    protected boolean loadReferencesLazily;
 
     protected Map<String, Object> dbHints; // lazy initialized map
 
@@ -278,6 +279,26 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
         return this;
     }
 
+    /**
+     * @return whether reference attributes of the view are loaded on first access
+     * @see #setLoadReferencesLazily(boolean)
+     */
+    public boolean isLoadReferencesLazily() {
+        return loadReferencesLazily;
+    }
+
+    /**
+     * Whether to load only local attributes of the view together with the entities. Reference attributes of the view
+     * are loaded on first access: when an attribute is read from one of the loaded entities, it is loaded
+     * by a single query for all entities of the result.
+     * <p>Works only for {@link DataManager#loadList(LoadContext)} of entities with a simple primary key and is ignored
+     * if the entities are checked by in-memory read constraints.
+     */
+    public LoadContext<E> setLoadReferencesLazily(boolean loadReferencesLazily) {
+        this.loadReferencesLazily = loadReferencesLazily;
+        return this;
+    }
+
     /**
      * Creates a copy of this LoadContext instance.
      */
@@ -299,8 +320,10 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
             ctx.getDbHints().putAll(dbHints);
         }
         ctx.loadDynamicAttributes = loadDynamicAttributes;
+        ctx.loadPartialEntities = loadPartialEntities;
         ctx.authorizationRequired = authorizationRequired;
         ctx.joinTransaction = joinTransaction;
+        ctx.loadReferencesLazily = loadReferencesLazily;
         return ctx;
     }
 
@@ -327,6 +350,7 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
         private boolean cacheable;
         private Condition condition;
         private Sort sort;
+        private Map<String, Object> keysetValues;
 
         /**
          * @param queryString JPQL query string. Only named parameters are supported.
@@ -459,6 +483,32 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
             return this;
         }
 
+        /**
+         * @return values of the sort properties of the last row of the previous page, or null if keyset pagination
+         * is not used
+         */
+        @Nullable
+        public Map<String, Object> getKeysetValues() {
+            return keysetValues;
+        }
+
+        /**
+         * Enables keyset (seek) pagination. Instead of skipping {@code firstResult} rows, the data store selects rows
+         * that follow the given values of the sort properties. Keys of the map are property paths from the
+         * {@link #getSort() sort}, values are taken from the last row of the previous page.
+         * <p>
+         * {@code RdbmsStore} applies it only if the sort is in one direction by persistent non-reference mandatory
+         * attributes and its last property is unique (e.g. the primary key), otherwise the query falls back to
+         * {@code firstResult}, so the latter should always be set as well.
+         *
+         * @param keysetValues values of the sort properties, or null to disable keyset pagination
+         * @return this query instance for chaining
+         */
+        public Query setKeysetValues(@Nullable Map<String, Object> keysetValues) {
+            this.keysetValues = keysetValues;
+            return this;
+        }
+
         /**
          * Indicates that the query results should be cached.
          * @return the same query instance
@@ -503,6 +553,7 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
             query.cacheable = cacheable;
             query.condition = condition == null ? null : condition.copy();
             query.sort = sort;
+            query.keysetValues = keysetValues == null ? null : new HashMap<>(keysetValues);
             return query;
         }
 
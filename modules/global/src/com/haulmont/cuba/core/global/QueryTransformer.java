@@ -66,6 +66,12 @@ public interface QueryTransformer {
     /** Adds 'order by' clause if it doesn't exists */
     void addOrderByIdIfNotExists(String idProperty);
 
+    /**
+     * Adds the entity identifier as the last item of 'order by' clause if the clause does not contain it,
+     * so rows with equal values of the other items are ordered deterministically.
+     */
+    void addOrderByIdTieBreaker(String idProperty);
+
     /** Adds @param entityAlias to 'group by' clause */
     void addEntityInGroupBy(String entityAlias);
 
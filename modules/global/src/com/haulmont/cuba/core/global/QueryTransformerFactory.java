@@ -16,14 +16,24 @@
  */
 package com.haulmont.cuba.core.global;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.haulmont.cuba.core.sys.jpql.DomainModel;
 import com.haulmont.cuba.core.sys.jpql.DomainModelBuilder;
+import com.haulmont.cuba.core.sys.jpql.JPATreeNodes;
+import com.haulmont.cuba.core.sys.jpql.QueryTree;
+import org.antlr.runtime.tree.CommonTree;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 /**
  * Factory to get {@link QueryParser} and {@link QueryTransformer} instances.
+ * <p>
+ * Keeps a bounded cache of ASTs parsed from JPQL query strings. Parsers and transformers obtain a copy of the cached
+ * AST through {@link #createQueryTree(DomainModel, String)}, so the cached trees are never modified.
  */
 @Component(QueryTransformerFactory.NAME)
 public class QueryTransformerFactory {
@@ -35,6 +45,11 @@ public class QueryTransformerFactory {
     @Inject
     protected BeanLocator beanLocator;
 
+    @Inject
+    protected GlobalConfig globalConfig;
+
+    protected volatile Cache<String, CommonTree> astCache;
+
     public static QueryTransformer createTransformer(String query) {
         return AppBeans.get(NAME, QueryTransformerFactory.class).transformer(query);
     }
@@ -58,4 +73,61 @@ public class QueryTransformerFactory {
         }
         return beanLocator.getPrototype(QueryParser.NAME, domainModel, query);
     }
-}
\ No newline at end of file
+
+    /**
+     * Creates a tree for the given query using the cached AST if possible.
+     *
+     * @throws com.haulmont.cuba.core.sys.jpql.JPA2RecognitionException if the query cannot be parsed
+     */
+    public QueryTree createQueryTree(DomainModel model, String query) {
+        Cache<String, CommonTree> cache = getAstCache();
+        if (cache == null) {
+            return new QueryTree(model, query);
+        }
+        CommonTree ast = cache.getIfPresent(query);
+        if (ast == null) {
+            ast = QueryTree.parseAst(query, true);
+            cache.put(query, ast);
+        }
+        return new QueryTree(model, query, JPATreeNodes.copyTree(ast));
+    }
+
+    /**
+     * @return statistics of the parsed queries cache
+     */
+    public CacheStats getAstCacheStats() {
+        Cache<String, CommonTree> cache = getAstCache();
+        return cache == null ? new CacheStats(0, 0, 0, 0, 0, 0) : cache.stats();
+    }
+
+    public long getAstCacheSize() {
+        Cache<String, CommonTree> cache = getAstCache();
+        return cache == null ? 0 : cache.size();
+    }
+
+    public void clearAstCache() {
+        Cache<String, CommonTree> cache = getAstCache();
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    @Nullable
+    protected Cache<String, CommonTree> getAstCache() {
+        if (astCache == null) {
+            int size = globalConfig.getJpqlAstCacheSize();
+            if (size <= 0) {
+                return null;
+            }
+            synchronized (this) {
+                if (astCache == null) {
+                    astCache = CacheBuilder.newBuilder()
+                            .maximumSize(size)
+                            .recordStats()
+                            .build();
+                }
+            }
+        }
+        return astCache;
+    }
+}
@@ -16,12 +16,15 @@
 
 package com.haulmont.cuba.core.global;
 
+import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.cuba.core.global.queryconditions.Condition;
+import com.haulmont.cuba.core.global.queryconditions.ConditionJpqlGenerator;
 
 import javax.annotation.Nullable;
 import javax.persistence.TemporalType;
 import java.io.Serializable;
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * Class that defines parameters for loading values from the database via {@link DataManager#loadValues(ValueLoadContext)}.
@@ -36,6 +39,8 @@ import java.util.*;
  */
 public class ValueLoadContext implements DataLoadContext, Serializable {
 
+    private static final String AGGREGATION_ALIAS = "ag_";
+
     protected String storeName = Stores.MAIN;
     protected Query query;
     protected boolean softDeletion = true;
@@ -58,6 +63,84 @@ public class ValueLoadContext implements DataLoadContext, Serializable {
         return new Query(queryString);
     }
 
+    /**
+     * Creates an instance of ValueLoadContext which calculates aggregates over all entities matching the query
+     * of the given entity load context. Paging and sorting of the query are ignored, its parameters and condition
+     * are preserved.
+     *
+     * @param loadContext entity load context
+     * @param aggregates  map of result property names to JPQL aggregate expressions, e.g. {@code sum({E}.amount)}.
+     *                    "{E}" is replaced with the alias of the aggregated entity
+     * @see #createAggregation(LoadContext, Map, String)
+     */
+    public static ValueLoadContext createAggregation(LoadContext<?> loadContext, Map<String, String> aggregates) {
+        return createAggregation(loadContext, aggregates, "");
+    }
+
+    /**
+     * Creates an instance of ValueLoadContext which calculates aggregates over all entities matching the query
+     * of the given entity load context. Paging and sorting of the query are ignored, its parameters and condition
+     * are preserved.
+     * <p>
+     * The aggregates are selected by an outer query from the entities whose identifiers are returned by the
+     * original query, so each entity is aggregated once even if the original query joins collections.
+     *
+     * @param loadContext entity load context
+     * @param aggregates  map of result property names to JPQL aggregate expressions, e.g. {@code sum(c.amount)}.
+     *                    "{E}" is replaced with the alias of the aggregated entity
+     * @param joins       join clauses of the outer query, e.g. {@code left join {E}.customer c}. Left joins of
+     *                    references must be used to keep entities without the reference in the aggregates
+     */
+    public static ValueLoadContext createAggregation(LoadContext<?> loadContext, Map<String, String> aggregates,
+                                                     String joins) {
+        LoadContext.Query contextQuery = loadContext.getQuery();
+        if (contextQuery == null)
+            throw new IllegalArgumentException("LoadContext query is null");
+        if (aggregates.isEmpty())
+            throw new IllegalArgumentException("No aggregates specified");
+
+        Metadata metadata = AppBeans.get(Metadata.NAME);
+        MetaClass metaClass = metadata.getClassNN(loadContext.getMetaClass());
+        String pkName = metadata.getTools().getPrimaryKeyName(metaClass);
+        if (pkName == null || metadata.getTools().hasCompositePrimaryKey(metaClass))
+            throw new IllegalArgumentException("Aggregation requires a simple primary key of " + metaClass.getName());
+
+        // the condition refers to the alias of the original query, so it is applied before wrapping the query
+        String queryString = contextQuery.getQueryString();
+        if (contextQuery.getCondition() != null) {
+            Set<String> nonNullParamNames = contextQuery.getParameters().entrySet().stream()
+                    .filter(e -> e.getValue() != null)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toSet());
+            ConditionJpqlGenerator conditionJpqlGenerator = AppBeans.get(ConditionJpqlGenerator.NAME);
+            queryString = conditionJpqlGenerator.processQuery(queryString,
+                    contextQuery.getCondition().actualize(nonNullParamNames));
+        }
+        QueryTransformer transformer = AppBeans.get(QueryTransformerFactory.class).transformer(queryString);
+        transformer.replaceWithSelectId(pkName);
+        transformer.removeOrderBy();
+
+        String selectClause = String.join(", ", aggregates.values()).replace("{E}", AGGREGATION_ALIAS);
+        String joinClause = joins.replace("{E}", AGGREGATION_ALIAS);
+        Query query = new Query(String.format("select %s from %s %s %s where %s.%s in (%s)",
+                selectClause, metaClass.getName(), AGGREGATION_ALIAS, joinClause, AGGREGATION_ALIAS, pkName,
+                transformer.getResult()));
+
+        List<String> noConversionParams = contextQuery.getNoConversionParams() == null ?
+                Collections.emptyList() : Arrays.asList(contextQuery.getNoConversionParams());
+        for (Map.Entry<String, Object> entry : contextQuery.getParameters().entrySet()) {
+            query.setParameter(entry.getKey(), entry.getValue(), !noConversionParams.contains(entry.getKey()));
+        }
+
+        ValueLoadContext context = create()
+                .setQuery(query)
+                .setStoreName(metadata.getTools().getStoreName(metaClass))
+                .setSoftDeletion(loadContext.isSoftDeletion())
+                .setProperties(new ArrayList<>(aggregates.keySet()));
+        context.setAuthorizationRequired(loadContext.isAuthorizationRequired());
+        return context;
+    }
+
     /**
      * @param queryString JPQL query string. Only named parameters are supported.
      * @return  query definition object
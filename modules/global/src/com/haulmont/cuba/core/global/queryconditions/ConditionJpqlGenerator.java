@@ -42,6 +42,17 @@ public class ConditionJpqlGenerator {
         return transformer.getResult();
     }
 
+    /**
+     * Returns a string identifying the JPQL generated for the given condition. Can be used as a cache key.
+     * @param condition root condition, can be null
+     */
+    public String generateKey(@Nullable Condition condition) {
+        if (condition == null) {
+            return "";
+        }
+        return generateJoins(condition) + "|" + generateWhere(condition);
+    }
+
     protected String generateJoins(Condition condition) {
         if (condition instanceof LogicalCondition) {
             LogicalCondition logical = (LogicalCondition) condition;
@@ -19,14 +19,13 @@ package com.haulmont.cuba.core.sys;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
 import com.haulmont.chile.core.datatypes.FormatStrings;
 import com.haulmont.chile.core.datatypes.FormatStringsRegistry;
 import com.haulmont.cuba.core.global.*;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.text.StringTokenizer;
-import org.apache.commons.text.TextStringBuilder;
 import org.perf4j.StopWatch;
 import org.perf4j.slf4j.Slf4JStopWatch;
 import org.slf4j.Logger;
@@ -72,15 +71,19 @@ public abstract class AbstractMessages implements Messages {
 
     protected String mainMessagePack;
 
-    protected Map<String, String> strCache = new ConcurrentHashMap<>();
+    protected String lastMainMessagePack;
 
-    // Using ConcurrentHashMap instead of synchronized Set for better parallelism
-    protected Map<String, String> notFoundCache = new ConcurrentHashMap<>();
+    // Compiled packs by locale and pack name, default messages are stored under Locale.ROOT
+    protected Map<Locale, Map<String, CompiledMessagePack>> compiledPacks = new ConcurrentHashMap<>();
 
-    protected Cache<String, Properties> filePropertiesCache = CacheBuilder.newBuilder().build();
-    protected Cache<String, Properties> resourcePropertiesCache = CacheBuilder.newBuilder().build();
+    // Compiled packs in the search order by locale and space-separated pack names
+    protected Map<Locale, Map<String, CompiledMessagePack[]>> packsIndex = new ConcurrentHashMap<>();
 
-    protected final static Properties PROPERTIES_NOT_FOUND = new Properties();
+    protected Cache<String, CompiledMessagePack.Bundle> fileBundlesCache = CacheBuilder.newBuilder().build();
+    protected Cache<String, CompiledMessagePack.Bundle> resourceBundlesCache = CacheBuilder.newBuilder().build();
+
+    protected final static CompiledMessagePack.Bundle BUNDLE_NOT_FOUND =
+            new CompiledMessagePack.Bundle(Collections.emptyMap());
 
     protected abstract Locale getUserLocale();
 
@@ -101,6 +104,9 @@ public abstract class AbstractMessages implements Messages {
 
         log.debug("Main message pack: " + mainMessagePack);
 
+        String[] mainPacks = StringUtils.split(mainMessagePack);
+        lastMainMessagePack = mainPacks[mainPacks.length - 1];
+
         for (Locale locale : globalConfig.getAvailableLocales().values()) {
             String numberDecimalSeparator = getMainMessage("numberDecimalSeparator", locale);
             String numberGroupingSeparator = getMainMessage("numberGroupingSeparator", locale);
@@ -249,8 +255,7 @@ public abstract class AbstractMessages implements Messages {
         checkNotNullArgument(packs, "Messages pack name is null");
         checkNotNullArgument(key, "Message key is null");
 
-        String compositeKey = packs + "/" + key;
-        String msg = internalGetMessage(mainMessagePack, compositeKey, locale, null, false);
+        String msg = internalGetQualifiedMessage(mainMessagePack, packs, key, locale);
         if (msg != null)
             return msg;
 
@@ -266,10 +271,7 @@ public abstract class AbstractMessages implements Messages {
         if (locale == null)
             locale = getUserLocale();
 
-        String compositeKey = packs + "/" + key;
-        String[] split = mainMessagePack.split(" ");
-        String lastMainMessagePack = split[split.length - 1];
-        String msg = internalGetMessage(lastMainMessagePack, compositeKey, locale, null, false);
+        String msg = internalGetQualifiedMessage(lastMainMessagePack, packs, key, locale);
         if (msg != null)
             return msg;
 
@@ -287,203 +289,278 @@ public abstract class AbstractMessages implements Messages {
 
     @Override
     public int getCacheSize() {
-        return strCache.size();
+        int size = 0;
+        for (Map<String, CompiledMessagePack> localePacks : compiledPacks.values()) {
+            size += localePacks.size();
+        }
+        return size;
     }
 
     @Override
     public void clearCache() {
-        filePropertiesCache.invalidateAll();
-        resourcePropertiesCache.invalidateAll();
-        strCache.clear();
-        notFoundCache.clear();
+        fileBundlesCache.invalidateAll();
+        resourceBundlesCache.invalidateAll();
+        compiledPacks.clear();
+        packsIndex.clear();
     }
 
     protected String internalGetMessage(String packs, String key, Locale locale, String defaultValue,
                                         boolean searchMainIfNotFound) {
         locale = messageTools.trimLocale(locale);
 
-        String cacheKey = makeCacheKey(packs, key, locale, locale);
-
-        String msg = strCache.get(cacheKey);
+        String msg = searchMessage(getCompiledPacks(packs, locale), key);
         if (msg != null)
             return msg;
 
-        String notFound = notFoundCache.get(cacheKey);
-        if (notFound != null)
-            return defaultValue;
-
-        msg = searchMessage(packs, key, locale, locale, new HashSet<>());
-        if (msg != null) {
-            cache(cacheKey, msg);
-            return msg;
-        }
-
         if (searchMainIfNotFound) {
-            String tmpCacheKey = makeCacheKey(mainMessagePack, key, locale, locale);
-            msg = searchMessage(tmpCacheKey, key, locale, locale, new HashSet<>());
-            if (msg != null) {
-                cache(cacheKey, msg);
+            msg = searchMessage(getCompiledPacks(mainMessagePack, locale), key);
+            if (msg != null)
                 return msg;
-            }
         }
 
-        notFoundCache.put(cacheKey, key);
+        if (log.isTraceEnabled()) {
+            log.trace("Resource '{}/{}/{}' not found", packs, locale, key);
+        }
         return defaultValue;
     }
 
+    /**
+     * Searches for a message defined in the main message pack with a key qualified by the pack name,
+     * e.g. {@code com.company.sample.entity/Customer.name}.
+     */
     @Nullable
-    protected String searchMessage(String packs, String key, Locale locale, Locale truncatedLocale, Set<String> passedPacks) {
-        StringTokenizer tokenizer = new StringTokenizer(packs);
-        //noinspection unchecked
-        List<String> list = tokenizer.getTokenList();
-        Collections.reverse(list);
-        for (String pack : list) {
-            if (!enterPack(pack, locale, truncatedLocale, passedPacks))
-                continue;
-
-            String msg = searchOnePack(pack, key, locale, truncatedLocale, passedPacks);
+    protected String internalGetQualifiedMessage(String mainPacks, String packs, String key, Locale locale) {
+        locale = messageTools.trimLocale(locale);
+
+        for (CompiledMessagePack compiledPack : getCompiledPacks(mainPacks, locale)) {
+            String msg = searchPack(compiledPack, packs, key);
             if (msg != null)
                 return msg;
-
-            Locale tmpLocale = truncatedLocale;
-            while (tmpLocale != null) {
-                tmpLocale = truncateLocale(tmpLocale);
-                msg = searchOnePack(pack, key, locale, tmpLocale, passedPacks);
-                if (msg != null)
-                    return msg;
-            }
         }
-        if (log.isTraceEnabled()) {
-            String packName = new TextStringBuilder().appendWithSeparators(list, ",").toString();
-            log.trace("Resource '{}' not found", makeCacheKey(packName, key, locale, locale));
+        return null;
+    }
+
+    @Nullable
+    protected String searchMessage(CompiledMessagePack[] packs, String key) {
+        for (CompiledMessagePack compiledPack : packs) {
+            String msg = searchPack(compiledPack, null, key);
+            if (msg != null)
+                return msg;
         }
         return null;
     }
 
-    private Locale truncateLocale(Locale locale) {
-        if (locale == null || StringUtils.isEmpty(locale.getCountry()))
-            return null;
-        return Locale.forLanguageTag(locale.getLanguage());
+    /**
+     * Searches for a message in one compiled pack. Messages found remotely for the locale of the pack take
+     * precedence over local messages of less specific locales.
+     *
+     * @param qualifier pack name qualifying the key in a main message pack or null for an ordinary key
+     */
+    @Nullable
+    protected String searchPack(CompiledMessagePack compiledPack, @Nullable String qualifier, String key) {
+        int bundlesCount = compiledPack.getBundles().size();
+        if (!isRemoteSearchEnabled()) {
+            return searchBundles(compiledPack, qualifier, key, 0, bundlesCount);
+        }
+
+        int localeBundlesCount = compiledPack.getLocaleBundlesCount();
+        String msg = searchBundles(compiledPack, qualifier, key, 0, localeBundlesCount);
+        if (msg == null) {
+            msg = searchRemotely(compiledPack, qualifier != null ? qualifier + "/" + key : key);
+        }
+        if (msg == null) {
+            msg = searchBundles(compiledPack, qualifier, key, localeBundlesCount, bundlesCount);
+        }
+        return msg;
     }
 
-    protected boolean enterPack(String pack, Locale locale, Locale truncatedLocale, Set<String> passedPacks) {
-        String k = truncatedLocale == null ?
-                pack + "/default" :
-                pack + "/" + (locale == null ? "default" : locale);
-        return passedPacks.add(k);
+    @Nullable
+    protected String searchBundles(CompiledMessagePack compiledPack, @Nullable String qualifier, String key,
+                                   int fromIndex, int toIndex) {
+        return qualifier != null
+                ? compiledPack.getQualifiedMessage(qualifier, key, fromIndex, toIndex)
+                : compiledPack.getMessage(key, fromIndex, toIndex);
     }
 
-    protected String searchOnePack(String pack, String key, Locale locale, Locale truncatedLocale, Set<String> passedPacks) {
-        String cacheKey = makeCacheKey(pack, key, locale, truncatedLocale);
+    /**
+     * @return true if messages that are not found locally should be requested by {@link #searchRemotely}
+     */
+    protected boolean isRemoteSearchEnabled() {
+        return false;
+    }
 
-        String msg = strCache.get(cacheKey);
-        if (msg != null)
-            return msg;
+    @Nullable
+    protected String searchRemotely(CompiledMessagePack compiledPack, String key) {
+        Map<String, String> remoteMessages = compiledPack.getRemoteMessages();
 
-        msg = searchFiles(pack, key, locale, truncatedLocale, passedPacks);
+        String msg = remoteMessages.get(key);
         if (msg == null) {
-            msg = searchClasspath(pack, key, locale, truncatedLocale, passedPacks);
+            msg = searchRemotely(compiledPack.getPack(), key, compiledPack.getLocale());
+            remoteMessages.put(key, msg != null ? msg : CompiledMessagePack.NOT_FOUND);
+        }
+        //noinspection StringEquality
+        return msg != CompiledMessagePack.NOT_FOUND ? msg : null;
+    }
+
+    /**
+     * Returns compiled packs for the space-separated list of pack names in the search order, i.e. the last pack first.
+     */
+    protected CompiledMessagePack[] getCompiledPacks(String packs, Locale locale) {
+        Map<String, CompiledMessagePack[]> localeIndex = packsIndex.get(locale);
+        if (localeIndex == null) {
+            localeIndex = new ConcurrentHashMap<>();
+            Map<String, CompiledMessagePack[]> existing = packsIndex.putIfAbsent(locale, localeIndex);
+            if (existing != null)
+                localeIndex = existing;
         }
-        if (msg == null && locale.equals(truncatedLocale)) {
-            msg = searchRemotely(pack, key, locale);
-            if (msg != null) {
-                cache(cacheKey, msg);
+
+        CompiledMessagePack[] result = localeIndex.get(packs);
+        if (result == null) {
+            String[] names = StringUtils.split(packs);
+            ArrayUtils.reverse(names);
+
+            result = new CompiledMessagePack[names.length];
+            for (int i = 0; i < names.length; i++) {
+                result[i] = getCompiledPack(names[i], locale, new PackCompilation());
             }
+            localeIndex.put(packs, result);
         }
-        return msg;
+        return result;
+    }
+
+    /**
+     * Returns the compiled pack for the locale, compiling it on first access.
+     * <p>
+     * A pack compiled while one of the packs including it was still being compiled lacks the bundles of that pack
+     * if they include each other. Such a pack is returned but not cached, so it is compiled completely when it is
+     * requested by itself.
+     *
+     * @param locale      locale or null for the default messages
+     * @param compilation packs being compiled, used to stop on circular includes
+     * @return compiled pack or null if the pack is already being compiled
+     */
+    @Nullable
+    protected CompiledMessagePack getCompiledPack(String pack, @Nullable Locale locale, PackCompilation compilation) {
+        Locale indexLocale = locale != null ? locale : Locale.ROOT;
+
+        Map<String, CompiledMessagePack> localePacks = compiledPacks.get(indexLocale);
+        if (localePacks == null) {
+            localePacks = new ConcurrentHashMap<>();
+            Map<String, CompiledMessagePack> existing = compiledPacks.putIfAbsent(indexLocale, localePacks);
+            if (existing != null)
+                localePacks = existing;
+        }
+
+        CompiledMessagePack compiledPack = localePacks.get(pack);
+        if (compiledPack != null)
+            return compiledPack;
+
+        String packKey = pack + "/" + (locale == null ? "default" : locale);
+        int level = compilation.packs.indexOf(packKey);
+        if (level >= 0) {
+            compilation.cutLevel = Math.min(compilation.cutLevel, level);
+            return null;
+        }
+
+        level = compilation.packs.size();
+        compilation.packs.add(packKey);
+        int outerCutLevel = compilation.cutLevel;
+        compilation.cutLevel = Integer.MAX_VALUE;
+        boolean complete;
+        try {
+            compiledPack = compilePack(pack, locale, compilation);
+        } finally {
+            compilation.packs.remove(level);
+            // a cycle cut off at this pack or deeper does not lose any bundles of this pack
+            complete = compilation.cutLevel >= level;
+            compilation.cutLevel = Math.min(outerCutLevel, compilation.cutLevel);
+        }
+
+        if (!complete)
+            return compiledPack;
+
+        CompiledMessagePack existing = localePacks.putIfAbsent(pack, compiledPack);
+        return existing != null ? existing : compiledPack;
+    }
+
+    protected CompiledMessagePack compilePack(String pack, @Nullable Locale locale, PackCompilation compilation) {
+        List<CompiledMessagePack.Bundle> bundles = new ArrayList<>();
+
+        searchFiles(pack, locale, bundles, compilation);
+        searchClasspath(pack, locale, bundles, compilation);
+
+        int localeBundlesCount = bundles.size();
+        if (locale != null) {
+            CompiledMessagePack parentPack = getCompiledPack(pack, truncateLocale(locale), compilation);
+            if (parentPack != null) {
+                addBundles(bundles, parentPack.getBundles());
+            }
+        }
+
+        return new CompiledMessagePack(pack, locale, bundles, localeBundlesCount);
     }
 
-    protected void cache(String key, String msg) {
-        if (!strCache.containsKey(key))
-            strCache.put(key, msg);
+    @Nullable
+    private Locale truncateLocale(Locale locale) {
+        if (locale == null || StringUtils.isEmpty(locale.getCountry()))
+            return null;
+        return Locale.forLanguageTag(locale.getLanguage());
     }
 
-    protected String searchFiles(String pack, String key, Locale locale, Locale truncatedLocale, Set<String> passedPacks) {
+    protected void searchFiles(String pack, @Nullable Locale locale, List<CompiledMessagePack.Bundle> bundles,
+                               PackCompilation compilation) {
         StopWatch stopWatch = new Slf4JStopWatch("Messages.searchFiles");
         try {
-            String cacheKey = makeCacheKey(pack, key, locale, truncatedLocale);
-
-            String msg = strCache.get(cacheKey);
-            if (msg != null)
-                return msg;
-
-            log.trace("searchFiles: {}", cacheKey);
+            log.trace("searchFiles: {}/{}", pack, locale == null ? "default" : locale);
 
             String packPath = confDir + "/" + pack.replaceAll("\\.", "/");
             while (packPath != null && !packPath.equals(confDir)) {
-                Properties properties = loadPropertiesFromFile(packPath, locale, truncatedLocale);
-                if (properties != PROPERTIES_NOT_FOUND) {
-                    msg = getMessageFromProperties(pack, key, locale, truncatedLocale, properties, passedPacks);
-                    if (msg != null)
-                        return msg;
+                CompiledMessagePack.Bundle bundle = loadBundleFromFile(packPath, locale);
+                if (bundle != BUNDLE_NOT_FOUND) {
+                    addBundle(bundles, bundle, locale, compilation);
                 }
-                // not found, keep searching
+                // keep searching in parent packs
                 int pos = packPath.lastIndexOf("/");
                 if (pos < 0)
                     packPath = null;
                 else
                     packPath = packPath.substring(0, pos);
             }
-            return null;
         } finally {
             stopWatch.stop();
         }
     }
 
-    protected String searchClasspath(String pack, String key, Locale locale, Locale truncatedLocale, Set<String> passedPacks) {
+    protected void searchClasspath(String pack, @Nullable Locale locale, List<CompiledMessagePack.Bundle> bundles,
+                                   PackCompilation compilation) {
         StopWatch stopWatch = new Slf4JStopWatch("Messages.searchClasspath");
         try {
-            String cacheKey = makeCacheKey(pack, key, locale, truncatedLocale);
-
-            String msg = strCache.get(cacheKey);
-            if (msg != null)
-                return msg;
-
-            log.trace("searchClasspath: {}", cacheKey);
+            log.trace("searchClasspath: {}/{}", pack, locale == null ? "default" : locale);
 
             String packPath = "/" + pack.replaceAll("\\.", "/");
             while (packPath != null) {
-                Properties properties = loadPropertiesFromResource(packPath, locale, truncatedLocale);
-                if (properties != PROPERTIES_NOT_FOUND) {
-                    msg = getMessageFromProperties(pack, key, locale, truncatedLocale, properties, passedPacks);
-                    if (msg != null)
-                        return msg;
+                CompiledMessagePack.Bundle bundle = loadBundleFromResource(packPath, locale);
+                if (bundle != BUNDLE_NOT_FOUND) {
+                    addBundle(bundles, bundle, locale, compilation);
                 }
-                // not found, keep searching
+                // keep searching in parent packs
                 int pos = packPath.lastIndexOf("/");
                 if (pos < 0)
                     packPath = null;
                 else
                     packPath = packPath.substring(0, pos);
             }
-            return null;
         } finally {
             stopWatch.stop();
         }
     }
 
-    @Nullable
-    protected String getMessageFromProperties(String pack, String key, Locale locale, Locale truncatedLocale,
-                                              Properties properties, Set<String> passedPacks) {
-        String message;
-        message = properties.getProperty(key);
-        if (message != null) {
-            cache(makeCacheKey(pack, key, locale, truncatedLocale), message);
-            if (truncatedLocale == null)
-                cache(makeCacheKey(pack, key, locale, null), message);
-        }
-
-        if (message == null) {
-            // process includes after to support overriding
-            message = searchIncludes(properties, key, locale, truncatedLocale, passedPacks);
-        }
-        return message;
-    }
+    protected void addBundle(List<CompiledMessagePack.Bundle> bundles, CompiledMessagePack.Bundle bundle,
+                             @Nullable Locale locale, PackCompilation compilation) {
+        addBundles(bundles, Collections.singletonList(bundle));
 
-    @Nullable
-    protected String searchIncludes(Properties properties, String key, Locale locale, Locale truncatedLocale,
-                                    Set<String> passedPacks) {
-        String includesProperty = properties.getProperty("@include");
+        // process includes after to support overriding
+        String includesProperty = bundle.getMessage("@include");
         if (includesProperty != null) {
             // multiple includes separated by comma
             String[] includes = StringUtils.split(includesProperty, " ,");
@@ -492,69 +569,70 @@ public abstract class AbstractMessages implements Messages {
                 for (String includePath : includes) {
                     includePath = StringUtils.trimToNull(includePath);
                     if (includePath != null) {
-                        String message = searchMessage(includePath, key, locale, truncatedLocale, passedPacks);
-                        if (message != null) {
-                            return message;
+                        CompiledMessagePack includedPack = getCompiledPack(includePath, locale, compilation);
+                        if (includedPack != null) {
+                            addBundles(bundles, includedPack.getBundles());
                         }
                     }
                 }
             }
         }
-        return null;
     }
 
-    protected Properties loadPropertiesFromFile(String packPath, Locale locale, Locale truncatedLocale) {
-        String fileName = packPath + "/" + BUNDLE_NAME + getLocaleSuffix(truncatedLocale) + EXT;
+    protected void addBundles(List<CompiledMessagePack.Bundle> bundles, List<CompiledMessagePack.Bundle> added) {
+        for (CompiledMessagePack.Bundle bundle : added) {
+            // a bundle found earlier takes precedence anyway
+            if (!bundles.contains(bundle)) {
+                bundles.add(bundle);
+            }
+        }
+    }
+
+    protected CompiledMessagePack.Bundle loadBundleFromFile(String packPath, @Nullable Locale locale) {
+        String fileName = packPath + "/" + BUNDLE_NAME + getLocaleSuffix(locale) + EXT;
         try {
-            return filePropertiesCache.get(fileName, () -> {
+            return fileBundlesCache.get(fileName, () -> {
                 File file = new File(fileName);
                 if (file.exists()) {
                     try (FileInputStream stream = new FileInputStream(file);
                          InputStreamReader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
                         Properties properties = new Properties();
                         properties.load(reader);
-                        return properties;
+                        return new CompiledMessagePack.Bundle(Maps.fromProperties(properties));
                     }
                 }
-                return PROPERTIES_NOT_FOUND;
+                return BUNDLE_NOT_FOUND;
             });
         } catch (ExecutionException e) {
             throw new RuntimeException("Unable to load properties from file", e);
         }
     }
 
-    protected Properties loadPropertiesFromResource(String packPath, Locale locale, Locale truncatedLocale) {
-        String name = packPath + "/" + BUNDLE_NAME + getLocaleSuffix(truncatedLocale) + EXT;
+    protected CompiledMessagePack.Bundle loadBundleFromResource(String packPath, @Nullable Locale locale) {
+        String name = packPath + "/" + BUNDLE_NAME + getLocaleSuffix(locale) + EXT;
         try {
-            return resourcePropertiesCache.get(name, () -> {
+            return resourceBundlesCache.get(name, () -> {
                 InputStream stream = getClass().getResourceAsStream(name);
                 if (stream != null) {
                     try (InputStreamReader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
                         Properties properties = new Properties();
                         properties.load(reader);
-                        return properties;
+                        return new CompiledMessagePack.Bundle(Maps.fromProperties(properties));
                     } finally {
                         IOUtils.closeQuietly(stream);
                     }
                 }
-                return PROPERTIES_NOT_FOUND;
+                return BUNDLE_NOT_FOUND;
             });
         } catch (ExecutionException e) {
             throw new RuntimeException("Unable to load properties from resource", e);
         }
     }
 
-    protected String getLocaleSuffix(Locale locale) {
+    protected String getLocaleSuffix(@Nullable Locale locale) {
         return (locale != null ? "_" + locale : "");
     }
 
-    protected String makeCacheKey(String pack, String key, @Nullable Locale locale, @Nullable Locale truncatedLocale) {
-        if (truncatedLocale == null)
-            return pack + "/default/" + key;
-
-        return pack + "/" + (locale == null ? "default" : locale) + "/" + key;
-    }
-
     protected String getPackName(Class c) {
         String className = c.getName();
         int pos = className.lastIndexOf(".");
@@ -563,4 +641,14 @@ public abstract class AbstractMessages implements Messages {
         else
             return "";
     }
-}
\ No newline at end of file
+
+    /**
+     * State of compiling a pack together with its includes and less specific locales.
+     */
+    protected static class PackCompilation {
+        // packs being compiled, from the requested one to the innermost include
+        protected final List<String> packs = new ArrayList<>();
+        // level of the outermost pack returned as null because it was already being compiled
+        protected int cutLevel = Integer.MAX_VALUE;
+    }
+}
@@ -19,6 +19,7 @@ package com.haulmont.cuba.core.sys;
 import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
 import com.haulmont.bali.datastruct.Pair;
+import com.haulmont.cuba.core.config.ConfigHandler;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.text.StringSubstitutor;
 
@@ -73,6 +74,7 @@ public class AppProperties {
         for (String name : System.getProperties().stringPropertyNames()) {
             systemProperties.put(name, System.getProperty(name));
         }
+        ConfigHandler.invalidateCachedValues();
     }
 
     /**
@@ -226,5 +228,6 @@ public class AppProperties {
             properties.remove(key);
         else
             properties.put(key, value);
+        ConfigHandler.invalidateCachedValues();
     }
 }
\ No newline at end of file
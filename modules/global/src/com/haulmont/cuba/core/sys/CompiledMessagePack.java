@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.sys;
+
+import com.google.common.collect.ImmutableMap;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Message pack compiled for a locale by {@link AbstractMessages}.
+ * <p>
+ * Contains the message bundles of the pack itself, of its parent packs, of included packs and of less specific
+ * locales in the order they are searched, so a message lookup is a sequence of hash table lookups. Bundles are
+ * immutable and shared between all compiled packs that use them.
+ */
+public class CompiledMessagePack {
+
+    /**
+     * Value cached in {@link #getRemoteMessages()} for keys that are not found remotely.
+     */
+    public static final String NOT_FOUND = new String();
+
+    protected final String pack;
+    protected final Locale locale;
+    protected final Bundle[] bundles;
+    protected final int localeBundlesCount;
+
+    protected final Map<String, String> remoteMessages = new ConcurrentHashMap<>();
+
+    /**
+     * @param bundles            bundles in the search order
+     * @param localeBundlesCount number of the first bundles found for the locale itself, the rest are bundles of
+     *                           less specific locales
+     */
+    public CompiledMessagePack(String pack, @Nullable Locale locale, List<Bundle> bundles, int localeBundlesCount) {
+        this.pack = pack;
+        this.locale = locale;
+        this.bundles = bundles.toArray(new Bundle[0]);
+        this.localeBundlesCount = localeBundlesCount;
+    }
+
+    public String getPack() {
+        return pack;
+    }
+
+    /**
+     * @return locale of the pack or null for the default messages
+     */
+    @Nullable
+    public Locale getLocale() {
+        return locale;
+    }
+
+    /**
+     * @return bundles in the search order
+     */
+    public List<Bundle> getBundles() {
+        return Collections.unmodifiableList(Arrays.asList(bundles));
+    }
+
+    /**
+     * @return number of the first bundles found for the locale of the pack, the rest are bundles of less specific
+     * locales
+     */
+    public int getLocaleBundlesCount() {
+        return localeBundlesCount;
+    }
+
+    @Nullable
+    public String getMessage(String key) {
+        return getMessage(key, 0, bundles.length);
+    }
+
+    /**
+     * Searches the bundles with indexes from {@code fromIndex} inclusive to {@code toIndex} exclusive.
+     */
+    @Nullable
+    public String getMessage(String key, int fromIndex, int toIndex) {
+        for (int i = fromIndex; i < toIndex; i++) {
+            String message = bundles[i].getMessage(key);
+            if (message != null) {
+                return message;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a message defined in the pack with a key qualified by another pack name,
+     * e.g. {@code com.company.sample.entity/Customer.name} in a main message pack.
+     */
+    @Nullable
+    public String getQualifiedMessage(String qualifier, String key) {
+        return getQualifiedMessage(qualifier, key, 0, bundles.length);
+    }
+
+    /**
+     * Searches the bundles with indexes from {@code fromIndex} inclusive to {@code toIndex} exclusive.
+     *
+     * @see #getQualifiedMessage(String, String)
+     */
+    @Nullable
+    public String getQualifiedMessage(String qualifier, String key, int fromIndex, int toIndex) {
+        for (int i = fromIndex; i < toIndex; i++) {
+            String message = bundles[i].getQualifiedMessage(qualifier, key);
+            if (message != null) {
+                return message;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return messages of the pack obtained from the middleware, they cannot be compiled beforehand
+     */
+    public Map<String, String> getRemoteMessages() {
+        return remoteMessages;
+    }
+
+    @Override
+    public String toString() {
+        return pack + "/" + (locale == null ? "default" : locale);
+    }
+
+    /**
+     * Immutable content of a messages properties file.
+     */
+    public static class Bundle {
+
+        protected final Map<String, String> messages;
+        protected final Map<String, Map<String, String>> qualifiedMessages;
+
+        public Bundle(Map<String, String> messages) {
+            this.messages = ImmutableMap.copyOf(messages);
+
+            Map<String, ImmutableMap.Builder<String, String>> builders = new HashMap<>();
+            for (Map.Entry<String, String> entry : this.messages.entrySet()) {
+                String key = entry.getKey();
+                int pos = key.indexOf('/');
+                if (pos > 0) {
+                    builders.computeIfAbsent(key.substring(0, pos), qualifier -> ImmutableMap.builder())
+                            .put(key.substring(pos + 1), entry.getValue());
+                }
+            }
+
+            ImmutableMap.Builder<String, Map<String, String>> qualifiedBuilder = ImmutableMap.builder();
+            for (Map.Entry<String, ImmutableMap.Builder<String, String>> entry : builders.entrySet()) {
+                qualifiedBuilder.put(entry.getKey(), entry.getValue().build());
+            }
+            this.qualifiedMessages = qualifiedBuilder.build();
+        }
+
+        @Nullable
+        public String getMessage(String key) {
+            return messages.get(key);
+        }
+
+        @Nullable
+        public String getQualifiedMessage(String qualifier, String key) {
+            Map<String, String> qualified = qualifiedMessages.get(qualifier);
+            return qualified != null ? qualified.get(key) : null;
+        }
+    }
+}
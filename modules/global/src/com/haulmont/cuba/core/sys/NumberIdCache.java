@@ -17,37 +17,66 @@
 
 package com.haulmont.cuba.core.sys;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.cuba.core.entity.annotation.IdSequence;
 import com.haulmont.cuba.core.global.GlobalConfig;
 import com.haulmont.cuba.core.global.Metadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Intermediate cache for generated ids of entities with long/integer PK.
  * The cache size is determined by the {@code cuba.numberIdCacheSize} app property.
+ * <p>
+ * Ids are allocated from the current range without locking. If {@code cuba.numberIdCachePrefetchDepth} is greater
+ * than 0, next ranges are fetched in a background thread when a half of the current range is allocated.
  */
 @Component(NumberIdCache.NAME)
 public class NumberIdCache {
 
     public static final String NAME = "cuba_NumberIdCache";
 
+    private static final Logger log = LoggerFactory.getLogger(NumberIdCache.class);
+
     @Inject
     protected Metadata metadata;
 
+    protected static class IdRange {
+        protected final AtomicLong counter;
+        protected final long last;
+        protected final long lowWaterMark;
+        protected long activationTime;
+
+        public IdRange(long sequenceValue, int size) {
+            this.counter = new AtomicLong(sequenceValue);
+            this.last = sequenceValue + size;
+            this.lowWaterMark = sequenceValue + Math.max(size / 2, 1);
+        }
+    }
+
     protected class Generator {
-        protected long counter;
-        protected long sequenceValue;
         protected String entityName;
         protected String sequenceName;
         protected boolean cached;
         protected NumberIdSequence numberIdSequence;
 
+        protected final AtomicReference<IdRange> range = new AtomicReference<>();
+        protected final Deque<Future<IdRange>> prefetched = new ArrayDeque<>();
+        protected volatile int prefetchDepth = 1;
+        protected volatile long fetchTime;
+
         public Generator(String entityName,
                          String sequenceName,
                          boolean cached,
@@ -56,36 +85,111 @@ public class NumberIdCache {
             this.sequenceName = sequenceName;
             this.cached = cached;
             this.numberIdSequence = sequence;
-            if (useIdCache()) {
-                createCachedCounter();
-            }
         }
 
         protected boolean useIdCache() {
             return config.getNumberIdCacheSize() != 0 && cached;
         }
 
-        protected void createCachedCounter() {
-            sequenceValue = numberIdSequence.createCachedLongId(entityName, sequenceName);
-            counter = sequenceValue;
-        }
-
-        public synchronized long getNext() {
+        public long getNext() {
             if (!useIdCache()) {
                 return numberIdSequence.createLongId(entityName, sequenceName);
-            } else {
-                long next = ++counter;
-                if (next > sequenceValue + config.getNumberIdCacheSize()) {
-                    createCachedCounter();
-                    next = ++counter;
+            }
+            while (true) {
+                IdRange current = range.get();
+                if (current != null) {
+                    long next = current.counter.incrementAndGet();
+                    if (next <= current.last) {
+                        if (next == current.lowWaterMark) {
+                            prefetch();
+                        }
+                        return next;
+                    }
+                }
+                nextRange(current);
+            }
+        }
+
+        protected synchronized void nextRange(@Nullable IdRange exhausted) {
+            if (range.get() != exhausted) {
+                // switched by another thread
+                return;
+            }
+            IdRange next = null;
+            Future<IdRange> future;
+            while (next == null && (future = pollPrefetched()) != null) {
+                next = getPrefetched(future);
+            }
+            long now = System.nanoTime();
+            if (next == null) {
+                next = fetchRange();
+            }
+            if (exhausted != null) {
+                adjustPrefetchDepth(now - exhausted.activationTime);
+            }
+            next.activationTime = now;
+            range.set(next);
+        }
+
+        protected IdRange fetchRange() {
+            int size = config.getNumberIdCacheSize();
+            long start = System.nanoTime();
+            long sequenceValue = numberIdSequence.createCachedLongId(entityName, sequenceName);
+            fetchTime = System.nanoTime() - start;
+            return new IdRange(sequenceValue, size);
+        }
+
+        /**
+         * Sets the number of ranges fetched in advance so that fetching takes less time than allocating ids
+         * from a half of a range at the observed rate.
+         */
+        protected void adjustPrefetchDepth(long rangeLifetime) {
+            int maxDepth = config.getNumberIdCachePrefetchDepth();
+            if (maxDepth <= 0) {
+                return;
+            }
+            long depth = rangeLifetime > 0 ? (2 * fetchTime + rangeLifetime - 1) / rangeLifetime : maxDepth;
+            prefetchDepth = (int) Math.max(1, Math.min(depth, maxDepth));
+        }
+
+        protected void prefetch() {
+            int depth = Math.min(prefetchDepth, config.getNumberIdCachePrefetchDepth());
+            if (depth <= 0) {
+                return;
+            }
+            synchronized (prefetched) {
+                while (prefetched.size() < depth) {
+                    Callable<IdRange> task = new SecurityContextAwareCallable<>(this::fetchRange);
+                    prefetched.add(getPrefetchExecutor().submit(task));
                 }
-                return next;
+            }
+        }
+
+        @Nullable
+        protected Future<IdRange> pollPrefetched() {
+            synchronized (prefetched) {
+                return prefetched.poll();
+            }
+        }
+
+        @Nullable
+        protected IdRange getPrefetched(Future<IdRange> future) {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException | CancellationException e) {
+                log.warn("Unable to fetch next id range for {}", entityName, e);
+                return null;
             }
         }
     }
 
     protected ConcurrentMap<String, Generator> cache = new ConcurrentHashMap<>();
 
+    protected volatile ExecutorService prefetchExecutor;
+
     @Inject
     protected GlobalConfig config;
 
@@ -128,4 +232,30 @@ public class NumberIdCache {
     protected String getCacheKey(String entityName, String sequenceName) {
         return sequenceName == null ? entityName : sequenceName;
     }
-}
\ No newline at end of file
+
+    protected ExecutorService getPrefetchExecutor() {
+        if (prefetchExecutor == null) {
+            synchronized (this) {
+                if (prefetchExecutor == null) {
+                    ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2,
+                            60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                            new ThreadFactoryBuilder()
+                                    .setNameFormat("NumberIdCachePrefetch-%d")
+                                    .setDaemon(true)
+                                    .build());
+                    executor.allowCoreThreadTimeOut(true);
+                    prefetchExecutor = executor;
+                }
+            }
+        }
+        return prefetchExecutor;
+    }
+
+    @PreDestroy
+    protected void shutdown() {
+        ExecutorService executor = this.prefetchExecutor;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
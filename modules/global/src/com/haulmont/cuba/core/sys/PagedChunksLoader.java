@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.sys;
+
+import com.haulmont.chile.core.model.MetaClass;
+import com.haulmont.cuba.core.entity.Entity;
+import com.haulmont.cuba.core.global.AppBeans;
+import com.haulmont.cuba.core.global.LoadContext;
+import com.haulmont.cuba.core.global.Metadata;
+import com.haulmont.cuba.core.global.QueryTransformer;
+import com.haulmont.cuba.core.global.QueryTransformerFactory;
+import com.haulmont.cuba.core.global.Sort;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Default implementation of loading entities by chunks used by {@code DataManager} and {@code DataStore} when
+ * a more efficient way like a database cursor is not available. Pages through the result using first and max
+ * results of the query.
+ * <p>
+ * Offset paging returns each row exactly once only if the order of rows is total, so the query is sorted by
+ * the primary key if it defines no order, and the primary key is appended to the sort or to the 'order by' clause
+ * of the query string as a tie-breaker.
+ */
+public final class PagedChunksLoader {
+
+    private static final Pattern ORDER_BY_PATTERN = Pattern.compile("\\border\\s+by\\b", Pattern.CASE_INSENSITIVE);
+
+    private PagedChunksLoader() {
+    }
+
+    /**
+     * Loads the result page by page and passes the pages to the consumer.
+     *
+     * @param context   defines what and how to load, is not modified
+     * @param chunkSize maximum number of instances passed to the consumer at once
+     * @param loader    function loading a page
+     * @param consumer  receives subsequent chunks of loaded instances
+     * @throws IllegalArgumentException if the chunk size is not positive, or if the order cannot be made total
+     */
+    public static <E extends Entity> void loadByPages(LoadContext<E> context, int chunkSize,
+                                                      Function<LoadContext<E>, List<E>> loader,
+                                                      Consumer<List<E>> consumer) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        @SuppressWarnings("unchecked")
+        LoadContext<E> chunkContext = (LoadContext<E>) context.copy();
+        if (chunkContext.getQuery() == null) {
+            chunkContext.setQuery(LoadContext.createQuery("select e from " + context.getMetaClass() + " e"));
+        }
+        LoadContext.Query query = chunkContext.getQuery();
+        if (!makeOrderTotal(context.getMetaClass(), query)) {
+            throw new IllegalArgumentException(String.format(
+                    "Cannot load %s by chunks: the query must define an order", context.getMetaClass()));
+        }
+
+        int firstResult = query.getFirstResult();
+        int maxResults = query.getMaxResults();
+        int loaded = 0;
+        while (maxResults == 0 || loaded < maxResults) {
+            int max = maxResults == 0 ? chunkSize : Math.min(chunkSize, maxResults - loaded);
+            query.setFirstResult(firstResult + loaded);
+            query.setMaxResults(max);
+            List<E> chunk = loader.apply(chunkContext);
+            if (!chunk.isEmpty()) {
+                consumer.accept(new ArrayList<>(chunk));
+            }
+            if (chunk.size() < max) {
+                break;
+            }
+            loaded += chunk.size();
+        }
+    }
+
+    /**
+     * Appends the primary key to the order of the query, so paging by first and max results returns each row
+     * exactly once.
+     *
+     * @param entityName name of the entity loaded by the query
+     * @param query      query to modify
+     * @return false if the query defines no order and the entity has no primary key to order by
+     */
+    public static boolean makeOrderTotal(String entityName, LoadContext.Query query) {
+        Metadata metadata = AppBeans.get(Metadata.NAME);
+        MetaClass metaClass = metadata.getClassNN(entityName);
+        String primaryKeyName = metadata.getTools().getPrimaryKeyName(metaClass);
+
+        Sort sort = query.getSort();
+        boolean sorted = sort != null && !sort.getOrders().isEmpty();
+        if (!sorted && query.getQueryString() != null && ORDER_BY_PATTERN.matcher(query.getQueryString()).find()) {
+            // the order is defined by the query string, the primary key is added to its 'order by' clause
+            if (primaryKeyName != null) {
+                QueryTransformer transformer = AppBeans.get(QueryTransformerFactory.class)
+                        .transformer(query.getQueryString());
+                transformer.addOrderByIdTieBreaker(primaryKeyName);
+                query.setQueryString(transformer.getResult());
+            }
+            return true;
+        }
+
+        if (primaryKeyName == null) {
+            return false;
+        }
+
+        List<Sort.Order> orders = new ArrayList<>();
+        if (sorted) {
+            for (Sort.Order order : sort.getOrders()) {
+                if (order.getProperty().equals(primaryKeyName)) {
+                    return true;
+                }
+                orders.add(order);
+            }
+        }
+        orders.add(Sort.Order.asc(primaryKeyName));
+        query.setSort(Sort.by(orders));
+        return true;
+    }
+}
@@ -18,6 +18,7 @@ package com.haulmont.cuba.core.sys.jpql;
 
 import com.haulmont.cuba.core.sys.jpql.antlr2.JPA2Lexer;
 import com.haulmont.cuba.core.sys.jpql.tree.AggregateExpressionNode;
+import com.haulmont.cuba.core.sys.jpql.tree.BaseCustomNode;
 import com.haulmont.cuba.core.sys.jpql.tree.JoinVariableNode;
 import com.haulmont.cuba.core.sys.jpql.tree.OrderByNode;
 import com.haulmont.cuba.core.sys.jpql.tree.PathNode;
@@ -29,6 +30,20 @@ public class JPATreeNodes {
     private JPATreeNodes() {
     }
 
+    /**
+     * Creates a deep copy of the tree. Custom nodes copy their subtrees in {@code dupNode()}, other nodes are copied
+     * with all descendants here.
+     */
+    public static CommonTree copyTree(CommonTree tree) {
+        CommonTree copy = (CommonTree) tree.dupNode();
+        if (!(tree instanceof BaseCustomNode)) {
+            for (int i = 0; i < tree.getChildCount(); i++) {
+                copy.addChild(copyTree((CommonTree) tree.getChild(i)));
+            }
+        }
+        return copy;
+    }
+
     public static OrderByNode createOrderBy() {
         OrderByNode node = new OrderByNode(JPA2Lexer.T_ORDER_BY);
         node.addChild(new CommonTree(new CommonToken(JPA2Lexer.ORDER, "order")));
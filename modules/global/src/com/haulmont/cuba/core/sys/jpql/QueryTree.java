@@ -42,19 +42,40 @@ public class QueryTree {
     }
 
     public QueryTree(DomainModel model, String query, boolean failOnErrors) {
+        this(model, query, parseAst(query, failOnErrors));
+    }
+
+    /**
+     * Creates the query tree for the AST which has been already parsed from the query, e.g. taken from a cache.
+     * The AST is modified by transformations, so it must not be shared with other query trees.
+     */
+    public QueryTree(DomainModel model, String query, CommonTree tree) {
         Preconditions.checkNotNull(query, "query is null");
-        String modifiedQuery = StringUtils.replaceChars(query, "\n\r\t", "   ");
 
         this.model = model;
-        this.queryString = modifiedQuery;
+        this.queryString = normalizeQuery(query);
+        this.tree = tree;
+
+        this.idVarSelector = new IdVarSelector(model);
+        new TreeVisitor().visit(tree, idVarSelector);
+    }
+
+    /**
+     * Parses the query into AST.
+     *
+     * @throws JPA2RecognitionException if the query cannot be parsed
+     */
+    public static CommonTree parseAst(String query, boolean failOnErrors) {
+        Preconditions.checkNotNull(query, "query is null");
         try {
-            this.tree = Parser.parse(modifiedQuery, failOnErrors);
+            return Parser.parse(normalizeQuery(query), failOnErrors);
         } catch (RecognitionException e) {
             throw new JPA2RecognitionException("JPA grammar recognition error", e);
         }
+    }
 
-        this.idVarSelector = new IdVarSelector(model);
-        new TreeVisitor().visit(tree, idVarSelector);
+    protected static String normalizeQuery(String query) {
+        return StringUtils.replaceChars(query, "\n\r\t", "   ");
     }
 
     public DomainModel getModel() {
@@ -18,6 +18,7 @@
 package com.haulmont.cuba.core.sys.jpql.transform;
 
 import com.haulmont.cuba.core.global.QueryTransformer;
+import com.haulmont.cuba.core.global.QueryTransformerFactory;
 import com.haulmont.cuba.core.sys.jpql.*;
 import com.haulmont.cuba.core.sys.jpql.tree.*;
 import org.antlr.runtime.RecognitionException;
@@ -28,6 +29,7 @@ import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
+import javax.inject.Inject;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -43,6 +45,9 @@ public class QueryTransformerAstBased implements QueryTransformer {
     protected QueryTreeAnalyzer queryAnalyzer;
     protected Set<String> addedParams = new HashSet<>();
 
+    @Inject
+    protected QueryTransformerFactory queryTransformerFactory;
+
     public QueryTransformerAstBased(DomainModel model, String query) {
         this.model = model;
         this.query = query;
@@ -65,7 +70,8 @@ public class QueryTransformerAstBased implements QueryTransformer {
     protected QueryTree getTree() {
         if (queryTree == null) {
             try {
-                queryTree = new QueryTree(model, query);
+                queryTree = queryTransformerFactory != null ?
+                        queryTransformerFactory.createQueryTree(model, query) : new QueryTree(model, query);
             } catch (JPA2RecognitionException e) {
                 throw new JpqlSyntaxException(format("Errors found for input JPQL:[%s]\n%s", StringUtils.strip(query), e.getMessage()));
             }
@@ -192,6 +198,12 @@ public class QueryTransformerAstBased implements QueryTransformer {
         getTransformer().orderById(entityReference.getVariableName(), pkName);
     }
 
+    @Override
+    public void addOrderByIdTieBreaker(String pkName) {
+        EntityVariable entityReference = createMainSelectedPathNodeVariable();
+        getTransformer().addOrderByIdTieBreaker(entityReference.getVariableName(), pkName);
+    }
+
     @Override
     public void addEntityInGroupBy(String entityAlias) {
         getTransformer().addEntityInGroupBy(entityAlias);
@@ -249,6 +249,30 @@ public class QueryTreeTransformer {
         }
     }
 
+    public void addOrderByIdTieBreaker(String entityVariable, String pkName) {
+        Tree orderBy = queryTree.getAstOrderByNode();
+        if (orderBy == null) {
+            orderById(entityVariable, pkName);
+            return;
+        }
+        String idPath = entityVariable + "." + pkName;
+        for (int i = 0; i < orderBy.getChildCount(); i++) {
+            Tree orderByField = orderBy.getChild(i);
+            if (orderByField.getChildCount() > 0
+                    && orderByField.getChild(0) instanceof PathNode
+                    && idPath.equals(((PathNode) orderByField.getChild(0)).asPathString())) {
+                return;
+            }
+        }
+
+        OrderByFieldNode orderByField = new OrderByFieldNode(JPA2Lexer.T_ORDER_BY_FIELD);
+        orderByField.addChild(createPathNode(entityVariable, pkName));
+        orderByField.freshenParentAndChildIndexes();
+
+        orderBy.addChild(orderByField);
+        orderBy.freshenParentAndChildIndexes();
+    }
+
 
     public void addEntityInGroupBy(String entityVariable) {
         Tree groupBy = queryTree.getAstGroupByNode();
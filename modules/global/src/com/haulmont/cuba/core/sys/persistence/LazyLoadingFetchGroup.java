@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.sys.persistence;
+
+import com.google.common.collect.Lists;
+import com.haulmont.chile.core.model.MetaClass;
+import com.haulmont.chile.core.model.MetaProperty;
+import com.haulmont.cuba.core.entity.BaseEntityInternalAccess;
+import com.haulmont.cuba.core.entity.BaseGenericIdEntity;
+import com.haulmont.cuba.core.entity.Entity;
+import com.haulmont.cuba.core.global.*;
+import org.eclipse.persistence.internal.queries.EntityFetchGroup;
+import org.eclipse.persistence.queries.FetchGroup;
+import org.eclipse.persistence.queries.FetchGroupTracker;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Fetch group of a detached entity loaded with {@link LoadContext#setLoadReferencesLazily(boolean)}.
+ * <p>
+ * When a reference attribute of the view is accessed for the first time, it is loaded by {@link DataManager}
+ * for all entities of the same result by a single query, so iterating over the result does not produce
+ * a query per entity.
+ */
+public class LazyLoadingFetchGroup extends CubaEntityFetchGroup {
+
+    protected static final int BATCH_SIZE = 500;
+
+    protected Batch batch;
+
+    public LazyLoadingFetchGroup(FetchGroup fetchGroup, Batch batch) {
+        super(fetchGroup);
+        this.batch = batch;
+    }
+
+    /**
+     * Sets up lazy loading of the view reference attributes for the given detached entities.
+     *
+     * @param entities     entities loaded with the local part of the view
+     * @param metaClass    meta-class used to load the entities
+     * @param view         full view requested by the caller
+     * @param softDeletion soft deletion mode of the request that loaded the entities
+     * @param metadata     metadata used to build the queries
+     * @param dataManager  data manager loading the references
+     */
+    public static void setup(List<? extends Entity> entities, MetaClass metaClass, View view, boolean softDeletion,
+                             Metadata metadata, DataManager dataManager) {
+        if (entities.isEmpty())
+            return;
+
+        List<Object> ids = new ArrayList<>(entities.size());
+        for (Entity entity : entities) {
+            ids.add(entity.getId());
+        }
+        Batch batch = new Batch(metaClass.getName(), view, ids, softDeletion, metadata, dataManager);
+
+        for (Entity entity : entities) {
+            if (entity instanceof FetchGroupTracker) {
+                FetchGroupTracker tracker = (FetchGroupTracker) entity;
+                FetchGroup fetchGroup = tracker._persistence_getFetchGroup();
+                if (fetchGroup instanceof CubaEntityFetchGroup) {
+                    fetchGroup = ((CubaEntityFetchGroup) fetchGroup).wrappedFetchGroup;
+                }
+                if (fetchGroup != null) {
+                    tracker._persistence_setFetchGroup(new LazyLoadingFetchGroup(fetchGroup, batch));
+                }
+            }
+        }
+    }
+
+    @Override
+    public String onUnfetchedAttribute(FetchGroupTracker entity, String attributeName) {
+        if (entity instanceof BaseGenericIdEntity
+                && !BaseEntityInternalAccess.isManaged((BaseGenericIdEntity) entity)
+                && batch.isLazy(attributeName)) {
+            Entity instance = (Entity) entity;
+            Object value = batch.getValue(instance.getMetaClass().getPropertyNN(attributeName), instance);
+            BaseEntityInternalAccess.setValue(instance, attributeName, value);
+            BaseEntityInternalAccess.setValueForHolder(instance, attributeName, null);
+
+            Set<String> attributeNames = new HashSet<>(getAttributeNames());
+            attributeNames.add(attributeName);
+            entity._persistence_setFetchGroup(new LazyLoadingFetchGroup(new EntityFetchGroup(attributeNames), batch));
+            return null;
+        }
+        return super.onUnfetchedAttribute(entity, attributeName);
+    }
+
+    @Override
+    public FetchGroup clone() {
+        return new LazyLoadingFetchGroup(wrappedFetchGroup.clone(), batch);
+    }
+
+    /**
+     * Reference attributes loaded together for the entities of one result.
+     */
+    public static class Batch implements Serializable {
+
+        private static final long serialVersionUID = -2436117437311538711L;
+
+        protected final String entityName;
+        protected final View view;
+        protected final List<Object> ids;
+        protected final boolean softDeletion;
+        protected final Map<String, Map<Object, Object>> loadedValues = new HashMap<>();
+
+        // beans are not serialized, a deserialized batch obtains them from the application context
+        protected transient Metadata metadata;
+        protected transient DataManager dataManager;
+
+        public Batch(String entityName, View view, List<Object> ids, boolean softDeletion,
+                     Metadata metadata, DataManager dataManager) {
+            this.entityName = entityName;
+            this.view = view;
+            this.ids = ids;
+            this.softDeletion = softDeletion;
+            this.metadata = metadata;
+            this.dataManager = dataManager;
+        }
+
+        public boolean isLazy(String attributeName) {
+            return view.getProperty(attributeName) != null;
+        }
+
+        /**
+         * @return value of the attribute for the given entity, with inverse references pointing to the entity
+         */
+        public synchronized Object getValue(MetaProperty property, Entity instance) {
+            Map<Object, Object> values = loadedValues.computeIfAbsent(property.getName(), this::load);
+            Object value = values.get(instance.getId());
+            if (value == null && property.getRange().getCardinality().isMany()) {
+                value = Set.class.isAssignableFrom(property.getJavaType()) ? new LinkedHashSet<>() : new ArrayList<>();
+            }
+
+            // the references were loaded together with other copies of the entity, link them to the entity itself
+            MetaProperty inverse = property.getInverse();
+            if (inverse != null && value != null) {
+                if (value instanceof Collection) {
+                    for (Object element : (Collection) value) {
+                        linkInverse((Entity) element, inverse.getName(), instance);
+                    }
+                } else {
+                    linkInverse((Entity) value, inverse.getName(), instance);
+                }
+            }
+            return value;
+        }
+
+        protected void linkInverse(Entity reference, String inverseName, Entity instance) {
+            if (reference instanceof FetchGroupTracker
+                    && !((FetchGroupTracker) reference)._persistence_isAttributeFetched(inverseName)) {
+                return;
+            }
+            Object inverseValue = reference.getValue(inverseName);
+            if (inverseValue instanceof Entity && inverseValue != instance
+                    && Objects.equals(((Entity) inverseValue).getId(), instance.getId())) {
+                BaseEntityInternalAccess.setValue(reference, inverseName, instance);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        protected Map<Object, Object> load(String attributeName) {
+            MetaClass metaClass = getMetadata().getClassNN(entityName);
+            ViewProperty viewProperty = view.getProperty(attributeName);
+            View attributeView = new View((Class<? extends Entity>) metaClass.getJavaClass(), false)
+                    .addProperty(attributeName, viewProperty.getView(), viewProperty.getFetchMode())
+                    .setLoadPartialEntities(true);
+            String queryString = String.format("select e from %s e where e.%s in :ids",
+                    entityName, getMetadata().getTools().getPrimaryKeyName(metaClass));
+
+            Map<Object, Object> values = new HashMap<>(ids.size());
+            for (List<Object> chunk : Lists.partition(ids, BATCH_SIZE)) {
+                LoadContext<Entity> loadContext = new LoadContext<>(metaClass);
+                loadContext.setQuery(LoadContext.createQuery(queryString).setParameter("ids", new ArrayList<>(chunk)))
+                        .setView(attributeView)
+                        .setSoftDeletion(softDeletion);
+                for (Entity entity : getDataManager().loadList(loadContext)) {
+                    values.put(entity.getId(), entity.getValue(attributeName));
+                }
+            }
+            return values;
+        }
+
+        protected Metadata getMetadata() {
+            if (metadata == null) {
+                metadata = AppBeans.get(Metadata.NAME);
+            }
+            return metadata;
+        }
+
+        protected DataManager getDataManager() {
+            if (dataManager == null) {
+                dataManager = AppBeans.get(DataManager.NAME);
+            }
+            return dataManager;
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package com.haulmont.cuba.security.entity;
 
 import com.haulmont.cuba.core.entity.StandardEntity;
+import com.haulmont.cuba.core.entity.annotation.Listeners;
 import com.haulmont.cuba.core.entity.annotation.SystemLevel;
 
 import javax.persistence.*;
@@ -26,6 +27,7 @@ import javax.persistence.*;
  */
 @Entity(name = "sec$Constraint")
 @Table(name = "SEC_CONSTRAINT")
+@Listeners("cuba_SecurityDataEntityListener")
 @SystemLevel
 public class Constraint extends StandardEntity {
 
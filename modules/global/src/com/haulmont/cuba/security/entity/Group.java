@@ -33,7 +33,7 @@ import java.util.Set;
  */
 @Entity(name = "sec$Group")
 @Table(name = "SEC_GROUP")
-@Listeners("cuba_GroupEntityListener")
+@Listeners({"cuba_GroupEntityListener", "cuba_SecurityDataEntityListener"})
 @NamePattern("%s|name")
 @TrackEditScreenHistory
 public class Group extends StandardEntity {
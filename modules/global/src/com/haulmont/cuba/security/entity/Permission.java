@@ -17,6 +17,7 @@
 package com.haulmont.cuba.security.entity;
 
 import com.haulmont.cuba.core.entity.StandardEntity;
+import com.haulmont.cuba.core.entity.annotation.Listeners;
 import com.haulmont.cuba.core.entity.annotation.SystemLevel;
 
 import javax.persistence.*;
@@ -27,6 +28,7 @@ import javax.persistence.*;
  */
 @Entity(name = "sec$Permission")
 @Table(name = "SEC_PERMISSION")
+@Listeners("cuba_SecurityDataEntityListener")
 @SystemLevel
 public class Permission extends StandardEntity {
 
@@ -20,6 +20,7 @@ import com.haulmont.chile.core.annotations.Composition;
 import com.haulmont.chile.core.annotations.NamePattern;
 import com.haulmont.cuba.core.entity.StandardEntity;
 import com.haulmont.cuba.core.entity.annotation.EnableRestore;
+import com.haulmont.cuba.core.entity.annotation.Listeners;
 import com.haulmont.cuba.core.entity.annotation.OnDelete;
 import com.haulmont.cuba.core.entity.annotation.TrackEditScreenHistory;
 import com.haulmont.cuba.core.global.DeletePolicy;
@@ -35,6 +36,7 @@ import java.util.Set;
  */
 @Entity(name = "sec$Role")
 @Table(name = "SEC_ROLE")
+@Listeners("cuba_SecurityDataEntityListener")
 @NamePattern("%s [%s]|locName,name")
 @TrackEditScreenHistory
 public class Role extends StandardEntity {
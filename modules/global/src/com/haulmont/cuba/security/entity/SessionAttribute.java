@@ -18,6 +18,7 @@ package com.haulmont.cuba.security.entity;
 
 import com.haulmont.chile.core.annotations.MetaProperty;
 import com.haulmont.cuba.core.entity.StandardEntity;
+import com.haulmont.cuba.core.entity.annotation.Listeners;
 import com.haulmont.cuba.core.entity.annotation.SystemLevel;
 import com.haulmont.cuba.core.global.AppBeans;
 import com.haulmont.cuba.core.global.Messages;
@@ -26,6 +27,7 @@ import javax.persistence.*;
 
 @Entity(name = "sec$SessionAttribute")
 @Table(name = "SEC_SESSION_ATTR")
+@Listeners("cuba_SecurityDataEntityListener")
 @SystemLevel
 public class SessionAttribute extends StandardEntity {
 
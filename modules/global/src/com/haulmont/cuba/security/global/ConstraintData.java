@@ -22,6 +22,7 @@ import com.haulmont.cuba.security.entity.ConstraintOperationType;
 import com.haulmont.cuba.security.entity.ConstraintCheckType;
 
 import java.io.Serializable;
+import java.util.Objects;
 import java.util.UUID;
 
 public class ConstraintData implements Serializable {
@@ -70,4 +71,23 @@ public class ConstraintData implements Serializable {
     public UUID getId() {
         return id;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ConstraintData that = (ConstraintData) o;
+        return Objects.equals(id, that.id)
+                && Objects.equals(code, that.code)
+                && operationType == that.operationType
+                && checkType == that.checkType
+                && Objects.equals(join, that.join)
+                && Objects.equals(whereClause, that.whereClause)
+                && Objects.equals(groovyScript, that.groovyScript);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, code, operationType, checkType, join, whereClause, groovyScript);
+    }
 }
\ No newline at end of file
@@ -16,6 +16,8 @@
  */
 package com.haulmont.cuba.security.global;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.cuba.core.sys.UserInvocationContext;
 import com.haulmont.cuba.security.entity.*;
@@ -27,6 +29,7 @@ import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 /**
@@ -58,6 +61,12 @@ public class UserSession implements Serializable {
 
     protected transient Map<String, Object> localAttributes;
 
+    /**
+     * Whether roles, permissions and constraints are shared immutable instances. Serialized, because a deserialized
+     * session receives the immutable instances too.
+     */
+    protected boolean securityDataShared;
+
     /**
      * INTERNAL
      * Used only for kryo serialization
@@ -122,6 +131,7 @@ public class UserSession implements Serializable {
         localAttributes = src.localAttributes;
         address = src.address;
         clientInfo = src.clientInfo;
+        securityDataShared = src.securityDataShared;
     }
 
     private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
@@ -259,6 +269,7 @@ public class UserSession implements Serializable {
      * INTERNAL
      */
     public void addPermission(PermissionType type, String target, @Nullable String extTarget, int value) {
+        copySharedSecurityData();
         Integer currentValue = permissions[type.ordinal()].get(target);
         if (currentValue == null || currentValue < value) {
             permissions[type.ordinal()].put(target, value);
@@ -271,6 +282,7 @@ public class UserSession implements Serializable {
      * INTERNAL
      */
     public void removePermission(PermissionType type, String target) {
+        copySharedSecurityData();
         permissions[type.ordinal()].remove(target);
     }
 
@@ -373,6 +385,7 @@ public class UserSession implements Serializable {
      * INTERNAL
      */
     public void addConstraint(Constraint constraint) {
+        copySharedSecurityData();
         String entityName = constraint.getEntityName();
         List<ConstraintData> list = constraints.computeIfAbsent(entityName, k -> new ArrayList<>());
         list.add(new ConstraintData(constraint));
@@ -382,6 +395,7 @@ public class UserSession implements Serializable {
      * INTERNAL
      */
     public void removeConstraint(Constraint constraintToRemove) {
+        copySharedSecurityData();
         String entityName = constraintToRemove.getEntityName();
         List<ConstraintData> constraintDataList = this.constraints.get(entityName);
         if (constraintDataList != null && !constraintDataList.isEmpty()) {
@@ -421,6 +435,74 @@ public class UserSession implements Serializable {
         return Collections.unmodifiableList(list.stream().filter(predicate).collect(Collectors.toList()));
     }
 
+    /**
+     * INTERNAL
+     * Sets permissions compiled for the roles of this session. The array and the maps are attached by reference,
+     * they are shared with other sessions and copied on modification.
+     *
+     * @param permissions immutable maps of permission values by target, indexed by {@link PermissionType} ordinal
+     */
+    public void setSharedPermissions(Map<String, Integer>[] permissions) {
+        this.permissions = permissions;
+        securityDataShared = true;
+    }
+
+    /**
+     * INTERNAL
+     * Sets constraints compiled for the group of this session. The map is attached by reference, it is shared
+     * with other sessions and copied on modification.
+     *
+     * @param constraints immutable lists of constraints by entity name
+     */
+    public void setSharedConstraints(Map<String, List<ConstraintData>> constraints) {
+        this.constraints = constraints;
+        securityDataShared = true;
+    }
+
+    /**
+     * INTERNAL
+     * Replaces roles, permissions and constraints of this session with equal instances returned by the
+     * {@code interner}, so they can be shared between sessions. The {@code interner} receives immutable copies
+     * of the data, shared instances are copied on modification.
+     */
+    @SuppressWarnings("unchecked")
+    public void shareSecurityData(UnaryOperator<Object> interner) {
+        roles = (List<String>) interner.apply(ImmutableList.copyOf(roles));
+        // the copy is not modified by sessions, they copy it again before modification
+        roleTypes = (EnumSet<RoleType>) interner.apply(EnumSet.copyOf(roleTypes));
+        //noinspection unchecked
+        Map<String, Integer>[] sharedPermissions = new Map[permissions.length];
+        for (int i = 0; i < permissions.length; i++) {
+            sharedPermissions[i] = (Map<String, Integer>) interner.apply(ImmutableMap.copyOf(permissions[i]));
+        }
+        permissions = sharedPermissions;
+        ImmutableMap.Builder<String, List<ConstraintData>> constraintsBuilder = ImmutableMap.builder();
+        constraints.forEach((entityName, list) -> constraintsBuilder.put(entityName, ImmutableList.copyOf(list)));
+        constraints = (Map<String, List<ConstraintData>>) interner.apply(constraintsBuilder.build());
+        securityDataShared = true;
+    }
+
+    protected void copySharedSecurityData() {
+        if (!securityDataShared)
+            return;
+
+        roles = new ArrayList<>(roles);
+        roleTypes = EnumSet.copyOf(roleTypes);
+
+        //noinspection unchecked
+        Map<String, Integer>[] permissionsCopy = new Map[permissions.length];
+        for (int i = 0; i < permissions.length; i++) {
+            permissionsCopy[i] = new HashMap<>(permissions[i]);
+        }
+        permissions = permissionsCopy;
+
+        Map<String, List<ConstraintData>> constraintsCopy = new HashMap<>();
+        constraints.forEach((entityName, list) -> constraintsCopy.put(entityName, new ArrayList<>(list)));
+        constraints = constraintsCopy;
+
+        securityDataShared = false;
+    }
+
     /**
      * Get user session attribute. Attribute is a named serializable object bound to session.
      *
@@ -17,6 +17,8 @@
 
 package com.haulmont.cuba.security.entity;
 
+import com.haulmont.chile.core.model.utils.MethodsCache;
+import com.haulmont.chile.core.model.utils.PropertyAccessor;
 import junit.framework.TestCase;
 
 public class InstanceUtilsTest extends TestCase {
@@ -49,4 +51,50 @@ public class InstanceUtilsTest extends TestCase {
         userSubst.setValueEx("user.group.name", "newName");
         assertEquals("newName", userSubst.getValueEx("user.group.name"));
     }
-}
\ No newline at end of file
+
+    public void testDirectProperty() {
+        assertEquals("testLogin", user.getValueEx("login"));
+
+        user.setValueEx("login", "newLogin");
+        assertEquals("newLogin", user.getLogin());
+        assertNull(user.getValueEx((String) null));
+    }
+
+    public void testMethodsCache() {
+        MethodsCache methodsCache = new MethodsCache(User.class);
+
+        PropertyAccessor accessor = methodsCache.getAccessorNN("login");
+        assertNotNull(accessor.getGetter());
+        assertNotNull(accessor.getSetter());
+        assertSame(accessor.getGetter(), methodsCache.getGetterNN("login"));
+        assertSame(accessor.getSetter(), methodsCache.getSetterNN("login"));
+
+        // read-only property
+        assertNotNull(methodsCache.getGetterNN("metaClass"));
+        try {
+            methodsCache.getSetterNN("metaClass");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        try {
+            methodsCache.getAccessorNN("unknownProperty");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testSetValue() {
+        user.setValue("name", "newName");
+        assertEquals("newName", user.getName());
+
+        try {
+            user.setValue("unknownProperty", "value");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
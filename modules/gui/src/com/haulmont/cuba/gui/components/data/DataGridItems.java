@@ -128,6 +128,15 @@ public interface DataGridItems<T> extends DataUnit {
         void resetSortOrder();
     }
 
+    /**
+     * The DataGridItems that loads items on demand. Only a window of items is kept in memory, so the component
+     * must request rows by {@link #getItems(int, int)} instead of iterating over {@link #getItems()}.
+     *
+     * @param <T> items type
+     */
+    interface Lazy<T> extends DataGridItems<T> {
+    }
+
     /**
      * An event that is fired when value of item property is changed.
      *
@@ -0,0 +1,451 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.gui.components.data.datagrid;
+
+import com.google.common.base.Preconditions;
+import com.haulmont.bali.events.EventHub;
+import com.haulmont.bali.events.Subscription;
+import com.haulmont.chile.core.model.Instance;
+import com.haulmont.chile.core.model.MetaClass;
+import com.haulmont.chile.core.model.MetaPropertyPath;
+import com.haulmont.cuba.core.entity.Entity;
+import com.haulmont.cuba.core.global.AppBeans;
+import com.haulmont.cuba.core.global.DataManager;
+import com.haulmont.cuba.core.global.LoadContext;
+import com.haulmont.cuba.core.global.Sort;
+import com.haulmont.cuba.core.sys.PagedChunksLoader;
+import com.haulmont.cuba.gui.components.data.BindingState;
+import com.haulmont.cuba.gui.components.data.DataGridItems;
+import com.haulmont.cuba.gui.components.data.meta.ContainerDataUnit;
+import com.haulmont.cuba.gui.components.data.meta.EntityDataGridItems;
+import com.haulmont.cuba.gui.model.CollectionContainer;
+import com.haulmont.cuba.gui.model.CollectionLoader;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * DataGrid items that are loaded page by page by the query of a {@link CollectionLoader}.
+ * <p>
+ * Rows requested by the component are translated into {@link LoadContext}s with {@code firstResult} and
+ * {@code maxResults}, the number of rows is obtained by a count query and sorting is performed by the database.
+ * The primary key is appended to the sort, so rows with equal sort values are not repeated or skipped on pages.
+ * Only the last accessed {@link #getMaxCachedPages() pages} are kept in memory, and the loader's container
+ * contains the items of these pages and the selected item. The container is updated incrementally when a page is
+ * loaded or evicted.
+ * <p>
+ * The loader itself should not be loaded, as it would read all the items into the container. Loaded items
+ * are not merged into the loader's {@code DataContext}.
+ */
+public class LoaderDataGridItems<E extends Entity>
+        implements EntityDataGridItems<E>, DataGridItems.Sortable<E>, DataGridItems.Lazy<E>, ContainerDataUnit<E> {
+
+    protected CollectionLoader<E> loader;
+    protected CollectionContainer<E> container;
+
+    protected EventHub events = new EventHub();
+
+    protected int pageSize = 100;
+    protected int maxCachedPages = 10;
+
+    protected Function<LoadContext<E>, Long> countDelegate;
+
+    protected Long size;
+    protected Map<Integer, List<E>> pages = createPageCache();
+    protected boolean updatingContainer;
+
+    protected Instance.PropertyChangeListener itemPropertyChangeListener = this::itemPropertyChanged;
+
+    public LoaderDataGridItems(CollectionLoader<E> loader) {
+        this.loader = loader;
+        this.container = loader.getContainer();
+        this.container.addItemChangeListener(this::containerItemChanged);
+        this.container.addCollectionChangeListener(this::containerCollectionChanged);
+    }
+
+    public CollectionLoader<E> getLoader() {
+        return loader;
+    }
+
+    @Override
+    public CollectionContainer<E> getContainer() {
+        return container;
+    }
+
+    /**
+     * @return number of items loaded by one query
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Sets the number of items loaded by one query. Discards loaded items.
+     */
+    public void setPageSize(int pageSize) {
+        Preconditions.checkArgument(pageSize > 0, "pageSize must be positive");
+        this.pageSize = pageSize;
+        clearPages();
+    }
+
+    /**
+     * @return maximum number of pages kept in memory
+     */
+    public int getMaxCachedPages() {
+        return maxCachedPages;
+    }
+
+    /**
+     * Sets the maximum number of pages kept in memory. The least recently accessed pages are evicted first.
+     */
+    public void setMaxCachedPages(int maxCachedPages) {
+        Preconditions.checkArgument(maxCachedPages > 0, "maxCachedPages must be positive");
+        this.maxCachedPages = maxCachedPages;
+    }
+
+    /**
+     * @return a function that returns the number of items instead of {@link DataManager#getCount(LoadContext)}
+     */
+    @Nullable
+    public Function<LoadContext<E>, Long> getCountDelegate() {
+        return countDelegate;
+    }
+
+    /**
+     * Sets a function that returns the number of items instead of {@link DataManager#getCount(LoadContext)}.
+     * Items are loaded by the loader's load delegate if it is set.
+     */
+    public void setCountDelegate(@Nullable Function<LoadContext<E>, Long> countDelegate) {
+        this.countDelegate = countDelegate;
+    }
+
+    /**
+     * Discards loaded items and the number of items, so they will be loaded again when requested.
+     */
+    public void refresh() {
+        size = null;
+        clearPages();
+
+        events.publish(DataGridItems.ItemSetChangeEvent.class, new DataGridItems.ItemSetChangeEvent<>(this));
+    }
+
+    protected Map<Integer, List<E>> createPageCache() {
+        return new LinkedHashMap<Integer, List<E>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<E>> eldest) {
+                if (size() > maxCachedPages) {
+                    removeFromContainer(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    protected List<E> getPage(int pageIndex) {
+        List<E> page = pages.get(pageIndex);
+        if (page == null) {
+            page = loadPage(pageIndex);
+            updatingContainer = true;
+            try {
+                pages.put(pageIndex, page);
+                addToContainer(page);
+            } finally {
+                updatingContainer = false;
+            }
+        }
+        return page;
+    }
+
+    protected void clearPages() {
+        List<E> items = new ArrayList<>();
+        pages.values().forEach(items::addAll);
+        pages.clear();
+
+        updatingContainer = true;
+        try {
+            removeFromContainer(items);
+        } finally {
+            updatingContainer = false;
+        }
+    }
+
+    protected List<E> loadPage(int pageIndex) {
+        LoadContext<E> loadContext = loader.createLoadContext();
+        LoadContext.Query query = loadContext.getQuery();
+        if (query != null) {
+            query.setFirstResult(pageIndex * pageSize);
+            query.setMaxResults(pageSize);
+            // rows with equal values of the sort properties must not move between pages
+            PagedChunksLoader.makeOrderTotal(loadContext.getMetaClass(), query);
+        }
+
+        Function<LoadContext<E>, List<E>> delegate = loader.getLoadDelegate();
+        return delegate != null
+                ? delegate.apply(loadContext)
+                : getDataManager().loadList(loadContext);
+    }
+
+    protected long loadSize() {
+        LoadContext<E> loadContext = loader.createLoadContext();
+        LoadContext.Query query = loadContext.getQuery();
+        if (query != null) {
+            query.setFirstResult(0);
+            query.setMaxResults(0);
+            query.setKeysetValues(null);
+            query.setSort(null);
+        }
+
+        return countDelegate != null
+                ? countDelegate.apply(loadContext)
+                : getDataManager().getCount(loadContext);
+    }
+
+    /**
+     * Adds the items of a loaded page to the container. An item replaces the instance with the same id which is
+     * already in the container, e.g. the selected item of an evicted page.
+     */
+    protected void addToContainer(List<E> items) {
+        List<E> newItems = new ArrayList<>(items.size());
+        for (E item : items) {
+            E existingItem = container.getItemOrNull(item.getId());
+            if (existingItem == item) {
+                continue;
+            }
+            if (existingItem != null) {
+                existingItem.removePropertyChangeListener(itemPropertyChangeListener);
+                container.replaceItem(item);
+            } else {
+                newItems.add(item);
+            }
+            item.addPropertyChangeListener(itemPropertyChangeListener);
+        }
+        if (!newItems.isEmpty()) {
+            container.getMutableItems().addAll(newItems);
+        }
+    }
+
+    /**
+     * Removes the items of an evicted page from the container, except the selected item.
+     */
+    protected void removeFromContainer(Collection<E> items) {
+        E currentItem = container.getItemOrNull();
+        List<E> removedItems = new ArrayList<>(items.size());
+        for (E item : items) {
+            if (item != currentItem && container.getItemOrNull(item.getId()) == item) {
+                item.removePropertyChangeListener(itemPropertyChangeListener);
+                removedItems.add(item);
+            }
+        }
+        if (!removedItems.isEmpty()) {
+            container.getMutableItems().removeAll(removedItems);
+        }
+    }
+
+    protected boolean isCached(E item) {
+        for (List<E> page : pages.values()) {
+            if (page.contains(item)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected DataManager getDataManager() {
+        return AppBeans.get(DataManager.NAME);
+    }
+
+    protected void containerItemChanged(CollectionContainer.ItemChangeEvent<E> event) {
+        if (updatingContainer)
+            return;
+
+        // the previously selected item is kept in the container only while it is selected or its page is cached
+        E prevItem = event.getPrevItem();
+        if (prevItem != null && !isCached(prevItem)) {
+            updatingContainer = true;
+            try {
+                removeFromContainer(Collections.singletonList(prevItem));
+            } finally {
+                updatingContainer = false;
+            }
+        }
+
+        events.publish(DataGridItems.SelectedItemChangeEvent.class, new DataGridItems.SelectedItemChangeEvent<>(this, event.getItem()));
+    }
+
+    protected void containerCollectionChanged(@SuppressWarnings("unused") CollectionContainer.CollectionChangeEvent<E> e) {
+        if (updatingContainer)
+            return;
+
+        refresh();
+    }
+
+    @SuppressWarnings("unchecked")
+    protected void itemPropertyChanged(Instance.PropertyChangeEvent e) {
+        events.publish(DataGridItems.ValueChangeEvent.class, new DataGridItems.ValueChangeEvent(this,
+                (E) e.getItem(), e.getProperty(), e.getPrevValue(), e.getValue()));
+    }
+
+    @Override
+    public MetaClass getEntityMetaClass() {
+        return container.getEntityMetaClass();
+    }
+
+    @Override
+    public BindingState getState() {
+        return BindingState.ACTIVE;
+    }
+
+    @Override
+    public Object getItemId(E item) {
+        return item.getId();
+    }
+
+    @Override
+    public E getItem(@Nullable Object itemId) {
+        return itemId == null ? null : container.getItemOrNull(itemId);
+    }
+
+    @Override
+    public int indexOfItem(E item) {
+        for (Map.Entry<Integer, List<E>> entry : pages.entrySet()) {
+            int index = entry.getValue().indexOf(item);
+            if (index >= 0) {
+                return entry.getKey() * pageSize + index;
+            }
+        }
+        return -1;
+    }
+
+    @Nullable
+    @Override
+    public E getItemByIndex(int index) {
+        if (index < 0 || index >= size())
+            return null;
+
+        List<E> page = getPage(index / pageSize);
+        int pageOffset = index % pageSize;
+        return pageOffset < page.size() ? page.get(pageOffset) : null;
+    }
+
+    /**
+     * Returns a stream that loads pages while it is consumed, so iterating over it loads all the items.
+     */
+    @Override
+    public Stream<E> getItems() {
+        return IntStream.range(0, size())
+                .mapToObj(this::getItemByIndex)
+                .filter(Objects::nonNull);
+    }
+
+    @Override
+    public List<E> getItems(int startIndex, int numberOfItems) {
+        int endIndex = Math.min(startIndex + numberOfItems, size());
+        if (startIndex >= endIndex)
+            return Collections.emptyList();
+
+        List<E> items = new ArrayList<>(endIndex - startIndex);
+        for (int pageIndex = startIndex / pageSize; pageIndex <= (endIndex - 1) / pageSize; pageIndex++) {
+            List<E> page = getPage(pageIndex);
+            int pageStart = pageIndex * pageSize;
+            int from = Math.max(startIndex - pageStart, 0);
+            int to = Math.min(endIndex - pageStart, page.size());
+            if (from < to) {
+                items.addAll(page.subList(from, to));
+            }
+        }
+        return items;
+    }
+
+    @Override
+    public boolean containsItem(E item) {
+        return container.getItemOrNull(item.getId()) != null;
+    }
+
+    @Override
+    public int size() {
+        if (size == null) {
+            size = loadSize();
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Nullable
+    @Override
+    public E getSelectedItem() {
+        return container.getItemOrNull();
+    }
+
+    @Override
+    public void setSelectedItem(@Nullable E item) {
+        container.setItem(item);
+    }
+
+    @Override
+    public Subscription addStateChangeListener(Consumer<StateChangeEvent> listener) {
+        return events.subscribe(StateChangeEvent.class, listener);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Subscription addValueChangeListener(Consumer<ValueChangeEvent<E>> listener) {
+        return events.subscribe(ValueChangeEvent.class, (Consumer) listener);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Subscription addItemSetChangeListener(Consumer<ItemSetChangeEvent<E>> listener) {
+        return events.subscribe(ItemSetChangeEvent.class, (Consumer) listener);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Subscription addSelectedItemChangeListener(Consumer<SelectedItemChangeEvent<E>> listener) {
+        return events.subscribe(SelectedItemChangeEvent.class, (Consumer) listener);
+    }
+
+    @Override
+    public void sort(Object[] propertyId, boolean[] ascending) {
+        loader.setSort(createSort(propertyId, ascending));
+        refresh();
+    }
+
+    protected Sort createSort(Object[] propertyId, boolean[] ascending) {
+        List<Sort.Order> orders = new ArrayList<>();
+        for (int i = 0; i < propertyId.length; i++) {
+            String property;
+            if (propertyId[i] instanceof MetaPropertyPath) {
+                property = ((MetaPropertyPath) propertyId[i]).toPathString();
+            } else {
+                property = (String) propertyId[i];
+            }
+            Sort.Order order = ascending[i] ? Sort.Order.asc(property) : Sort.Order.desc(property);
+            orders.add(order);
+        }
+        return Sort.by(orders);
+    }
+
+    @Override
+    public void resetSortOrder() {
+        loader.setSort(null);
+        refresh();
+    }
+}
@@ -22,9 +22,10 @@ import com.haulmont.chile.core.model.MetaPropertyPath;
 import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.gui.components.data.GroupTableItems;
 import com.haulmont.cuba.gui.data.GroupInfo;
+import com.haulmont.cuba.gui.data.impl.GroupTreeUpdater;
 import com.haulmont.cuba.gui.model.CollectionContainer;
+import com.haulmont.cuba.gui.model.impl.EntityValuesComparator;
 import org.apache.commons.collections4.CollectionUtils;
-import org.apache.commons.collections4.map.LinkedMap;
 import org.apache.commons.lang3.ArrayUtils;
 
 import javax.annotation.Nullable;
@@ -48,6 +49,9 @@ public class ContainerGroupTableItems<E extends Entity<K>, K>
     protected Map<K, GroupInfo> itemGroups;
 
     protected boolean isGrouping;
+    // true if the groups correspond to the current container items and can be updated incrementally
+    protected boolean groupsValid;
+    protected GroupTreeUpdater<E, K> treeUpdater;
 
     protected Object[] sortProperties;
     protected boolean[] sortAscending;
@@ -63,6 +67,13 @@ public class ContainerGroupTableItems<E extends Entity<K>, K>
         super.sort(propertyId, ascending);
     }
 
+    @Override
+    public void resetSortOrder() {
+        sortProperties = null;
+        sortAscending = null;
+        super.resetSortOrder();
+    }
+
     @Override
     public void groupBy(Object[] properties) {
         if (isGrouping) {
@@ -71,16 +82,21 @@ public class ContainerGroupTableItems<E extends Entity<K>, K>
         isGrouping = true;
         try {
             if (properties != null) {
+                boolean samePropertiesGrouped = groupsValid && Arrays.equals(groupProperties, properties);
                 groupProperties = properties;
 
                 if (!ArrayUtils.isEmpty(groupProperties)) {
-                    doGroup();
+                    if (!samePropertiesGrouped) {
+                        doGroup();
+                    }
                 } else {
                     roots = null;
                     parents = null;
                     children = null;
                     groupItems = null;
                     itemGroups = null;
+                    treeUpdater = null;
+                    groupsValid = false;
                 }
             }
         } finally {
@@ -97,44 +113,102 @@ public class ContainerGroupTableItems<E extends Entity<K>, K>
         children = new LinkedHashMap<>();
         groupItems = new HashMap<>();
         itemGroups = new HashMap<>();
+        treeUpdater = createTreeUpdater();
 
         for (E item : container.getItems()) {
-            GroupInfo<MetaPropertyPath> groupInfo = groupItems(0, null, roots, item, new LinkedMap<>());
+            treeUpdater.addItem(item);
+        }
+
+        groupsValid = true;
+    }
 
-            if (groupInfo == null) {
-                throw new IllegalStateException("Item group cannot be NULL");
+    protected GroupTreeUpdater<E, K> createTreeUpdater() {
+        return new GroupTreeUpdater<E, K>(groupProperties, roots, parents, children, groupItems, itemGroups) {
+            @Override
+            protected Object getValue(E item, MetaPropertyPath property) {
+                return getValueByProperty(item, property);
             }
 
-            List<K> itemsIds = groupItems.computeIfAbsent(groupInfo, k -> new ArrayList<>());
-            itemsIds.add(item.getId());
-        }
+            @Override
+            protected void sortItems(List<K> itemIds) {
+                Comparator<E> comparator = createItemComparator();
+                if (comparator != null) {
+                    itemIds.sort(Comparator.comparing(id -> container.getItem(id), comparator));
+                }
+            }
+
+            @Override
+            protected void sortGroups(List<GroupInfo> groups) {
+                Comparator<E> comparator = createItemComparator();
+                if (comparator != null) {
+                    // groups of the sorted container are ordered by their first items
+                    groups.sort(Comparator.comparing(group -> getFirstItem(group), comparator));
+                }
+            }
+        };
     }
 
-    protected GroupInfo<MetaPropertyPath> groupItems(int propertyIndex, GroupInfo parent, List<GroupInfo> children,
-                                                     E item, LinkedMap<MetaPropertyPath, Object> groupValues) {
-        MetaPropertyPath property = (MetaPropertyPath) groupProperties[propertyIndex++];
-        Object itemValue = getValueByProperty(item, property);
-        groupValues.put(property, itemValue);
+    /**
+     * @return comparator of the current sort order of the container or null if the container is not sorted
+     */
+    @Nullable
+    protected Comparator<E> createItemComparator() {
+        if (ArrayUtils.isEmpty(sortProperties)) {
+            return null;
+        }
 
-        GroupInfo<MetaPropertyPath> groupInfo = new GroupInfo<>(groupValues);
-        itemGroups.put(item.getId(), groupInfo);
+        Comparator<E> comparator = null;
+        for (int i = 0; i < sortProperties.length; i++) {
+            String propertyPath = sortProperties[i] instanceof MetaPropertyPath
+                    ? ((MetaPropertyPath) sortProperties[i]).toPathString()
+                    : (String) sortProperties[i];
+            Comparator<E> propertyComparator = Comparator.comparing(e -> e.getValueEx(propertyPath),
+                    EntityValuesComparator.asc(sortAscending[i]));
+            comparator = comparator == null ? propertyComparator : comparator.thenComparing(propertyComparator);
+        }
+        return comparator;
+    }
 
-        if (!parents.containsKey(groupInfo)) {
-            parents.put(groupInfo, parent);
+    protected E getFirstItem(GroupInfo groupInfo) {
+        List<K> itemIds = groupItems.get(groupInfo);
+        if (CollectionUtils.isNotEmpty(itemIds)) {
+            return container.getItem(itemIds.get(0));
         }
+        return getFirstItem(children.get(groupInfo).get(0));
+    }
 
-        if (!children.contains(groupInfo)) {
-            children.add(groupInfo);
+    @Override
+    protected void containerCollectionChanged(CollectionContainer.CollectionChangeEvent<E> e) {
+        if (groupsValid && !isGrouping) {
+            switch (e.getChangeType()) {
+                case ADD_ITEMS:
+                case REMOVE_ITEMS:
+                case SET_ITEM:
+                    for (E item : e.getChanges()) {
+                        E containerItem = container.getItemOrNull(item.getId());
+                        if (containerItem != null) {
+                            treeUpdater.regroupItem(containerItem);
+                        } else {
+                            treeUpdater.removeItem(item.getId());
+                        }
+                    }
+                    break;
+                default:
+                    groupsValid = false;
+            }
         }
 
-        List<GroupInfo> groupChildren =
-                this.children.computeIfAbsent(groupInfo, k -> new ArrayList<>());
+        super.containerCollectionChanged(e);
+    }
 
-        if (propertyIndex < groupProperties.length) {
-            groupInfo = groupItems(propertyIndex, groupInfo, groupChildren, item, groupValues);
+    @Override
+    protected void containerItemPropertyChanged(CollectionContainer.ItemPropertyChangeEvent<E> e) {
+        if (groupsValid && !isGrouping && treeUpdater.isGroupProperty(e.getProperty())
+                && itemGroups.containsKey(e.getItem().getId())) {
+            treeUpdater.regroupItem(e.getItem());
         }
 
-        return groupInfo;
+        super.containerItemPropertyChanged(e);
     }
 
     protected Object getValueByProperty(E item, MetaPropertyPath property) {
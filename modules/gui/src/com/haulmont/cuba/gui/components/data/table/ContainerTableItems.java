@@ -19,25 +19,31 @@ package com.haulmont.cuba.gui.components.data.table;
 import com.haulmont.bali.events.EventHub;
 import com.haulmont.bali.events.Subscription;
 import com.haulmont.chile.core.model.MetaClass;
+import com.haulmont.chile.core.model.MetaProperty;
 import com.haulmont.chile.core.model.MetaPropertyPath;
+import com.haulmont.cuba.client.ClientConfig;
 import com.haulmont.cuba.core.entity.Entity;
-import com.haulmont.cuba.core.global.Sort;
+import com.haulmont.cuba.core.entity.KeyValueEntity;
+import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.gui.components.AggregationInfo;
 import com.haulmont.cuba.gui.components.data.AggregatableTableItems;
 import com.haulmont.cuba.gui.components.data.BindingState;
 import com.haulmont.cuba.gui.components.data.TableItems;
 import com.haulmont.cuba.gui.components.data.meta.ContainerDataUnit;
 import com.haulmont.cuba.gui.components.data.meta.EntityTableItems;
+import com.haulmont.cuba.gui.data.aggregation.Aggregation;
+import com.haulmont.cuba.gui.data.aggregation.Aggregations;
 import com.haulmont.cuba.gui.data.impl.AggregatableDelegate;
 import com.haulmont.cuba.gui.model.CollectionContainer;
+import com.haulmont.cuba.gui.model.CollectionLoader;
+import com.haulmont.cuba.gui.model.DataLoader;
+import com.haulmont.cuba.gui.model.HasLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-import java.util.Map;
+import java.math.BigDecimal;
+import java.util.*;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -74,9 +80,180 @@ public class ContainerTableItems<E extends Entity> implements EntityTableItems<E
             public Object getItemValue(MetaPropertyPath property, Object itemId) {
                 return ContainerTableItems.this.getItemValue(itemId, property);
             }
+
+            @SuppressWarnings("unchecked")
+            @Override
+            protected Map<AggregationInfo, Object> aggregateValues(Collection itemIds, AggregationInfo[] aggregationInfos) {
+                Map<AggregationInfo, Object> values = aggregateInDatabase(itemIds, aggregationInfos);
+                for (AggregationInfo aggregationInfo : aggregationInfos) {
+                    if (!values.containsKey(aggregationInfo)) {
+                        values.put(aggregationInfo, doPropertyAggregation(aggregationInfo, itemIds));
+                    }
+                }
+                return values;
+            }
         };
     }
 
+    /**
+     * Calculates total aggregates by the database query of the container loader if the loader is paged, so the
+     * values cover the whole query result instead of the loaded page. Aggregations which cannot be expressed in JPQL
+     * are not included in the result and are calculated in memory.
+     */
+    protected Map<AggregationInfo, Object> aggregateInDatabase(Collection<?> itemIds, AggregationInfo[] aggregationInfos) {
+        Map<AggregationInfo, Object> values = new HashMap<>();
+
+        CollectionLoader<E> loader = getPagedLoader();
+        if (loader == null || itemIds.size() != container.getItems().size()) {
+            return values;
+        }
+
+        Map<String, String> aggregates = new LinkedHashMap<>();
+        Map<String, AggregationInfo> aggregationInfoByKey = new HashMap<>();
+        Map<String, String> joinAliases = new HashMap<>();
+        StringBuilder joins = new StringBuilder();
+        for (AggregationInfo aggregationInfo : aggregationInfos) {
+            String expression = getAggregateExpression(aggregationInfo, joinAliases, joins);
+            if (expression != null) {
+                String key = "aggregate" + aggregates.size();
+                aggregates.put(key, expression);
+                aggregationInfoByKey.put(key, aggregationInfo);
+            }
+        }
+        if (aggregates.isEmpty()) {
+            return values;
+        }
+
+        List<KeyValueEntity> result;
+        try {
+            DataManager dataManager = AppBeans.get(DataManager.NAME);
+            result = dataManager.loadValues(
+                    ValueLoadContext.createAggregation(loader.createLoadContext(), aggregates, joins.toString()));
+        } catch (RuntimeException e) {
+            log.warn("Unable to aggregate {} by the database, loaded items are aggregated instead", container, e);
+            return values;
+        }
+
+        // null values are kept, they mean that the whole query result has nothing to aggregate
+        KeyValueEntity row = result.isEmpty() ? null : result.get(0);
+        for (Map.Entry<String, AggregationInfo> entry : aggregationInfoByKey.entrySet()) {
+            Object value = row != null ? row.getValue(entry.getKey()) : null;
+            if (value == null && entry.getValue().getType() == AggregationInfo.Type.COUNT) {
+                value = 0L;
+            }
+            values.put(entry.getValue(), value != null ? convertAggregateValue(entry.getValue(), value) : null);
+        }
+        return values;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nullable
+    protected CollectionLoader<E> getPagedLoader() {
+        ClientConfig clientConfig = AppBeans.get(Configuration.class).getConfig(ClientConfig.class);
+        if (!clientConfig.getTableDatabaseAggregation() || !(container instanceof HasLoader)) {
+            return null;
+        }
+        DataLoader loader = ((HasLoader) container).getLoader();
+        if (loader instanceof CollectionLoader) {
+            CollectionLoader<E> collectionLoader = (CollectionLoader<E>) loader;
+            if (collectionLoader.getQuery() != null
+                    && collectionLoader.getLoadDelegate() == null
+                    && (collectionLoader.getFirstResult() > 0 || collectionLoader.getMaxResults() < Integer.MAX_VALUE)) {
+                return collectionLoader;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a JPQL aggregate expression for the given aggregation or null if it must be calculated in memory.
+     * References in the property path are added as left joins, so entities without a reference are not filtered out.
+     * Paths through collections are not supported because joining them would aggregate the same value many times.
+     *
+     * @param joinAliases aliases of the already joined references by their paths
+     * @param joins       join clauses of the aggregate query
+     */
+    @Nullable
+    protected String getAggregateExpression(AggregationInfo aggregationInfo,
+                                            Map<String, String> joinAliases, StringBuilder joins) {
+        MetaPropertyPath propertyPath = aggregationInfo.getPropertyPath();
+        MetadataTools metadataTools = AppBeans.get(MetadataTools.NAME);
+        if (aggregationInfo.getStrategy() != null
+                || propertyPath == null
+                || !metadataTools.isPersistent(propertyPath)) {
+            return null;
+        }
+
+        String function;
+        switch (aggregationInfo.getType()) {
+            case COUNT:
+                function = "count";
+                break;
+            case AVG:
+                function = "avg";
+                break;
+            case MAX:
+                function = "max";
+                break;
+            case MIN:
+                function = "min";
+                break;
+            case SUM:
+                function = "sum";
+                break;
+            default:
+                return null;
+        }
+
+        MetaProperty[] properties = propertyPath.getMetaProperties();
+        for (MetaProperty property : properties) {
+            if (property.getRange().getCardinality().isMany()) {
+                return null;
+            }
+        }
+
+        String alias = "{E}";
+        String path = "";
+        for (int i = 0; i < properties.length - 1; i++) {
+            MetaProperty property = properties[i];
+            String source = alias + "." + property.getName();
+            path = path.isEmpty() ? property.getName() : path + "." + property.getName();
+            if (metadataTools.isEmbedded(property)) {
+                alias = source;
+            } else {
+                alias = joinAliases.get(path);
+                if (alias == null) {
+                    alias = "aj" + joinAliases.size() + "_";
+                    joinAliases.put(path, alias);
+                    joins.append(" left join ").append(source).append(" ").append(alias);
+                }
+            }
+        }
+        return function + "(" + alias + "." + properties[properties.length - 1].getName() + ")";
+    }
+
+    protected Object convertAggregateValue(AggregationInfo aggregationInfo, Object value) {
+        if (aggregationInfo.getType() == AggregationInfo.Type.COUNT || !(value instanceof Number)) {
+            return value;
+        }
+        Aggregation aggregation = Aggregations.get(aggregationInfo.getPropertyPath().getRangeJavaClass());
+        Class resultClass = aggregation != null ? aggregation.getResultClass() : value.getClass();
+
+        Number number = (Number) value;
+        if (resultClass.isInstance(value)) {
+            return value;
+        } else if (resultClass == BigDecimal.class) {
+            return new BigDecimal(number.toString());
+        } else if (resultClass == Double.class) {
+            return number.doubleValue();
+        } else if (resultClass == Long.class) {
+            return number.longValue();
+        } else if (resultClass == Integer.class) {
+            return number.intValue();
+        }
+        return value;
+    }
+
     public CollectionContainer<E> getContainer() {
         return container;
     }
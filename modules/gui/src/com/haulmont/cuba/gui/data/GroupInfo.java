@@ -22,6 +22,8 @@ public class GroupInfo<P> {
 
     private LinkedMap groupingValues;
     private P groupProperty;
+    // grouping values are not changed after creation, so the string used for equality is computed once
+    private String key;
 
     @SuppressWarnings("unchecked")
     public GroupInfo(LinkedMap groupingValues) {
@@ -49,6 +51,13 @@ public class GroupInfo<P> {
 
     @Override
     public String toString() {
+        if (key == null) {
+            key = createKey();
+        }
+        return key;
+    }
+
+    protected String createKey() {
         StringBuilder sb = new StringBuilder("{");
         for (int groupIndex = 0; groupIndex < groupingValues.size(); groupIndex++) {
             Object value = groupingValues.getValue(groupIndex);
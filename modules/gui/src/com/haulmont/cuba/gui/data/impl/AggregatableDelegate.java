@@ -39,9 +39,11 @@ public abstract class AggregatableDelegate<K> {
     }
 
     protected Map<AggregationInfo, String> doAggregation(Collection<K> itemIds, AggregationInfo[] aggregationInfos) {
+        Map<AggregationInfo, Object> values = aggregateValues(itemIds, aggregationInfos);
+
         Map<AggregationInfo, String> aggregationResults = new HashMap<>();
         for (AggregationInfo aggregationInfo : aggregationInfos) {
-            final Object value = doPropertyAggregation(aggregationInfo, itemIds);
+            final Object value = values.get(aggregationInfo);
 
             String formattedValue;
             if (aggregationInfo.getFormatter() != null) {
@@ -86,6 +88,14 @@ public abstract class AggregatableDelegate<K> {
         return aggregationResults;
     }
 
+    protected Map<AggregationInfo, Object> aggregateValues(Collection<K> itemIds, AggregationInfo[] aggregationInfos) {
+        Map<AggregationInfo, Object> values = new HashMap<>();
+        for (AggregationInfo aggregationInfo : aggregationInfos) {
+            values.put(aggregationInfo, doPropertyAggregation(aggregationInfo, itemIds));
+        }
+        return values;
+    }
+
     @SuppressWarnings("unchecked")
     protected Object doPropertyAggregation(AggregationInfo aggregationInfo, Collection<K> itemIds) {
         List items;
@@ -45,6 +45,17 @@ public class GroupDatasourceImpl<T extends Entity<K>, K>
         }
     };
 
+    public GroupDatasourceImpl() {
+        addItemPropertyChangeListener(e -> groupDelegate.itemPropertyChanged(e.getItem(), e.getProperty()));
+    }
+
+    @Override
+    protected void fireCollectionChanged(Operation operation, List<T> items) {
+        groupDelegate.collectionChanged(operation, items);
+
+        super.fireCollectionChanged(operation, items);
+    }
+
     @Override
     public void groupBy(Object[] properties) {
         groupDelegate.groupBy(properties, sortInfos);
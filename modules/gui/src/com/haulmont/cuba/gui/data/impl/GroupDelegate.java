@@ -22,7 +22,6 @@ import com.haulmont.chile.core.model.MetaPropertyPath;
 import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.gui.data.*;
 import org.apache.commons.collections4.CollectionUtils;
-import org.apache.commons.collections4.map.LinkedMap;
 import org.apache.commons.lang3.ArrayUtils;
 
 import java.util.*;
@@ -43,6 +42,11 @@ public abstract class GroupDelegate<T extends Entity<K>, K> {
     protected Map<K, GroupInfo> itemGroups;
 
     protected boolean isGrouping;
+    // true if the groups correspond to the current datasource items and can be updated incrementally
+    protected boolean groupsValid;
+    protected GroupTreeUpdater<T, K> treeUpdater;
+    // the last sort applied to the groups, used to insert items into the sorted groups
+    protected CollectionDatasource.Sortable.SortInfo<MetaPropertyPath>[] sortInfos;
 
     protected CollectionDatasource<T, K> datasource;
     protected CollectionDatasource.SortDelegate<T, K> sortDelegate;
@@ -65,11 +69,14 @@ public abstract class GroupDelegate<T extends Entity<K>, K> {
             if (properties != null) {
                 CollectionDsHelper.autoRefreshInvalid(datasource, true);
 
+                boolean samePropertiesGrouped = groupsValid && Arrays.equals(groupProperties, properties);
                 groupProperties = properties;
 
                 if (!ArrayUtils.isEmpty(groupProperties)) {
                     if (datasource.getState() == Datasource.State.VALID) {
-                        doGroup();
+                        if (!samePropertiesGrouped) {
+                            doGroup();
+                        }
                     } else if (datasource instanceof PropertyDatasource) {
                         datasource.addStateChangeListener(new Datasource.StateChangeListener<T>() {
                             @Override
@@ -87,10 +94,13 @@ public abstract class GroupDelegate<T extends Entity<K>, K> {
                     children = null;
                     groupItems = null;
                     itemGroups = null;
+                    treeUpdater = null;
+                    groupsValid = false;
                 }
             }
         } finally {
             isGrouping = false;
+            this.sortInfos = sortInfos;
 
             if (!ArrayUtils.isEmpty(sortInfos)) {
                 if (hasGroups()) {
@@ -108,51 +118,83 @@ public abstract class GroupDelegate<T extends Entity<K>, K> {
         children = new HashMap<>();
         groupItems = new HashMap<>();
         itemGroups = new HashMap<>();
+        treeUpdater = createTreeUpdater();
 
         Collection<K> itemIds = datasource.getItemIds();
         for (K id : itemIds) {
-            T item = datasource.getItem(id);
-            GroupInfo<MetaPropertyPath> groupInfo = groupItems(0, null, roots, item, new LinkedMap<>());
-
-            if (groupInfo == null) {
-                throw new IllegalStateException("Item group cannot be NULL");
-            }
-
-            List<K> itemsIds = groupItems.computeIfAbsent(groupInfo, k -> new ArrayList<>());
-            itemsIds.add(id);
+            treeUpdater.addItem(datasource.getItem(id));
         }
+
+        groupsValid = true;
     }
 
-    protected GroupInfo<MetaPropertyPath> groupItems(int propertyIndex, GroupInfo parent, List<GroupInfo> children,
-                                                     T item, LinkedMap<MetaPropertyPath, Object> groupValues) {
-        MetaPropertyPath property = (MetaPropertyPath) groupProperties[propertyIndex++];
-        Object itemValue = getValueByProperty(item, property);
-        groupValues.put(property, itemValue);
+    protected GroupTreeUpdater<T, K> createTreeUpdater() {
+        return new GroupTreeUpdater<T, K>(groupProperties, roots, parents, children, groupItems, itemGroups) {
+            @Override
+            protected Object getValue(T item, MetaPropertyPath property) {
+                return getValueByProperty(item, property);
+            }
 
-        GroupInfo<MetaPropertyPath> groupInfo = new GroupInfo<>(groupValues);
-        itemGroups.put(item.getId(), groupInfo);
+            @Override
+            protected void sortItems(List<K> itemIds) {
+                if (!ArrayUtils.isEmpty(sortInfos)
+                        && ArrayUtils.indexOf(groupProperties, sortInfos[0].getPropertyPath()) == -1) {
+                    sortGroupItems(itemIds, sortInfos);
+                }
+            }
 
-        if (!parents.containsKey(groupInfo)) {
-            parents.put(groupInfo, parent);
-        }
+            @Override
+            protected void sortGroups(List<GroupInfo> groups) {
+                if (!ArrayUtils.isEmpty(sortInfos) && !groups.isEmpty()
+                        && sortInfos[0].getPropertyPath().equals(groups.get(0).getProperty())) {
+                    groupSortDelegate.sortGroups(groups, sortInfos);
+                }
+            }
+        };
+    }
 
-        if (!children.contains(groupInfo)) {
-            children.add(groupInfo);
+    /**
+     * Updates the groups according to the datasource change instead of grouping all items again.
+     * The current content of the datasource is checked for the changed items, so the same change can be
+     * passed more than once, e.g. when suspended events are fired.
+     */
+    public void collectionChanged(CollectionDatasource.Operation operation, List<T> items) {
+        if (!groupsValid || isGrouping) {
+            return;
         }
 
-        List<GroupInfo> groupChildren =
-                this.children.computeIfAbsent(groupInfo, k -> new ArrayList<>());
-
-        if (propertyIndex < groupProperties.length) {
-            groupInfo = groupItems(propertyIndex, groupInfo, groupChildren, item, groupValues);
+        switch (operation) {
+            case ADD:
+            case REMOVE:
+            case UPDATE:
+                for (T item : items) {
+                    K id = item.getId();
+                    if (datasource.containsItem(id)) {
+                        treeUpdater.regroupItem(datasource.getItem(id));
+                    } else {
+                        treeUpdater.removeItem(id);
+                    }
+                }
+                break;
+            default:
+                groupsValid = false;
         }
+    }
 
-        return groupInfo;
+    /**
+     * Moves the item to another group if the changed property is used for grouping.
+     */
+    public void itemPropertyChanged(T item, String property) {
+        if (groupsValid && !isGrouping && treeUpdater.isGroupProperty(property)
+                && itemGroups.containsKey(item.getId())) {
+            treeUpdater.regroupItem(item);
+        }
     }
 
     protected abstract void doSort(CollectionDatasource.Sortable.SortInfo<MetaPropertyPath>[] sortInfo);
 
     protected void doGroupSort(CollectionDatasource.Sortable.SortInfo<MetaPropertyPath>[] sortInfo) {
+        sortInfos = sortInfo;
         if (hasGroups()) {
             MetaPropertyPath propertyPath = sortInfo[0].getPropertyPath();
 
@@ -174,22 +216,26 @@ public abstract class GroupDelegate<T extends Entity<K>, K> {
                 for (GroupInfo groupInfo : groups) {
                     List<K> items = groupItems.get(groupInfo);
                     if (items != null) {
-                        List<T> entities = items.stream()
-                                .map(item -> datasource.getItem(item))
-                                .collect(Collectors.toList());
-
-                        sortDelegate.sort(entities, sortInfo);
-
-                        items.clear();
-                        for (T entity : entities) {
-                            items.add(entity.getId());
-                        }
+                        sortGroupItems(items, sortInfo);
                     }
                 }
             }
         }
     }
 
+    protected void sortGroupItems(List<K> items, CollectionDatasource.Sortable.SortInfo<MetaPropertyPath>[] sortInfo) {
+        List<T> entities = items.stream()
+                .map(item -> datasource.getItem(item))
+                .collect(Collectors.toList());
+
+        sortDelegate.sort(entities, sortInfo);
+
+        items.clear();
+        for (T entity : entities) {
+            items.add(entity.getId());
+        }
+    }
+
     public List<GroupInfo> rootGroups() {
         if (hasGroups()) {
             return Collections.unmodifiableList(roots);
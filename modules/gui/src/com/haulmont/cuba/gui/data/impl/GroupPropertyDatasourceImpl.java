@@ -43,6 +43,17 @@ public class GroupPropertyDatasourceImpl<T extends Entity<K>, K>
         }
     };
 
+    public GroupPropertyDatasourceImpl() {
+        addItemPropertyChangeListener(e -> groupDelegate.itemPropertyChanged(e.getItem(), e.getProperty()));
+    }
+
+    @Override
+    protected void fireCollectionChanged(Operation operation, List<T> items) {
+        groupDelegate.collectionChanged(operation, items);
+
+        super.fireCollectionChanged(operation, items);
+    }
+
     @Override
     public void groupBy(Object[] properties) {
         groupDelegate.groupBy(properties, sortInfos);
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.gui.data.impl;
+
+import com.haulmont.chile.core.model.MetaPropertyPath;
+import com.haulmont.cuba.core.entity.Entity;
+import com.haulmont.cuba.gui.data.GroupInfo;
+import org.apache.commons.collections4.map.LinkedMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * INTERNAL.
+ * Puts items into the group tree of {@link GroupDelegate} and {@code ContainerGroupTableItems}, moves them between
+ * groups and removes groups left empty, so the tree can be updated without grouping all items again.
+ * <p>
+ * The tree is stored in the maps passed to the constructor. An item inserted into the existing tree is moved to its
+ * sorted position by {@link #sortItems(List)} and {@link #sortGroups(List)}.
+ */
+public abstract class GroupTreeUpdater<T extends Entity<K>, K> {
+
+    protected final Object[] groupProperties;
+    protected final List<GroupInfo> roots;
+    protected final Map<GroupInfo, GroupInfo> parents;
+    protected final Map<GroupInfo, List<GroupInfo>> children;
+    protected final Map<GroupInfo, List<K>> groupItems;
+    protected final Map<K, GroupInfo> itemGroups;
+
+    public GroupTreeUpdater(Object[] groupProperties, List<GroupInfo> roots, Map<GroupInfo, GroupInfo> parents,
+                            Map<GroupInfo, List<GroupInfo>> children, Map<GroupInfo, List<K>> groupItems,
+                            Map<K, GroupInfo> itemGroups) {
+        this.groupProperties = groupProperties;
+        this.roots = roots;
+        this.parents = parents;
+        this.children = children;
+        this.groupItems = groupItems;
+        this.itemGroups = itemGroups;
+    }
+
+    /**
+     * @return value of the group property of the item
+     */
+    protected abstract Object getValue(T item, MetaPropertyPath property);
+
+    /**
+     * Restores the order of items of a group after an item is added to the end of the list.
+     */
+    protected abstract void sortItems(List<K> itemIds);
+
+    /**
+     * Restores the order of groups having the same parent after a group is added or its items are changed.
+     */
+    protected abstract void sortGroups(List<GroupInfo> groups);
+
+    /**
+     * Adds the item to the end of its group, creating the group and its parents if needed.
+     * The order of groups and items is not changed, so all items can be grouped in their current order.
+     *
+     * @return the group of the item
+     */
+    public GroupInfo addItem(T item) {
+        GroupInfo<MetaPropertyPath> groupInfo = groupItems(0, null, roots, item, new LinkedMap<>());
+
+        if (groupInfo == null) {
+            throw new IllegalStateException("Item group cannot be NULL");
+        }
+
+        List<K> itemsIds = groupItems.computeIfAbsent(groupInfo, k -> new ArrayList<>());
+        itemsIds.add(item.getId());
+        return groupInfo;
+    }
+
+    /**
+     * Adds the item to its group and moves the item and the groups containing it to their sorted positions.
+     */
+    public void insertItem(T item) {
+        GroupInfo groupInfo = addItem(item);
+        sortItems(groupItems.get(groupInfo));
+        sortGroupPath(groupInfo);
+    }
+
+    public void removeItem(K itemId) {
+        GroupInfo groupInfo = itemGroups.remove(itemId);
+        if (groupInfo == null) {
+            return;
+        }
+
+        List<K> itemsIds = groupItems.get(groupInfo);
+        if (itemsIds != null) {
+            itemsIds.remove(itemId);
+            GroupInfo remainingGroup = itemsIds.isEmpty() ? removeEmptyGroup(groupInfo) : groupInfo;
+            sortGroupPath(remainingGroup);
+        }
+    }
+
+    /**
+     * Moves the item to another group if values of its group properties have changed.
+     */
+    public void regroupItem(T item) {
+        GroupInfo groupInfo = itemGroups.get(item.getId());
+        if (groupInfo != null) {
+            LinkedMap<MetaPropertyPath, Object> groupValues = new LinkedMap<>();
+            for (Object groupProperty : groupProperties) {
+                MetaPropertyPath property = (MetaPropertyPath) groupProperty;
+                groupValues.put(property, getValue(item, property));
+            }
+            if (groupInfo.equals(new GroupInfo<>(groupValues))) {
+                return;
+            }
+        }
+
+        removeItem(item.getId());
+        insertItem(item);
+    }
+
+    /**
+     * @return true if the property of the item is the first property of a path used for grouping
+     */
+    public boolean isGroupProperty(String property) {
+        for (Object groupProperty : groupProperties) {
+            MetaPropertyPath propertyPath = (MetaPropertyPath) groupProperty;
+            if (propertyPath.getMetaProperties()[0].getName().equals(property)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the group and its parents left without children.
+     *
+     * @return the nearest parent remaining in the tree or null
+     */
+    protected GroupInfo removeEmptyGroup(GroupInfo groupInfo) {
+        GroupInfo parent = parents.remove(groupInfo);
+        children.remove(groupInfo);
+        groupItems.remove(groupInfo);
+
+        List<GroupInfo> siblings = parent == null ? roots : children.get(parent);
+        if (siblings != null) {
+            siblings.remove(groupInfo);
+            if (parent != null && siblings.isEmpty()) {
+                return removeEmptyGroup(parent);
+            }
+        }
+        return parent;
+    }
+
+    protected void sortGroupPath(GroupInfo groupInfo) {
+        GroupInfo group = groupInfo;
+        while (group != null) {
+            GroupInfo parent = parents.get(group);
+            sortGroups(parent == null ? roots : children.get(parent));
+            group = parent;
+        }
+    }
+
+    protected GroupInfo<MetaPropertyPath> groupItems(int propertyIndex, GroupInfo parent, List<GroupInfo> children,
+                                                     T item, LinkedMap<MetaPropertyPath, Object> groupValues) {
+        MetaPropertyPath property = (MetaPropertyPath) groupProperties[propertyIndex++];
+        Object itemValue = getValue(item, property);
+        groupValues.put(property, itemValue);
+
+        GroupInfo<MetaPropertyPath> groupInfo = new GroupInfo<>(groupValues);
+        itemGroups.put(item.getId(), groupInfo);
+
+        if (!parents.containsKey(groupInfo)) {
+            parents.put(groupInfo, parent);
+        }
+
+        if (!children.contains(groupInfo)) {
+            children.add(groupInfo);
+        }
+
+        List<GroupInfo> groupChildren =
+                this.children.computeIfAbsent(groupInfo, k -> new ArrayList<>());
+
+        if (propertyIndex < groupProperties.length) {
+            groupInfo = groupItems(propertyIndex, groupInfo, groupChildren, item, groupValues);
+        }
+
+        return groupInfo;
+    }
+}
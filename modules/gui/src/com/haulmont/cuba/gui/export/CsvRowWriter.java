@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.haulmont.cuba.gui.export;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Writes rows in CSV format (RFC 4180) encoded in UTF-8 with the byte order mark, so the file is recognized
+ * by spreadsheet applications. Numbers and dates are written in a locale-independent form.
+ */
+public class CsvRowWriter implements ExportRowWriter {
+
+    protected static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    protected Writer writer;
+    protected char separator;
+
+    public CsvRowWriter(OutputStream out) throws IOException {
+        this(out, ',');
+    }
+
+    public CsvRowWriter(OutputStream out, char separator) throws IOException {
+        this.separator = separator;
+        writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write('\uFEFF');
+    }
+
+    @Override
+    public void writeRow(List<?> cells, boolean bold) throws IOException {
+        for (int i = 0; i < cells.size(); i++) {
+            if (i > 0) {
+                writer.write(separator);
+            }
+            Object value = cells.get(i);
+            if (value != null) {
+                writer.write(escape(formatValue(value)));
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    protected String formatValue(Object value) {
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        } else if (value instanceof LocalDateTime) {
+            return DATE_TIME_FORMATTER.format((LocalDateTime) value);
+        }
+        return value.toString();
+    }
+
+    protected String escape(String value) {
+        if (value.indexOf(separator) < 0 && value.indexOf('"') < 0
+                && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -27,18 +27,20 @@ import com.haulmont.chile.core.model.utils.InstanceUtils;
 import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.core.entity.IdProxy;
 import com.haulmont.cuba.core.entity.annotation.IgnoreUserTimeZone;
-import com.haulmont.cuba.core.global.AppBeans;
-import com.haulmont.cuba.core.global.Messages;
-import com.haulmont.cuba.core.global.MetadataTools;
-import com.haulmont.cuba.core.global.UserSessionSource;
+import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.gui.components.*;
 import com.haulmont.cuba.gui.components.data.GroupTableItems;
 import com.haulmont.cuba.gui.components.data.TableItems;
 import com.haulmont.cuba.gui.components.data.TreeDataGridItems;
 import com.haulmont.cuba.gui.components.data.TreeTableItems;
+import com.haulmont.cuba.gui.components.data.meta.ContainerDataUnit;
 import com.haulmont.cuba.gui.components.data.meta.EntityDataGridItems;
 import com.haulmont.cuba.gui.components.data.meta.EntityTableItems;
 import com.haulmont.cuba.gui.data.GroupInfo;
+import com.haulmont.cuba.gui.model.CollectionContainer;
+import com.haulmont.cuba.gui.model.CollectionLoader;
+import com.haulmont.cuba.gui.model.HasLoader;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.poi.hssf.usermodel.*;
@@ -50,10 +52,11 @@ import org.apache.poi.util.LocaleUtil;
 import org.dom4j.Element;
 
 import javax.annotation.Nullable;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.io.*;
 import java.text.ParseException;
+import java.time.*;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -87,6 +90,8 @@ public class ExcelExporter {
 
     protected boolean exportAggregation = true;
 
+    protected int streamingChunkSize = 1000;
+
     protected final Messages messages;
     protected final UserSessionSource userSessionSource;
     protected final MetadataTools metadataTools;
@@ -281,6 +286,210 @@ public class ExcelExporter {
         display.show(new ByteArrayDataProvider(out.toByteArray()), fileName + ".xls", ExportFormat.XLS);
     }
 
+    /**
+     * Exports all rows of the table query instead of the items loaded into the table. Rows are loaded by
+     * {@link DataManager} in chunks of {@link #getStreamingChunkSize()} instances and written to a temporary file
+     * as soon as they are loaded, so memory consumption does not depend on the number of exported rows.
+     * <p>
+     * Grouping, hierarchy and aggregation of the table are not exported.
+     *
+     * @param table    table bound to a container loaded by {@link CollectionLoader}
+     * @param columns  exported columns
+     * @param display  export display
+     * @param fileName file name without extension, or null to use the entity caption
+     * @param format   {@link ExportFormat#XLSX} or {@link ExportFormat#CSV}
+     */
+    public void exportTableStreaming(Table<Entity> table, List<Table.Column> columns, ExportDisplay display,
+                                     @Nullable String fileName, ExportFormat format) {
+        if (display == null) {
+            throw new IllegalArgumentException("ExportDisplay is null");
+        }
+
+        CollectionLoader<Entity> loader = getCollectionLoader(table.getItems());
+        List<String> captions = columns.stream()
+                .map(Table.Column::getCaption)
+                .collect(Collectors.toList());
+
+        File file = exportStreaming(loader, captions, format, instance -> {
+            List<Object> cells = new ArrayList<>(columns.size());
+            for (Table.Column column : columns) {
+                MetaPropertyPath propertyPath = column.getId() instanceof MetaPropertyPath ?
+                        (MetaPropertyPath) column.getId() : null;
+                cells.add(convertCellValue(getColumnValue(table, column, instance), propertyPath));
+            }
+            return cells;
+        });
+
+        if (fileName == null) {
+            fileName = messages.getTools().getEntityCaption(loader.getContainer().getEntityMetaClass());
+        }
+        display.show(new TempFileDataProvider(file), fileName + "." + format.getFileExt(), format);
+    }
+
+    /**
+     * Exports all rows of the data grid query instead of the items loaded into the data grid.
+     *
+     * @see #exportTableStreaming(Table, List, ExportDisplay, String, ExportFormat)
+     */
+    public void exportDataGridStreaming(DataGrid<Entity> dataGrid, List<DataGrid.Column> columns, ExportDisplay display,
+                                        @Nullable String fileName, ExportFormat format) {
+        if (display == null) {
+            throw new IllegalArgumentException("ExportDisplay is null");
+        }
+
+        CollectionLoader<Entity> loader = getCollectionLoader(dataGrid.getItems());
+        List<String> captions = columns.stream()
+                .map(DataGrid.Column::getCaption)
+                .collect(Collectors.toList());
+
+        File file = exportStreaming(loader, captions, format, instance -> {
+            List<Object> cells = new ArrayList<>(columns.size());
+            for (DataGrid.Column column : columns) {
+                cells.add(convertCellValue(getDataGridColumnValue(dataGrid, column, instance), column.getPropertyPath()));
+            }
+            return cells;
+        });
+
+        if (fileName == null) {
+            fileName = messages.getTools().getEntityCaption(loader.getContainer().getEntityMetaClass());
+        }
+        display.show(new TempFileDataProvider(file), fileName + "." + format.getFileExt(), format);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected CollectionLoader<Entity> getCollectionLoader(@Nullable Object items) {
+        if (items instanceof ContainerDataUnit) {
+            CollectionContainer container = ((ContainerDataUnit) items).getContainer();
+            if (container instanceof HasLoader && ((HasLoader) container).getLoader() instanceof CollectionLoader) {
+                return (CollectionLoader<Entity>) ((HasLoader) container).getLoader();
+            }
+        }
+        throw new IllegalStateException("Streaming export requires a component bound to a container " +
+                "loaded by CollectionLoader");
+    }
+
+    protected File exportStreaming(CollectionLoader<Entity> loader, List<String> captions, ExportFormat format,
+                                   Function<Entity, List<Object>> rowMapper) {
+        LoadContext<Entity> loadContext = loader.createLoadContext();
+        LoadContext.Query query = loadContext.getQuery();
+        // the header takes a row of the sheet, and one more row is loaded to find out if the result exceeds it
+        int maxRowCount = ExportFormat.XLSX.equals(format) ? XlsxRowWriter.MAX_ROW_COUNT - 1 : 0;
+        query.setFirstResult(0);
+        query.setMaxResults(maxRowCount > 0 ? maxRowCount + 1 : 0);
+        query.setKeysetValues(null);
+
+        GlobalConfig globalConfig = AppBeans.get(Configuration.class).getConfig(GlobalConfig.class);
+        DataManager dataManager = AppBeans.get(DataManager.NAME);
+
+        File file = null;
+        try {
+            file = File.createTempFile("export", "." + format.getFileExt(), new File(globalConfig.getTempDir()));
+            int[] rowCount = {0};
+            try (ExportRowWriter writer = createRowWriter(new FileOutputStream(file), format)) {
+                writer.writeRow(captions, true);
+                dataManager.loadListByChunks(loadContext, streamingChunkSize, chunk -> {
+                    try {
+                        for (Entity instance : chunk) {
+                            rowCount[0]++;
+                            if (maxRowCount == 0 || rowCount[0] <= maxRowCount) {
+                                writer.writeRow(rowMapper.apply(instance), false);
+                            }
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            isRowNumberExceeded = maxRowCount > 0 && rowCount[0] > maxRowCount;
+            return file;
+        } catch (IOException | RuntimeException e) {
+            FileUtils.deleteQuietly(file);
+            throw new RuntimeException("Unable to write document", e);
+        }
+    }
+
+    protected ExportRowWriter createRowWriter(OutputStream out, ExportFormat format) throws IOException {
+        if (ExportFormat.XLSX.equals(format)) {
+            return new XlsxRowWriter(out);
+        } else if (ExportFormat.CSV.equals(format)) {
+            return new CsvRowWriter(out);
+        }
+        throw new IllegalArgumentException("Unsupported streaming export format: " + format);
+    }
+
+    /**
+     * Converts a cell value to a value supported by {@link ExportRowWriter} in the same way as the values are
+     * formatted in XLS export.
+     */
+    @Nullable
+    protected Object convertCellValue(@Nullable Object cellValue, @Nullable MetaPropertyPath metaPropertyPath) {
+        if (cellValue == null) {
+            if (metaPropertyPath != null
+                    && metaPropertyPath.getRange().isDatatype()
+                    && Boolean.class.equals(metaPropertyPath.getRange().asDatatype().getJavaClass())) {
+                return falseStr;
+            }
+            return null;
+        }
+
+        if (cellValue instanceof IdProxy) {
+            cellValue = ((IdProxy) cellValue).get();
+        }
+
+        if (cellValue instanceof Number) {
+            Number n = (Number) cellValue;
+            Datatype datatype = null;
+            if (metaPropertyPath != null) {
+                Range range = metaPropertyPath.getMetaProperty().getRange();
+                if (range.isDatatype()) {
+                    datatype = range.asDatatype();
+                }
+            }
+            datatype = datatype == null ? Datatypes.getNN(n.getClass()) : datatype;
+            try {
+                Number result = (Number) datatype.parse(datatype.format(n));
+                return result != null ? result : n;
+            } catch (ParseException e) {
+                throw new RuntimeException("Unable to parse numeric value", e);
+            }
+        } else if (cellValue instanceof Date) {
+            Class javaClass = null;
+            ZoneId zoneId = ZoneId.systemDefault();
+            if (metaPropertyPath != null) {
+                MetaProperty metaProperty = metaPropertyPath.getMetaProperty();
+                if (metaProperty.getRange().isDatatype()) {
+                    javaClass = metaProperty.getRange().asDatatype().getJavaClass();
+                }
+                TimeZone timeZone = userSessionSource.getUserSession().getTimeZone();
+                Boolean ignoreUserTimeZone = metadataTools.getMetaAnnotationValue(metaProperty, IgnoreUserTimeZone.class);
+                if (timeZone != null
+                        && Objects.equals(Date.class, javaClass)
+                        && !Boolean.TRUE.equals(ignoreUserTimeZone)) {
+                    zoneId = timeZone.toZoneId();
+                }
+            }
+            LocalDateTime dateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(((Date) cellValue).getTime()), zoneId);
+            if (Objects.equals(java.sql.Time.class, javaClass)) {
+                return dateTime.toLocalTime();
+            } else if (Objects.equals(java.sql.Date.class, javaClass)) {
+                return dateTime.toLocalDate();
+            }
+            return dateTime;
+        } else if (cellValue instanceof LocalDate || cellValue instanceof LocalTime || cellValue instanceof LocalDateTime) {
+            return cellValue;
+        } else if (cellValue instanceof Boolean) {
+            return ((Boolean) cellValue) ? trueStr : falseStr;
+        } else if (cellValue instanceof EnumClass) {
+            String nameKey = cellValue.getClass().getSimpleName() + "." + cellValue.toString();
+            return messages.getMessage(cellValue.getClass(), nameKey);
+        } else if (cellValue instanceof Entity) {
+            return metadataTools.getInstanceName((Entity) cellValue);
+        } else if (cellValue instanceof Collection) {
+            return "";
+        }
+        return cellValue.toString();
+    }
+
     public void exportDataGrid(DataGrid dataGrid, ExportDisplay display) {
         exportDataGrid(dataGrid, dataGrid.getColumns(), display);
     }
@@ -594,37 +803,43 @@ public class ExcelExporter {
             HSSFCell cell = row.createCell(c);
 
             Table.Column column = columns.get(c);
-            Object cellValue = null;
+            MetaPropertyPath propertyPath = column.getId() instanceof MetaPropertyPath ?
+                    (MetaPropertyPath) column.getId() : null;
+            Object cellValue = getColumnValue(table, column, instance);
 
-            MetaPropertyPath propertyPath = null;
-            if (column.getId() instanceof MetaPropertyPath) {
-                propertyPath = (MetaPropertyPath) column.getId();
+            formatValueCell(cell, cellValue, propertyPath, c, rowNumber, level, null);
+        }
+    }
 
-                Table.Printable printable = table.getPrintable(column);
-                if (printable != null) {
-                    cellValue = printable.getValue(instance);
-                } else {
-                    Element xmlDescriptor = column.getXmlDescriptor();
-                    if (xmlDescriptor != null && StringUtils.isNotEmpty(xmlDescriptor.attributeValue("captionProperty"))) {
-                        String captionProperty = xmlDescriptor.attributeValue("captionProperty");
-                        cellValue = InstanceUtils.getValueEx(instance, captionProperty);
-                    } else {
-                        cellValue = InstanceUtils.getValueEx(instance, propertyPath.getPath());
-                    }
-                    if (column.getFormatter() != null)
-                        cellValue = column.getFormatter().apply(cellValue);
-                }
+    @Nullable
+    protected Object getColumnValue(Table table, Table.Column column, Entity instance) {
+        Object cellValue = null;
+        if (column.getId() instanceof MetaPropertyPath) {
+            MetaPropertyPath propertyPath = (MetaPropertyPath) column.getId();
+
+            Table.Printable printable = table.getPrintable(column);
+            if (printable != null) {
+                cellValue = printable.getValue(instance);
             } else {
-                Table.Printable printable = table.getPrintable(column);
-                if (printable != null) {
-                    cellValue = printable.getValue(instance);
-                } else if (column.getValueProvider() != null) {
-                    cellValue = column.getValueProvider().apply(instance);
+                Element xmlDescriptor = column.getXmlDescriptor();
+                if (xmlDescriptor != null && StringUtils.isNotEmpty(xmlDescriptor.attributeValue("captionProperty"))) {
+                    String captionProperty = xmlDescriptor.attributeValue("captionProperty");
+                    cellValue = InstanceUtils.getValueEx(instance, captionProperty);
+                } else {
+                    cellValue = InstanceUtils.getValueEx(instance, propertyPath.getPath());
                 }
+                if (column.getFormatter() != null)
+                    cellValue = column.getFormatter().apply(cellValue);
+            }
+        } else {
+            Table.Printable printable = table.getPrintable(column);
+            if (printable != null) {
+                cellValue = printable.getValue(instance);
+            } else if (column.getValueProvider() != null) {
+                cellValue = column.getValueProvider().apply(instance);
             }
-
-            formatValueCell(cell, cellValue, propertyPath, c, rowNumber, level, null);
         }
+        return cellValue;
     }
 
     protected int createDataGridHierarchicalRow(TreeDataGrid dataGrid, TreeDataGridItems<Entity> treeDataGridItems,
@@ -658,29 +873,32 @@ public class ExcelExporter {
             HSSFCell cell = row.createCell(c);
 
             DataGrid.Column column = columns.get(c);
-            Object cellValue = null;
+            Object cellValue = getDataGridColumnValue(dataGrid, column, item);
 
-            MetaPropertyPath propertyPath = null;
-            DataGrid.ColumnGenerator generator;
-            if (column.getPropertyPath() != null) {
-                propertyPath = column.getPropertyPath();
-
-                cellValue = InstanceUtils.getValueEx(item, propertyPath.getPath());
+            formatValueCell(cell, cellValue, column.getPropertyPath(), c, rowNumber, level, null);
+        }
+    }
 
-                if (column.getFormatter() != null) {
-                    cellValue = column.getFormatter().apply(cellValue);
-                }
-            } else if ((generator = dataGrid.getColumnGenerator(column.getId())) != null) {
-                DataGrid.ColumnGeneratorEvent event = new DataGrid.ColumnGeneratorEvent(dataGrid, item, column.getId());
-                cellValue = generator.getValue(event);
+    @SuppressWarnings("unchecked")
+    @Nullable
+    protected Object getDataGridColumnValue(DataGrid dataGrid, DataGrid.Column column, Entity item) {
+        Object cellValue = null;
+        DataGrid.ColumnGenerator generator;
+        if (column.getPropertyPath() != null) {
+            cellValue = InstanceUtils.getValueEx(item, column.getPropertyPath().getPath());
 
-                if (cellValue == null && Boolean.class.equals(generator.getType())) {
-                    cellValue = false;
-                }
+            if (column.getFormatter() != null) {
+                cellValue = column.getFormatter().apply(cellValue);
             }
+        } else if ((generator = dataGrid.getColumnGenerator(column.getId())) != null) {
+            DataGrid.ColumnGeneratorEvent event = new DataGrid.ColumnGeneratorEvent(dataGrid, item, column.getId());
+            cellValue = generator.getValue(event);
 
-            formatValueCell(cell, cellValue, propertyPath, c, rowNumber, level, null);
+            if (cellValue == null && Boolean.class.equals(generator.getType())) {
+                cellValue = false;
+            }
         }
+        return cellValue;
     }
 
     protected String createSpaceString(int level) {
@@ -855,6 +1073,17 @@ public class ExcelExporter {
         return isRowNumberExceeded;
     }
 
+    /**
+     * @return number of instances loaded at once by streaming export
+     */
+    public int getStreamingChunkSize() {
+        return streamingChunkSize;
+    }
+
+    public void setStreamingChunkSize(int streamingChunkSize) {
+        this.streamingChunkSize = streamingChunkSize;
+    }
+
     public void setExportAggregation(boolean exportAggregation) {
         this.exportAggregation = exportAggregation;
     }
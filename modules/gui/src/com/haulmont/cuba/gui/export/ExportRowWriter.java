@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.haulmont.cuba.gui.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes exported rows to an output stream one by one, so only the current row is kept in memory.
+ * <p>
+ * Cell values can be {@code String}, {@code Number}, {@code LocalDate}, {@code LocalTime}, {@code LocalDateTime}
+ * or null for an empty cell. Closing the writer completes the document and closes the underlying stream.
+ *
+ * @see XlsxRowWriter
+ * @see CsvRowWriter
+ */
+public interface ExportRowWriter extends Closeable {
+
+    /**
+     * Writes the next row.
+     *
+     * @param cells cell values
+     * @param bold  whether the row should be emphasized, e.g. a header, if the format supports it
+     */
+    void writeRow(List<?> cells, boolean bold) throws IOException;
+}
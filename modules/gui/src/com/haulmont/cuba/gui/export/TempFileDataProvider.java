@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.haulmont.cuba.gui.export;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.*;
+
+/**
+ * Data provider for a temporary file. The file is deleted when the provided stream is closed.
+ */
+public class TempFileDataProvider implements ExportDataProvider {
+
+    protected File file;
+
+    public TempFileDataProvider(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public InputStream provide() {
+        try {
+            return new FileInputStream(file) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        FileUtils.deleteQuietly(file);
+                    }
+                }
+            };
+        } catch (FileNotFoundException e) {
+            throw new RuntimeException("Unable to read temporary file " + file, e);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.haulmont.cuba.gui.export;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a single-sheet XLSX document directly to an output stream. Rows are written to the compressed sheet
+ * as soon as they are passed to the writer, unlike a POI workbook which keeps all rows in memory, so the size
+ * of the exported data is limited neither by the heap nor by the XLS row limit.
+ * <p>
+ * Strings are written inline, without the shared strings table.
+ */
+public class XlsxRowWriter implements ExportRowWriter {
+
+    public static final int MAX_ROW_COUNT = 1048576;
+
+    protected static final int STYLE_DEFAULT = 0;
+    protected static final int STYLE_BOLD = 1;
+    protected static final int STYLE_INTEGER = 2;
+    protected static final int STYLE_DOUBLE = 3;
+    protected static final int STYLE_DATE = 4;
+    protected static final int STYLE_DATE_TIME = 5;
+    protected static final int STYLE_TIME = 6;
+
+    protected static final LocalDate EXCEL_EPOCH = LocalDate.of(1899, 12, 30);
+
+    protected static final String XML_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+    protected static final String SPREADSHEET_NS = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    protected static final String RELATIONSHIPS_NS = "http://schemas.openxmlformats.org/package/2006/relationships";
+    protected static final String DOCUMENT_RELATIONSHIPS_NS =
+            "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+    protected ZipOutputStream zip;
+    protected Writer writer;
+    protected int rowCount;
+
+    public XlsxRowWriter(OutputStream out) throws IOException {
+        zip = new ZipOutputStream(new BufferedOutputStream(out));
+        writer = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8));
+
+        writeEntry("[Content_Types].xml", XML_HEADER
+                + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+                + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+                + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+                + "<Override PartName=\"/xl/workbook.xml\""
+                + " ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>"
+                + "<Override PartName=\"/xl/worksheets/sheet1.xml\""
+                + " ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>"
+                + "<Override PartName=\"/xl/styles.xml\""
+                + " ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>"
+                + "</Types>");
+        writeEntry("_rels/.rels", XML_HEADER
+                + "<Relationships xmlns=\"" + RELATIONSHIPS_NS + "\">"
+                + "<Relationship Id=\"rId1\" Type=\"" + DOCUMENT_RELATIONSHIPS_NS + "/officeDocument\""
+                + " Target=\"xl/workbook.xml\"/>"
+                + "</Relationships>");
+        writeEntry("xl/workbook.xml", XML_HEADER
+                + "<workbook xmlns=\"" + SPREADSHEET_NS + "\" xmlns:r=\"" + DOCUMENT_RELATIONSHIPS_NS + "\">"
+                + "<sheets><sheet name=\"Export\" sheetId=\"1\" r:id=\"rId1\"/></sheets>"
+                + "</workbook>");
+        writeEntry("xl/_rels/workbook.xml.rels", XML_HEADER
+                + "<Relationships xmlns=\"" + RELATIONSHIPS_NS + "\">"
+                + "<Relationship Id=\"rId1\" Type=\"" + DOCUMENT_RELATIONSHIPS_NS + "/worksheet\""
+                + " Target=\"worksheets/sheet1.xml\"/>"
+                + "<Relationship Id=\"rId2\" Type=\"" + DOCUMENT_RELATIONSHIPS_NS + "/styles\""
+                + " Target=\"styles.xml\"/>"
+                + "</Relationships>");
+        writeEntry("xl/styles.xml", XML_HEADER
+                + "<styleSheet xmlns=\"" + SPREADSHEET_NS + "\">"
+                + "<numFmts count=\"1\"><numFmt numFmtId=\"164\" formatCode=\"#,##0.################\"/></numFmts>"
+                + "<fonts count=\"2\">"
+                + "<font><sz val=\"10\"/><name val=\"Arial\"/></font>"
+                + "<font><b/><sz val=\"10\"/><name val=\"Arial\"/></font>"
+                + "</fonts>"
+                + "<fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill>"
+                + "<fill><patternFill patternType=\"gray125\"/></fill></fills>"
+                + "<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>"
+                + "<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>"
+                + "<cellXfs count=\"7\">"
+                + "<xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>"
+                + "<xf numFmtId=\"0\" fontId=\"1\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyFont=\"1\"/>"
+                + "<xf numFmtId=\"3\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/>"
+                + "<xf numFmtId=\"164\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/>"
+                + "<xf numFmtId=\"14\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/>"
+                + "<xf numFmtId=\"22\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/>"
+                + "<xf numFmtId=\"20\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/>"
+                + "</cellXfs>"
+                + "<cellStyles count=\"1\"><cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/></cellStyles>"
+                + "</styleSheet>");
+
+        zip.putNextEntry(new ZipEntry("xl/worksheets/sheet1.xml"));
+        writer.write(XML_HEADER);
+        writer.write("<worksheet xmlns=\"" + SPREADSHEET_NS + "\"><sheetData>");
+    }
+
+    /**
+     * @return true if the sheet cannot contain more rows
+     */
+    public boolean isRowNumberExceeded() {
+        return rowCount >= MAX_ROW_COUNT;
+    }
+
+    @Override
+    public void writeRow(List<?> cells, boolean bold) throws IOException {
+        if (isRowNumberExceeded()) {
+            throw new IllegalStateException("Maximum number of rows exceeded: " + MAX_ROW_COUNT);
+        }
+
+        rowCount++;
+        writer.write("<row r=\"");
+        writer.write(Integer.toString(rowCount));
+        writer.write("\">");
+        for (int i = 0; i < cells.size(); i++) {
+            Object value = cells.get(i);
+            if (value != null) {
+                writeCell(getCellReference(i, rowCount), value, bold);
+            }
+        }
+        writer.write("</row>");
+    }
+
+    protected void writeCell(String reference, Object value, boolean bold) throws IOException {
+        if (value instanceof Number && isFinite((Number) value)) {
+            Number number = (Number) value;
+            boolean integer = number instanceof Integer || number instanceof Long || number instanceof Short
+                    || number instanceof Byte || number instanceof BigInteger;
+            String text = number instanceof BigDecimal ? ((BigDecimal) number).toPlainString() : number.toString();
+            writeValueCell(reference, text, integer ? STYLE_INTEGER : STYLE_DOUBLE);
+        } else if (value instanceof LocalDate) {
+            writeValueCell(reference, Long.toString(ChronoUnit.DAYS.between(EXCEL_EPOCH, (LocalDate) value)), STYLE_DATE);
+        } else if (value instanceof LocalDateTime) {
+            LocalDateTime dateTime = (LocalDateTime) value;
+            double serial = ChronoUnit.DAYS.between(EXCEL_EPOCH, dateTime.toLocalDate())
+                    + getDayFraction(dateTime.toLocalTime());
+            writeValueCell(reference, Double.toString(serial), STYLE_DATE_TIME);
+        } else if (value instanceof LocalTime) {
+            writeValueCell(reference, Double.toString(getDayFraction((LocalTime) value)), STYLE_TIME);
+        } else {
+            writer.write("<c r=\"");
+            writer.write(reference);
+            writer.write("\" t=\"inlineStr\"");
+            if (bold) {
+                writer.write(" s=\"" + STYLE_BOLD + "\"");
+            }
+            writer.write("><is><t xml:space=\"preserve\">");
+            writeEscaped(value.toString());
+            writer.write("</t></is></c>");
+        }
+    }
+
+    protected void writeValueCell(String reference, String value, int style) throws IOException {
+        writer.write("<c r=\"");
+        writer.write(reference);
+        writer.write("\" s=\"");
+        writer.write(Integer.toString(style));
+        writer.write("\"><v>");
+        writer.write(value);
+        writer.write("</v></c>");
+    }
+
+    protected boolean isFinite(Number number) {
+        return !(number instanceof Double && (((Double) number).isNaN() || ((Double) number).isInfinite()))
+                && !(number instanceof Float && (((Float) number).isNaN() || ((Float) number).isInfinite()));
+    }
+
+    protected double getDayFraction(LocalTime time) {
+        return time.toNanoOfDay() / (double) ChronoUnit.DAYS.getDuration().toNanos();
+    }
+
+    protected String getCellReference(int column, int row) {
+        StringBuilder sb = new StringBuilder();
+        int c = column + 1;
+        while (c > 0) {
+            int rem = (c - 1) % 26;
+            sb.insert(0, (char) ('A' + rem));
+            c = (c - 1) / 26;
+        }
+        return sb.append(row).toString();
+    }
+
+    protected void writeEscaped(String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '&':
+                    writer.write("&amp;");
+                    break;
+                case '<':
+                    writer.write("&lt;");
+                    break;
+                case '>':
+                    writer.write("&gt;");
+                    break;
+                case '"':
+                    writer.write("&quot;");
+                    break;
+                default:
+                    // control characters are not allowed in XML 1.0
+                    if (ch >= 0x20 || ch == '\t' || ch == '\n' || ch == '\r') {
+                        writer.write(ch);
+                    }
+            }
+        }
+    }
+
+    protected void writeEntry(String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        writer.write(content);
+        writer.flush();
+        zip.closeEntry();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.write("</sheetData></worksheet>");
+        writer.flush();
+        zip.closeEntry();
+        zip.close();
+    }
+}
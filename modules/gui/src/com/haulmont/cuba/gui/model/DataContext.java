@@ -25,9 +25,7 @@ import com.haulmont.cuba.gui.screen.Subscribe;
 
 import javax.annotation.CheckReturnValue;
 import javax.annotation.Nullable;
-import java.util.Collection;
-import java.util.EventObject;
-import java.util.Set;
+import java.util.*;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -93,6 +91,24 @@ public interface DataContext {
     @CheckReturnValue
     EntitySet merge(Collection<? extends Entity> entities);
 
+    /**
+     * Merge the given entities into the context in a single pass. Unlike merging the entities one by one, an instance
+     * referenced from several elements of the collection is merged only once.
+     * <p>
+     * The returned list contains instances tracked by the context in the order of the passed collection.
+     *
+     * @return list of instances tracked by the context
+     * @see #merge(Collection)
+     */
+    @CheckReturnValue
+    default <T extends Entity> List<T> mergeAll(Collection<T> entities) {
+        List<T> managedList = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            managedList.add(merge(entity));
+        }
+        return managedList;
+    }
+
     /**
      * Removes the entity from the context and registers it as deleted. The entity will be removed from the data store
      * upon subsequent call to {@link #commit()}.
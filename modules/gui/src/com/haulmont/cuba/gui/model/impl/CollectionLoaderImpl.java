@@ -48,6 +48,10 @@ public class CollectionLoaderImpl<E extends Entity> implements CollectionLoader<
     private Sort sort;
     private Function<LoadContext<E>, List<E>> delegate;
 
+    // values of the sort properties of the last loaded row and the position of the next page they lead to
+    private Map<String, Object> keysetValues;
+    private int keysetFirstResult = -1;
+
     public CollectionLoaderImpl(ApplicationContext applicationContext) {
         this.applicationContext = applicationContext;
     }
@@ -91,11 +95,10 @@ public class CollectionLoaderImpl<E extends Entity> implements CollectionLoader<
             list = delegate.apply(loadContext);
         }
 
+        updateKeyset(list);
+
         if (dataContext != null) {
-            List<E> mergedList = new ArrayList<>(list.size());
-            for (E entity : list) {
-                mergedList.add(dataContext.merge(entity));
-            }
+            List<E> mergedList = dataContext.mergeAll(list);
             container.setItems(mergedList);
         } else {
             container.setItems(list);
@@ -118,6 +121,8 @@ public class CollectionLoaderImpl<E extends Entity> implements CollectionLoader<
             query.setFirstResult(firstResult);
         if (maxResults < Integer.MAX_VALUE)
             query.setMaxResults(maxResults);
+        if (keysetValues != null && firstResult > 0 && firstResult == keysetFirstResult)
+            query.setKeysetValues(keysetValues);
 
         loadContext.setView(resolveView());
         loadContext.setSoftDeletion(softDeletion);
@@ -126,6 +131,29 @@ public class CollectionLoaderImpl<E extends Entity> implements CollectionLoader<
         return loadContext;
     }
 
+    /**
+     * Remembers values of the sort properties of the last loaded row, so the next page can be loaded by
+     * keyset pagination instead of offset.
+     */
+    protected void updateKeyset(List<E> list) {
+        resetKeyset();
+        if (sort == null || maxResults == Integer.MAX_VALUE || list.size() < maxResults || list.isEmpty())
+            return;
+
+        E lastEntity = list.get(list.size() - 1);
+        Map<String, Object> values = new HashMap<>();
+        for (Sort.Order order : sort.getOrders()) {
+            values.put(order.getProperty(), lastEntity.getValueEx(order.getProperty()));
+        }
+        keysetValues = values;
+        keysetFirstResult = firstResult + list.size();
+    }
+
+    protected void resetKeyset() {
+        keysetValues = null;
+        keysetFirstResult = -1;
+    }
+
     protected View resolveView() {
         View view = this.view;
         if (view == null && viewName != null) {
@@ -159,6 +187,7 @@ public class CollectionLoaderImpl<E extends Entity> implements CollectionLoader<
     @Override
     public void setQuery(String query) {
         this.query = query;
+        resetKeyset();
     }
 
     @Override
@@ -169,6 +198,7 @@ public class CollectionLoaderImpl<E extends Entity> implements CollectionLoader<
     @Override
     public void setCondition(Condition condition) {
         this.condition = condition;
+        resetKeyset();
     }
 
     @Override
@@ -179,6 +209,7 @@ public class CollectionLoaderImpl<E extends Entity> implements CollectionLoader<
     @Override
     public void setParameters(Map<String, Object> parameters) {
         this.parameters.clear();
+        resetKeyset();
         for (Map.Entry<String, Object> entry : parameters.entrySet()) {
             setParameter(entry.getKey(), entry.getValue());
         }
@@ -192,11 +223,13 @@ public class CollectionLoaderImpl<E extends Entity> implements CollectionLoader<
     @Override
     public void setParameter(String name, Object value) {
         parameters.put(name, value);
+        resetKeyset();
     }
 
     @Override
     public void removeParameter(String name) {
         parameters.remove(name);
+        resetKeyset();
     }
 
     @Override
@@ -217,6 +250,7 @@ public class CollectionLoaderImpl<E extends Entity> implements CollectionLoader<
     @Override
     public void setMaxResults(int maxResults) {
         this.maxResults = maxResults;
+        resetKeyset();
     }
 
     @Override
@@ -227,6 +261,7 @@ public class CollectionLoaderImpl<E extends Entity> implements CollectionLoader<
     @Override
     public void setSoftDeletion(boolean softDeletion) {
         this.softDeletion = softDeletion;
+        resetKeyset();
     }
 
     @Override
@@ -278,6 +313,7 @@ public class CollectionLoaderImpl<E extends Entity> implements CollectionLoader<
         } else {
             this.sort = sort;
         }
+        resetKeyset();
     }
 
     @Override
@@ -71,6 +71,8 @@ public class DataContextImpl implements DataContext {
 
     protected Map<Entity, Map<String, EmbeddedPropertyChangeListener>> embeddedPropertyListeners = new WeakHashMap<>();
 
+    protected Map<Class<?>, MergedProperties> mergedProperties = new HashMap<>();
+
     public DataContextImpl(ApplicationContext applicationContext) {
         this.applicationContext = applicationContext;
     }
@@ -159,21 +161,27 @@ public class DataContextImpl implements DataContext {
 
     @Override
     public EntitySet merge(Collection<? extends Entity> entities) {
+        return EntitySet.of(mergeAll(entities));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T extends Entity> List<T> mergeAll(Collection<T> entities) {
         checkNotNullArgument(entities, "entity collection is null");
 
-        List<Entity> managedList = new ArrayList<>(entities.size());
+        List<T> managedList = new ArrayList<>(entities.size());
         disableListeners = true;
         try {
             Set<Entity> merged = Sets.newIdentityHashSet();
 
-            for (Entity entity : entities) {
-                Entity managed = internalMerge(entity, merged);
+            for (T entity : entities) {
+                T managed = (T) internalMerge(entity, merged);
                 managedList.add(managed);
             }
         } finally {
             disableListeners = false;
         }
-        return EntitySet.of(managedList);
+        return managedList;
     }
 
     protected Entity internalMerge(Entity entity, Set<Entity> mergedSet) {
@@ -257,13 +265,11 @@ public class DataContextImpl implements DataContext {
 
         mergeSystemState(srcEntity, dstEntity);
 
-        MetaClass metaClass = getMetadata().getClassNN(srcEntity.getClass());
+        MergedProperties properties = getMergedProperties(srcEntity.getClass());
 
-        for (MetaProperty property : metaClass.getProperties()) {
+        for (MetaProperty property : properties.localProperties) {
             String propertyName = property.getName();
-            if (!property.getRange().isClass()                                             // local
-                    && !property.isReadOnly()                                              // read-write
-                    && (srcNew || entityStates.isLoaded(srcEntity, propertyName))          // loaded src
+            if ((srcNew || entityStates.isLoaded(srcEntity, propertyName))                 // loaded src
                     && (dstNew || entityStates.isLoaded(dstEntity, propertyName))) {       // loaded dst
 
                 Object value = srcEntity.getValue(propertyName);
@@ -277,11 +283,9 @@ public class DataContextImpl implements DataContext {
             }
         }
 
-        for (MetaProperty property : metaClass.getProperties()) {
+        for (MetaProperty property : properties.referenceProperties) {
             String propertyName = property.getName();
-            if (property.getRange().isClass()                                              // refs and collections
-                    && !property.isReadOnly()                                              // read-write
-                    && (srcNew || entityStates.isLoaded(srcEntity, propertyName))          // loaded src
+            if ((srcNew || entityStates.isLoaded(srcEntity, propertyName))                 // loaded src
                     && (dstNew || entityStates.isLoaded(dstEntity, propertyName))) {       // loaded dst
 
                 Object value = srcEntity.getValue(propertyName);
@@ -309,7 +313,7 @@ public class DataContextImpl implements DataContext {
                     if (!mergedSet.contains(srcRef)) {
                         Entity managedRef = internalMerge(srcRef, mergedSet);
                         ((AbstractInstance) dstEntity).setValue(propertyName, managedRef, false);
-                        if (getMetadataTools().isEmbedded(property)) {
+                        if (properties.embeddedProperties.contains(property)) {
                             EmbeddedPropertyChangeListener listener = new EmbeddedPropertyChangeListener(dstEntity);
                             managedRef.addPropertyChangeListener(listener);
                             embeddedPropertyListeners.computeIfAbsent(dstEntity, e -> new HashMap<>()).put(propertyName, listener);
@@ -328,6 +332,11 @@ public class DataContextImpl implements DataContext {
         }
     }
 
+    protected MergedProperties getMergedProperties(Class<?> entityClass) {
+        return mergedProperties.computeIfAbsent(entityClass, aClass ->
+                new MergedProperties(getMetadata().getClassNN(aClass), getMetadataTools()));
+    }
+
     @SuppressWarnings("unchecked")
     protected void copySystemState(Entity srcEntity, Entity dstEntity) {
         if (dstEntity instanceof BaseGenericIdEntity) {
@@ -390,9 +399,11 @@ public class DataContextImpl implements DataContext {
                     dstList.add(internalMerge(srcRef, mergedSet));
                 }
             } else {
+                // avoid linear search in the list for each merged element
+                Set<Entity> dstElements = new HashSet<>(dstList);
                 for (Entity srcRef : list) {
                     Entity managedRef = internalMerge(srcRef, mergedSet);
-                    if (!dstList.contains(managedRef)) {
+                    if (dstElements.add(managedRef)) {
                         dstList.add(managedRef);
                     }
                 }
@@ -695,6 +706,34 @@ public class DataContextImpl implements DataContext {
         return "{" + object.getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(object)) + "}";
     }
 
+    /**
+     * Read-write properties of an entity class split by kind, to avoid filtering all properties on each merge.
+     */
+    protected static class MergedProperties {
+
+        protected final List<MetaProperty> localProperties = new ArrayList<>();
+
+        protected final List<MetaProperty> referenceProperties = new ArrayList<>();
+
+        protected final Set<MetaProperty> embeddedProperties = new HashSet<>();
+
+        public MergedProperties(MetaClass metaClass, MetadataTools metadataTools) {
+            for (MetaProperty property : metaClass.getProperties()) {
+                if (property.isReadOnly()) {
+                    continue;
+                }
+                if (property.getRange().isClass()) {
+                    referenceProperties.add(property);
+                    if (metadataTools.isEmbedded(property)) {
+                        embeddedProperties.add(property);
+                    }
+                } else {
+                    localProperties.add(property);
+                }
+            }
+        }
+    }
+
     protected class PropertyChangeListener implements Instance.PropertyChangeListener {
         @Override
         public void propertyChanged(Instance.PropertyChangeEvent e) {
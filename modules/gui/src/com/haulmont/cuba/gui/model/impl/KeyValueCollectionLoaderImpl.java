@@ -90,10 +90,7 @@ public class KeyValueCollectionLoaderImpl implements KeyValueCollectionLoader {
         }
 
         if (dataContext != null) {
-            List<KeyValueEntity> mergedList = new ArrayList<>(list.size());
-            for (KeyValueEntity entity : list) {
-                mergedList.add(dataContext.merge(entity));
-            }
+            List<KeyValueEntity> mergedList = dataContext.mergeAll(list);
             container.setItems(mergedList);
         } else {
             container.setItems(list);
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.gui.export;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+public class ExportRowWriterTest extends Assert {
+
+    @Test
+    public void testCsv() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (CsvRowWriter writer = new CsvRowWriter(out)) {
+            writer.writeRow(Arrays.asList("Name", "Amount", "Date"), true);
+            writer.writeRow(Arrays.asList("a, \"b\"", new BigDecimal("1E+3"), LocalDate.of(2019, 1, 31)), false);
+            writer.writeRow(Arrays.asList("c", null, null), false);
+        }
+
+        assertEquals("\uFEFFName,Amount,Date\r\n\"a, \"\"b\"\"\",1000,2019-01-31\r\nc,,\r\n",
+                new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testXlsx() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (XlsxRowWriter writer = new XlsxRowWriter(out)) {
+            writer.writeRow(Arrays.asList("Name", "Amount"), true);
+            writer.writeRow(Arrays.asList("a < b", 10L), false);
+            writer.writeRow(Arrays.asList(LocalDate.of(1900, 3, 1), null), false);
+        }
+
+        Map<String, String> entries = new HashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.put(entry.getName(), IOUtils.toString(zip, StandardCharsets.UTF_8));
+            }
+        }
+
+        assertTrue(entries.containsKey("[Content_Types].xml"));
+        assertTrue(entries.containsKey("xl/workbook.xml"));
+        assertTrue(entries.containsKey("xl/styles.xml"));
+
+        String sheet = entries.get("xl/worksheets/sheet1.xml");
+        assertTrue(sheet.contains("<row r=\"1\"><c r=\"A1\" t=\"inlineStr\" s=\"1\"><is><t xml:space=\"preserve\">Name</t></is></c>"));
+        assertTrue(sheet.contains("<c r=\"A2\" t=\"inlineStr\"><is><t xml:space=\"preserve\">a &lt; b</t></is></c><c r=\"B2\" s=\"2\"><v>10</v></c>"));
+        assertTrue(sheet.contains("<row r=\"3\"><c r=\"A3\" s=\"4\"><v>61</v></c></row>"));
+        assertTrue(sheet.endsWith("</sheetData></worksheet>"));
+    }
+
+    @Test
+    public void testCellReference() throws Exception {
+        XlsxRowWriter writer = new XlsxRowWriter(new ByteArrayOutputStream());
+        assertEquals("A1", writer.getCellReference(0, 1));
+        assertEquals("Z2", writer.getCellReference(25, 2));
+        assertEquals("AA3", writer.getCellReference(26, 3));
+        assertEquals("BA4", writer.getCellReference(52, 4));
+    }
+}
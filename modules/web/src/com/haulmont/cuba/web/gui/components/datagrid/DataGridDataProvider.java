@@ -85,7 +85,7 @@ public class DataGridDataProvider<T> extends AbstractDataProvider<T, Serializabl
 
     @Override
     public boolean isInMemory() {
-        return true;
+        return !(dataGridItems instanceof DataGridItems.Lazy);
     }
 
     @Override
@@ -104,6 +104,14 @@ public class DataGridDataProvider<T> extends AbstractDataProvider<T, Serializabl
             return Stream.empty();
         }
 
+        if (dataGridItems instanceof DataGridItems.Lazy) {
+            int offset = query.getOffset();
+            int limit = Math.min(query.getLimit(), dataGridItems.size() - offset);
+            return limit > 0
+                    ? dataGridItems.getItems(offset, limit).stream()
+                    : Stream.empty();
+        }
+
         return dataGridItems.getItems()
                 .skip(query.getOffset())
                 .limit(query.getLimit());
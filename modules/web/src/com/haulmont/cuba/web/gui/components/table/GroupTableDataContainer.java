@@ -16,8 +16,10 @@
 
 package com.haulmont.cuba.web.gui.components.table;
 
+import com.haulmont.chile.core.model.MetaPropertyPath;
 import com.haulmont.cuba.gui.components.data.BindingState;
 import com.haulmont.cuba.gui.components.data.GroupTableItems;
+import com.haulmont.cuba.gui.components.data.TableItems;
 import com.haulmont.cuba.gui.data.GroupInfo;
 import com.haulmont.cuba.web.widgets.data.GroupTableContainer;
 
@@ -350,6 +352,33 @@ public class GroupTableDataContainer<I> extends SortableDataContainer<I> impleme
         doRefreshGroup();
     }
 
+    @Override
+    protected void datasourceValueChanged(TableItems.ValueChangeEvent<I> e) {
+        if (hasGroups() && isGroupProperty(e.getProperty())) {
+            // the item could be moved to another group by the table items
+            doRefreshGroup();
+
+            boolean prevIgnoreListeners = ignoreListeners;
+            try {
+                fireItemSetChanged();
+            } finally {
+                ignoreListeners = prevIgnoreListeners;
+            }
+        }
+
+        super.datasourceValueChanged(e);
+    }
+
+    protected boolean isGroupProperty(String property) {
+        for (Object groupProperty : getGroupProperties()) {
+            if (groupProperty instanceof MetaPropertyPath
+                    && ((MetaPropertyPath) groupProperty).getMetaProperties()[0].getName().equals(property)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     protected void beforeFireStateChanged(BindingState state) {
         super.beforeFireStateChanged(state);
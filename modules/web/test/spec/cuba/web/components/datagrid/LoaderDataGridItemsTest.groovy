@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package spec.cuba.web.components.datagrid
+
+import com.haulmont.cuba.core.app.DataService
+import com.haulmont.cuba.core.global.LoadContext
+import com.haulmont.cuba.core.global.Sort
+import com.haulmont.cuba.gui.components.data.datagrid.LoaderDataGridItems
+import com.haulmont.cuba.gui.model.CollectionChangeType
+import com.haulmont.cuba.gui.model.CollectionContainer
+import com.haulmont.cuba.gui.model.CollectionLoader
+import com.haulmont.cuba.web.testmodel.sales.Product
+import com.haulmont.cuba.web.testsupport.TestServiceProxy
+import spec.cuba.web.WebSpec
+
+class LoaderDataGridItemsTest extends WebSpec {
+
+    private CollectionContainer<Product> container
+    private CollectionLoader<Product> loader
+    private LoaderDataGridItems<Product> items
+
+    @Override
+    void setup() {
+        container = dataComponents.createCollectionContainer(Product)
+        loader = dataComponents.createCollectionLoader()
+        loader.setContainer(container)
+        loader.setQuery('select p from test$Product p')
+
+        items = new LoaderDataGridItems<>(loader)
+        items.setPageSize(10)
+        items.setMaxCachedPages(2)
+    }
+
+    @Override
+    void cleanup() {
+        TestServiceProxy.clear()
+    }
+
+    def "items are loaded by pages and evicted"() {
+        def dataService = Mock(DataService)
+        TestServiceProxy.mock(DataService, dataService)
+
+        when:
+
+        def page = items.getItems(15, 10)
+
+        then:
+
+        1 * dataService.getCount(_) >> 1000
+        2 * dataService.loadList({ LoadContext lc -> lc.query.maxResults == 10 }) >> { LoadContext lc ->
+            createProducts(lc.query.firstResult, 10)
+        }
+        items.size() == 1000
+        page*.name == (15..24).collect { "p$it".toString() }
+        container.items.size() == 20
+
+        when:
+
+        items.getItems(17, 3)
+
+        then:
+
+        0 * dataService.loadList(_)
+
+        when:
+
+        items.getItemByIndex(500)
+
+        then:
+
+        1 * dataService.loadList({ LoadContext lc -> lc.query.firstResult == 500 }) >> createProducts(500, 10)
+        container.items.size() == 20
+        container.items.any { it.name == 'p17' }
+        !container.items.any { it.name == 'p25' }
+    }
+
+    def "sorting reloads items"() {
+        def dataService = Mock(DataService)
+        TestServiceProxy.mock(DataService, dataService)
+        def itemSetChanged = 0
+        items.addItemSetChangeListener({ itemSetChanged++ })
+
+        when:
+
+        items.getItems(0, 5)
+
+        then:
+
+        1 * dataService.getCount(_) >> 10
+        1 * dataService.loadList(_) >> createProducts(0, 10)
+
+        when:
+
+        items.sort(['name'] as Object[], [false] as boolean[])
+        items.getItems(0, 5)
+
+        then:
+
+        itemSetChanged == 1
+        1 * dataService.getCount(_) >> 10
+        1 * dataService.loadList({ LoadContext lc -> lc.query.sort.orders[0].property == 'name' }) >>
+                createProducts(0, 10).reverse()
+        items.getItemByIndex(0).name == 'p9'
+    }
+
+    def "pages are loaded by offset only"() {
+        def dataService = Mock(DataService)
+        TestServiceProxy.mock(DataService, dataService)
+        items.sort(['name'] as Object[], [true] as boolean[])
+
+        when:
+
+        items.getItems(0, 30)
+
+        then:
+
+        1 * dataService.getCount(_) >> 1000
+        3 * dataService.loadList({ LoadContext lc -> lc.query.keysetValues == null }) >> { LoadContext lc ->
+            createProducts(lc.query.firstResult, 10)
+        }
+    }
+
+    def "items with equal sort values are not repeated on adjacent pages"() {
+        def dataService = Mock(DataService)
+        TestServiceProxy.mock(DataService, dataService)
+        // names repeat, so the items having the same name span the boundary of pages
+        def products = (0..<20).collect { new Product(name: "p${it.intdiv(4)}") }
+        def random = new Random(1)
+        dataService.getCount(_) >> 20
+        dataService.loadList(_) >> { LoadContext lc -> loadSorted(products, lc, random) }
+        items.sort(['name'] as Object[], [true] as boolean[])
+
+        when:
+
+        def loaded = items.getItems(0, 20)
+
+        then:
+
+        loaded.size() == 20
+        loaded.toSet() == products.toSet()
+        loaded*.name == products*.name
+    }
+
+        def "container is updated incrementally and keeps the selected item"() {
+        def dataService = Mock(DataService)
+        TestServiceProxy.mock(DataService, dataService)
+        dataService.getCount(_) >> 1000
+        dataService.loadList(_) >> { LoadContext lc -> createProducts(lc.query.firstResult, 10) }
+
+        def changeTypes = []
+        container.addCollectionChangeListener({ changeTypes.add(it.changeType) })
+
+        when:
+
+        def selected = items.getItemByIndex(5)
+        items.setSelectedItem(selected)
+        items.getItemByIndex(15)
+        items.getItemByIndex(25)
+
+        then:
+
+        changeTypes == [CollectionChangeType.ADD_ITEMS, CollectionChangeType.ADD_ITEMS,
+                        CollectionChangeType.REMOVE_ITEMS, CollectionChangeType.ADD_ITEMS]
+        container.items.size() == 21
+        container.item.is(selected)
+
+        when:
+
+        items.setSelectedItem(items.getItemByIndex(25))
+
+        then:
+
+        container.items.size() == 20
+        !container.items.any { it.is(selected) }
+    }
+
+    def "changes of loaded items are published"() {
+        def dataService = Mock(DataService)
+        TestServiceProxy.mock(DataService, dataService)
+        dataService.getCount(_) >> 1000
+        dataService.loadList(_) >> { LoadContext lc -> createProducts(lc.query.firstResult, 10) }
+
+        def changedItems = []
+        items.addValueChangeListener({ changedItems.add(it.item) })
+
+        when:
+
+        def item = items.getItemByIndex(0)
+        items.setSelectedItem(item)
+        item.name = 'changed'
+
+        then:
+
+        changedItems == [item]
+
+        when:
+
+        items.getItemByIndex(15)
+        items.getItemByIndex(25)
+        items.setSelectedItem(null)
+        item.name = 'changed again'
+
+        then:
+
+        changedItems == [item]
+    }
+
+    /**
+     * Emulates the database: rows with equal values of the sort properties are returned in arbitrary order.
+     */
+    private static List<Product> loadSorted(List<Product> products, LoadContext lc, Random random) {
+        def shuffled = new ArrayList<>(products)
+        Collections.shuffle(shuffled, random)
+        def comparator = lc.query.sort.orders.collect { order ->
+            Comparator<Product> c = Comparator.comparing({ Product p -> (Comparable) p.getValue(order.property) })
+            order.direction == Sort.Direction.DESC ? c.reversed() : c
+        }.inject { c1, c2 -> c1.thenComparing(c2) }
+        shuffled.sort(comparator)
+        shuffled.subList(lc.query.firstResult, Math.min(lc.query.firstResult + lc.query.maxResults, shuffled.size()))
+    }
+
+        private static List<Product> createProducts(int first, int count) {
+        (first..<(first + count)).collect { new Product(name: "p$it") }
+    }
+}
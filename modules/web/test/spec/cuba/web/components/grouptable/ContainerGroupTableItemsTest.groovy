@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package spec.cuba.web.components.grouptable
+
+import com.haulmont.chile.core.model.MetaPropertyPath
+import com.haulmont.cuba.gui.components.data.table.ContainerGroupTableItems
+import com.haulmont.cuba.gui.data.GroupInfo
+import com.haulmont.cuba.gui.model.CollectionContainer
+import com.haulmont.cuba.gui.model.SorterFactory
+import com.haulmont.cuba.web.testmodel.datacontext.Foo
+import org.apache.commons.collections4.map.LinkedMap
+import spec.cuba.web.WebSpec
+
+class ContainerGroupTableItemsTest extends WebSpec {
+
+    private CollectionContainer<Foo> container
+    private ContainerGroupTableItems<Foo, UUID> items
+    private MetaPropertyPath namePath
+
+    void setup() {
+        container = dataComponents.createCollectionContainer(Foo)
+        container.sorter = cont.getBean(SorterFactory).createCollectionContainerSorter(container, null)
+        items = new ContainerGroupTableItems<>(container)
+        namePath = metadata.getClassNN(Foo).getPropertyPath('name')
+    }
+
+    def "groups are updated on adding and removing items"() {
+        Foo foo1 = new Foo(name: 'a')
+        Foo foo2 = new Foo(name: 'b')
+        container.items = [foo1, foo2]
+        items.groupBy([namePath] as Object[])
+
+        when:
+
+        Foo foo3 = new Foo(name: 'a')
+        container.mutableItems.add(foo3)
+
+        then:
+
+        items.rootGroups().size() == 2
+        items.getGroupItemIds(group('a')) == [foo1.id, foo3.id]
+
+        when:
+
+        container.mutableItems.remove(foo2)
+
+        then:
+
+        items.rootGroups() == [group('a')]
+        !items.containsGroup(group('b'))
+    }
+
+    def "item is moved to another group when its group property changes"() {
+        Foo foo1 = new Foo(name: 'a')
+        Foo foo2 = new Foo(name: 'a')
+        container.items = [foo1, foo2]
+        items.groupBy([namePath] as Object[])
+
+        when:
+
+        container.getItem(foo2.id).name = 'c'
+
+        then:
+
+        items.rootGroups() == [group('a'), group('c')]
+        items.getGroupItemIds(group('a')) == [foo1.id]
+        items.getParentGroup(container.getItem(foo2.id)) == group('c')
+    }
+
+    def "grouping by the same properties after incremental changes gives the same groups"() {
+        Foo foo1 = new Foo(name: 'a')
+        container.items = [foo1]
+        items.groupBy([namePath] as Object[])
+
+        when:
+
+        container.mutableItems.add(new Foo(name: 'b'))
+        def incremental = items.rootGroups().collect()
+        container.items = container.items.collect()
+        items.groupBy([namePath] as Object[])
+
+        then:
+
+        items.rootGroups() == incremental
+    }
+
+    def "added item is inserted into the sorted groups"() {
+        Foo foo1 = new Foo(name: 'c')
+        Foo foo2 = new Foo(name: 'a')
+        container.items = [foo1, foo2]
+        items.sort([namePath] as Object[], [ascending] as boolean[])
+        items.groupBy([namePath] as Object[])
+
+        when:
+
+        container.mutableItems.add(new Foo(name: 'b'))
+
+        then:
+
+        items.rootGroups() == expectedGroups.collect { group(it) }
+
+        where:
+
+        ascending | expectedGroups
+        true      | ['a', 'b', 'c']
+        false     | ['c', 'b', 'a']
+    }
+
+    def "item moved to another group is inserted into the sorted groups"() {
+        Foo foo1 = new Foo(name: 'a')
+        Foo foo2 = new Foo(name: 'c')
+        container.items = [foo1, foo2]
+        items.sort([namePath] as Object[], [true] as boolean[])
+        items.groupBy([namePath] as Object[])
+
+        when:
+
+        container.getItem(foo2.id).name = '0'
+
+        then:
+
+        items.rootGroups() == [group('0'), group('a')]
+    }
+
+    def "added item is appended to the groups if the container is not sorted"() {
+        Foo foo1 = new Foo(name: 'c')
+        Foo foo2 = new Foo(name: 'a')
+        container.items = [foo1, foo2]
+        items.groupBy([namePath] as Object[])
+
+        when:
+
+        container.mutableItems.add(new Foo(name: 'b'))
+
+        then:
+
+        items.rootGroups() == [group('c'), group('a'), group('b')]
+    }
+
+    private GroupInfo group(String name) {
+        def values = new LinkedMap()
+        values.put(namePath, name)
+        new GroupInfo(values)
+    }
+}
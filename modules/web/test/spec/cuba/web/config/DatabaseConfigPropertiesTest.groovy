@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package spec.cuba.web.config
+
+import com.haulmont.cuba.client.sys.cache.ClientCacheManager
+import com.haulmont.cuba.client.sys.cache.ConfigCacheStrategy
+import com.haulmont.cuba.core.app.ConfigStorageService
+import com.haulmont.cuba.core.global.Configuration
+import com.haulmont.cuba.core.global.GlobalConfig
+import com.haulmont.cuba.web.testsupport.TestContainer
+import com.haulmont.cuba.web.testsupport.TestServiceProxy
+import org.junit.ClassRule
+import spock.lang.Shared
+import spock.lang.Specification
+
+class DatabaseConfigPropertiesTest extends Specification {
+
+    @Shared @ClassRule
+    TestContainer cont = TestContainer.Common.INSTANCE
+
+    Map<String, String> serverProperties = [:]
+
+    ConfigCacheStrategy configCacheStrategy
+
+    void setup() {
+        TestServiceProxy.mock(ConfigStorageService, Mock(ConfigStorageService) {
+            getDbProperties() >> { new HashMap<>(serverProperties) }
+        })
+
+        configCacheStrategy = cont.getBean(ConfigCacheStrategy)
+        configCacheStrategy.updateSynchronously = true
+        configCacheStrategy.clearCache()
+        cont.getBean(ClientCacheManager).addCachedObject(ConfigCacheStrategy.NAME, configCacheStrategy)
+    }
+
+    void cleanup() {
+        configCacheStrategy.updateSynchronously = false
+        configCacheStrategy.clearCache()
+        TestServiceProxy.clear()
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "database property changed on the server is read by the client after the cache update interval"() {
+
+        given:
+        def globalConfig = cont.getBean(Configuration).getConfig(GlobalConfig)
+        serverProperties['cuba.webAppUrl'] = 'http://server-1/app'
+
+        expect:
+        globalConfig.webAppUrl == 'http://server-1/app'
+
+        when: 'the property is changed on the server and the update interval passes'
+        serverProperties['cuba.webAppUrl'] = 'http://server-2/app'
+        configCacheStrategy.lastUsedTs = 0
+
+        then:
+        globalConfig.webAppUrl == 'http://server-2/app'
+    }
+}
@@ -685,6 +685,32 @@ class DataContextMergeTest extends Specification {
         line2Id << [uuid(2), uuid(2), uuid(0)]
     }
 
+    def "merge all keeps order and merges shared references once"() {
+
+        DataContext context = factory.createDataContext()
+
+        when:
+
+        Customer customer = new Customer(name: 'c1')
+        makeDetached(customer)
+        Order order1 = new Order(number: '1', customer: customer)
+        makeDetached(order1)
+        Order order2 = new Order(number: '2', customer: customer)
+        makeDetached(order2)
+
+        def mergedList = context.mergeAll([order2, order1, order2])
+
+        then:
+
+        mergedList.size() == 3
+        mergedList[0].number == '2'
+        mergedList[1].number == '1'
+        mergedList[2].is(mergedList[0])
+        mergedList[0].customer.is(mergedList[1].customer)
+        mergedList[0].customer.is(context.find(Customer, customer.id))
+        !context.hasChanges()
+    }
+
     private UUID uuid(int val) {
         new UUID(val, 0)
     }